@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with power-of-two buckets.
+ * <p>Recording is a few atomic increments, the percentiles
+ * are accurate up to a factor of two, which is enough to tell
+ * microseconds from milliseconds from seconds.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public class LatencyHistogram {
+	/** The bucket counts, bucket i holds values in [2^(i-1), 2^i). */
+	protected final AtomicLongArray buckets = new AtomicLongArray(64);
+	/** The number of values. */
+	protected final AtomicLong count = new AtomicLong();
+	/** The sum of the values. */
+	protected final AtomicLong sum = new AtomicLong();
+	/** The maximum value. */
+	protected final AtomicLong max = new AtomicLong();
+	/**
+	 * Record a value.
+	 * @param nanos the value in nanoseconds, negative values are treated as zero
+	 */
+	public void record(long nanos) {
+		long v = Math.max(0L, nanos);
+		buckets.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(v)));
+		count.incrementAndGet();
+		sum.addAndGet(v);
+		for (;;) {
+			long m = max.get();
+			if (v <= m || max.compareAndSet(m, v)) {
+				break;
+			}
+		}
+	}
+	/** @return the number of recorded values */
+	public long count() {
+		return count.get();
+	}
+	/** @return the sum of the recorded values in nanoseconds */
+	public long sum() {
+		return sum.get();
+	}
+	/** @return the largest recorded value in nanoseconds */
+	public long max() {
+		return max.get();
+	}
+	/** @return the average of the recorded values in nanoseconds, zero if empty */
+	public long mean() {
+		long c = count.get();
+		return c != 0 ? sum.get() / c : 0L;
+	}
+	/**
+	 * Returns the upper bound of the bucket containing the given percentile.
+	 * @param percent the percentile between 0 and 100
+	 * @return the value in nanoseconds, zero if empty
+	 */
+	public long percentile(double percent) {
+		long total = 0;
+		long[] counts = new long[buckets.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0L;
+		}
+		long rank = (long)Math.ceil(total * Math.min(100d, Math.max(0d, percent)) / 100d);
+		long acc = 0;
+		for (int i = 0; i < counts.length; i++) {
+			acc += counts[i];
+			if (acc >= rank && counts[i] != 0) {
+				return Math.min(i == 0 ? 0L : (1L << i) - 1, max.get());
+			}
+		}
+		return max.get();
+	}
+	/** Clear the histogram. */
+	public void reset() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("LatencyHistogram [count=");
+		builder.append(count());
+		builder.append(", mean=");
+		builder.append(mean());
+		builder.append(", p50=");
+		builder.append(percentile(50));
+		builder.append(", p99=");
+		builder.append(percentile(99));
+		builder.append(", max=");
+		builder.append(max());
+		builder.append("]");
+		return builder.toString();
+	}
+}
@@ -28,20 +28,33 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.annotation.Nonnull;
+import javax.management.JMException;
 import javax.xml.stream.XMLStreamException;
 
 import org.joda.time.DateMidnight;
@@ -55,17 +68,38 @@ import com.google.common.collect.Maps;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
 import hu.akarnokd.utils.Base64;
 import hu.akarnokd.utils.io.Closeables;
 import hu.akarnokd.utils.lang.Action1E;
 import hu.akarnokd.utils.lang.Action2E;
+import hu.akarnokd.utils.lang.DoubleAction1E;
 import hu.akarnokd.utils.lang.Func1E;
 import hu.akarnokd.utils.lang.Func2E;
+import hu.akarnokd.utils.lang.IntAction1E;
+import hu.akarnokd.utils.lang.LongAction1E;
+import hu.akarnokd.utils.lang.ToDoubleFunc1E;
+import hu.akarnokd.utils.lang.ToIntFunc1E;
+import hu.akarnokd.utils.lang.ToLongFunc1E;
+import hu.akarnokd.utils.pool.AsyncPool;
+import hu.akarnokd.utils.pool.ConcurrentPool;
+import hu.akarnokd.utils.pool.Pool;
+import hu.akarnokd.utils.pool.PoolSettings;
 import hu.akarnokd.utils.xml.XElement;
 import ix.CloseableIterator;
 import rx.Observable;
+import rx.Observable.OnSubscribe;
 import rx.Observer;
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func1;
 import rx.observables.SyncOnSubscribe;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
 
 /**
  * Simple collection of JDBC access methods.
@@ -85,7 +119,7 @@ public class DB implements Closeable {
 		public boolean encodePassword;
 		/** The database identifier. */
 		public String id;
-		/** Maximum number of connections. */
+		/** Maximum number of connections, if positive, {@link DB#connect(String)} borrows from a pool of this size. */
 		public int maxConnection;
 		/** The password. */
 		public String password;
@@ -93,9 +127,31 @@ public class DB implements Closeable {
 		public String schema;
 		/** The user. */
 		public String user;
+		/** The number of prepared statements to cache per connection, zero disables the cache. */
+		public int statementCacheSize;
+		/** The number of parameter sets per executed batch chunk, zero executes batches in one chunk. */
+		public int batchSize;
+		/** Commit after this many executed batch chunks, zero doesn't commit. */
+		public int commitEvery;
+		/** How to retrieve the generated keys of batched inserts, null detects it from the database product. */
+		@Nullable
+		public KeyBatching keyBatching;
+		/** The SQL dialect, null detects it from the database product. */
+		@Nullable
+		public Dialect dialect;
+		/** The default statement timeout in seconds, zero means no timeout. */
+		public int queryTimeout;
+		/** The validation, lifetime and maintenance settings of the pool, verifies connections idle for more than a second by default. */
+		@NonNull
+		public PoolSettings pool = new PoolSettings();
+		/** The read replicas serving the read-only operations, empty if all operations go to the primary. */
+		@NonNull
+		public List<ReplicaInfo> replicas = new ArrayList<>();
+		/** The time to skip a replica after its connection failed, in milliseconds, after which it is simply tried again. */
+		public long replicaRetryMillis = 5000;
 		/** Default constructor. */
 		public DBInfo() {
-
+			pool.validationIdleMillis = 1000;
 		}
 		/**
 		 * Copy constructor.
@@ -110,14 +166,66 @@ public class DB implements Closeable {
 			this.encodePassword = other.encodePassword;
 			this.schema = other.schema;
 			this.maxConnection = other.maxConnection;
+			this.statementCacheSize = other.statementCacheSize;
+			this.batchSize = other.batchSize;
+			this.commitEvery = other.commitEvery;
+			this.keyBatching = other.keyBatching;
+			this.dialect = other.dialect;
+			this.queryTimeout = other.queryTimeout;
+			this.pool = new PoolSettings(other.pool);
+			for (ReplicaInfo ri : other.replicas) {
+				this.replicas.add(new ReplicaInfo(ri));
+			}
+			this.replicaRetryMillis = other.replicaRetryMillis;
+		}
+	}
+	/**
+	 * A read replica of a database, which uses the driver and
+	 * the settings of the primary database info.
+	 * @author akarnokd, 2026.10.17.
+	 */
+	public static class ReplicaInfo {
+		/** The connection URL. */
+		public String connectionURL;
+		/** The user, null uses the user of the primary. */
+		@Nullable
+		public String user;
+		/** The password, null uses the password of the primary. */
+		@Nullable
+		public String password;
+		/** The relative share of the read-only operations. */
+		public int weight = 1;
+		/** Default constructor. */
+		public ReplicaInfo() {
+		}
+		/**
+		 * Copy constructor.
+		 * @param other the other object
+		 */
+		public ReplicaInfo(@NonNull ReplicaInfo other) {
+			this.connectionURL = other.connectionURL;
+			this.user = other.user;
+			this.password = other.password;
+			this.weight = other.weight;
 		}
 	}
 	/** The connection data file. */
 	protected static final String CONNECTION_DATA = "/db.xml";
+	/** The logger of the queries and failed statements. */
+	protected static final Logger LOG = Logger.getLogger(DB.class.getName());
+	/** The statement instrumentation of all connections. */
+	@Nullable
+	protected static volatile DBInstrumentation instrumentation;
 	/** The available connection infos. */
 	protected static final Map<String, DBInfo> CONNECTION_INFOS = Maps.newConcurrentMap();
+	/** The connection pools of the registered infos with positive maxConnection. */
+	protected static final ConcurrentMap<String, Pool<DB>> POOLS = Maps.newConcurrentMap();
+	/** The read replicas of the registered infos which have replicas. */
+	protected static final ConcurrentMap<String, DBReadReplicas> REPLICAS = Maps.newConcurrentMap();
 	/** The name of the default connection. */
 	protected static String defaultId;
+	/** The database product name prefixes whose drivers return the generated keys of a whole batch. */
+	protected static final String[] BATCH_KEY_PRODUCTS = { "MySQL", "MariaDB", "PostgreSQL", "H2", "HSQL" };
 	/**
 	 * Sets a single parameter to the long value, used for delete auto-keyed items.
 	 */
@@ -264,6 +372,30 @@ public class DB implements Closeable {
 			return DB.getDouble(param1, 1);
 		}
 	};
+	/** Returns a single primitive int value without boxing. */
+	public static final ToIntFunc1E<ResultSet, SQLException> SELECT_INT_VALUE = new ToIntFunc1E<ResultSet, SQLException>() {
+		@Override
+		public int call(ResultSet param1)
+				throws SQLException {
+			return param1.getInt(1);
+		}
+	};
+	/** Returns a single primitive long value without boxing. */
+	public static final ToLongFunc1E<ResultSet, SQLException> SELECT_LONG_VALUE = new ToLongFunc1E<ResultSet, SQLException>() {
+		@Override
+		public long call(ResultSet param1)
+				throws SQLException {
+			return param1.getLong(1);
+		}
+	};
+	/** Returns a single primitive double value without boxing. */
+	public static final ToDoubleFunc1E<ResultSet, SQLException> SELECT_DOUBLE_VALUE = new ToDoubleFunc1E<ResultSet, SQLException>() {
+		@Override
+		public double call(ResultSet param1)
+				throws SQLException {
+			return param1.getDouble(1);
+		}
+	};
 	/** Returns a single long value. */
 	public static final SQLResult<String> SELECT_STRING = new SQLResult<String>() {
 		@Override
@@ -297,6 +429,54 @@ public class DB implements Closeable {
 					dbi.encodePassword = xdb.childElement("password").getBoolean("encoded", false);
 					dbi.schema = xdb.childValue("schema");
 					dbi.maxConnection = Integer.parseInt(xdb.childValue("max-connection"));
+					String scs = xdb.childValue("statement-cache-size");
+					if (scs != null) {
+						dbi.statementCacheSize = Integer.parseInt(scs);
+					}
+					String bs = xdb.childValue("batch-size");
+					if (bs != null) {
+						dbi.batchSize = Integer.parseInt(bs);
+					}
+					String ce = xdb.childValue("commit-every");
+					if (ce != null) {
+						dbi.commitEvery = Integer.parseInt(ce);
+					}
+					String kb = xdb.childValue("key-batching");
+					if (kb != null) {
+						dbi.keyBatching = KeyBatching.valueOf(kb.toUpperCase().replace('-', '_'));
+					}
+					String dl = xdb.childValue("dialect");
+					if (dl != null) {
+						dbi.dialect = Dialect.valueOf(dl.toUpperCase());
+					}
+					String qt = xdb.childValue("query-timeout");
+					if (qt != null) {
+						dbi.queryTimeout = Integer.parseInt(qt);
+					}
+					XElement xpool = xdb.childElement("pool");
+					if (xpool != null) {
+						dbi.pool.minIdle = xpool.getInt("min-idle", dbi.pool.minIdle);
+						dbi.pool.validationIdleMillis = xpool.getLong("validation-idle", dbi.pool.validationIdleMillis);
+						dbi.pool.maxLifetimeMillis = xpool.getLong("max-lifetime", dbi.pool.maxLifetimeMillis);
+						dbi.pool.idleTimeoutMillis = xpool.getLong("idle-timeout", dbi.pool.idleTimeoutMillis);
+						dbi.pool.maintenanceMillis = xpool.getLong("maintenance", dbi.pool.maintenanceMillis);
+						dbi.pool.leakThresholdMillis = xpool.getLong("leak-threshold", dbi.pool.leakThresholdMillis);
+					}
+					for (XElement xr : xdb.childrenWithName("replica")) {
+						ReplicaInfo ri = new ReplicaInfo();
+						ri.connectionURL = xr.get("url");
+						ri.user = xr.get("user", null);
+						ri.password = xr.get("password", null);
+						ri.weight = xr.getInt("weight", 1);
+						if (ri.password != null && !ri.password.isEmpty() && dbi.encodePassword) {
+							ri.password = new String(Base64.decode(ri.password), "UTF-8");
+						}
+						dbi.replicas.add(ri);
+					}
+					String rr = xdb.childValue("replica-retry");
+					if (rr != null) {
+						dbi.replicaRetryMillis = Long.parseLong(rr);
+					}
 
 					if (dbi.password != null && !dbi.password.isEmpty() && dbi.encodePassword) {
 						dbi.password = new String(Base64.decode(dbi.password), "UTF-8");
@@ -315,10 +495,102 @@ public class DB implements Closeable {
 	protected DB() { }
 	/**
 	 * Adds a new database info record to the common DB object.
+	 * <p>If the info replaces an existing one, the pools of the
+	 * previous info and its replicas are closed.</p>
 	 * @param info the new info to add
 	 */
 	public static void addConnection(@NonNull DBInfo info) {
 		CONNECTION_INFOS.put(info.id, new DBInfo(info));
+		Pool<DB> p = POOLS.remove(info.id);
+		if (p != null) {
+			Closeables.closeSilently(p);
+		}
+		DBReadReplicas r = REPLICAS.remove(info.id);
+		if (r != null) {
+			Closeables.closeSilently(r);
+		}
+	}
+	/**
+	 * Returns the read replicas of the registered connection info, creating
+	 * their pools on first use.
+	 * @param dbi the connection info
+	 * @return the replicas or null if the info is not registered or has no replicas
+	 */
+	@Nullable
+	protected static DBReadReplicas replicas(@NonNull DBInfo dbi) {
+		if (dbi.replicas.isEmpty() || dbi.id == null) {
+			return null;
+		}
+		DBReadReplicas r = REPLICAS.get(dbi.id);
+		if (r == null) {
+			DBInfo registered = CONNECTION_INFOS.get(dbi.id);
+			if (registered == null || registered.replicas.isEmpty()) {
+				return null;
+			}
+			DBReadReplicas nr = new DBReadReplicas(registered);
+			r = REPLICAS.putIfAbsent(dbi.id, nr);
+			if (r != null) {
+				Closeables.closeSilently(nr);
+			} else {
+				r = nr;
+			}
+		}
+		return r;
+	}
+	/**
+	 * Returns the connection pool of the given database identifier, creating
+	 * it on first use.
+	 * @param databaseId the database identifier
+	 * @return the pool or null if the database is not registered or its maxConnection is not positive
+	 */
+	@Nullable
+	public static Pool<DB> pool(@NonNull String databaseId) {
+		DBInfo dbi = CONNECTION_INFOS.get(databaseId);
+		if (dbi == null || dbi.maxConnection <= 0) {
+			return null;
+		}
+		return pool(dbi);
+	}
+	/**
+	 * Returns or creates the pool for the given connection info.
+	 * @param dbi the connection info
+	 * @return the pool
+	 */
+	@NonNull
+	protected static Pool<DB> pool(@NonNull DBInfo dbi) {
+		Pool<DB> p = POOLS.get(dbi.id);
+		if (p == null) {
+			ConcurrentPool<DB> cp = new ConcurrentPool<>(dbi.maxConnection, new DBPoolManager(dbi), dbi.pool);
+			p = POOLS.putIfAbsent(dbi.id, cp);
+			if (p != null) {
+				Closeables.closeSilently(cp);
+			} else {
+				p = cp;
+				try {
+					cp.registerMBean(dbi.id);
+				} catch (JMException ex) {
+					// the pool works without JMX
+				}
+			}
+		}
+		return p;
+	}
+	/**
+	 * Closes all connection pools and their connections, including the replica pools.
+	 */
+	public static void closePools() {
+		for (String id : POOLS.keySet()) {
+			Pool<DB> p = POOLS.remove(id);
+			if (p != null) {
+				Closeables.closeSilently(p);
+			}
+		}
+		for (String id : REPLICAS.keySet()) {
+			DBReadReplicas r = REPLICAS.remove(id);
+			if (r != null) {
+				Closeables.closeSilently(r);
+			}
+		}
 	}
 	/**
 	 * Connect to the default database.
@@ -374,19 +646,52 @@ public class DB implements Closeable {
 			throw new IllegalArgumentException("Connection error: " + ex.toString(), ex);
 		}
 		result.dbi = new DBInfo(dbi);
+		if (dbi.statementCacheSize > 0) {
+			result.setStatementCacheSize(dbi.statementCacheSize);
+		}
+		result.batchSize = dbi.batchSize;
+		result.commitEvery = dbi.commitEvery;
+		result.keyBatching = dbi.keyBatching;
+		result.dialect = dbi.dialect;
+		result.queryTimeout = dbi.queryTimeout;
 
 		return result;
 	}
 	/**
 	 * Connect to the specified database.
+	 * <p>If the database info has a positive maxConnection, the connection
+	 * is borrowed from the database's pool and closing the returned DB
+	 * rolls back any uncommitted work and returns the connection to the pool.</p>
 	 * @param databaseId the database identifier
 	 * @return the connection object or the exception
 	 */
 	@NonNull
 	public static DB connect(@NonNull String databaseId) {
 		DBInfo dbi = CONNECTION_INFOS.get(databaseId);
+		if (dbi != null && dbi.maxConnection > 0) {
+			return borrow(pool(dbi));
+		}
 		return connect(dbi);
 	}
+	/**
+	 * Borrow a connection from the given pool which will be returned
+	 * to the pool once closed.
+	 * @param p the pool
+	 * @return the connection
+	 */
+	@NonNull
+	protected static DB borrow(@NonNull Pool<DB> p) {
+		DB result;
+		try {
+			result = p.get();
+		} catch (RuntimeException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new IllegalArgumentException("Connection error: " + ex.toString(), ex);
+		}
+		result.lease = p;
+		return result;
+	}
 
 	/**
 	 * Execute an action under the default connection.
@@ -452,6 +757,91 @@ public class DB implements Closeable {
 			throw new SQLException(ex);
 		}
 	}
+	/**
+	 * Execute a function asynchronously on the io scheduler under the given connection id.
+	 * @param <T> the return type
+	 * @param id the connection identifier
+	 * @param func the function to execute
+	 * @return the observable of the single result
+	 * @see #executeAsync(String, Func1E, Scheduler)
+	 */
+	@NonNull
+	public static <T> Observable<T> executeAsync(
+			@NonNull String id,
+			@NonNull Func1E<? super DB, ? extends T, ? extends SQLException> func) {
+		return executeAsync(id, func, Schedulers.io());
+	}
+	/**
+	 * Execute a function asynchronously under the given connection id.
+	 * <p>If the connection is pooled, it is borrowed without blocking a thread,
+	 * then the function runs on the given scheduler and the connection is
+	 * returned to the pool. Unsubscribing before the function starts
+	 * returns the connection without running the function.</p>
+	 * @param <T> the return type
+	 * @param id the connection identifier
+	 * @param func the function to execute
+	 * @param scheduler the scheduler to run the function on
+	 * @return the observable of the single result
+	 */
+	@NonNull
+	public static <T> Observable<T> executeAsync(
+			@NonNull final String id,
+			@NonNull final Func1E<? super DB, ? extends T, ? extends SQLException> func,
+			@NonNull final Scheduler scheduler) {
+		DBInfo dbi = CONNECTION_INFOS.get(id);
+		final Pool<DB> p = dbi != null && dbi.maxConnection > 0 ? pool(dbi) : null;
+		Observable<DB> source;
+		if (p instanceof AsyncPool) {
+			source = ((AsyncPool<DB>)p).getAsync();
+		} else {
+			source = Observable.fromCallable(new Callable<DB>() {
+				@Override
+				public DB call() {
+					return connect(id);
+				}
+			}).subscribeOn(scheduler);
+		}
+		return source.flatMap(new Func1<DB, Observable<T>>() {
+			@Override
+			public Observable<T> call(final DB db) {
+				if (p != null) {
+					db.lease = p;
+				}
+				return Observable.unsafeCreate(new OnSubscribe<T>() {
+					@Override
+					public void call(final Subscriber<? super T> child) {
+						final AtomicBoolean once = new AtomicBoolean();
+						child.add(Subscriptions.create(new Action0() {
+							@Override
+							public void call() {
+								if (once.compareAndSet(false, true)) {
+									Closeables.closeSilently(db);
+								}
+							}
+						}));
+						Worker w = scheduler.createWorker();
+						child.add(w);
+						w.schedule(new Action0() {
+							@Override
+							public void call() {
+								if (once.compareAndSet(false, true)) {
+									T value;
+									try (DB d = db) {
+										value = func.call(d);
+									} catch (Throwable ex) {
+										child.onError(ex);
+										return;
+									}
+									child.onNext(value);
+									child.onCompleted();
+								}
+							}
+						});
+					}
+				});
+			}
+		});
+	}
 	/**
 	 * Returns a nullable short field from the result set as a Byte object.
 	 * @param rs the result set
@@ -979,6 +1369,8 @@ public class DB implements Closeable {
 	}
 	/**
 	 * Sets the parameters on a prepared statement.
+	 * <p>Uses the generated {@link DBBinder} of the parameter shape if
+	 * the values are all of supported types.</p>
 	 * @param offset the parameter offset to start from
 	 * @param pstmt the statement
 	 * @param values the list of values
@@ -989,6 +1381,25 @@ public class DB implements Closeable {
 			@NonNull PreparedStatement pstmt,
 			Object... values)
 					throws SQLException {
+		DBBinder b = DBBinder.of(values);
+		if (b != null) {
+			b.bind(offset, pstmt, values);
+		} else {
+			setParamsByType(offset, pstmt, values);
+		}
+	}
+	/**
+	 * Sets the parameters on a prepared statement by testing the type of each value.
+	 * @param offset the parameter offset to start from
+	 * @param pstmt the statement
+	 * @param values the list of values
+	 * @throws SQLException on error
+	 */
+	public static void setParamsByType(
+			int offset,
+			@NonNull PreparedStatement pstmt,
+			Object... values)
+					throws SQLException {
 		int i = offset;
 		for (Object o : values) {
 			if (o instanceof Class<?>) {
@@ -1224,13 +1635,194 @@ public class DB implements Closeable {
 	protected Connection conn;
 	/** The defualt query fetch size. */
 	protected int fetchSize = 0;
+	/** The statement timeout in seconds, zero means no timeout. */
+	protected int queryTimeout;
+	/** The maximum number of parameter sets per executed batch. */
+	protected int batchSize;
+	/** Commit after this many executed batch chunks. */
+	protected int commitEvery;
+	/** The number of executed batch chunks since the last commit. */
+	protected int chunks;
+	/** How to retrieve the generated keys of batched inserts, null if not set explicitly. */
+	@Nullable
+	protected KeyBatching keyBatching;
+	/** The key batching detected from the database product. */
+	@Nullable
+	protected KeyBatching detectedKeyBatching;
+	/** The SQL dialect, null if not set explicitly. */
+	@Nullable
+	protected Dialect dialect;
+	/** The SQL dialect detected from the database product. */
+	@Nullable
+	protected Dialect detectedDialect;
 	/** Log the queries? */
 	protected boolean logQueries;
+	/** The optional prepared statement cache. */
+	@Nullable
+	protected DBStatementCache statements;
+	/** The connection is owned by a pool. */
+	protected boolean pooled;
+	/** The pool to return this borrowed connection to. */
+	@Nullable
+	protected Pool<DB> lease;
+	/** Route the read-only operations to the replicas of the database info? */
+	protected boolean readRouting = true;
+	/** The replica connection of the read-only operations, borrowed on first use. */
+	@Nullable
+	protected DB reader;
+	/** The replicas the reader was borrowed from. */
+	@Nullable
+	protected DBReadReplicas readerReplicas;
+	/** The replica index of the reader. */
+	protected int readerIndex;
+	/** A statement other than a query was prepared since the last commit or rollback. */
+	protected boolean uncommitted;
+	/** The actions to run after the current transaction commits, null if none. */
+	@Nullable
+	protected List<Action0> commitActions;
+	/** The actions to run after the current transaction rolls back, null if none. */
+	@Nullable
+	protected List<Action0> rollbackActions;
+	/**
+	 * Enables or disables the routing of the read-only operations to the
+	 * read replicas of the database info, enabled by default.
+	 * <p>While this connection has {@link #hasUncommittedChanges() uncommitted changes},
+	 * the reads stay on it regardless. Disable the routing if the reads must see the
+	 * changes made directly through the JDBC connection.</p>
+	 * @param readRouting route to the replicas?
+	 */
+	public void setReadRouting(boolean readRouting) {
+		this.readRouting = readRouting;
+		if (!readRouting) {
+			releaseReader();
+		}
+	}
+	/**
+	 * Returns the connection serving the read-only operations: a replica
+	 * connection borrowed until this connection is closed, or this
+	 * connection if there are no healthy replicas, the routing is disabled
+	 * or this connection has uncommitted changes the replicas can't see.
+	 * <p>The replica connection is leased for the whole session rather than
+	 * per operation, because the returned statements and lazy iterators keep
+	 * using it after the call returns, and the reads of a session see a single
+	 * replica's state. It is released early only if a read fails on it or
+	 * the routing is disabled.</p>
+	 * @return the connection for the read-only operations
+	 */
+	@NonNull
+	public DB reader() {
+		if (uncommitted) {
+			return this;
+		}
+		DB r = reader;
+		if (r != null) {
+			return r;
+		}
+		DBInfo info = dbi;
+		if (!readRouting || info == null) {
+			return this;
+		}
+		DBReadReplicas rr = replicas(info);
+		if (rr == null) {
+			return this;
+		}
+		int[] index = { 0 };
+		r = rr.acquire(index);
+		if (r == null) {
+			return this;
+		}
+		r.queryTimeout = queryTimeout;
+		r.logQueries = logQueries;
+		reader = r;
+		readerReplicas = rr;
+		readerIndex = index[0];
+		return r;
+	}
+	/**
+	 * Called when a read-only operation failed: returns the replica connection
+	 * to its pool if the operation ran on it, and marks the replica unhealthy
+	 * if the error indicates a broken connection or a timeout.
+	 * @param ex the error
+	 */
+	protected void readerFailed(@NonNull SQLException ex) {
+		DBReadReplicas rr = readerReplicas;
+		if (reader != null && !uncommitted) {
+			if (isConnectionError(ex)) {
+				rr.markDown(readerIndex);
+			}
+			releaseReader();
+		}
+	}
+	/**
+	 * Checks if the error indicates a broken connection or a timeout.
+	 * @param ex the error
+	 * @return true if the connection is unusable
+	 */
+	static boolean isConnectionError(@NonNull SQLException ex) {
+		if (ex instanceof SQLRecoverableException 
+				|| ex instanceof SQLTransientConnectionException
+				|| ex instanceof SQLNonTransientConnectionException
+				|| ex instanceof SQLTimeoutException) {
+			return true;
+		}
+		String state = ex.getSQLState();
+		return state != null && state.startsWith("08");
+	}
+	/**
+	 * Returns the replica connection to its pool.
+	 */
+	protected void releaseReader() {
+		DB r = reader;
+		if (r != null) {
+			reader = null;
+			readerReplicas.release(readerIndex, r);
+			readerReplicas = null;
+		}
+	}
+	/**
+	 * Closes the connection or returns it to its pool if it was borrowed.
+	 * <p>The replica connection of the read-only operations is returned as well.</p>
+	 */
 	@Override
 	public void close() throws IOException {
+		releaseReader();
+		if (pooled) {
+			Pool<DB> p = lease;
+			if (p != null) {
+				lease = null;
+				readRouting = true;
+				rollback();
+				fetchSize = 0;
+				logQueries = false;
+				batchSize = dbi.batchSize;
+				commitEvery = dbi.commitEvery;
+				keyBatching = dbi.keyBatching;
+				dialect = dbi.dialect;
+				queryTimeout = dbi.queryTimeout;
+				chunks = 0;
+				p.put(this);
+			}
+			return;
+		}
+		closeConnection();
+	}
+	/**
+	 * Closes the underlying connection and the cached statements.
+	 * @throws IOException on error
+	 */
+	protected void closeConnection() throws IOException {
 		Connection c = conn;
 		if (c != null) {
+			List<Action0> a = rollbackActions;
+			commitActions = null;
+			rollbackActions = null;
+			completed(a);
 			conn = null;
+			DBStatementCache sc = statements;
+			if (sc != null) {
+				statements = null;
+				sc.close();
+			}
 			try {
 				c.close();
 			} catch (SQLException ex) {
@@ -1244,6 +1836,96 @@ public class DB implements Closeable {
 	 */
 	public void commit() throws SQLException {
 		conn.commit();
+		chunks = 0;
+		uncommitted = false;
+		List<Action0> a = commitActions;
+		commitActions = null;
+		rollbackActions = null;
+		completed(a);
+	}
+	/**
+	 * Registers an action to run after the current transaction commits, or
+	 * runs it immediately if the connection is in auto-commit mode.
+	 * <p>The action is dropped if the transaction rolls back.</p>
+	 * @param action the action
+	 */
+	public void afterCommit(@NonNull Action0 action) {
+		if (autoCommit()) {
+			completed(Collections.singletonList(action));
+			return;
+		}
+		List<Action0> a = commitActions;
+		if (a == null) {
+			a = new ArrayList<>();
+			commitActions = a;
+		}
+		a.add(action);
+	}
+	/**
+	 * Registers an action to run after the current transaction rolls back
+	 * or the connection is closed without a commit.
+	 * <p>The action is dropped if the transaction commits or
+	 * the connection is in auto-commit mode.</p>
+	 * @param action the action
+	 */
+	public void afterRollback(@NonNull Action0 action) {
+		if (autoCommit()) {
+			return;
+		}
+		List<Action0> a = rollbackActions;
+		if (a == null) {
+			a = new ArrayList<>();
+			rollbackActions = a;
+		}
+		a.add(action);
+	}
+	/**
+	 * Checks if the connection is in auto-commit mode.
+	 * @return true if in auto-commit mode
+	 */
+	protected boolean autoCommit() {
+		try {
+			return conn.getAutoCommit();
+		} catch (SQLException ex) {
+			return false;
+		}
+	}
+	/**
+	 * Runs the actions of a completed transaction, logging their errors.
+	 * @param actions the actions, null is ignored
+	 */
+	protected static void completed(@Nullable List<Action0> actions) {
+		if (actions != null) {
+			for (Action0 a : actions) {
+				try {
+					a.call();
+				} catch (RuntimeException ex) {
+					LOG.log(Level.WARNING, "Transaction callback failed", ex);
+				}
+			}
+		}
+	}
+	/**
+	 * Returns true if a statement other than a query was prepared since the
+	 * last commit or rollback, therefore the transaction may hold uncommitted changes.
+	 * <p>Statements executed directly on the JDBC connection are not tracked.</p>
+	 * @return true if the transaction may have uncommitted changes
+	 */
+	public boolean hasUncommittedChanges() {
+		return uncommitted;
+	}
+	/**
+	 * Checks if the SQL text is a query which doesn't change the database.
+	 * @param sql the SQL text
+	 * @return true if the text starts with SELECT
+	 */
+	static boolean isQuery(@NonNull String sql) {
+		int n = sql.length();
+		int i = 0;
+		while (i < n && (Character.isWhitespace(sql.charAt(i)) || sql.charAt(i) == '(')) {
+			i++;
+		}
+		return sql.regionMatches(true, i, "SELECT", 0, 6);
 	}
 	/**
 	 * Returns a list of the generated keys for the given statement as long values.
@@ -1340,6 +2022,101 @@ public class DB implements Closeable {
 		}
 		return 0L;
 	}
+	/**
+	 * Prepare a raw statement with the given generated keys mode, taking
+	 * it from the statement cache if enabled.
+	 * @param sql the query
+	 * @param autoKeys the generated keys mode
+	 * @return the statement
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	protected PreparedStatement prepareStatement(@NonNull String sql, int autoKeys) throws SQLException {
+		DBStatementCache sc = statements;
+		PreparedStatement ps;
+		if (sc != null) {
+			ps = sc.prepare(sql, autoKeys);
+		} else {
+			ps = conn.prepareStatement(sql, autoKeys);
+		}
+		if (!isQuery(sql)) {
+			uncommitted = true;
+		}
+		if (queryTimeout > 0 || sc != null) {
+			ps.setQueryTimeout(queryTimeout);
+		}
+		return instrument(ps, sql);
+	}
+	/**
+	 * Prepare a raw statement with the given result set type and concurrency, taking
+	 * it from the statement cache if enabled.
+	 * @param sql the query
+	 * @param direction the read direction constant from ResultSet
+	 * @param concurrency the concurrency constant from ResultSet
+	 * @return the statement
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	protected PreparedStatement prepareStatement(@NonNull String sql, int direction, int concurrency) throws SQLException {
+		DBStatementCache sc = statements;
+		PreparedStatement ps;
+		if (sc != null) {
+			ps = sc.prepare(sql, direction, concurrency);
+		} else {
+			ps = conn.prepareStatement(sql, direction, concurrency);
+		}
+		if (!isQuery(sql)) {
+			uncommitted = true;
+		}
+		if (queryTimeout > 0 || sc != null) {
+			ps.setQueryTimeout(queryTimeout);
+		}
+		return instrument(ps, sql);
+	}
+	/**
+	 * Wrap the statement if an instrumentation is installed.
+	 * @param ps the statement
+	 * @param sql the SQL text
+	 * @return the statement or its instrumenting proxy
+	 */
+	@NonNull
+	protected static PreparedStatement instrument(@NonNull PreparedStatement ps, @NonNull String sql) {
+		DBInstrumentation hook = instrumentation;
+		if (hook != null) {
+			return DBInstrumentedStatement.wrap(ps, sql, hook);
+		}
+		return ps;
+	}
+	/**
+	 * Log a failed statement with its error, regardless of an installed
+	 * instrumentation, as the failures were always reported.
+	 * @param sql the SQL text
+	 * @param ex the error
+	 */
+	protected static void failed(@NonNull CharSequence sql, @NonNull SQLException ex) {
+		if (LOG.isLoggable(Level.WARNING)) {
+			LOG.log(Level.WARNING, "Statement failed: " + sql, ex);
+		}
+	}
+	/**
+	 * Install the statement instrumentation for all connections.
+	 * <p>Statements prepared while an instrumentation is installed report
+	 * their execution and fetch times, batch sizes and row counts to it.
+	 * Without an instrumentation, the statements are not wrapped at all.</p>
+	 * @param hook the instrumentation, null uninstalls the current one
+	 * @see DBStatistics
+	 */
+	public static void setInstrumentation(@Nullable DBInstrumentation hook) {
+		instrumentation = hook;
+	}
+	/**
+	 * Returns the current statement instrumentation.
+	 * @return the instrumentation or null if none installed
+	 */
+	@Nullable
+	public static DBInstrumentation getInstrumentation() {
+		return instrumentation;
+	}
 	/**
 	 * Prepare a query statement with the given parameters.
 	 * Null-values must be represented via a class value, e.g., Integer.class
@@ -1370,10 +2147,10 @@ public class DB implements Closeable {
 			boolean autoResult, 
 			@NonNull CharSequence sql, 
 			Object... values) throws SQLException {
-		PreparedStatement pstmt = conn.prepareStatement(sql.toString(), autoResult ? PreparedStatement.RETURN_GENERATED_KEYS : PreparedStatement.NO_GENERATED_KEYS);
+		PreparedStatement pstmt = prepareStatement(sql.toString(), autoResult ? PreparedStatement.RETURN_GENERATED_KEYS : PreparedStatement.NO_GENERATED_KEYS);
 		setParams(pstmt, values);
 		if (logQueries) {
-			System.out.println(pstmt);
+			LOG.info(String.valueOf(pstmt));
 		}
 		return pstmt;
 	}
@@ -1420,10 +2197,10 @@ public class DB implements Closeable {
 			int concurrency,
 			@NonNull CharSequence sql, 
 			@NonNull Iterable<?> values) throws SQLException {
-		PreparedStatement pstmt = conn.prepareStatement(sql.toString(), direction, concurrency);
+		PreparedStatement pstmt = prepareStatement(sql.toString(), direction, concurrency);
 		setParams(pstmt, Iterables.toArray(values, Object.class));
 		if (logQueries) {
-			System.out.println(pstmt);
+			LOG.info(String.valueOf(pstmt));
 		}
 		return pstmt;
 	}
@@ -1442,15 +2219,15 @@ public class DB implements Closeable {
 			int concurrency,
 			@NonNull CharSequence sql,
 			Object... params) throws SQLException {
-		PreparedStatement pstmt = conn.prepareStatement(sql.toString(), direction, concurrency);
+		PreparedStatement pstmt = prepareStatement(sql.toString(), direction, concurrency);
 		setParams(pstmt, params);
 		if (logQueries) {
-			System.out.println(pstmt);
+			LOG.info(String.valueOf(pstmt));
 		}
 		return pstmt;
 	}
 	/**
-	 * Prepare a read-only statement with minimum fetch.
+	 * Prepare a read-only statement with minimum fetch on the {@link #reader()} connection.
 	 * @param sql the query
 	 * @param params the parameter sequence. 
 	 * @return the statement
@@ -1460,17 +2237,21 @@ public class DB implements Closeable {
 	public PreparedStatement prepareReadOnly(
 			@NonNull CharSequence sql, 
 			@NonNull Iterable<?> params) throws SQLException {
+		DB r = reader();
+		if (r != this) {
+			return r.prepareReadOnly(sql, params);
+		}
 		PreparedStatement pstmt = prepare(
 				ResultSet.TYPE_FORWARD_ONLY, 
 				ResultSet.CONCUR_READ_ONLY, sql, params);
 		pstmt.setFetchSize(Integer.MIN_VALUE);
 		if (logQueries) {
-			System.out.println(pstmt);
+			LOG.info(String.valueOf(pstmt));
 		}
 		return pstmt;
 	}
 	/**
-	 * Prepare a read-only statement with minimum fetch.
+	 * Prepare a read-only statement with minimum fetch on the {@link #reader()} connection.
 	 * @param sql the query
 	 * @param params the optional parameters. 
 	 * @return the statement
@@ -1480,12 +2261,16 @@ public class DB implements Closeable {
 	public PreparedStatement prepareReadOnly(
 			@NonNull CharSequence sql, 
 			Object... params) throws SQLException {
+		DB r = reader();
+		if (r != this) {
+			return r.prepareReadOnly(sql, params);
+		}
 		PreparedStatement pstmt = prepare(
 				ResultSet.TYPE_FORWARD_ONLY, 
 				ResultSet.CONCUR_READ_ONLY, sql, params);
 		pstmt.setFetchSize(Integer.MIN_VALUE);
 		if (logQueries) {
-			System.out.println(pstmt);
+			LOG.info(String.valueOf(pstmt));
 		}
 		return pstmt;
 	}
@@ -1614,12 +2399,282 @@ public class DB implements Closeable {
 		return result;
 	}
 	/**
-	 * Returns a closeable iterator which returns unmarshalled data on request.
-	 * @param <T> the result element type
-	 * @param unmarshaller the unmarshaller
-	 * @param sql the query to execute
-	 * @param params the parameters to the query
-	 * @return the closeable iterable
+	 * Query the first column of the rows as primitive int values.
+	 * @param sql the query
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TIntArrayList queryInts(
+			@NonNull CharSequence sql, 
+			@NonNull Iterable<?> params) throws SQLException {
+		return queryInts(sql, SELECT_INT_VALUE, Iterables.toArray(params, Object.class));
+	}
+	/**
+	 * Query the first column of the rows as primitive int values.
+	 * @param sql the query
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TIntArrayList queryInts(
+			@NonNull CharSequence sql, 
+			Object... params) throws SQLException {
+		return queryInts(sql, SELECT_INT_VALUE, params);
+	}
+	/**
+	 * Query the primitive int values from the database.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TIntArrayList queryInts(
+			@NonNull CharSequence sql, 
+			@NonNull ToIntFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			@NonNull Iterable<?> params) throws SQLException {
+		return queryInts(sql, unmarshaller, Iterables.toArray(params, Object.class));
+	}
+	/**
+	 * Query the primitive int values from the database.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TIntArrayList queryInts(
+			@NonNull CharSequence sql, 
+			@NonNull ToIntFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			Object... params) throws SQLException {
+		final TIntArrayList result = new TIntArrayList();
+		queryInts(sql, unmarshaller, new IntAction1E<SQLException>() {
+			@Override
+			public void call(int t) {
+				result.add(t);
+			}
+		}, params);
+		return result;
+	}
+	/**
+	 * Execute the action with the primitive int value of each row returned by the query.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param action the action to call
+	 * @param params the query parameters
+	 * @throws SQLException on error
+	 */
+	public void queryInts(
+			@NonNull CharSequence sql, 
+			@NonNull ToIntFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			@NonNull IntAction1E<? extends SQLException> action,
+			Object... params) throws SQLException {
+		try (PreparedStatement pstmt = prepare(false, sql, params)) {
+			if (fetchSize != 0) {
+				pstmt.setFetchSize(fetchSize);
+			}
+			try (ResultSet rs = pstmt.executeQuery()) {
+				if (fetchSize != 0) {
+					rs.setFetchSize(fetchSize);
+				}
+				while (rs.next()) {
+					action.call(unmarshaller.call(rs));
+				}
+			}
+		}
+	}
+	/**
+	 * Query the first column of the rows as primitive long values.
+	 * @param sql the query
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TLongArrayList queryLongs(
+			@NonNull CharSequence sql, 
+			@NonNull Iterable<?> params) throws SQLException {
+		return queryLongs(sql, SELECT_LONG_VALUE, Iterables.toArray(params, Object.class));
+	}
+	/**
+	 * Query the first column of the rows as primitive long values.
+	 * @param sql the query
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TLongArrayList queryLongs(
+			@NonNull CharSequence sql, 
+			Object... params) throws SQLException {
+		return queryLongs(sql, SELECT_LONG_VALUE, params);
+	}
+	/**
+	 * Query the primitive long values from the database.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TLongArrayList queryLongs(
+			@NonNull CharSequence sql, 
+			@NonNull ToLongFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			@NonNull Iterable<?> params) throws SQLException {
+		return queryLongs(sql, unmarshaller, Iterables.toArray(params, Object.class));
+	}
+	/**
+	 * Query the primitive long values from the database.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TLongArrayList queryLongs(
+			@NonNull CharSequence sql, 
+			@NonNull ToLongFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			Object... params) throws SQLException {
+		final TLongArrayList result = new TLongArrayList();
+		queryLongs(sql, unmarshaller, new LongAction1E<SQLException>() {
+			@Override
+			public void call(long t) {
+				result.add(t);
+			}
+		}, params);
+		return result;
+	}
+	/**
+	 * Execute the action with the primitive long value of each row returned by the query.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param action the action to call
+	 * @param params the query parameters
+	 * @throws SQLException on error
+	 */
+	public void queryLongs(
+			@NonNull CharSequence sql, 
+			@NonNull ToLongFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			@NonNull LongAction1E<? extends SQLException> action,
+			Object... params) throws SQLException {
+		try (PreparedStatement pstmt = prepare(false, sql, params)) {
+			if (fetchSize != 0) {
+				pstmt.setFetchSize(fetchSize);
+			}
+			try (ResultSet rs = pstmt.executeQuery()) {
+				if (fetchSize != 0) {
+					rs.setFetchSize(fetchSize);
+				}
+				while (rs.next()) {
+					action.call(unmarshaller.call(rs));
+				}
+			}
+		}
+	}
+	/**
+	 * Query the first column of the rows as primitive double values.
+	 * @param sql the query
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TDoubleArrayList queryDoubles(
+			@NonNull CharSequence sql, 
+			@NonNull Iterable<?> params) throws SQLException {
+		return queryDoubles(sql, SELECT_DOUBLE_VALUE, Iterables.toArray(params, Object.class));
+	}
+	/**
+	 * Query the first column of the rows as primitive double values.
+	 * @param sql the query
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TDoubleArrayList queryDoubles(
+			@NonNull CharSequence sql, 
+			Object... params) throws SQLException {
+		return queryDoubles(sql, SELECT_DOUBLE_VALUE, params);
+	}
+	/**
+	 * Query the primitive double values from the database.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TDoubleArrayList queryDoubles(
+			@NonNull CharSequence sql, 
+			@NonNull ToDoubleFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			@NonNull Iterable<?> params) throws SQLException {
+		return queryDoubles(sql, unmarshaller, Iterables.toArray(params, Object.class));
+	}
+	/**
+	 * Query the primitive double values from the database.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param params the query parameters
+	 * @return the value list
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public TDoubleArrayList queryDoubles(
+			@NonNull CharSequence sql, 
+			@NonNull ToDoubleFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			Object... params) throws SQLException {
+		final TDoubleArrayList result = new TDoubleArrayList();
+		queryDoubles(sql, unmarshaller, new DoubleAction1E<SQLException>() {
+			@Override
+			public void call(double t) {
+				result.add(t);
+			}
+		}, params);
+		return result;
+	}
+	/**
+	 * Execute the action with the primitive double value of each row returned by the query.
+	 * @param sql the query
+	 * @param unmarshaller the record unmarshaller
+	 * @param action the action to call
+	 * @param params the query parameters
+	 * @throws SQLException on error
+	 */
+	public void queryDoubles(
+			@NonNull CharSequence sql, 
+			@NonNull ToDoubleFunc1E<? super ResultSet, ? extends SQLException> unmarshaller, 
+			@NonNull DoubleAction1E<? extends SQLException> action,
+			Object... params) throws SQLException {
+		try (PreparedStatement pstmt = prepare(false, sql, params)) {
+			if (fetchSize != 0) {
+				pstmt.setFetchSize(fetchSize);
+			}
+			try (ResultSet rs = pstmt.executeQuery()) {
+				if (fetchSize != 0) {
+					rs.setFetchSize(fetchSize);
+				}
+				while (rs.next()) {
+					action.call(unmarshaller.call(rs));
+				}
+			}
+		}
+	}
+	/**
+	 * Returns a closeable iterator which returns unmarshalled data on request.
+	 * @param <T> the result element type
+	 * @param unmarshaller the unmarshaller
+	 * @param sql the query to execute
+	 * @param params the parameters to the query
+	 * @return the closeable iterable
 	 */
 	@NonNull
 	public <T> CloseableIterator<T> queryIterator(
@@ -1712,6 +2767,49 @@ public class DB implements Closeable {
 			throw new SQLRuntimeException(ex);
 		}
 	}
+	/**
+	 * Returns a closeable iterator which executes the query and unmarshals the rows
+	 * in batches on a background thread while the previous batch is consumed.
+	 * @param <T> the result element type
+	 * @param sql the query to execute
+	 * @param unmarshaller the unmarshaller
+	 * @param batchSize the number of rows per prefetched batch
+	 * @param params the parameters to the query
+	 * @return the closeable iterator
+	 * @see DBPrefetchIterator
+	 */
+	@NonNull
+	public <T> CloseableIterator<T> queryIteratorPrefetch(
+			@NonNull CharSequence sql, 
+			@NonNull Func1E<? super ResultSet, ? extends T, ? extends SQLException> unmarshaller,
+			int batchSize,
+			@NonNull Iterable<?> params) {
+		return queryIteratorPrefetch(sql, unmarshaller, batchSize, Iterables.toArray(params, Object.class));
+	}
+	/**
+	 * Returns a closeable iterator which executes the query and unmarshals the rows
+	 * in batches on a background thread while the previous batch is consumed.
+	 * @param <T> the result element type
+	 * @param sql the query to execute
+	 * @param unmarshaller the unmarshaller
+	 * @param batchSize the number of rows per prefetched batch
+	 * @param params the parameters to the query
+	 * @return the closeable iterator
+	 * @see DBPrefetchIterator
+	 */
+	@NonNull
+	public <T> CloseableIterator<T> queryIteratorPrefetch(
+			@NonNull CharSequence sql, 
+			@NonNull Func1E<? super ResultSet, ? extends T, ? extends SQLException> unmarshaller,
+			int batchSize,
+			Object... params) {
+		try {
+			PreparedStatement pstmt = prepare(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, sql, params);
+			return new DBPrefetchIterator<T>(pstmt, unmarshaller, batchSize);
+		} catch (SQLException ex) {
+			throw new SQLRuntimeException(ex);
+		}
+	}
 	/**
 	 * Execute the action for each resultset row returned by the query.
 	 * @param sql the query
@@ -1748,6 +2846,9 @@ public class DB implements Closeable {
 					action.call(rs);
 				}
 			}
+		} catch (SQLException ex) {
+			readerFailed(ex);
+			throw ex;
 		}
 	}
 	/**
@@ -1794,6 +2895,9 @@ public class DB implements Closeable {
 					result.add(t);
 				}
 			}
+		} catch (SQLException ex) {
+			readerFailed(ex);
+			throw ex;
 		}
 		return result;
 	}
@@ -1842,9 +2946,51 @@ public class DB implements Closeable {
 					result.add(t);
 				}
 			}
+		} catch (SQLException ex) {
+			readerFailed(ex);
+			throw ex;
 		}
 		return result;
 	}
+	/**
+	 * Query the rows into a columnar in-memory table through a read-only, forward-only statement.
+	 * @param sql the query
+	 * @param params the query parameters
+	 * @return the table
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public DBColumnar queryColumnar(
+			@NonNull CharSequence sql, 
+			@NonNull Iterable<?> params) throws SQLException {
+		return queryColumnar(sql, Iterables.toArray(params, Object.class));
+	}
+	/**
+	 * Query the rows into a columnar in-memory table through a read-only, forward-only statement.
+	 * @param sql the query
+	 * @param params the query parameters
+	 * @return the table
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public DBColumnar queryColumnar(
+			@NonNull CharSequence sql, 
+			Object... params) throws SQLException {
+		try (PreparedStatement pstmt = prepareReadOnly(sql, params)) {
+			if (fetchSize != 0) {
+				pstmt.setFetchSize(fetchSize);
+			}
+			try (ResultSet rs = pstmt.executeQuery()) {
+				if (fetchSize != 0) {
+					rs.setFetchSize(fetchSize);
+				}
+				return DBColumnar.load(rs);
+			}
+		} catch (SQLException ex) {
+			readerFailed(ex);
+			throw ex;
+		}
+	}
 	/**
 	 * Returns a single element from the query or null if the result set is empty.
 	 * @param <T> the result type
@@ -1883,7 +3029,7 @@ public class DB implements Closeable {
 				return null;
 			}
 		} catch (SQLException ex) {
-			System.err.println(sql);
+			failed(sql, ex);
 			throw ex;
 		}
 	}
@@ -1892,14 +3038,22 @@ public class DB implements Closeable {
 	 * Exceptions are suppressed.
 	 */
 	public void rollback() {
+		uncommitted = false;
 		try {
 			conn.rollback();
 		} catch (SQLException ex) {
 			// suppressed
 		}
+		List<Action0> a = rollbackActions;
+		commitActions = null;
+		rollbackActions = null;
+		completed(a);
 	}
 	/**
 	 * Execute the given SQL with the batch of values marshalled from the sources.
+	 * <p>The items are consumed in a streaming fashion and executed in chunks
+	 * of the {@link #setBatchSize(int) batch size}, committing after every
+	 * {@link #setCommitEvery(int) commitEvery} chunks if set.</p>
 	 * @param <T> the element type
 	 * @param sql the query to execute
 	 * @param items the items
@@ -1911,19 +3065,20 @@ public class DB implements Closeable {
 			@NonNull Iterable<T> items, 
 			@NonNull Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller) throws SQLException {
 		try (PreparedStatement pstmt = prepare(false, sql)) {
-			for (T t : items) {
-				marshaller.call(pstmt, t);
-				pstmt.addBatch();
-			}
-			pstmt.executeBatch();
+			DBBatch<T> batch = new DBBatch<>(this, pstmt, marshaller);
+			batch.addAll(items);
+			batch.flush();
 		} catch (SQLException ex) {
-			System.err.println(sql);
+			failed(sql, ex);
 			throw ex;
 		}
 	}
 	/**
 	 * Execute the given SQL with the batch of values marshalled from the sources and update
 	 * the elements with the autogenerated keys.
+	 * <p>The items are consumed in a streaming fashion and executed in chunks
+	 * of the {@link #setBatchSize(int) batch size}, committing after every
+	 * {@link #setCommitEvery(int) commitEvery} chunks if set.</p>
 	 * @param <T> the element type
 	 * @param sql the query to execute
 	 * @param items the items
@@ -1939,24 +3094,271 @@ public class DB implements Closeable {
 			if (fetchSize != 0) {
 				pstmt.setFetchSize(fetchSize);
 			}
-			for (T t : items) {
-				marshaller.call(pstmt, t);
-				pstmt.addBatch();
+			DBBatch<T> batch = new DBBatch<>(this, pstmt, marshaller, setAutoKey);
+			batch.addAll(items);
+			batch.flush();
+		} catch (SQLException ex) {
+			failed(sql, ex);
+			throw ex;
+		}
+	}
+	/**
+	 * Execute the given SQL with the batch of values marshalled from the sources,
+	 * using a second connection from this connection's pool to marshal the next
+	 * chunk while the previous one executes.
+	 * <p>If this connection is not pooled, the pool has no idle connection,
+	 * the batch size is not set or the current transaction has
+	 * {@link #hasUncommittedChanges() uncommitted changes}, it falls back to the regular
+	 * {@link #save(CharSequence, Iterable, Action2E)}, which doesn't commit.</p>
+	 * @param <T> the element type
+	 * @param sql the query to execute
+	 * @param items the items
+	 * @param marshaller the marshaller that fills in the statement, should *NOT* call the addBatch
+	 * @throws SQLException on error
+	 * @see #savePipelined(CharSequence, Iterable, Action2E, DB)
+	 */
+	public <T> void savePipelined(
+			@NonNull CharSequence sql, 
+			@NonNull Iterable<T> items, 
+			@NonNull Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller) throws SQLException {
+		Pool<DB> p = lease;
+		DB other = null;
+		if (batchSize > 0 && !uncommitted && p instanceof ConcurrentPool) {
+			try {
+				other = ((ConcurrentPool<DB>)p).tryGet();
+			} catch (Exception ex) {
+				// fall back to the single connection
 			}
-			pstmt.executeBatch();
-			try (ResultSet rs = pstmt.getGeneratedKeys()) {
-				if (fetchSize != 0) {
-					rs.setFetchSize(fetchSize);
+		}
+		if (other == null) {
+			save(sql, items, marshaller);
+			return;
+		}
+		other.lease = p;
+		try (DB d = other) {
+			savePipelined(sql, items, marshaller, d);
+		} catch (IOException ex) {
+			throw new SQLException(ex);
+		}
+	}
+	/**
+	 * Execute the given SQL with the batch of values marshalled from the sources,
+	 * alternating the chunks between this and the other connection so that
+	 * the next chunk is marshalled while the previous one executes in the background.
+	 * <p>As the chunks are spread over two transactions, each chunk is committed
+	 * on its connection once executed, in order. Therefore both connections must
+	 * be in a clean transaction, and if a chunk or the marshaller fails, the
+	 * chunks executed before it remain committed, the rest is not saved.</p>
+	 * @param <T> the element type
+	 * @param sql the query to execute
+	 * @param items the items
+	 * @param marshaller the marshaller that fills in the statement, should *NOT* call the addBatch
+	 * @param other the second connection to the same database
+	 * @throws SQLException on error
+	 * @throws IllegalStateException if the batch size is not positive or
+	 * any of the connections has uncommitted changes
+	 */
+	public <T> void savePipelined(
+			@NonNull CharSequence sql, 
+			@NonNull Iterable<T> items, 
+			@NonNull Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller,
+			@NonNull DB other) throws SQLException {
+		if (batchSize <= 0) {
+			throw new IllegalStateException("Pipelining requires a positive batch size");
+		}
+		if (uncommitted || other.uncommitted) {
+			throw new IllegalStateException("Pipelining commits each chunk and requires a clean transaction");
+		}
+		DB[] dbs = { this, other };
+		FutureTask<Void> pending = null;
+		Worker w = Schedulers.io().createWorker();
+		try (PreparedStatement p0 = prepare(false, sql);
+				PreparedStatement p1 = other.prepare(false, sql)) {
+			PreparedStatement[] ps = { p0, p1 };
+			try {
+				int cur = 0;
+				int n = 0;
+				for (T t : items) {
+					marshaller.call(ps[cur], t);
+					ps[cur].addBatch();
+					if (++n == batchSize) {
+						FutureTask<Void> f = pending;
+						pending = null;
+						await(f);
+						pending = executeAndCommit(w, dbs[cur], ps[cur]);
+						cur ^= 1;
+						n = 0;
+					}
 				}
-				Iterator<T> it = items.iterator();
-				while (it.hasNext() && rs.next()) {
-					T t = it.next();
-					setAutoKey.call(rs, t);
+				FutureTask<Void> f = pending;
+				pending = null;
+				await(f);
+				if (n > 0) {
+					ps[cur].executeBatch();
+					dbs[cur].commit();
+				}
+			} finally {
+				// the background chunk must complete before its statement is closed
+				if (pending != null) {
+					try {
+						await(pending);
+					} catch (SQLException | RuntimeException ex) {
+						// the original exception is propagated
+					}
 				}
 			}
 		} catch (SQLException ex) {
-			System.err.println(sql);
+			failed(sql, ex);
 			throw ex;
+		} finally {
+			w.unsubscribe();
+		}
+	}
+	/**
+	 * Execute the batch and commit on the worker.
+	 * @param w the worker
+	 * @param db the connection
+	 * @param pstmt the statement
+	 * @return the future of the execution
+	 */
+	protected static FutureTask<Void> executeAndCommit(Worker w, final DB db, final PreparedStatement pstmt) {
+		final FutureTask<Void> f = new FutureTask<>(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				pstmt.executeBatch();
+				db.commit();
+				return null;
+			}
+		});
+		w.schedule(new Action0() {
+			@Override
+			public void call() {
+				f.run();
+			}
+		});
+		return f;
+	}
+	/**
+	 * Wait for the background chunk to complete and rethrow its error.
+	 * @param f the future, null is ignored
+	 * @throws SQLException on error
+	 */
+	protected static void await(@Nullable FutureTask<Void> f) throws SQLException {
+		if (f == null) {
+			return;
+		}
+		try {
+			f.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException(ex);
+		} catch (ExecutionException ex) {
+			Throwable c = ex.getCause();
+			if (c instanceof SQLException) {
+				throw (SQLException)c;
+			}
+			if (c instanceof RuntimeException) {
+				throw (RuntimeException)c;
+			}
+			throw new SQLException(c);
+		}
+	}
+	/**
+	 * Sets the number of parameter sets executed in one chunk by the batch saves.
+	 * @param size the chunk size, zero or negative executes everything in one chunk
+	 */
+	public void setBatchSize(int size) {
+		batchSize = size;
+	}
+	/**
+	 * Sets the number of executed batch chunks after which the batch saves commit.
+	 * @param chunks the number of chunks, zero or negative doesn't commit
+	 */
+	public void setCommitEvery(int chunks) {
+		commitEvery = chunks;
+	}
+	/**
+	 * Sets how the generated keys of batched inserts are retrieved.
+	 * @param mode the mode, null detects it from the database product
+	 */
+	public void setKeyBatching(@Nullable KeyBatching mode) {
+		keyBatching = mode;
+	}
+	/**
+	 * Returns how the generated keys of batched inserts are retrieved.
+	 * <p>Unless set explicitly, the drivers of MySQL, MariaDB, PostgreSQL, H2 and HSQLDB
+	 * are known to return the keys of all rows of a batch, others use single inserts.</p>
+	 * @return the mode
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public KeyBatching getKeyBatching() throws SQLException {
+		KeyBatching kb = keyBatching;
+		if (kb != null) {
+			return kb;
+		}
+		kb = detectedKeyBatching;
+		if (kb == null) {
+			kb = KeyBatching.SINGLE;
+			DatabaseMetaData md = conn.getMetaData();
+			if (md != null && md.supportsGetGeneratedKeys()) {
+				String product = String.valueOf(md.getDatabaseProductName());
+				for (String s : BATCH_KEY_PRODUCTS) {
+					if (product.startsWith(s)) {
+						kb = KeyBatching.BATCH;
+						break;
+					}
+				}
+			}
+			detectedKeyBatching = kb;
+		}
+		return kb;
+	}
+	/**
+	 * Sets the SQL dialect used by the generated statements.
+	 * @param dialect the dialect, null detects it from the database product
+	 */
+	public void setDialect(@Nullable Dialect dialect) {
+		this.dialect = dialect;
+	}
+	/**
+	 * Returns the SQL dialect used by the generated statements.
+	 * <p>Unless set explicitly, it is detected from the product name 
+	 * reported by the database metadata.</p>
+	 * @return the dialect
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public Dialect getDialect() throws SQLException {
+		Dialect d = dialect;
+		if (d != null) {
+			return d;
+		}
+		d = detectedDialect;
+		if (d == null) {
+			d = Dialect.OTHER;
+			DatabaseMetaData md = conn.getMetaData();
+			if (md != null) {
+				String product = String.valueOf(md.getDatabaseProductName());
+				for (Dialect e : Dialect.values()) {
+					if (e.matches(product)) {
+						d = e;
+						break;
+					}
+				}
+			}
+			detectedDialect = d;
+		}
+		return d;
+	}
+	/**
+	 * Called by {@link DBBatch} after each executed chunk, commits if
+	 * the commitEvery chunk count is reached.
+	 * @throws SQLException on error
+	 */
+	protected void chunkExecuted() throws SQLException {
+		if (commitEvery > 0 && ++chunks >= commitEvery) {
+			commit();
 		}
 	}
 	/**
@@ -1967,9 +3369,54 @@ public class DB implements Closeable {
 		fetchSize = size;
 	}
 	/**
-	 * Enable the logging of queries.
+	 * Sets the timeout of the statements prepared after this call.
+	 * <p>The driver cancels the statement once it runs longer than the timeout
+	 * and the execution throws an SQLTimeoutException.</p>
+	 * @param seconds the timeout in seconds, zero means no timeout
+	 */
+	public void setQueryTimeout(int seconds) {
+		queryTimeout = seconds;
+		DB r = reader;
+		if (r != null) {
+			r.queryTimeout = seconds;
+		}
+	}
+	/**
+	 * Sets the maximum number of prepared statements cached for this connection.
+	 * <p>Cached statements are returned into the cache when they are closed
+	 * and are reused by subsequent prepare calls with the same SQL text, 
+	 * generated keys mode and result set type and concurrency.</p>
+	 * @param size the maximum number of idle statements, zero or negative disables the cache
+	 */
+	public void setStatementCacheSize(int size) {
+		DBStatementCache sc = statements;
+		if (size <= 0) {
+			if (sc != null) {
+				statements = null;
+				sc.close();
+			}
+		} else
+		if (sc == null) {
+			statements = new DBStatementCache(conn, size);
+		} else {
+			sc.setCapacity(size);
+		}
+	}
+	/**
+	 * Returns the prepared statement cache with its hit, miss and eviction counters.
+	 * @return the statement cache or null if not enabled
+	 */
+	@Nullable
+	public DBStatementCache getStatementCache() {
+		return statements;
+	}
+	/**
+	 * Enable the logging of the prepared statements on the INFO level of the DB logger.
 	 * @param value is enabled?
+	 * @deprecated use {@link #setInstrumentation(DBInstrumentation)} with a {@link DBStatistics}
+	 * for per-statement timings and a slow statement log
 	 */
+	@Deprecated
 	public void setLogQueries(boolean value) {
 		this.logQueries = value;
 	}
@@ -1999,7 +3446,7 @@ public class DB implements Closeable {
 		try (PreparedStatement pstmt = prepare(false, sql, params)) {
 			return pstmt.executeUpdate();
 		} catch (SQLException ex) {
-			System.err.println(sql);
+			failed(sql, ex);
 			throw ex;
 		}
 	}
@@ -2071,7 +3518,7 @@ public class DB implements Closeable {
 				}
 			}
 		} catch (SQLException ex) {
-			System.err.println(sql);
+			failed(sql, ex);
 			throw ex;
 		}
 		return 0L;
@@ -2092,7 +3539,7 @@ public class DB implements Closeable {
 			marshaller.call(pstmt, value);
 			return pstmt.executeUpdate();
 		} catch (SQLException ex) {
-			System.err.println(sql);
+			failed(sql, ex);
 			throw ex;
 		}
 	}
@@ -2127,31 +3574,107 @@ public class DB implements Closeable {
 		}
 		throw new IllegalStateException("DB was not created from a DBInfo object");
 	}
+	/**
+	 * A single subscriber row generator whose running statement is cancelled
+	 * from the unsubscribing thread.
+	 * <p>The generator may be blocked in the driver while the unsubscription
+	 * happens, therefore releasing the resources is left to the generator
+	 * thread and only the statement is cancelled immediately.</p>
+	 * @param <T> the row value type
+	 */
+	protected abstract static class CancellableRows<T> extends SyncOnSubscribe<Void, T> {
+		/** Allow only one subscriber. */
+		final AtomicBoolean once = new AtomicBoolean();
+		/** The statement to cancel, null before it is known. */
+		@Nullable
+		protected Statement statement;
+		/** The rows are depleted or the resources are released. */
+		protected boolean done;
+		@Override
+		protected Void generateState() {
+			if (!once.compareAndSet(false, true)) {
+				throw new IllegalStateException("Too many subscribers, only one allowed!");
+			}
+			try {
+				Statement st = open();
+				synchronized (this) {
+					statement = st;
+				}
+			} catch (SQLException ex) {
+				release();
+				throw new SQLRuntimeException(ex);
+			}
+			return null;
+		}
+		@Override
+		protected void onUnsubscribe(Void state) {
+			synchronized (this) {
+				done = true;
+			}
+			release();
+		}
+		/**
+		 * Cancel the statement if it is still running.
+		 */
+		protected synchronized void cancel() {
+			Statement st = statement;
+			if (!done && st != null) {
+				try {
+					st.cancel();
+				} catch (SQLException ex) {
+					// the statement is closed anyway
+				}
+			}
+		}
+		/**
+		 * Mark the rows as depleted before signalling the terminal event so
+		 * the unsubscription which follows doesn't cancel the statement.
+		 */
+		protected synchronized void finish() {
+			done = true;
+		}
+		/**
+		 * Opens the resources on subscription.
+		 * @return the statement to cancel on unsubscription
+		 * @throws SQLException on error
+		 */
+		protected abstract Statement open() throws SQLException;
+		/**
+		 * Releases the resources, called on the generator thread or when
+		 * the open failed.
+		 */
+		protected abstract void release();
+		/**
+		 * Creates the observable which cancels the statement on unsubscription.
+		 * @return the observable
+		 */
+		public Observable<T> toObservable() {
+			return Observable.create(this).doOnUnsubscribe(new Action0() {
+				@Override
+				public void call() {
+					cancel();
+				}
+			});
+		}
+	}
 	/**
 	 * Returns an observable that accepts a single subscriber which will be called for
 	 * each row in the ResultSet.
+	 * <p>Unsubscribing cancels the statement of the result set.</p>
 	 * @param rs the source resultSet
 	 * @return the Observable
 	 */
 	public Observable<ResultSet> useAsync(final ResultSet rs) {
-		SyncOnSubscribe<Void, ResultSet> aos = new SyncOnSubscribe<Void, ResultSet>() {
-			final AtomicBoolean once = new AtomicBoolean();
+		CancellableRows<ResultSet> aos = new CancellableRows<ResultSet>() {
 			@Override
-			protected Void generateState() {
-				if (!once.compareAndSet(false, true)) {
-					throw new IllegalStateException("Too many subscribers, only one allowed!");
-				}
-				try {
-					if (rs.isClosed()) {
-						throw new IllegalStateException("ResultSet closed or depleted!");
-					}
-				} catch (SQLException ex) {
-					throw new SQLRuntimeException(ex);
+			protected Statement open() throws SQLException {
+				if (rs.isClosed()) {
+					throw new IllegalStateException("ResultSet closed or depleted!");
 				}
-				return null;
+				return rs.getStatement();
 			}
 			@Override
-			protected void onUnsubscribe(Void state) {
+			protected void release() {
 				try {
 					rs.close();
 				} catch (SQLException ex) {
@@ -2167,20 +3690,23 @@ public class DB implements Closeable {
 						state.onNext(rs);
 					}
 				} catch (SQLException ex) {
+					finish();
 					state.onError(ex);
 					return null;
 				}
 				if (!hasNext) {
+					finish();
 					state.onCompleted();
 				}
 				return null;
 			}
 		};
-		return Observable.create(aos);
+		return aos.toObservable();
 	}
 	/**
 	 * Runs the query asynchronously and calls the mapper function for each resulting line.
 	 * <p>Note that JDBC connections don't really support multi-threaded querying.
+	 * <p>Unsubscribing cancels the running statement. The query runs on the {@link #reader()} connection.</p>
 	 * @param <T> the result value type
 	 * @param sql the query to execute
 	 * @param map the result mapping function
@@ -2193,6 +3719,7 @@ public class DB implements Closeable {
 	/**
 	 * Runs the query asynchronously and calls the mapper function for each resulting line.
 	 * <p>Note that JDBC connections don't really support multi-threaded querying.
+	 * <p>Unsubscribing cancels the running statement. The query runs on the {@link #reader()} connection.</p>
 	 * @param <T> the result value type
 	 * @param sql the query to execute
 	 * @param map the result mapping function
@@ -2200,49 +3727,167 @@ public class DB implements Closeable {
 	 * @return an observable sequence which executes the query asynchronously
 	 */
 	public <T> Observable<T> queryAsync(final CharSequence sql, final Func1E<ResultSet, T, SQLException> map, final Iterable<?> params) {
-	    SyncOnSubscribe<Void, T> aos = new SyncOnSubscribe<Void, T>() {
-			final AtomicBoolean once = new AtomicBoolean();
-			PreparedStatement pstmt;
-			ResultSet rs;
-			@Override
-			protected Void generateState() {
-				if (!once.compareAndSet(false, true)) {
-					throw new IllegalStateException("Too many subscribers, only one allowed!");
+		return queryAsyncOwned(sql, map, params, null);
+	}
+	/**
+	 * Runs the query asynchronously and closes the given owner once the rows
+	 * are released.
+	 * @param <T> the result value type
+	 * @param sql the query to execute
+	 * @param map the result mapping function
+	 * @param params the parameters for the query
+	 * @param owner the optional resource to close after the statement
+	 * @return an observable sequence which executes the query asynchronously
+	 */
+	protected <T> Observable<T> queryAsyncOwned(final CharSequence sql, 
+			final Func1E<ResultSet, T, SQLException> map, final Iterable<?> params, 
+			@Nullable final Closeable owner) {
+		return new QueryRows<T>(this, sql, map, params, owner).toObservable();
+	}
+	/**
+	 * Runs a query on the reader of a connection and emits the mapped rows.
+	 * @param <T> the row value type
+	 */
+	protected static class QueryRows<T> extends CancellableRows<T> {
+		/** The connection, null until {@link #connection()} returns it. */
+		@Nullable
+		protected DB db;
+		/** The query to execute. */
+		protected final CharSequence sql;
+		/** The result mapping function. */
+		protected final Func1E<ResultSet, T, SQLException> map;
+		/** The parameters for the query. */
+		protected final Iterable<?> params;
+		/** The optional resource to close after the statement. */
+		@Nullable
+		protected Closeable owner;
+		/** The statement. */
+		protected PreparedStatement pstmt;
+		/** The result set. */
+		protected ResultSet rs;
+		/** The error of the query, reported to the connection on release. */
+		protected SQLException error;
+		/**
+		 * Constructor, sets the fields.
+		 * @param db the connection, null if {@link #connection()} is overridden
+		 * @param sql the query to execute
+		 * @param map the result mapping function
+		 * @param params the parameters for the query
+		 * @param owner the optional resource to close after the statement
+		 */
+		protected QueryRows(@Nullable DB db, CharSequence sql, 
+				Func1E<ResultSet, T, SQLException> map, Iterable<?> params, 
+				@Nullable Closeable owner) {
+			this.db = db;
+			this.sql = sql;
+			this.map = map;
+			this.params = params;
+			this.owner = owner;
+		}
+		/**
+		 * Returns the connection to run the query with, called on subscription.
+		 * @return the connection
+		 */
+		protected DB connection() {
+			return db;
+		}
+		@Override
+		protected Statement open() throws SQLException {
+			db = connection();
+			pstmt = db.reader().prepare(sql, params);
+			return pstmt;
+		}
+		@Override
+		protected void release() {
+			Closeables.closeSilently(rs);
+			Closeables.closeSilently(pstmt);
+			SQLException ex = error;
+			if (ex != null && db != null) {
+				db.readerFailed(ex);
+			}
+			Closeables.closeSilently(owner);
+		}
+		@Override
+		protected Void next(Void s, Observer<? super T> state) {
+			try {
+				if (rs == null) {
+					rs = pstmt.executeQuery();
+					if (db.fetchSize != 0) {
+						rs.setFetchSize(db.fetchSize);
+					}
 				}
-				try {
-					pstmt = prepare(sql, params);
-				} catch (SQLException ex) {
-					throw new SQLRuntimeException(ex);
+				if (rs.next()) {
+					state.onNext(map.call(rs));
+				} else {
+					finish();
+					state.onCompleted();
 				}
-
-				return null;
-			}
-			@Override
-			protected void onUnsubscribe(Void state) {
-				Closeables.closeSilently(rs);
-				Closeables.closeSilently(pstmt);
+			} catch (SQLException ex) {
+				error = ex;
+				finish();
+				state.onError(ex);
 			}
+			return null;
+		}
+	}
+	/**
+	 * Runs the query on the given scheduler with a dedicated connection of the
+	 * given database identifier.
+	 * @param <T> the result value type
+	 * @param id the connection identifier
+	 * @param scheduler the scheduler to connect, execute and fetch on
+	 * @param timeoutSeconds the statement timeout in seconds, zero uses the timeout of the connection info
+	 * @param sql the query to execute
+	 * @param map the result mapping function
+	 * @param params the optional parameters for the query
+	 * @return an observable sequence which executes the query asynchronously
+	 * @see #queryAsync(String, Scheduler, int, CharSequence, Func1E, Iterable)
+	 */
+	@NonNull
+	public static <T> Observable<T> queryAsync(
+			@NonNull String id,
+			@NonNull Scheduler scheduler,
+			int timeoutSeconds,
+			@NonNull CharSequence sql, 
+			@NonNull Func1E<ResultSet, T, SQLException> map, 
+			Object... params) {
+		return queryAsync(id, scheduler, timeoutSeconds, sql, map, Arrays.asList(params));
+	}
+	/**
+	 * Runs the query on the given scheduler with a dedicated connection of the
+	 * given database identifier.
+	 * <p>The connection is borrowed from the pool of the database if it has one,
+	 * and it is closed or returned once the rows are depleted or the
+	 * subscriber unsubscribes. Unsubscribing cancels the running statement.
+	 * The query runs on a read replica of the database if it has any.</p>
+	 * @param <T> the result value type
+	 * @param id the connection identifier
+	 * @param scheduler the scheduler to connect, execute and fetch on
+	 * @param timeoutSeconds the statement timeout in seconds, zero uses the timeout of the connection info
+	 * @param sql the query to execute
+	 * @param map the result mapping function
+	 * @param params the parameters for the query
+	 * @return an observable sequence which executes the query asynchronously
+	 */
+	@NonNull
+	public static <T> Observable<T> queryAsync(
+			@NonNull final String id,
+			@NonNull Scheduler scheduler,
+			final int timeoutSeconds,
+			@NonNull final CharSequence sql, 
+			@NonNull final Func1E<ResultSet, T, SQLException> map, 
+			@NonNull final Iterable<?> params) {
+		return new QueryRows<T>(null, sql, map, params, null) {
 			@Override
-			protected Void next(Void s, Observer<? super T> state) {
-				try {
-					if (rs == null) {
-						rs = pstmt.executeQuery();
-						if (fetchSize != 0) {
-							rs.setFetchSize(fetchSize);
-						}
-					}
-					if (rs.next()) {
-						state.onNext(map.call(rs));
-					} else {
-						state.onCompleted();
-					}
-				} catch (SQLException ex) {
-					state.onError(ex);
+			protected DB connection() {
+				DB d = connect(id);
+				owner = d;
+				if (timeoutSeconds > 0) {
+					d.setQueryTimeout(timeoutSeconds);
 				}
-				return null;
+				return d;
 			}
-		};
-		return Observable.create(aos);
+		}.toObservable().subscribeOn(scheduler, true);
 	}
 	/**
 	 * Represents a schema entry from the DatabaseMetadata.getSchema() resultset.
@@ -2391,6 +4036,58 @@ public class DB implements Closeable {
 		/** Derived. */
 		DERIVED
 	}
+	/** The ways of retrieving the generated keys of multiple inserted rows. */
+	public enum KeyBatching {
+		/** Batched statement with getGeneratedKeys returning a key for each parameter set. */
+		BATCH,
+		/** Multi-row INSERT ... VALUES (...), (...) statements returning a key for each row. */
+		MULTI_ROW,
+		/** One insert statement per row. */
+		SINGLE
+	}
+	/** The SQL dialects with different syntax for the generated statements. */
+	public enum Dialect {
+		/** MySQL and MariaDB. */
+		MYSQL("MySQL", "MariaDB"),
+		/** PostgreSQL. */
+		POSTGRESQL("PostgreSQL"),
+		/** SQLite. */
+		SQLITE("SQLite"),
+		/** H2. */
+		H2("H2"),
+		/** HSQLDB. */
+		HSQL("HSQL"),
+		/** Oracle. */
+		ORACLE("Oracle"),
+		/** Microsoft SQL Server. */
+		SQLSERVER("Microsoft SQL Server"),
+		/** IBM DB2. */
+		DB2("DB2"),
+		/** Other databases. */
+		OTHER;
+		/** The database product name prefixes. */
+		private final String[] products;
+		/**
+		 * Constructor.
+		 * @param products the database product name prefixes
+		 */
+		Dialect(String... products) {
+			this.products = products;
+		}
+		/**
+		 * Checks if the database product name belongs to this dialect.
+		 * @param product the product name from the database metadata
+		 * @return true if matches
+		 */
+		public boolean matches(@NonNull String product) {
+			for (String s : products) {
+				if (product.startsWith(s)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
 	/** The table types returned by DatabaseMetadata.getTables. */
 	public enum TableType {
 		/** The table has some other type not supported yet.*/
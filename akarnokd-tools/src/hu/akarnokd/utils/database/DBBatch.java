@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.lang.Action2E;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * Accumulates parameter sets in a prepared statement and executes them
+ * in chunks of the batch size of the connection.
+ * <p>Each executed chunk is reported to the connection, which commits
+ * after every {@link DB#setCommitEvery(int)} chunks if set.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the item type
+ */
+public class DBBatch<T> {
+	/** The connection. */
+	protected final DB db;
+	/** The statement. */
+	protected final PreparedStatement pstmt;
+	/** The marshaller which fills in the statement parameters. */
+	protected final Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller;
+	/** The optional callback for the generated keys. */
+	@Nullable
+	protected final Action2E<? super ResultSet, ? super T, ? extends SQLException> setAutoKey;
+	/** The items of the pending chunk if generated keys are needed. */
+	protected final List<T> items;
+	/** The maximum chunk size, zero or negative executes everything in one chunk. */
+	protected final int batchSize;
+	/** The number of pending parameter sets. */
+	protected int pending;
+	/** The total number of items added. */
+	protected long count;
+	/** The total number of rows affected by the executed chunks. */
+	protected long updated;
+	/**
+	 * Constructor, sets the fields.
+	 * @param db the connection
+	 * @param pstmt the statement
+	 * @param marshaller the marshaller which fills in the statement, should *NOT* call the addBatch
+	 */
+	public DBBatch(@NonNull DB db, @NonNull PreparedStatement pstmt,
+			@NonNull Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller) {
+		this(db, pstmt, marshaller, null);
+	}
+	/**
+	 * Constructor, sets the fields.
+	 * @param db the connection
+	 * @param pstmt the statement, prepared with generated keys if the setAutoKey is not null
+	 * @param marshaller the marshaller which fills in the statement, should *NOT* call the addBatch
+	 * @param setAutoKey the optional callback to set the automatic key
+	 */
+	public DBBatch(@NonNull DB db, @NonNull PreparedStatement pstmt,
+			@NonNull Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller,
+			@Nullable Action2E<? super ResultSet, ? super T, ? extends SQLException> setAutoKey) {
+		this.db = db;
+		this.pstmt = pstmt;
+		this.marshaller = marshaller;
+		this.setAutoKey = setAutoKey;
+		this.items = setAutoKey != null ? new ArrayList<T>() : null;
+		this.batchSize = db.batchSize;
+	}
+	/**
+	 * Add an item to the batch, executing the chunk if it is full.
+	 * @param item the item
+	 * @throws SQLException on error
+	 */
+	public void add(T item) throws SQLException {
+		marshaller.call(pstmt, item);
+		pstmt.addBatch();
+		if (items != null) {
+			items.add(item);
+		}
+		count++;
+		if (++pending == batchSize) {
+			flush();
+		}
+	}
+	/**
+	 * Add all items to the batch.
+	 * @param items the items
+	 * @throws SQLException on error
+	 */
+	public void addAll(@NonNull Iterable<? extends T> items) throws SQLException {
+		for (T t : items) {
+			add(t);
+		}
+	}
+	/**
+	 * Execute the pending parameter sets.
+	 * @throws SQLException on error
+	 */
+	public void flush() throws SQLException {
+		if (pending == 0) {
+			return;
+		}
+		pending = 0;
+		updated += rows(pstmt.executeBatch());
+		if (items != null) {
+			try (ResultSet rs = pstmt.getGeneratedKeys()) {
+				int fs = db.fetchSize;
+				if (fs != 0) {
+					rs.setFetchSize(fs);
+				}
+				int n = items.size();
+				int i = 0;
+				while (i < n && rs.next()) {
+					setAutoKey.call(rs, items.get(i++));
+				}
+				if (i < n) {
+					throw new SQLException("Expected " + n + " generated keys but got " + i);
+				}
+			}
+			items.clear();
+		}
+		db.chunkExecuted();
+	}
+	/**
+	 * Sums the update counts of an executed batch.
+	 * @param counts the update counts, may be null
+	 * @return the number of rows affected, counting the unknown counts as one
+	 */
+	static long rows(@Nullable int[] counts) {
+		long result = 0;
+		if (counts != null) {
+			for (int c : counts) {
+				if (c >= 0) {
+					result += c;
+				} else
+				if (c == Statement.SUCCESS_NO_INFO) {
+					result++;
+				}
+			}
+		}
+		return result;
+	}
+	/** @return the total number of items added */
+	public long count() {
+		return count;
+	}
+	/** @return the total number of rows affected by the executed chunks, counting the unknown counts as one */
+	public long updated() {
+		return updated;
+	}
+}
@@ -0,0 +1,530 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import gnu.trove.list.array.TLongArrayList;
+import hu.akarnokd.utils.lang.Action2E;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Observable.Operator;
+import rx.Observable.Transformer;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Action2;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * Writes the items of an observable sequence in JDBC batches, each on
+ * its own connection of the given database and committed separately.
+ * <p>The items are buffered by count and time window. Only as many items are
+ * requested from the upstream as fit into the batches being written, therefore
+ * a slow database slows down backpressure-aware sources. The results of the
+ * batches are emitted in the order of completion.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the item type
+ */
+public class DBBatchWriter<T> {
+	/**
+	 * The result of a written batch.
+	 * @param <T> the item type
+	 */
+	public static final class Result<T> {
+		/** The items of the batch. */
+		@NonNull
+		public final List<T> items;
+		/** The number of rows affected, counting the unknown counts as one. */
+		public final long rows;
+		/** The generated keys in item order, empty if not requested. */
+		@NonNull
+		public final TLongArrayList keys;
+		/** The time to connect, write and commit the batch, in nanoseconds. */
+		public final long latencyNanos;
+		/**
+		 * Constructor.
+		 * @param items the items of the batch
+		 * @param rows the number of rows affected
+		 * @param keys the generated keys
+		 * @param latencyNanos the write latency in nanoseconds
+		 */
+		public Result(@NonNull List<T> items, long rows, @NonNull TLongArrayList keys, long latencyNanos) {
+			this.items = items;
+			this.rows = rows;
+			this.keys = keys;
+			this.latencyNanos = latencyNanos;
+		}
+		@Override
+		public String toString() {
+			return "Result [items=" + items.size() + ", rows=" + rows
+					+ ", keys=" + keys.size() + ", latencyNanos=" + latencyNanos + "]";
+		}
+	}
+	/** The database identifier. */
+	protected final String databaseId;
+	/** The insert or update statement. */
+	protected final String sql;
+	/** The marshaller which fills in the statement, should *NOT* call the addBatch. */
+	protected final Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller;
+	/** The optional callback receiving the generated keys. */
+	@Nullable
+	protected final Action2<? super T, Long> setKey;
+	/** The scheduler running the writes. */
+	protected Scheduler scheduler = Schedulers.io();
+	/**
+	 * Constructor.
+	 * @param databaseId the database identifier
+	 * @param sql the insert or update statement
+	 * @param marshaller the marshaller which fills in the statement, should *NOT* call the addBatch
+	 * @param setKey the optional callback receiving the generated keys, null if not needed
+	 */
+	public DBBatchWriter(@NonNull String databaseId, @NonNull CharSequence sql,
+			@NonNull Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller,
+			@Nullable Action2<? super T, Long> setKey) {
+		this.databaseId = databaseId;
+		this.sql = sql.toString();
+		this.marshaller = marshaller;
+		this.setKey = setKey;
+	}
+	/**
+	 * Creates a writer which inserts the records through the auto-key insert
+	 * of the DBPojo and sets the generated key on records with a single key column.
+	 * @param <T> the record type
+	 * @param databaseId the database identifier
+	 * @param pojo the record mapper
+	 * @return the writer
+	 */
+	@NonNull
+	public static <T> DBBatchWriter<T> insert(@NonNull String databaseId, @NonNull final DBPojo<T> pojo) {
+		Action2<T, Long> setKey = null;
+		if (pojo.keyFields.size() == 1) {
+			setKey = new Action2<T, Long>() {
+				@Override
+				public void call(T t1, Long t2) {
+					pojo.setGeneratedKey(t1, t2);
+					pojo.track(t1);
+				}
+			};
+		}
+		return new DBBatchWriter<>(databaseId, pojo.insertSql, pojo.insert, setKey);
+	}
+	/**
+	 * Creates a writer which inserts the records with all fields, including the keys.
+	 * @param <T> the record type
+	 * @param databaseId the database identifier
+	 * @param pojo the record mapper
+	 * @return the writer
+	 */
+	@NonNull
+	public static <T> DBBatchWriter<T> insertAll(@NonNull String databaseId, @NonNull DBPojo<T> pojo) {
+		return new DBBatchWriter<>(databaseId, pojo.insertExactSql, pojo.update, null);
+	}
+	/**
+	 * Sets the scheduler running the writes, the io scheduler by default.
+	 * @param scheduler the scheduler
+	 */
+	public void setScheduler(@NonNull Scheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+	/**
+	 * Returns a transformer which writes the items in batches.
+	 * @param count the maximum number of items per batch
+	 * @param timespan the maximum time the first item of a batch waits for the others,
+	 * zero or negative waits until the batch is full or the source completes
+	 * @param unit the time unit
+	 * @param maxConcurrent the maximum number of batches written concurrently
+	 * @return the transformer
+	 * @see #write(Observable, int, long, TimeUnit, int)
+	 */
+	@NonNull
+	public Transformer<T, Result<T>> batches(final int count, final long timespan,
+			@NonNull final TimeUnit unit, final int maxConcurrent) {
+		return new Transformer<T, Result<T>>() {
+			@Override
+			public Observable<Result<T>> call(Observable<T> t) {
+				return write(t, count, timespan, unit, maxConcurrent);
+			}
+		};
+	}
+	/**
+	 * Writes the items of the source in batches and emits the result of
+	 * each batch once it is committed.
+	 * <p>A failed batch terminates the sequence with its error, the batches
+	 * committed before are kept.</p>
+	 * @param source the source of the items
+	 * @param count the maximum number of items per batch
+	 * @param timespan the maximum time the first item of a batch waits for the others,
+	 * zero or negative waits until the batch is full or the source completes
+	 * @param unit the time unit
+	 * @param maxConcurrent the maximum number of batches written concurrently
+	 * @return the observable of the batch results
+	 */
+	@NonNull
+	public Observable<Result<T>> write(@NonNull Observable<? extends T> source, int count,
+			long timespan, @NonNull TimeUnit unit, int maxConcurrent) {
+		if (count <= 0) {
+			throw new IllegalArgumentException("count > 0 required but it was " + count);
+		}
+		if (maxConcurrent <= 0) {
+			throw new IllegalArgumentException("maxConcurrent > 0 required but it was " + maxConcurrent);
+		}
+		Observable<List<T>> buffers = source.lift(new OperatorBuffer<T>(count, timespan, unit, scheduler));
+		return buffers.flatMap(new Func1<List<T>, Observable<Result<T>>>() {
+			@Override
+			public Observable<Result<T>> call(final List<T> items) {
+				return Observable.fromCallable(new Callable<Result<T>>() {
+					@Override
+					public Result<T> call() throws Exception {
+						return writeBatch(items);
+					}
+				}).subscribeOn(scheduler);
+			}
+		}, maxConcurrent);
+	}
+	/**
+	 * Writes and commits a batch on a new or pooled connection.
+	 * <p>If generated keys are requested but the driver doesn't return
+	 * the keys of a whole batch, the items are inserted one by one. If such
+	 * a driver returns fewer keys than items, the batch is rolled back
+	 * and inserted one by one as well.</p>
+	 * @param items the items
+	 * @return the result
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public Result<T> writeBatch(@NonNull List<T> items) throws SQLException {
+		long t0 = System.nanoTime();
+		final TLongArrayList keys = new TLongArrayList();
+		long rows = 0;
+		final Action2<? super T, Long> sk = setKey;
+		try (DB db = DB.connect(databaseId)) {
+			try (PreparedStatement pstmt = db.prepare(sk != null, sql)) {
+				if (sk == null) {
+					DBBatch<T> batch = new DBBatch<>(db, pstmt, marshaller);
+					batch.addAll(items);
+					batch.flush();
+					rows = batch.updated();
+				} else
+				if (db.getKeyBatching() == DB.KeyBatching.BATCH) {
+					rows = writeKeyBatch(pstmt, items, keys);
+					if (keys.size() < items.size()) {
+						// the inserted rows can't be matched with their keys
+						db.rollback();
+						keys.clear();
+						rows = writeSingle(pstmt, items, keys, sk);
+					} else {
+						for (int i = 0; i < items.size(); i++) {
+							sk.call(items.get(i), keys.get(i));
+						}
+					}
+				} else {
+					rows = writeSingle(pstmt, items, keys, sk);
+				}
+			}
+			db.commit();
+		} catch (IOException ex) {
+			throw new SQLException(ex);
+		}
+		return new Result<>(Collections.unmodifiableList(items), rows, keys, System.nanoTime() - t0);
+	}
+	/**
+	 * Executes the items in one batch and reads back at most as many generated keys.
+	 * @param pstmt the statement, prepared with generated keys
+	 * @param items the items
+	 * @param keys the output list of the generated keys
+	 * @return the number of rows affected
+	 * @throws SQLException on error
+	 */
+	protected long writeKeyBatch(@NonNull PreparedStatement pstmt, @NonNull List<T> items,
+			@NonNull TLongArrayList keys) throws SQLException {
+		for (T t : items) {
+			marshaller.call(pstmt, t);
+			pstmt.addBatch();
+		}
+		long rows = DBBatch.rows(pstmt.executeBatch());
+		try (ResultSet rs = pstmt.getGeneratedKeys()) {
+			while (keys.size() < items.size() && rs.next()) {
+				keys.add(rs.getLong(1));
+			}
+		}
+		return rows;
+	}
+	/**
+	 * Executes the items one by one and sets their generated keys.
+	 * @param pstmt the statement, prepared with generated keys
+	 * @param items the items
+	 * @param keys the output list of the generated keys
+	 * @param sk the callback to set the key of an item
+	 * @return the number of rows affected
+	 * @throws SQLException on error
+	 */
+	protected long writeSingle(@NonNull PreparedStatement pstmt, @NonNull List<T> items,
+			@NonNull TLongArrayList keys, @NonNull Action2<? super T, Long> sk) throws SQLException {
+		long rows = 0;
+		for (T t : items) {
+			marshaller.call(pstmt, t);
+			rows += pstmt.executeUpdate();
+			try (ResultSet rs = pstmt.getGeneratedKeys()) {
+				if (rs.next()) {
+					long k = rs.getLong(1);
+					keys.add(k);
+					sk.call(t, k);
+				}
+			}
+		}
+		return rows;
+	}
+	/**
+	 * Buffers the items by count and time window and requests only as many
+	 * items from the upstream as fit into the requested buffers.
+	 * @param <T> the item type
+	 */
+	protected static final class OperatorBuffer<T> implements Operator<List<T>, T> {
+		/** The maximum buffer size. */
+		final int count;
+		/** The maximum time the first item waits. */
+		final long timespan;
+		/** The time unit. */
+		final TimeUnit unit;
+		/** The scheduler of the timeouts. */
+		final Scheduler scheduler;
+		/**
+		 * Constructor.
+		 * @param count the maximum buffer size
+		 * @param timespan the maximum time the first item waits, zero or negative if unbounded
+		 * @param unit the time unit
+		 * @param scheduler the scheduler of the timeouts
+		 */
+		OperatorBuffer(int count, long timespan, TimeUnit unit, Scheduler scheduler) {
+			this.count = count;
+			this.timespan = timespan;
+			this.unit = unit;
+			this.scheduler = scheduler;
+		}
+		@Override
+		public Subscriber<? super T> call(Subscriber<? super List<T>> child) {
+			final BufferSubscriber<T> parent = new BufferSubscriber<>(child, this, scheduler.createWorker());
+			child.add(parent);
+			child.setProducer(new Producer() {
+				@Override
+				public void request(long n) {
+					parent.requestMore(n);
+				}
+			});
+			return parent;
+		}
+	}
+	/**
+	 * The subscriber of the buffering operator.
+	 * @param <T> the item type
+	 */
+	protected static final class BufferSubscriber<T> extends Subscriber<T> {
+		/** The downstream. */
+		final Subscriber<? super List<T>> child;
+		/** The operator settings. */
+		final OperatorBuffer<T> op;
+		/** The worker of the timeouts. */
+		final Worker worker;
+		/** The buffer being filled. */
+		List<T> current;
+		/** The buffers waiting for downstream requests. */
+		final ArrayDeque<List<T>> ready = new ArrayDeque<>();
+		/** The number of buffers requested by the downstream and not yet emitted. */
+		long demand;
+		/** The number of items requested from the upstream and not yet received. */
+		long outstanding;
+		/** Identifies the timeout of the current buffer. */
+		long generation;
+		/** The upstream terminated. */
+		boolean done;
+		/** The upstream error. */
+		Throwable error;
+		/** A thread is emitting. */
+		boolean emitting;
+		/** The state changed while emitting. */
+		boolean missed;
+		/**
+		 * Constructor.
+		 * @param child the downstream
+		 * @param op the operator settings
+		 * @param worker the worker of the timeouts
+		 */
+		BufferSubscriber(Subscriber<? super List<T>> child, OperatorBuffer<T> op, Worker worker) {
+			this.child = child;
+			this.op = op;
+			this.worker = worker;
+			this.current = new ArrayList<>(op.count);
+			add(worker);
+		}
+		@Override
+		public void onStart() {
+			request(0);
+		}
+		@Override
+		public void onNext(T t) {
+			synchronized (this) {
+				outstanding--;
+				current.add(t);
+				if (current.size() == op.count) {
+					emitCurrent();
+				} else
+				if (current.size() == 1 && op.timespan > 0) {
+					final long g = generation;
+					worker.schedule(new Action0() {
+						@Override
+						public void call() {
+							timeout(g);
+						}
+					}, op.timespan, op.unit);
+				}
+			}
+			drain();
+		}
+		@Override
+		public void onError(Throwable e) {
+			synchronized (this) {
+				error = e;
+				ready.clear();
+				current.clear();
+				done = true;
+			}
+			drain();
+		}
+		@Override
+		public void onCompleted() {
+			synchronized (this) {
+				if (!current.isEmpty()) {
+					emitCurrent();
+				}
+				done = true;
+			}
+			drain();
+		}
+		/**
+		 * Moves the current buffer to the ready ones, the caller should hold the lock.
+		 */
+		void emitCurrent() {
+			ready.add(current);
+			current = new ArrayList<>(op.count);
+			generation++;
+		}
+		/**
+		 * Emits the current buffer if its timeout is still valid.
+		 * @param g the generation of the buffer
+		 */
+		void timeout(long g) {
+			synchronized (this) {
+				if (g != generation || current.isEmpty() || done) {
+					return;
+				}
+				emitCurrent();
+			}
+			drain();
+		}
+		/**
+		 * Adds downstream demand.
+		 * @param n the number of buffers requested
+		 */
+		void requestMore(long n) {
+			if (n < 0) {
+				throw new IllegalArgumentException("n >= 0 required but it was " + n);
+			}
+			if (n > 0) {
+				synchronized (this) {
+					long d = demand + n;
+					demand = d < 0 ? Long.MAX_VALUE : d;
+				}
+				drain();
+			}
+		}
+		/**
+		 * Emits the ready buffers, requests more items and delivers the terminal event.
+		 */
+		void drain() {
+			synchronized (this) {
+				if (emitting) {
+					missed = true;
+					return;
+				}
+				emitting = true;
+			}
+			for (;;) {
+				List<T> b = null;
+				boolean terminate = false;
+				Throwable e = null;
+				long req = 0;
+				synchronized (this) {
+					if (demand > 0 && !ready.isEmpty()) {
+						b = ready.poll();
+						if (demand != Long.MAX_VALUE) {
+							demand--;
+						}
+					} else
+					if (done && ready.isEmpty()) {
+						terminate = true;
+						e = error;
+					} else
+					if (!done) {
+						long d = Math.min(demand - ready.size(), Integer.MAX_VALUE);
+						long w = d * op.count - current.size() - outstanding;
+						if (w > 0) {
+							outstanding += w;
+							req = w;
+						}
+					}
+					if (b == null && !terminate && req == 0) {
+						if (!missed) {
+							emitting = false;
+							return;
+						}
+						missed = false;
+						continue;
+					}
+				}
+				if (b != null) {
+					child.onNext(b);
+				} else
+				if (terminate) {
+					worker.unsubscribe();
+					if (e != null) {
+						child.onError(e);
+					} else {
+						child.onCompleted();
+					}
+					return;
+				} else {
+					request(req);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.collect.Maps;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Binds a parameter array of a fixed shape, i.e., the exact classes of the values
+ * and the null-by-class tokens, onto a prepared statement without type tests.
+ * <p>The binders are generated by {@link DBCodeCreator#createBinder(Class[], boolean[])}
+ * on the first use of a shape and are cached. As the generated classes are never
+ * unloaded, shapes longer than {@link #MAX_ARITY} and new shapes after
+ * {@link #MAX_SHAPES} were generated are bound by the type tests instead.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public abstract class DBBinder {
+	/** The number of slots of the lookup table. */
+	protected static final int SLOTS = 256;
+	/** The direct-mapped lookup table of the recently used binders by shape hash. */
+	protected static final AtomicReferenceArray<DBBinder> RECENT = new AtomicReferenceArray<>(SLOTS);
+	/** The maximum number of parameters of a generated binder. */
+	public static final int MAX_ARITY = 32;
+	/** The maximum number of generated binders. */
+	public static final int MAX_SHAPES = 1024;
+	/** All generated binders by shape. */
+	protected static final ConcurrentMap<Shape, DBBinder> BINDERS = Maps.newConcurrentMap();
+	/** The value classes or the null tokens of the parameters. */
+	protected Class<?>[] types;
+	/** Indicates the parameters which are null tokens. */
+	protected boolean[] nulls;
+	/** The hash of the shape. */
+	protected int hash;
+	/**
+	 * Sets the parameters on the prepared statement.
+	 * @param offset the parameter offset to start from
+	 * @param pstmt the statement
+	 * @param values the values of this binder's shape
+	 * @throws SQLException on error
+	 */
+	public abstract void bind(int offset, @NonNull PreparedStatement pstmt, @NonNull Object[] values) throws SQLException;
+	/**
+	 * Initialize the shape of a generated binder.
+	 * @param types the value classes or null tokens
+	 * @param nulls the null token indicators
+	 */
+	void init(Class<?>[] types, boolean[] nulls) {
+		this.types = types;
+		this.nulls = nulls;
+		this.hash = hash(types, nulls);
+	}
+	/**
+	 * Check if the values have the shape of this binder.
+	 * @param values the values
+	 * @return true if this binder can bind the values
+	 */
+	public final boolean matches(@NonNull Object[] values) {
+		Class<?>[] ts = types;
+		if (values.length != ts.length) {
+			return false;
+		}
+		boolean[] ns = nulls;
+		for (int i = 0; i < ts.length; i++) {
+			Object o = values[i];
+			if (ns[i] ? o != ts[i] : (o == null || o.getClass() != ts[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Returns the binder for the shape of the given values.
+	 * @param values the values
+	 * @return the binder or null if the values contain nulls or unsupported types,
+	 * have more than {@link #MAX_ARITY} elements or the shape is new and
+	 * {@link #MAX_SHAPES} binders exist already
+	 */
+	@CheckForNull
+	public static DBBinder of(@NonNull Object[] values) {
+		if (values.length > MAX_ARITY) {
+			return null;
+		}
+		int h = hash(values);
+		int slot = h & (SLOTS - 1);
+		DBBinder b = RECENT.get(slot);
+		if (b != null && b.hash == h && b.matches(values)) {
+			return b;
+		}
+		Class<?>[] types = new Class<?>[values.length];
+		boolean[] nulls = new boolean[values.length];
+		for (int i = 0; i < values.length; i++) {
+			Object o = values[i];
+			if (o == null) {
+				return null;
+			}
+			if (o instanceof Class<?>) {
+				types[i] = (Class<?>)o;
+				nulls[i] = true;
+			} else {
+				types[i] = o.getClass();
+			}
+		}
+		Shape s = new Shape(types, nulls);
+		b = BINDERS.get(s);
+		if (b == null) {
+			if (BINDERS.size() >= MAX_SHAPES || !DBCodeCreator.supportsBinding(types, nulls)) {
+				return null;
+			}
+			b = DBCodeCreator.createBinder(types, nulls);
+			DBBinder b0 = BINDERS.putIfAbsent(s, b);
+			if (b0 != null) {
+				b = b0;
+			}
+		}
+		RECENT.set(slot, b);
+		return b;
+	}
+	/**
+	 * Computes the shape hash of the values.
+	 * @param values the values
+	 * @return the hash
+	 */
+	protected static int hash(Object[] values) {
+		int h = values.length;
+		for (Object o : values) {
+			if (o instanceof Class<?>) {
+				h = h * 31 + ~o.hashCode();
+			} else
+			if (o != null) {
+				h = h * 31 + o.getClass().hashCode();
+			}
+		}
+		return h ^ (h >>> 16);
+	}
+	/**
+	 * Computes the shape hash of the types.
+	 * @param types the value classes or null tokens
+	 * @param nulls the null token indicators
+	 * @return the hash
+	 */
+	protected static int hash(Class<?>[] types, boolean[] nulls) {
+		int h = types.length;
+		for (int i = 0; i < types.length; i++) {
+			h = h * 31 + (nulls[i] ? ~types[i].hashCode() : types[i].hashCode());
+		}
+		return h ^ (h >>> 16);
+	}
+	/** The key of the binder cache. */
+	protected static final class Shape {
+		/** The value classes or null tokens. */
+		final Class<?>[] types;
+		/** The null token indicators. */
+		final boolean[] nulls;
+		/** The hash code. */
+		final int hash;
+		/**
+		 * Constructor, sets the fields.
+		 * @param types the value classes or null tokens
+		 * @param nulls the null token indicators
+		 */
+		Shape(Class<?>[] types, boolean[] nulls) {
+			this.types = types;
+			this.nulls = nulls;
+			this.hash = hash(types, nulls);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof Shape) {
+				Shape s = (Shape)obj;
+				return Arrays.equals(types, s.types) && Arrays.equals(nulls, s.nulls);
+			}
+			return false;
+		}
+	}
+}
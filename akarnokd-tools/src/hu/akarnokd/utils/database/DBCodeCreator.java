@@ -18,12 +18,22 @@ package hu.akarnokd.utils.database;
 
 import hu.akarnokd.utils.generator.CodeCreator;
 import hu.akarnokd.utils.lang.ReflectionUtils;
+import hu.akarnokd.utils.lang.ToIntFunc1E;
+import hu.akarnokd.utils.lang.ToLongFunc1E;
 
+import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Time;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javassist.ClassPool;
 import javassist.CtClass;
@@ -35,6 +45,10 @@ import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
 
+import rx.functions.Func1;
+
+import com.google.common.primitives.Primitives;
+
 /**
  * Generate code for the database access.
  * @author akarnokd, 2013.11.02.
@@ -368,4 +382,400 @@ public final class DBCodeCreator {
 			throw new IllegalArgumentException(ex);
 		}
 	}
+	/** The unique identifier of the generated binder classes. */
+	private static final AtomicInteger BINDER_ID = new AtomicInteger();
+	/**
+	 * Check if a binder can be generated for the given parameter shape.
+	 * @param types the value classes or null tokens
+	 * @param nulls the null token indicators
+	 * @return true if all value classes are supported
+	 */
+	public static boolean supportsBinding(Class<?>[] types, boolean[] nulls) {
+		for (int i = 0; i < types.length; i++) {
+			if (bindCode(types[i], nulls[i], "i", "v") == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Generate a function which returns a copy of the SQLColumn annotated fields
+	 * of the given class in a new instance.
+	 * <p>Byte arrays and the mutable java.util.Date subclasses are cloned, other
+	 * values are shared.</p>
+	 * @param <T> the target type
+	 * @param clazz the target class with a public no-arg constructor
+	 * @return the copy function
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Func1<T, T> createCopy(Class<T> clazz) {
+		try {
+			clazz.getConstructor();
+			ClassPool pool = CodeCreator.POOL;
+			String classname = clazz.getName() + "$Copy";
+			
+			// generate once
+			if (pool.getOrNull(classname) != null) {
+				return (Func1<T, T>)Class.forName(classname).newInstance();
+			}
+
+			CtClass c = pool.makeClass(classname);
+			c.setModifiers(Modifier.FINAL);
+			c.setModifiers(Modifier.PUBLIC);
+			c.addInterface(pool.get(Func1.class.getName()));
+			
+			StringBuilder b = new StringBuilder();
+
+			b.append("\r\npublic final Object call(Object t0) {\r\n");
+			b.append("\t").append(clazz.getName()).append(" t = (").append(clazz.getName()).append(")t0;\r\n");
+			b.append("\t").append(clazz.getName()).append(" u = new ").append(clazz.getName()).append("();\r\n");
+			List<Field> fields = ReflectionUtils.allFields(clazz, SQLColumn.class);
+			Collections.sort(fields, FIELD_SQLCOLUMN_COMPARE);
+			
+			for (Field f : fields) {
+				Class<?> ft = f.getType();
+				String n = f.getName();
+				b.append("\tu.").append(n).append(" = ");
+				if (byte[].class.equals(ft)) {
+					b.append("t.").append(n).append(" != null ? java.util.Arrays.copyOf(t.")
+					.append(n).append(", t.").append(n).append(".length) : null");
+				} else
+				if (java.util.Date.class.isAssignableFrom(ft)) {
+					b.append("t.").append(n).append(" != null ? (").append(ft.getName())
+					.append(")t.").append(n).append(".clone() : null");
+				} else {
+					b.append("t.").append(n);
+				}
+				b.append(";\r\n");
+			}
+			b.append("\treturn u;\r\n");
+			b.append("}\r\n");
+
+//			LOG.debug(b.toString());
+
+			c.addMethod(CtMethod.make(b.toString(), c));
+
+			return (Func1<T, T>)c.toClass().newInstance();
+		} catch (Exception ex) {
+			if (ex instanceof RuntimeException) {
+				throw (RuntimeException)ex;
+			}
+			throw new IllegalArgumentException(ex);
+		}
+	}
+	/**
+	 * Generate a function which captures the values of the non-SQLID, SQLColumn
+	 * annotated fields of the given class, in the form they are bound to statements.
+	 * <p>Primitives are boxed, enums are stored as their ordinal, byte arrays and 
+	 * the mutable java.util.Date subclasses are cloned.</p>
+	 * @param <T> the target type
+	 * @param clazz the target class
+	 * @return the snapshot function
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Func1<T, Object[]> createSnapshot(Class<T> clazz) {
+		try {
+			ClassPool pool = CodeCreator.POOL;
+			String classname = clazz.getName() + "$Snapshot";
+			
+			// generate once
+			if (pool.getOrNull(classname) != null) {
+				return (Func1<T, Object[]>)Class.forName(classname).newInstance();
+			}
+
+			CtClass c = pool.makeClass(classname);
+			c.setModifiers(Modifier.FINAL);
+			c.setModifiers(Modifier.PUBLIC);
+			c.addInterface(pool.get(Func1.class.getName()));
+			
+			List<Field> fields = ReflectionUtils.allFields(clazz, SQLColumn.class);
+			Collections.sort(fields, FIELD_SQLCOLUMN_COMPARE);
+			List<Field> values = new ArrayList<>();
+			for (Field f : fields) {
+				if (!f.isAnnotationPresent(SQLID.class)) {
+					values.add(f);
+				}
+			}
+
+			StringBuilder b = new StringBuilder();
+
+			b.append("\r\npublic final Object call(Object t0) {\r\n");
+			b.append("\t").append(clazz.getName()).append(" t = (").append(clazz.getName()).append(")t0;\r\n");
+			b.append("\tObject[] u = new Object[").append(values.size()).append("];\r\n");
+			
+			int i = 0;
+			for (Field f : values) {
+				Class<?> ft = f.getType();
+				String n = "t." + f.getName();
+				if (ft.isPrimitive()) {
+					b.append("\tu[").append(i).append("] = ").append(Primitives.wrap(ft).getName())
+					.append(".valueOf(").append(n).append(");\r\n");
+				} else
+				if (ft.isEnum()) {
+					b.append("\tif (").append(n).append(" != null) { u[").append(i)
+					.append("] = Integer.valueOf(").append(n).append(".ordinal()); }\r\n");
+				} else
+				if (byte[].class.equals(ft)) {
+					b.append("\tif (").append(n).append(" != null) { u[").append(i)
+					.append("] = java.util.Arrays.copyOf(").append(n).append(", ").append(n).append(".length); }\r\n");
+				} else
+				if (java.util.Date.class.isAssignableFrom(ft)) {
+					b.append("\tif (").append(n).append(" != null) { u[").append(i)
+					.append("] = ").append(n).append(".clone(); }\r\n");
+				} else {
+					b.append("\tu[").append(i).append("] = ").append(n).append(";\r\n");
+				}
+				i++;
+			}
+			b.append("\treturn u;\r\n");
+			b.append("}\r\n");
+
+//			LOG.debug(b.toString());
+
+			c.addMethod(CtMethod.make(b.toString(), c));
+
+			return (Func1<T, Object[]>)c.toClass().newInstance();
+		} catch (Exception ex) {
+			if (ex instanceof RuntimeException) {
+				throw (RuntimeException)ex;
+			}
+			throw new IllegalArgumentException(ex);
+		}
+	}
+	/**
+	 * Generate a function which returns the value of the given field, 
+	 * primitives are boxed.
+	 * @param <T> the target type
+	 * @param clazz the target class
+	 * @param f the public field
+	 * @return the getter function
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Func1<T, Object> createGetter(Class<T> clazz, Field f) {
+		String n = "t." + f.getName();
+		if (f.getType().isPrimitive()) {
+			n = Primitives.wrap(f.getType()).getName() + ".valueOf(" + n + ")";
+		}
+		return (Func1<T, Object>)createGetter(clazz, f, Func1.class, "Object", n);
+	}
+	/**
+	 * Generate a function which returns the value of the given int field.
+	 * @param <T> the target type
+	 * @param clazz the target class
+	 * @param f the public int field
+	 * @return the getter function
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ToIntFunc1E<T, RuntimeException> createIntGetter(Class<T> clazz, Field f) {
+		if (f.getType() != Integer.TYPE) {
+			throw new IllegalArgumentException("Not an int field: " + f);
+		}
+		return (ToIntFunc1E<T, RuntimeException>)createGetter(clazz, f, ToIntFunc1E.class, "int", "t." + f.getName());
+	}
+	/**
+	 * Generate a function which returns the value of the given long field.
+	 * @param <T> the target type
+	 * @param clazz the target class
+	 * @param f the public long field
+	 * @return the getter function
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ToLongFunc1E<T, RuntimeException> createLongGetter(Class<T> clazz, Field f) {
+		if (f.getType() != Long.TYPE) {
+			throw new IllegalArgumentException("Not a long field: " + f);
+		}
+		return (ToLongFunc1E<T, RuntimeException>)createGetter(clazz, f, ToLongFunc1E.class, "long", "t." + f.getName());
+	}
+	/**
+	 * Generate a getter class implementing the given single method interface.
+	 * @param clazz the target class
+	 * @param f the field
+	 * @param iface the interface with a call(Object) method
+	 * @param returnType the return type of the call method
+	 * @param expr the returned expression of the target t
+	 * @return the getter instance
+	 */
+	private static Object createGetter(Class<?> clazz, Field f, Class<?> iface, String returnType, String expr) {
+		try {
+			ClassPool pool = CodeCreator.POOL;
+			String classname = clazz.getName() + "$Get" + iface.getSimpleName() + "$" + f.getName();
+			
+			// generate once
+			if (pool.getOrNull(classname) != null) {
+				return Class.forName(classname).newInstance();
+			}
+
+			CtClass c = pool.makeClass(classname);
+			c.setModifiers(Modifier.FINAL);
+			c.setModifiers(Modifier.PUBLIC);
+			c.addInterface(pool.get(iface.getName()));
+			
+			StringBuilder b = new StringBuilder();
+
+			b.append("\r\npublic final ").append(returnType).append(" call(Object t0) {\r\n");
+			b.append("\t").append(clazz.getName()).append(" t = (").append(clazz.getName()).append(")t0;\r\n");
+			b.append("\treturn ").append(expr).append(";\r\n");
+			b.append("}\r\n");
+
+//			LOG.debug(b.toString());
+
+			c.addMethod(CtMethod.make(b.toString(), c));
+
+			return c.toClass().newInstance();
+		} catch (Exception ex) {
+			if (ex instanceof RuntimeException) {
+				throw (RuntimeException)ex;
+			}
+			throw new IllegalArgumentException(ex);
+		}
+	}
+	/**
+	 * Generate a binder for the given parameter shape which calls the
+	 * same typed setters as {@link DB#setParams(int, java.sql.PreparedStatement, Object...)}.
+	 * @param types the value classes or null tokens
+	 * @param nulls the null token indicators
+	 * @return the binder instance
+	 */
+	public static DBBinder createBinder(Class<?>[] types, boolean[] nulls) {
+		try {
+			ClassPool pool = CodeCreator.POOL;
+			String classname = DBBinder.class.getName() + "$Shape" + BINDER_ID.incrementAndGet();
+
+			pool.importPackage(DB.class.getPackage().getName());
+			
+			CtClass c = pool.makeClass(classname);
+			c.setModifiers(Modifier.FINAL);
+			c.setModifiers(Modifier.PUBLIC);
+			c.setSuperclass(pool.get(DBBinder.class.getName()));
+			
+			StringBuilder b = new StringBuilder();
+
+			b.append("\r\npublic final void bind(int offset, java.sql.PreparedStatement t, Object[] u) throws java.sql.SQLException {\r\n");
+			for (int i = 0; i < types.length; i++) {
+				String code = bindCode(types[i], nulls[i], "offset + " + i, "u[" + i + "]");
+				if (code == null) {
+					throw new IllegalArgumentException("Parameter " + i + " of type " + types[i] + " not supported");
+				}
+				if (!code.isEmpty()) {
+					b.append("\tt.").append(code).append(";\r\n");
+				}
+			}
+			b.append("}\r\n");
+
+//			LOG.debug(b.toString());
+
+			c.addMethod(CtMethod.make(b.toString(), c));
+			
+			DBBinder result = (DBBinder)c.toClass().newInstance();
+			result.init(types.clone(), nulls.clone());
+			return result;
+		} catch (Exception ex) {
+			if (ex instanceof RuntimeException) {
+				throw (RuntimeException)ex;
+			}
+			throw new IllegalArgumentException(ex);
+		}
+	}
+	/**
+	 * Returns the statement setter call for a parameter, following the
+	 * type tests of {@link DB#setParams(int, java.sql.PreparedStatement, Object...)} in order.
+	 * @param type the value class or null token
+	 * @param isNull is the type a null token?
+	 * @param i the parameter index expression
+	 * @param v the value expression
+	 * @return the setter call, empty if nothing is set or null if the type is not supported
+	 */
+	static String bindCode(Class<?> type, boolean isNull, String i, String v) {
+		if (isNull) {
+			Integer sqlType = NULL_TYPES.get(type);
+			if (sqlType == null) {
+				return "";
+			}
+			return "setNull(" + i + ", " + sqlType + ")";
+		}
+		if (CharSequence.class.isAssignableFrom(type)) {
+			return "setString(" + i + ", ((java.lang.CharSequence)" + v + ").toString())";
+		}
+		if (Byte.class == type) {
+			return "setByte(" + i + ", ((java.lang.Byte)" + v + ").byteValue())";
+		}
+		if (Short.class == type) {
+			return "setShort(" + i + ", ((java.lang.Short)" + v + ").shortValue())";
+		}
+		if (Integer.class == type) {
+			return "setInt(" + i + ", ((java.lang.Integer)" + v + ").intValue())";
+		}
+		if (Long.class == type) {
+			return "setLong(" + i + ", ((java.lang.Long)" + v + ").longValue())";
+		}
+		if (Character.class == type) {
+			return "setString(" + i + ", " + v + ".toString())";
+		}
+		if (java.sql.Date.class.isAssignableFrom(type)) {
+			return "setDate(" + i + ", (java.sql.Date)" + v + ")";
+		}
+		if (java.sql.Timestamp.class.isAssignableFrom(type)) {
+			return "setTimestamp(" + i + ", (java.sql.Timestamp)" + v + ")";
+		}
+		if (java.util.Date.class.isAssignableFrom(type)) {
+			return "setTimestamp(" + i + ", new java.sql.Timestamp(((java.util.Date)" + v + ").getTime()))";
+		}
+		if (Double.class == type) {
+			return "setDouble(" + i + ", ((java.lang.Double)" + v + ").doubleValue())";
+		}
+		if (Float.class == type) {
+			return "setFloat(" + i + ", ((java.lang.Float)" + v + ").floatValue())";
+		}
+		if (BigDecimal.class.isAssignableFrom(type)) {
+			return "setBigDecimal(" + i + ", (java.math.BigDecimal)" + v + ")";
+		}
+		if (BigInteger.class.isAssignableFrom(type)) {
+			return "setBigDecimal(" + i + ", new java.math.BigDecimal((java.math.BigInteger)" + v + "))";
+		}
+		if (Boolean.class == type) {
+			return "setBoolean(" + i + ", ((java.lang.Boolean)" + v + ").booleanValue())";
+		}
+		if (DateTime.class == type) {
+			return "setTimestamp(" + i + ", new java.sql.Timestamp(((org.joda.time.DateTime)" + v + ").getMillis()))";
+		}
+		if (DateMidnight.class == type) {
+			return "setDate(" + i + ", new java.sql.Date(((org.joda.time.DateMidnight)" + v + ").getMillis()))";
+		}
+		if (LocalDate.class == type) {
+			return "setDate(" + i + ", new java.sql.Date(((org.joda.time.LocalDate)" + v + ").toDateMidnight().getMillis()))";
+		}
+		if (InputStream.class.isAssignableFrom(type)) {
+			return "setBlob(" + i + ", (java.io.InputStream)" + v + ")";
+		}
+		if (byte[].class == type) {
+			return "setBytes(" + i + ", (byte[])" + v + ")";
+		}
+		if (LocalTime.class == type) {
+			return "setTime(" + i + ", DB.toSQLTime((org.joda.time.LocalTime)" + v + "))";
+		}
+		return null;
+	}
+	/** The SQL types of the null tokens. */
+	private static final Map<Class<?>, Integer> NULL_TYPES = new HashMap<>();
+	static {
+		NULL_TYPES.put(byte[].class, Types.BLOB);
+		NULL_TYPES.put(Short.class, Types.SMALLINT);
+		NULL_TYPES.put(Byte.class, Types.TINYINT);
+		NULL_TYPES.put(Boolean.class, Types.BOOLEAN);
+		NULL_TYPES.put(Double.class, Types.DOUBLE);
+		NULL_TYPES.put(Float.class, Types.FLOAT);
+		NULL_TYPES.put(BigDecimal.class, Types.DECIMAL);
+		NULL_TYPES.put(BigInteger.class, Types.NUMERIC);
+		NULL_TYPES.put(java.sql.Timestamp.class, Types.TIMESTAMP);
+		NULL_TYPES.put(DateTime.class, Types.TIMESTAMP);
+		NULL_TYPES.put(java.util.Date.class, Types.TIMESTAMP);
+		NULL_TYPES.put(Time.class, Types.TIME);
+		NULL_TYPES.put(LocalTime.class, Types.TIME);
+		NULL_TYPES.put(java.sql.Date.class, Types.DATE);
+		NULL_TYPES.put(DateMidnight.class, Types.DATE);
+		NULL_TYPES.put(LocalDate.class, Types.DATE);
+		NULL_TYPES.put(String.class, Types.VARCHAR);
+		NULL_TYPES.put(Integer.class, Types.INTEGER);
+		NULL_TYPES.put(Long.class, Types.BIGINT);
+	}
 }
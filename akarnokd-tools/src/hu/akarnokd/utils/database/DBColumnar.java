@@ -0,0 +1,1085 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TDoubleIntHashMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.procedure.TDoubleProcedure;
+import gnu.trove.procedure.TIntProcedure;
+import gnu.trove.procedure.TLongProcedure;
+import gnu.trove.procedure.TObjectProcedure;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * An in-memory, column-oriented result table.
+ * <p>Integer, long and double columns are stored in primitive arrays, strings
+ * are dictionary-encoded and nulls are tracked in bitmaps. Other types are
+ * kept as objects.</p>
+ * <p>The filters work on selection vectors: arrays of row indexes, starting
+ * from {@link #all()}, which can be passed to further filters, to
+ * {@link #project(int[], String...)} or to {@link #groupBy(int[], String, Aggregate...)}.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBColumnar {
+	/** The columns. */
+	protected final List<Column> columns;
+	/** The columns by upper-case name. */
+	protected final Map<String, Column> byName;
+	/** The row count. */
+	protected final int size;
+	/**
+	 * Constructor, sets the columns.
+	 * @param columns the columns of equal size
+	 */
+	public DBColumnar(@NonNull List<? extends Column> columns) {
+		this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+		this.byName = new HashMap<>();
+		int n = -1;
+		for (Column c : columns) {
+			byName.put(c.name.toUpperCase(), c);
+			if (n >= 0 && n != c.size) {
+				throw new IllegalArgumentException("Column " + c.name + " has " + c.size + " rows instead of " + n);
+			}
+			n = c.size;
+		}
+		this.size = Math.max(0, n);
+	}
+	/**
+	 * Load the remaining rows of the result set, choosing the column
+	 * representation from the result set metadata.
+	 * @param rs the result set
+	 * @return the table
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public static DBColumnar load(@NonNull ResultSet rs) throws SQLException {
+		ResultSetMetaData md = rs.getMetaData();
+		int cc = md.getColumnCount();
+		List<Column> cols = new ArrayList<>(cc);
+		for (int i = 1; i <= cc; i++) {
+			cols.add(column(md.getColumnLabel(i), md.getColumnType(i), md.getPrecision(i), md.getScale(i)));
+		}
+		while (rs.next()) {
+			for (int i = 0; i < cc; i++) {
+				cols.get(i).read(rs, i + 1);
+			}
+		}
+		for (Column c : cols) {
+			c.trim();
+		}
+		return new DBColumnar(cols);
+	}
+	/**
+	 * Creates an empty column for the given SQL type.
+	 * @param name the column name
+	 * @param sqlType the SQL type from java.sql.Types
+	 * @param precision the precision of numeric types
+	 * @param scale the scale of numeric types
+	 * @return the column
+	 */
+	protected static Column column(String name, int sqlType, int precision, int scale) {
+		switch (sqlType) {
+		case Types.BIT:
+		case Types.BOOLEAN:
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+			return new IntColumn(name, sqlType);
+		case Types.BIGINT:
+			return new LongColumn(name, sqlType);
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return new DoubleColumn(name, sqlType);
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			if (scale == 0 && precision > 0 && precision <= 9) {
+				return new IntColumn(name, sqlType);
+			}
+			if (scale == 0 && precision > 0 && precision <= 18) {
+				return new LongColumn(name, sqlType);
+			}
+			return new ObjectColumn(name, sqlType);
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.LONGNVARCHAR:
+			return new StringColumn(name, sqlType);
+		default:
+			return new ObjectColumn(name, sqlType);
+		}
+	}
+	/** @return the row count */
+	public int size() {
+		return size;
+	}
+	/** @return the columns */
+	@NonNull
+	public List<Column> columns() {
+		return columns;
+	}
+	/**
+	 * Returns a column by its index.
+	 * @param index the zero based index
+	 * @return the column
+	 */
+	@NonNull
+	public Column column(int index) {
+		return columns.get(index);
+	}
+	/**
+	 * Returns a column by its case-insensitive name.
+	 * @param name the name
+	 * @return the column
+	 */
+	@NonNull
+	public Column column(@NonNull String name) {
+		Column c = byName.get(name.toUpperCase());
+		if (c == null) {
+			throw new IllegalArgumentException("No such column: " + name);
+		}
+		return c;
+	}
+	/**
+	 * Returns a column by its case-insensitive name and type.
+	 * @param <C> the column type
+	 * @param name the name
+	 * @param clazz the column class
+	 * @return the column
+	 */
+	@NonNull
+	public <C extends Column> C column(@NonNull String name, @NonNull Class<C> clazz) {
+		Column c = column(name);
+		if (!clazz.isInstance(c)) {
+			throw new IllegalArgumentException("Column " + name + " is a " + c.getClass().getSimpleName() + " instead of " + clazz.getSimpleName());
+		}
+		return clazz.cast(c);
+	}
+	/** @return the selection of all rows */
+	@NonNull
+	public int[] all() {
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = i;
+		}
+		return result;
+	}
+	/**
+	 * Select the non-null rows of an integer column which match the predicate.
+	 * @param column the column name
+	 * @param predicate the predicate, should return true for matching values
+	 * @param rows the input selection
+	 * @return the output selection
+	 */
+	@NonNull
+	public int[] whereInt(@NonNull String column, @NonNull TIntProcedure predicate, @NonNull int[] rows) {
+		IntColumn c = column(column, IntColumn.class);
+		int[] vs = c.values;
+		BitSet ns = c.nulls;
+		int[] result = new int[rows.length];
+		int n = 0;
+		for (int r : rows) {
+			if (predicate.execute(vs[r]) && !ns.get(r)) {
+				result[n++] = r;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+	/**
+	 * Select the non-null rows of a long column which match the predicate.
+	 * @param column the column name
+	 * @param predicate the predicate, should return true for matching values
+	 * @param rows the input selection
+	 * @return the output selection
+	 */
+	@NonNull
+	public int[] whereLong(@NonNull String column, @NonNull TLongProcedure predicate, @NonNull int[] rows) {
+		LongColumn c = column(column, LongColumn.class);
+		long[] vs = c.values;
+		BitSet ns = c.nulls;
+		int[] result = new int[rows.length];
+		int n = 0;
+		for (int r : rows) {
+			if (predicate.execute(vs[r]) && !ns.get(r)) {
+				result[n++] = r;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+	/**
+	 * Select the non-null rows of a double column which match the predicate.
+	 * @param column the column name
+	 * @param predicate the predicate, should return true for matching values
+	 * @param rows the input selection
+	 * @return the output selection
+	 */
+	@NonNull
+	public int[] whereDouble(@NonNull String column, @NonNull TDoubleProcedure predicate, @NonNull int[] rows) {
+		DoubleColumn c = column(column, DoubleColumn.class);
+		double[] vs = c.values;
+		BitSet ns = c.nulls;
+		int[] result = new int[rows.length];
+		int n = 0;
+		for (int r : rows) {
+			if (predicate.execute(vs[r]) && !ns.get(r)) {
+				result[n++] = r;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+	/**
+	 * Select the non-null rows of a string column which match the predicate.
+	 * <p>The predicate is evaluated once per distinct value.</p>
+	 * @param column the column name
+	 * @param predicate the predicate, should return true for matching values
+	 * @param rows the input selection
+	 * @return the output selection
+	 */
+	@NonNull
+	public int[] whereString(@NonNull String column, @NonNull TObjectProcedure<? super String> predicate, @NonNull int[] rows) {
+		StringColumn c = column(column, StringColumn.class);
+		BitSet match = new BitSet(c.dictionary.size());
+		for (int i = 0; i < c.dictionary.size(); i++) {
+			if (predicate.execute(c.dictionary.get(i))) {
+				match.set(i);
+			}
+		}
+		int[] codes = c.codes;
+		int[] result = new int[rows.length];
+		int n = 0;
+		for (int r : rows) {
+			int code = codes[r];
+			if (code >= 0 && match.get(code)) {
+				result[n++] = r;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+	/**
+	 * Select the rows where the column is null or not null.
+	 * @param column the column name
+	 * @param isNull select the nulls?
+	 * @param rows the input selection
+	 * @return the output selection
+	 */
+	@NonNull
+	public int[] whereNull(@NonNull String column, boolean isNull, @NonNull int[] rows) {
+		BitSet ns = column(column).nulls;
+		int[] result = new int[rows.length];
+		int n = 0;
+		for (int r : rows) {
+			if (ns.get(r) == isNull) {
+				result[n++] = r;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+	/**
+	 * Creates a new table from the selected rows and columns.
+	 * @param rows the selection
+	 * @param columns the column names, if empty, all columns are kept
+	 * @return the new table
+	 */
+	@NonNull
+	public DBColumnar project(@NonNull int[] rows, String... columns) {
+		List<Column> result = new ArrayList<>();
+		if (columns.length == 0) {
+			for (Column c : this.columns) {
+				result.add(c.select(rows));
+			}
+		} else {
+			for (String s : columns) {
+				result.add(column(s).select(rows));
+			}
+		}
+		return new DBColumnar(result);
+	}
+	/**
+	 * Group the selected rows by the key column and compute the aggregates
+	 * of each group.
+	 * <p>The result contains the key column followed by the aggregate columns named
+	 * like SUM(X). Nulls form their own group and are ignored by the aggregates
+	 * except COUNT(*).</p>
+	 * @param rows the selection
+	 * @param key the key column name
+	 * @param aggregates the aggregates
+	 * @return the table of the groups in the order of their first appearance
+	 */
+	@NonNull
+	public DBColumnar groupBy(@NonNull int[] rows, @NonNull String key, Aggregate... aggregates) {
+		TIntArrayList first = new TIntArrayList();
+		int[] groups = column(key).groupIds(rows, first);
+		int gc = first.size();
+		List<Column> result = new ArrayList<>();
+		result.add(column(key).select(first.toArray()));
+		for (Aggregate a : aggregates) {
+			result.add(a.compute(this, rows, groups, gc));
+		}
+		return new DBColumnar(result);
+	}
+	/** The aggregate operations. */
+	public enum Op {
+		/** The row count or the non-null count of a column. */
+		COUNT,
+		/** The sum. */
+		SUM,
+		/** The minimum. */
+		MIN,
+		/** The maximum. */
+		MAX,
+		/** The average. */
+		AVG
+	}
+	/** An aggregate operation on a column. */
+	public static final class Aggregate {
+		/** The operation. */
+		public final Op op;
+		/** The column name, null for COUNT(*). */
+		@CheckForNull
+		public final String column;
+		/**
+		 * Constructor, sets the fields.
+		 * @param op the operation
+		 * @param column the column name, null for COUNT(*)
+		 */
+		public Aggregate(@NonNull Op op, String column) {
+			if (column == null && op != Op.COUNT) {
+				throw new IllegalArgumentException(op + " needs a column");
+			}
+			this.op = op;
+			this.column = column;
+		}
+		/** @return the COUNT(*) aggregate */
+		public static Aggregate count() {
+			return new Aggregate(Op.COUNT, null);
+		}
+		/**
+		 * @param column the column name
+		 * @return the COUNT aggregate of non-null values
+		 */
+		public static Aggregate count(String column) {
+			return new Aggregate(Op.COUNT, column);
+		}
+		/**
+		 * @param column the column name
+		 * @return the SUM aggregate
+		 */
+		public static Aggregate sum(String column) {
+			return new Aggregate(Op.SUM, column);
+		}
+		/**
+		 * @param column the column name
+		 * @return the MIN aggregate
+		 */
+		public static Aggregate min(String column) {
+			return new Aggregate(Op.MIN, column);
+		}
+		/**
+		 * @param column the column name
+		 * @return the MAX aggregate
+		 */
+		public static Aggregate max(String column) {
+			return new Aggregate(Op.MAX, column);
+		}
+		/**
+		 * @param column the column name
+		 * @return the AVG aggregate
+		 */
+		public static Aggregate avg(String column) {
+			return new Aggregate(Op.AVG, column);
+		}
+		/** @return the result column name, such as SUM(X) */
+		public String name() {
+			return op + "(" + (column != null ? column : "*") + ")";
+		}
+		/**
+		 * Compute the aggregate for each group.
+		 * @param table the source table
+		 * @param rows the selection
+		 * @param groups the group index of each selected row
+		 * @param gc the group count
+		 * @return the result column
+		 */
+		Column compute(DBColumnar table, int[] rows, int[] groups, int gc) {
+			Column src = column != null ? table.column(column) : null;
+			long[] counts = new long[gc];
+			BitSet ns = src != null ? src.nulls : new BitSet();
+			if (op == Op.COUNT) {
+				for (int i = 0; i < rows.length; i++) {
+					if (!ns.get(rows[i])) {
+						counts[groups[i]]++;
+					}
+				}
+				return new LongColumn(name(), Types.BIGINT, counts, new BitSet(), gc);
+			}
+			if (!(src instanceof NumericColumn)) {
+				throw new IllegalArgumentException(op + " needs a numeric column instead of " + column);
+			}
+			NumericColumn nc = (NumericColumn)src;
+			boolean integral = op != Op.AVG && !(src instanceof DoubleColumn);
+			long[] ls = new long[gc];
+			double[] ds = new double[gc];
+			for (int i = 0; i < rows.length; i++) {
+				int r = rows[i];
+				if (ns.get(r)) {
+					continue;
+				}
+				int g = groups[i];
+				long c = counts[g]++;
+				if (integral) {
+					long v = nc.getLong(r);
+					switch (op) {
+					case SUM:
+						ls[g] += v;
+						break;
+					case MIN:
+						ls[g] = c == 0 ? v : Math.min(ls[g], v);
+						break;
+					default:
+						ls[g] = c == 0 ? v : Math.max(ls[g], v);
+					}
+				} else {
+					double v = nc.getDouble(r);
+					switch (op) {
+					case MIN:
+						ds[g] = c == 0 ? v : Math.min(ds[g], v);
+						break;
+					case MAX:
+						ds[g] = c == 0 ? v : Math.max(ds[g], v);
+						break;
+					default:
+						ds[g] += v;
+					}
+				}
+			}
+			BitSet empty = new BitSet(gc);
+			for (int g = 0; g < gc; g++) {
+				if (counts[g] == 0) {
+					empty.set(g);
+				} else
+				if (op == Op.AVG) {
+					ds[g] /= counts[g];
+				}
+			}
+			if (integral) {
+				return new LongColumn(name(), Types.BIGINT, ls, empty, gc);
+			}
+			return new DoubleColumn(name(), Types.DOUBLE, ds, empty, gc);
+		}
+	}
+	/** The base class of the columns. */
+	public abstract static class Column {
+		/** The initial capacity. */
+		protected static final int INITIAL_CAPACITY = 16;
+		/** The column name. */
+		protected final String name;
+		/** The SQL type from java.sql.Types. */
+		protected final int sqlType;
+		/** The null rows. */
+		protected final BitSet nulls;
+		/** The row count. */
+		protected int size;
+		/**
+		 * Constructor, sets the fields.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 * @param nulls the null rows
+		 * @param size the row count
+		 */
+		protected Column(String name, int sqlType, BitSet nulls, int size) {
+			this.name = name;
+			this.sqlType = sqlType;
+			this.nulls = nulls;
+			this.size = size;
+		}
+		/** @return the column name */
+		public String name() {
+			return name;
+		}
+		/** @return the SQL type from java.sql.Types */
+		public int sqlType() {
+			return sqlType;
+		}
+		/** @return the row count */
+		public int size() {
+			return size;
+		}
+		/**
+		 * Check if the value of the row is null.
+		 * @param row the row index
+		 * @return true if null
+		 */
+		public boolean isNull(int row) {
+			return nulls.get(row);
+		}
+		/**
+		 * Returns the boxed value of the row.
+		 * @param row the row index
+		 * @return the value or null
+		 */
+		@CheckForNull
+		public abstract Object get(int row);
+		/**
+		 * Append the value of the current row of the result set.
+		 * @param rs the result set
+		 * @param col the column index
+		 * @throws SQLException on error
+		 */
+		protected abstract void read(ResultSet rs, int col) throws SQLException;
+		/** Shrink the storage to the row count. */
+		protected abstract void trim();
+		/**
+		 * Creates a new column from the selected rows.
+		 * @param rows the selection
+		 * @return the new column
+		 */
+		protected abstract Column select(int[] rows);
+		/**
+		 * Assign a group index to each selected row based on its value.
+		 * @param rows the selection
+		 * @param first receives the first row of each new group
+		 * @return the group index of each selected row
+		 */
+		protected abstract int[] groupIds(int[] rows, TIntArrayList first);
+		/**
+		 * Select the null bits of the rows.
+		 * @param rows the selection
+		 * @return the new null bits
+		 */
+		protected BitSet selectNulls(int[] rows) {
+			BitSet result = new BitSet(rows.length);
+			for (int i = 0; i < rows.length; i++) {
+				if (nulls.get(rows[i])) {
+					result.set(i);
+				}
+			}
+			return result;
+		}
+		/**
+		 * Returns the new capacity to hold one more row.
+		 * @param length the current capacity
+		 * @return the new capacity
+		 */
+		protected int grow(int length) {
+			return length == 0 ? INITIAL_CAPACITY : length + (length >> 1);
+		}
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(getClass().getSimpleName());
+			builder.append(" [name=");
+			builder.append(name);
+			builder.append(", sqlType=");
+			builder.append(sqlType);
+			builder.append(", size=");
+			builder.append(size);
+			builder.append("]");
+			return builder.toString();
+		}
+	}
+	/** A column whose values can be read as primitive numbers. */
+	public abstract static class NumericColumn extends Column {
+		/**
+		 * Constructor, sets the fields.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 * @param nulls the null rows
+		 * @param size the row count
+		 */
+		protected NumericColumn(String name, int sqlType, BitSet nulls, int size) {
+			super(name, sqlType, nulls, size);
+		}
+		/**
+		 * Returns the value of the row as long, zero for nulls.
+		 * @param row the row index
+		 * @return the value
+		 */
+		public abstract long getLong(int row);
+		/**
+		 * Returns the value of the row as double, zero for nulls.
+		 * @param row the row index
+		 * @return the value
+		 */
+		public abstract double getDouble(int row);
+	}
+	/** A column of int values. */
+	public static final class IntColumn extends NumericColumn {
+		/** The values. */
+		protected int[] values;
+		/**
+		 * Constructor, creates an empty column.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 */
+		public IntColumn(String name, int sqlType) {
+			this(name, sqlType, new int[0], new BitSet(), 0);
+		}
+		/**
+		 * Constructor, sets the fields.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 * @param values the values
+		 * @param nulls the null rows
+		 * @param size the row count
+		 */
+		public IntColumn(String name, int sqlType, int[] values, BitSet nulls, int size) {
+			super(name, sqlType, nulls, size);
+			this.values = values;
+		}
+		/**
+		 * Returns the value of the row.
+		 * @param row the row index
+		 * @return the value, zero for nulls
+		 */
+		public int getInt(int row) {
+			return values[row];
+		}
+		@Override
+		public long getLong(int row) {
+			return values[row];
+		}
+		@Override
+		public double getDouble(int row) {
+			return values[row];
+		}
+		@Override
+		public Object get(int row) {
+			return nulls.get(row) ? null : values[row];
+		}
+		@Override
+		protected void read(ResultSet rs, int col) throws SQLException {
+			int v = rs.getInt(col);
+			if (rs.wasNull()) {
+				nulls.set(size);
+			}
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(size));
+			}
+			values[size++] = v;
+		}
+		@Override
+		protected void trim() {
+			values = Arrays.copyOf(values, size);
+		}
+		@Override
+		protected Column select(int[] rows) {
+			int[] vs = new int[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				vs[i] = values[rows[i]];
+			}
+			return new IntColumn(name, sqlType, vs, selectNulls(rows), rows.length);
+		}
+		@Override
+		protected int[] groupIds(int[] rows, TIntArrayList first) {
+			TIntIntHashMap map = new TIntIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+			int[] result = new int[rows.length];
+			int nullGroup = -1;
+			for (int i = 0; i < rows.length; i++) {
+				int r = rows[i];
+				int g;
+				if (nulls.get(r)) {
+					if (nullGroup < 0) {
+						nullGroup = first.size();
+						first.add(r);
+					}
+					g = nullGroup;
+				} else {
+					g = map.get(values[r]);
+					if (g < 0) {
+						g = first.size();
+						first.add(r);
+						map.put(values[r], g);
+					}
+				}
+				result[i] = g;
+			}
+			return result;
+		}
+	}
+	/** A column of long values. */
+	public static final class LongColumn extends NumericColumn {
+		/** The values. */
+		protected long[] values;
+		/**
+		 * Constructor, creates an empty column.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 */
+		public LongColumn(String name, int sqlType) {
+			this(name, sqlType, new long[0], new BitSet(), 0);
+		}
+		/**
+		 * Constructor, sets the fields.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 * @param values the values
+		 * @param nulls the null rows
+		 * @param size the row count
+		 */
+		public LongColumn(String name, int sqlType, long[] values, BitSet nulls, int size) {
+			super(name, sqlType, nulls, size);
+			this.values = values;
+		}
+		@Override
+		public long getLong(int row) {
+			return values[row];
+		}
+		@Override
+		public double getDouble(int row) {
+			return values[row];
+		}
+		@Override
+		public Object get(int row) {
+			return nulls.get(row) ? null : values[row];
+		}
+		@Override
+		protected void read(ResultSet rs, int col) throws SQLException {
+			long v = rs.getLong(col);
+			if (rs.wasNull()) {
+				nulls.set(size);
+			}
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(size));
+			}
+			values[size++] = v;
+		}
+		@Override
+		protected void trim() {
+			values = Arrays.copyOf(values, size);
+		}
+		@Override
+		protected Column select(int[] rows) {
+			long[] vs = new long[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				vs[i] = values[rows[i]];
+			}
+			return new LongColumn(name, sqlType, vs, selectNulls(rows), rows.length);
+		}
+		@Override
+		protected int[] groupIds(int[] rows, TIntArrayList first) {
+			TLongIntHashMap map = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+			int[] result = new int[rows.length];
+			int nullGroup = -1;
+			for (int i = 0; i < rows.length; i++) {
+				int r = rows[i];
+				int g;
+				if (nulls.get(r)) {
+					if (nullGroup < 0) {
+						nullGroup = first.size();
+						first.add(r);
+					}
+					g = nullGroup;
+				} else {
+					g = map.get(values[r]);
+					if (g < 0) {
+						g = first.size();
+						first.add(r);
+						map.put(values[r], g);
+					}
+				}
+				result[i] = g;
+			}
+			return result;
+		}
+	}
+	/** A column of double values. */
+	public static final class DoubleColumn extends NumericColumn {
+		/** The values. */
+		protected double[] values;
+		/**
+		 * Constructor, creates an empty column.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 */
+		public DoubleColumn(String name, int sqlType) {
+			this(name, sqlType, new double[0], new BitSet(), 0);
+		}
+		/**
+		 * Constructor, sets the fields.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 * @param values the values
+		 * @param nulls the null rows
+		 * @param size the row count
+		 */
+		public DoubleColumn(String name, int sqlType, double[] values, BitSet nulls, int size) {
+			super(name, sqlType, nulls, size);
+			this.values = values;
+		}
+		@Override
+		public long getLong(int row) {
+			return (long)values[row];
+		}
+		@Override
+		public double getDouble(int row) {
+			return values[row];
+		}
+		@Override
+		public Object get(int row) {
+			return nulls.get(row) ? null : values[row];
+		}
+		@Override
+		protected void read(ResultSet rs, int col) throws SQLException {
+			double v = rs.getDouble(col);
+			if (rs.wasNull()) {
+				nulls.set(size);
+			}
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(size));
+			}
+			values[size++] = v;
+		}
+		@Override
+		protected void trim() {
+			values = Arrays.copyOf(values, size);
+		}
+		@Override
+		protected Column select(int[] rows) {
+			double[] vs = new double[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				vs[i] = values[rows[i]];
+			}
+			return new DoubleColumn(name, sqlType, vs, selectNulls(rows), rows.length);
+		}
+		@Override
+		protected int[] groupIds(int[] rows, TIntArrayList first) {
+			TDoubleIntHashMap map = new TDoubleIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+			int[] result = new int[rows.length];
+			int nullGroup = -1;
+			for (int i = 0; i < rows.length; i++) {
+				int r = rows[i];
+				int g;
+				if (nulls.get(r)) {
+					if (nullGroup < 0) {
+						nullGroup = first.size();
+						first.add(r);
+					}
+					g = nullGroup;
+				} else {
+					g = map.get(values[r]);
+					if (g < 0) {
+						g = first.size();
+						first.add(r);
+						map.put(values[r], g);
+					}
+				}
+				result[i] = g;
+			}
+			return result;
+		}
+	}
+	/** A dictionary-encoded column of strings. */
+	public static final class StringColumn extends Column {
+		/** The dictionary code of each row, -1 for nulls. */
+		protected int[] codes;
+		/** The distinct values. */
+		protected final List<String> dictionary;
+		/** The code of the distinct values. */
+		protected final TObjectIntHashMap<String> index;
+		/**
+		 * Constructor, creates an empty column.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 */
+		public StringColumn(String name, int sqlType) {
+			this(name, sqlType, new int[0], new ArrayList<String>(), new BitSet(), 0);
+		}
+		/**
+		 * Constructor, sets the fields.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 * @param codes the dictionary codes
+		 * @param dictionary the dictionary
+		 * @param nulls the null rows
+		 * @param size the row count
+		 */
+		public StringColumn(String name, int sqlType, int[] codes, List<String> dictionary, BitSet nulls, int size) {
+			super(name, sqlType, nulls, size);
+			this.codes = codes;
+			this.dictionary = dictionary;
+			this.index = new TObjectIntHashMap<>(Math.max(Constants.DEFAULT_CAPACITY, dictionary.size()), Constants.DEFAULT_LOAD_FACTOR, -1);
+			for (int i = 0; i < dictionary.size(); i++) {
+				index.put(dictionary.get(i), i);
+			}
+		}
+		/**
+		 * Returns the dictionary code of the row.
+		 * @param row the row index
+		 * @return the code, -1 for nulls
+		 */
+		public int code(int row) {
+			return codes[row];
+		}
+		/** @return the distinct values indexed by their code */
+		public List<String> dictionary() {
+			return Collections.unmodifiableList(dictionary);
+		}
+		@Override
+		public String get(int row) {
+			int c = codes[row];
+			return c < 0 ? null : dictionary.get(c);
+		}
+		@Override
+		protected void read(ResultSet rs, int col) throws SQLException {
+			String v = rs.getString(col);
+			int c = -1;
+			if (v == null) {
+				nulls.set(size);
+			} else {
+				c = index.get(v);
+				if (c < 0) {
+					c = dictionary.size();
+					dictionary.add(v);
+					index.put(v, c);
+				}
+			}
+			if (size == codes.length) {
+				codes = Arrays.copyOf(codes, grow(size));
+			}
+			codes[size++] = c;
+		}
+		@Override
+		protected void trim() {
+			codes = Arrays.copyOf(codes, size);
+		}
+		@Override
+		protected Column select(int[] rows) {
+			int[] cs = new int[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				cs[i] = codes[rows[i]];
+			}
+			return new StringColumn(name, sqlType, cs, dictionary, selectNulls(rows), rows.length);
+		}
+		@Override
+		protected int[] groupIds(int[] rows, TIntArrayList first) {
+			int[] groupOfCode = new int[dictionary.size() + 1];
+			Arrays.fill(groupOfCode, -1);
+			int[] result = new int[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				int r = rows[i];
+				int c = codes[r] + 1;
+				int g = groupOfCode[c];
+				if (g < 0) {
+					g = first.size();
+					first.add(r);
+					groupOfCode[c] = g;
+				}
+				result[i] = g;
+			}
+			return result;
+		}
+	}
+	/** A column of arbitrary objects. */
+	public static final class ObjectColumn extends Column {
+		/** The values. */
+		protected Object[] values;
+		/**
+		 * Constructor, creates an empty column.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 */
+		public ObjectColumn(String name, int sqlType) {
+			this(name, sqlType, new Object[0], new BitSet(), 0);
+		}
+		/**
+		 * Constructor, sets the fields.
+		 * @param name the name
+		 * @param sqlType the SQL type
+		 * @param values the values
+		 * @param nulls the null rows
+		 * @param size the row count
+		 */
+		public ObjectColumn(String name, int sqlType, Object[] values, BitSet nulls, int size) {
+			super(name, sqlType, nulls, size);
+			this.values = values;
+		}
+		@Override
+		public Object get(int row) {
+			return values[row];
+		}
+		@Override
+		protected void read(ResultSet rs, int col) throws SQLException {
+			Object v = rs.getObject(col);
+			if (v == null) {
+				nulls.set(size);
+			}
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(size));
+			}
+			values[size++] = v;
+		}
+		@Override
+		protected void trim() {
+			values = Arrays.copyOf(values, size);
+		}
+		@Override
+		protected Column select(int[] rows) {
+			Object[] vs = new Object[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				vs[i] = values[rows[i]];
+			}
+			return new ObjectColumn(name, sqlType, vs, selectNulls(rows), rows.length);
+		}
+		@Override
+		protected int[] groupIds(int[] rows, TIntArrayList first) {
+			Map<Object, Integer> map = new LinkedHashMap<>();
+			int[] result = new int[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				int r = rows[i];
+				Integer g = map.get(values[r]);
+				if (g == null) {
+					g = first.size();
+					first.add(r);
+					map.put(values[r], g);
+				}
+				result[i] = g;
+			}
+			return result;
+		}
+	}
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("DBColumnar [size=");
+		builder.append(size);
+		builder.append(", columns=");
+		builder.append(columns);
+		builder.append("]");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import hu.akarnokd.utils.lang.ReflectionUtils;
+import hu.akarnokd.utils.lang.ToIntFunc1E;
+import hu.akarnokd.utils.lang.ToLongFunc1E;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import rx.functions.Func1;
+
+import com.google.common.primitives.Primitives;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * An in-memory table of records with hash and sorted indexes on
+ * the SQLColumn annotated fields of the record class.
+ * <p>Hash indexes of int and long fields use Trove primitive maps, the
+ * column values are read through generated getters. The indexes are
+ * maintained when rows are added or removed, therefore the indexed
+ * fields of a row must not change while it is in the table.</p>
+ * <p>Null values are not indexed by sorted indexes. The class is not thread-safe.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the record type
+ */
+public class DBIndexedTable<T> {
+	/** The record mapper. */
+	protected final DBPojo<T> pojo;
+	/** The rows by identity. */
+	protected final Set<T> rows = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+	/** The indexes by column name. */
+	protected final Map<String, Index<T>> indexes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	/**
+	 * Base class of the column indexes.
+	 * <p>A slot holds the row itself for unique indexes and a list of rows otherwise.</p>
+	 * @param <T> the record type
+	 */
+	protected abstract static class Index<T> {
+		/** The column name. */
+		final String column;
+		/** The indexed field. */
+		final Field field;
+		/** Allow at most one row per value? */
+		final boolean unique;
+		/**
+		 * Constructor.
+		 * @param column the column name
+		 * @param field the indexed field
+		 * @param unique allow at most one row per value?
+		 */
+		Index(String column, Field field, boolean unique) {
+			this.column = column;
+			this.field = field;
+			this.unique = unique;
+		}
+		/**
+		 * Checks if the row can be added without violating the uniqueness.
+		 * @param value the row
+		 */
+		abstract void check(T value);
+		/**
+		 * Adds the row.
+		 * @param value the row
+		 */
+		abstract void add(T value);
+		/**
+		 * Removes the row.
+		 * @param value the row
+		 */
+		abstract void remove(T value);
+		/**
+		 * Returns the rows having the given column value.
+		 * @param key the column value
+		 * @return the rows
+		 */
+		abstract List<T> find(Object key);
+		/** Removes all rows. */
+		abstract void clear();
+		/**
+		 * Throws if the slot of a unique index is already taken.
+		 * @param slot the current slot
+		 * @param key the column value
+		 */
+		void check(Object slot, Object key) {
+			if (unique && slot != null) {
+				throw new IllegalStateException("Duplicate value in unique index " + column + ": " + key);
+			}
+		}
+		/**
+		 * Adds the row to the slot.
+		 * @param slot the current slot, may be null
+		 * @param value the row
+		 * @return the new slot
+		 */
+		@SuppressWarnings("unchecked")
+		Object insert(Object slot, T value) {
+			if (unique) {
+				return value;
+			}
+			List<T> list = (List<T>)slot;
+			if (list == null) {
+				list = new ArrayList<>(2);
+			}
+			list.add(value);
+			return list;
+		}
+		/**
+		 * Removes the row from the slot.
+		 * @param slot the current slot, may be null
+		 * @param value the row
+		 * @return the new slot, null if empty
+		 */
+		@SuppressWarnings("unchecked")
+		Object delete(Object slot, T value) {
+			if (unique || slot == null) {
+				return slot == value ? null : slot;
+			}
+			List<T> list = (List<T>)slot;
+			for (int i = 0; i < list.size(); i++) {
+				if (list.get(i) == value) {
+					list.remove(i);
+					break;
+				}
+			}
+			return list.isEmpty() ? null : list;
+		}
+		/**
+		 * Adds the rows of the slot to the result.
+		 * @param slot the slot, may be null
+		 * @param result the result list
+		 */
+		@SuppressWarnings("unchecked")
+		void collect(Object slot, List<T> result) {
+			if (slot != null) {
+				if (unique) {
+					result.add((T)slot);
+				} else {
+					result.addAll((List<T>)slot);
+				}
+			}
+		}
+		/**
+		 * Returns the rows of the slot in a new list.
+		 * @param slot the slot, may be null
+		 * @return the rows
+		 */
+		List<T> list(Object slot) {
+			List<T> result = new ArrayList<>();
+			collect(slot, result);
+			return result;
+		}
+	}
+	/**
+	 * Hash index of an int column.
+	 * @param <T> the record type
+	 */
+	protected static final class IntHashIndex<T> extends Index<T> {
+		/** The column value getter. */
+		final ToIntFunc1E<T, RuntimeException> getter;
+		/** The slots. */
+		final TIntObjectHashMap<Object> map = new TIntObjectHashMap<>();
+		/**
+		 * Constructor.
+		 * @param column the column name
+		 * @param field the indexed field
+		 * @param unique allow at most one row per value?
+		 * @param getter the column value getter
+		 */
+		IntHashIndex(String column, Field field, boolean unique, ToIntFunc1E<T, RuntimeException> getter) {
+			super(column, field, unique);
+			this.getter = getter;
+		}
+		@Override
+		void check(T value) {
+			int k = getter.call(value);
+			check(map.get(k), k);
+		}
+		@Override
+		void add(T value) {
+			int k = getter.call(value);
+			map.put(k, insert(map.get(k), value));
+		}
+		@Override
+		void remove(T value) {
+			int k = getter.call(value);
+			Object slot = delete(map.get(k), value);
+			if (slot == null) {
+				map.remove(k);
+			}
+		}
+		@Override
+		List<T> find(Object key) {
+			return key instanceof Number ? find(((Number)key).intValue()) : Collections.<T>emptyList();
+		}
+		/**
+		 * Returns the rows having the given column value.
+		 * @param key the column value
+		 * @return the rows
+		 */
+		List<T> find(int key) {
+			return list(map.get(key));
+		}
+		@Override
+		void clear() {
+			map.clear();
+		}
+	}
+	/**
+	 * Hash index of a long column.
+	 * @param <T> the record type
+	 */
+	protected static final class LongHashIndex<T> extends Index<T> {
+		/** The column value getter. */
+		final ToLongFunc1E<T, RuntimeException> getter;
+		/** The slots. */
+		final TLongObjectHashMap<Object> map = new TLongObjectHashMap<>();
+		/**
+		 * Constructor.
+		 * @param column the column name
+		 * @param field the indexed field
+		 * @param unique allow at most one row per value?
+		 * @param getter the column value getter
+		 */
+		LongHashIndex(String column, Field field, boolean unique, ToLongFunc1E<T, RuntimeException> getter) {
+			super(column, field, unique);
+			this.getter = getter;
+		}
+		@Override
+		void check(T value) {
+			long k = getter.call(value);
+			check(map.get(k), k);
+		}
+		@Override
+		void add(T value) {
+			long k = getter.call(value);
+			map.put(k, insert(map.get(k), value));
+		}
+		@Override
+		void remove(T value) {
+			long k = getter.call(value);
+			Object slot = delete(map.get(k), value);
+			if (slot == null) {
+				map.remove(k);
+			}
+		}
+		@Override
+		List<T> find(Object key) {
+			return key instanceof Number ? find(((Number)key).longValue()) : Collections.<T>emptyList();
+		}
+		/**
+		 * Returns the rows having the given column value.
+		 * @param key the column value
+		 * @return the rows
+		 */
+		List<T> find(long key) {
+			return list(map.get(key));
+		}
+		@Override
+		void clear() {
+			map.clear();
+		}
+	}
+	/**
+	 * Hash or sorted index of an object column.
+	 * @param <T> the record type
+	 */
+	protected static final class ObjectIndex<T> extends Index<T> {
+		/** The column value getter. */
+		final Func1<T, Object> getter;
+		/** The slots. */
+		final Map<Object, Object> map;
+		/**
+		 * Constructor.
+		 * @param column the column name
+		 * @param field the indexed field
+		 * @param unique allow at most one row per value?
+		 * @param getter the column value getter
+		 * @param sorted create a sorted index?
+		 */
+		ObjectIndex(String column, Field field, boolean unique, Func1<T, Object> getter, boolean sorted) {
+			super(column, field, unique);
+			this.getter = getter;
+			this.map = sorted ? new TreeMap<>() : new HashMap<>();
+		}
+		/**
+		 * Is the value indexed?
+		 * @param key the column value
+		 * @return true if indexed
+		 */
+		boolean indexed(Object key) {
+			return key != null || !(map instanceof TreeMap);
+		}
+		@Override
+		void check(T value) {
+			Object k = getter.call(value);
+			if (indexed(k)) {
+				check(map.get(k), k);
+			}
+		}
+		@Override
+		void add(T value) {
+			Object k = getter.call(value);
+			if (indexed(k)) {
+				map.put(k, insert(map.get(k), value));
+			}
+		}
+		@Override
+		void remove(T value) {
+			Object k = getter.call(value);
+			if (indexed(k)) {
+				Object slot = delete(map.get(k), value);
+				if (slot == null) {
+					map.remove(k);
+				}
+			}
+		}
+		@Override
+		List<T> find(Object key) {
+			Object k = DBPojo.keyValue(field, key);
+			if (!indexed(k)) {
+				return Collections.emptyList();
+			}
+			return list(map.get(k));
+		}
+		/**
+		 * Returns the rows with column values in the given range, in ascending order.
+		 * @param from the lower bound, null for unbounded
+		 * @param fromInclusive include the lower bound?
+		 * @param to the upper bound, null for unbounded
+		 * @param toInclusive include the upper bound?
+		 * @return the rows
+		 */
+		List<T> range(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+			NavigableMap<Object, Object> m = (NavigableMap<Object, Object>)map;
+			if (from != null) {
+				m = m.tailMap(DBPojo.keyValue(field, from), fromInclusive);
+			}
+			if (to != null) {
+				m = m.headMap(DBPojo.keyValue(field, to), toInclusive);
+			}
+			List<T> result = new ArrayList<>();
+			for (Object slot : m.values()) {
+				collect(slot, result);
+			}
+			return result;
+		}
+		@Override
+		void clear() {
+			map.clear();
+		}
+	}
+	/**
+	 * Constructor.
+	 * @param pojo the record mapper
+	 */
+	public DBIndexedTable(@NonNull DBPojo<T> pojo) {
+		this.pojo = pojo;
+	}
+	/**
+	 * Returns the SQLColumn annotated field of the given column.
+	 * @param column the column name, case insensitive
+	 * @return the field
+	 */
+	protected Field field(String column) {
+		for (Field f : ReflectionUtils.allFields(pojo.clazz, SQLColumn.class)) {
+			if (pojo.fieldName(f).equalsIgnoreCase(column)) {
+				return f;
+			}
+		}
+		throw new IllegalArgumentException("Unknown column: " + pojo.table() + "." + column);
+	}
+	/**
+	 * Adds the index and fills it with the current rows.
+	 * @param index the index
+	 */
+	protected void addIndex(Index<T> index) {
+		if (indexes.containsKey(index.column)) {
+			throw new IllegalArgumentException("Column already indexed: " + index.column);
+		}
+		for (T v : rows) {
+			index.check(v);
+			index.add(v);
+		}
+		indexes.put(index.column, index);
+	}
+	/**
+	 * Declares a hash index on the column.
+	 * @param column the column name
+	 * @param unique allow at most one row per value?
+	 * @throws IllegalStateException if the current rows violate the uniqueness
+	 */
+	public void hashIndex(@NonNull String column, boolean unique) {
+		Field f = field(column);
+		Class<T> c = pojo.clazz;
+		if (f.getType() == Integer.TYPE) {
+			addIndex(new IntHashIndex<>(column, f, unique, DBCodeCreator.createIntGetter(c, f)));
+		} else
+		if (f.getType() == Long.TYPE) {
+			addIndex(new LongHashIndex<>(column, f, unique, DBCodeCreator.createLongGetter(c, f)));
+		} else {
+			addIndex(new ObjectIndex<>(column, f, unique, DBCodeCreator.createGetter(c, f), false));
+		}
+	}
+	/**
+	 * Declares a sorted index on the column which supports range queries.
+	 * @param column the column name
+	 * @param unique allow at most one row per value?
+	 * @throws IllegalStateException if the current rows violate the uniqueness
+	 */
+	public void sortedIndex(@NonNull String column, boolean unique) {
+		Field f = field(column);
+		if (!Comparable.class.isAssignableFrom(Primitives.wrap(f.getType()))) {
+			throw new IllegalArgumentException("Column is not comparable: " + column);
+		}
+		addIndex(new ObjectIndex<>(column, f, unique, DBCodeCreator.createGetter(pojo.clazz, f), true));
+	}
+	/**
+	 * Loads all records of the table from the database and adds them.
+	 * @param db the database connection
+	 * @throws SQLException on error
+	 */
+	public void load(@NonNull DB db) throws SQLException {
+		addAll(pojo.selectAll(db));
+	}
+	/**
+	 * Adds a row and indexes it.
+	 * @param value the row
+	 * @return false if the row is already in the table
+	 * @throws IllegalStateException if the row violates a unique index
+	 */
+	public boolean add(@NonNull T value) {
+		if (rows.contains(value)) {
+			return false;
+		}
+		for (Index<T> idx : indexes.values()) {
+			idx.check(value);
+		}
+		for (Index<T> idx : indexes.values()) {
+			idx.add(value);
+		}
+		rows.add(value);
+		return true;
+	}
+	/**
+	 * Adds the rows and indexes them.
+	 * @param values the rows
+	 * @throws IllegalStateException if a row violates a unique index, the rows before it are kept
+	 */
+	public void addAll(@NonNull Iterable<? extends T> values) {
+		for (T v : values) {
+			add(v);
+		}
+	}
+	/**
+	 * Removes the row from the table and its indexes.
+	 * @param value the row
+	 * @return true if the row was in the table
+	 */
+	public boolean remove(@NonNull T value) {
+		if (!rows.remove(value)) {
+			return false;
+		}
+		for (Index<T> idx : indexes.values()) {
+			idx.remove(value);
+		}
+		return true;
+	}
+	/**
+	 * Removes all rows, the index declarations are kept.
+	 */
+	public void clear() {
+		rows.clear();
+		for (Index<T> idx : indexes.values()) {
+			idx.clear();
+		}
+	}
+	/** @return the number of rows */
+	public int size() {
+		return rows.size();
+	}
+	/** @return the unmodifiable view of the rows, in no particular order */
+	public Collection<T> rows() {
+		return Collections.unmodifiableSet(rows);
+	}
+	/**
+	 * Returns the index of the column.
+	 * @param column the column name
+	 * @return the index
+	 */
+	protected Index<T> index(String column) {
+		Index<T> idx = indexes.get(column);
+		if (idx == null) {
+			throw new IllegalArgumentException("Column not indexed: " + column);
+		}
+		return idx;
+	}
+	/**
+	 * Returns the first row having the value in the indexed column,
+	 * typically used with unique indexes.
+	 * @param column the column name
+	 * @param value the column value
+	 * @return the row or null if not found
+	 */
+	@CheckForNull
+	public T get(@NonNull String column, @Nullable Object value) {
+		List<T> list = find(column, value);
+		return list.isEmpty() ? null : list.get(0);
+	}
+	/**
+	 * Returns the rows having the value in the indexed column.
+	 * @param column the column name
+	 * @param value the column value
+	 * @return the new list of rows
+	 */
+	public List<T> find(@NonNull String column, @Nullable Object value) {
+		return index(column).find(value);
+	}
+	/**
+	 * Returns the rows having the value in the indexed column without
+	 * boxing the value for int hash indexes.
+	 * @param column the column name
+	 * @param value the column value
+	 * @return the new list of rows
+	 */
+	public List<T> find(@NonNull String column, int value) {
+		Index<T> idx = index(column);
+		if (idx instanceof IntHashIndex) {
+			return ((IntHashIndex<T>)idx).find(value);
+		}
+		return idx.find(value);
+	}
+	/**
+	 * Returns the rows having the value in the indexed column without
+	 * boxing the value for long hash indexes.
+	 * @param column the column name
+	 * @param value the column value
+	 * @return the new list of rows
+	 */
+	public List<T> find(@NonNull String column, long value) {
+		Index<T> idx = index(column);
+		if (idx instanceof LongHashIndex) {
+			return ((LongHashIndex<T>)idx).find(value);
+		}
+		return idx.find(value);
+	}
+	/**
+	 * Returns the rows with the values of the column in the given range,
+	 * ordered by the column value.
+	 * @param column the column name of a sorted index
+	 * @param from the lower bound, null for unbounded
+	 * @param fromInclusive include the lower bound?
+	 * @param to the upper bound, null for unbounded
+	 * @param toInclusive include the upper bound?
+	 * @return the new list of rows
+	 */
+	public List<T> range(@NonNull String column, @Nullable Object from, boolean fromInclusive,
+			@Nullable Object to, boolean toInclusive) {
+		Index<T> idx = index(column);
+		if (idx instanceof ObjectIndex && ((ObjectIndex<T>)idx).map instanceof TreeMap) {
+			return ((ObjectIndex<T>)idx).range(from, fromInclusive, to, toInclusive);
+		}
+		throw new IllegalArgumentException("Column not sorted: " + column);
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.sql.SQLException;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Receives the timing of the statements executed through {@link DB}
+ * once installed via {@link DB#setInstrumentation(DBInstrumentation)}.
+ * <p>The methods are called synchronously on the executing thread
+ * and should return quickly.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public interface DBInstrumentation {
+	/**
+	 * A query completed and its result set was closed.
+	 * @param sql the SQL text of the statement
+	 * @param executeNanos the time spent in executeQuery
+	 * @param fetchNanos the time between executeQuery and closing the result set
+	 * @param rows the number of rows read
+	 */
+	void onQuery(@NonNull String sql, long executeNanos, long fetchNanos, long rows);
+	/**
+	 * An update or a batch completed.
+	 * @param sql the SQL text of the statement
+	 * @param executeNanos the time spent executing
+	 * @param batchSize the number of parameter sets, 1 for non-batch execution
+	 * @param rows the total update count
+	 */
+	void onUpdate(@NonNull String sql, long executeNanos, int batchSize, long rows);
+	/**
+	 * The execution failed.
+	 * @param sql the SQL text of the statement
+	 * @param executeNanos the time until the failure
+	 * @param error the error
+	 */
+	void onError(@NonNull String sql, long executeNanos, @NonNull SQLException error);
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Proxy handler of a prepared statement which reports the execution
+ * times, batch sizes and row counts to a {@link DBInstrumentation}.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBInstrumentedStatement implements InvocationHandler {
+	/** The statement. */
+	protected final PreparedStatement ps;
+	/** The SQL text. */
+	protected final String sql;
+	/** The instrumentation. */
+	protected final DBInstrumentation hook;
+	/** The number of batched parameter sets. */
+	protected int batch;
+	/** The result set not yet reported. */
+	protected Results results;
+	/**
+	 * Constructor, sets the fields.
+	 * @param ps the statement
+	 * @param sql the SQL text
+	 * @param hook the instrumentation
+	 */
+	protected DBInstrumentedStatement(PreparedStatement ps, String sql, DBInstrumentation hook) {
+		this.ps = ps;
+		this.sql = sql;
+		this.hook = hook;
+	}
+	/**
+	 * Wrap the statement into an instrumenting proxy.
+	 * @param ps the statement
+	 * @param sql the SQL text
+	 * @param hook the instrumentation
+	 * @return the proxy statement
+	 */
+	@NonNull
+	public static PreparedStatement wrap(@NonNull PreparedStatement ps,
+			@NonNull String sql, @NonNull DBInstrumentation hook) {
+		return (PreparedStatement)Proxy.newProxyInstance(
+				PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class },
+				new DBInstrumentedStatement(ps, sql, hook));
+	}
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		String name = method.getName();
+		switch (name) {
+		case "addBatch":
+			batch++;
+			return call(method, args);
+		case "clearBatch":
+			batch = 0;
+			return call(method, args);
+		case "close":
+			finish();
+			return call(method, args);
+		case "executeQuery":
+			finish();
+			long t0 = System.nanoTime();
+			ResultSet rs = (ResultSet)execute(method, args, t0);
+			long t1 = System.nanoTime();
+			results = new Results(rs, t1 - t0, t1);
+			return Proxy.newProxyInstance(
+					ResultSet.class.getClassLoader(),
+					new Class<?>[] { ResultSet.class },
+					results);
+		case "executeUpdate":
+		case "executeLargeUpdate":
+		case "execute":
+			t0 = System.nanoTime();
+			Object r = execute(method, args, t0);
+			long rows = r instanceof Number ? ((Number)r).longValue() : Math.max(0, ps.getUpdateCount());
+			hook.onUpdate(sql, System.nanoTime() - t0, 1, rows);
+			return r;
+		case "executeBatch":
+		case "executeLargeBatch":
+			t0 = System.nanoTime();
+			int n = batch;
+			batch = 0;
+			r = execute(method, args, t0);
+			rows = 0;
+			if (r instanceof int[]) {
+				for (int v : (int[])r) {
+					rows += Math.max(0, v);
+				}
+			} else
+			if (r instanceof long[]) {
+				for (long v : (long[])r) {
+					rows += Math.max(0, v);
+				}
+			}
+			hook.onUpdate(sql, System.nanoTime() - t0, n, rows);
+			return r;
+		case "hashCode":
+			if (args == null) {
+				return System.identityHashCode(proxy);
+			}
+			break;
+		case "equals":
+			if (args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			break;
+		case "toString":
+			if (args == null) {
+				return ps.toString();
+			}
+			break;
+		default:
+		}
+		return call(method, args);
+	}
+	/**
+	 * Invoke the method on the statement and report the failure.
+	 * @param method the method
+	 * @param args the arguments
+	 * @param t0 the start time
+	 * @return the result
+	 * @throws Throwable the error
+	 */
+	protected Object execute(Method method, Object[] args, long t0) throws Throwable {
+		try {
+			return method.invoke(ps, args);
+		} catch (InvocationTargetException ex) {
+			Throwable c = ex.getCause();
+			if (c instanceof SQLException) {
+				hook.onError(sql, System.nanoTime() - t0, (SQLException)c);
+			}
+			throw c;
+		}
+	}
+	/**
+	 * Invoke the method on the statement.
+	 * @param method the method
+	 * @param args the arguments
+	 * @return the result
+	 * @throws Throwable the error
+	 */
+	protected Object call(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(ps, args);
+		} catch (InvocationTargetException ex) {
+			throw ex.getCause();
+		}
+	}
+	/** Report the pending result set. */
+	protected void finish() {
+		Results r = results;
+		if (r != null) {
+			results = null;
+			r.report();
+		}
+	}
+	/** Proxy handler of the result set which counts the rows and measures the fetch time. */
+	protected final class Results implements InvocationHandler {
+		/** The result set. */
+		final ResultSet rs;
+		/** The execution time. */
+		final long executeNanos;
+		/** The start of the fetch. */
+		final long fetchStart;
+		/** The number of rows read. */
+		long rows;
+		/** Already reported? */
+		boolean done;
+		/**
+		 * Constructor, sets the fields.
+		 * @param rs the result set
+		 * @param executeNanos the execution time
+		 * @param fetchStart the start of the fetch
+		 */
+		Results(ResultSet rs, long executeNanos, long fetchStart) {
+			this.rs = rs;
+			this.executeNanos = executeNanos;
+			this.fetchStart = fetchStart;
+		}
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if (args == null) {
+				switch (name) {
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return rs.toString();
+				case "close":
+					if (results == this) {
+						results = null;
+					}
+					report();
+					break;
+				default:
+				}
+			} else
+			if (args.length == 1 && "equals".equals(name)) {
+				return proxy == args[0];
+			}
+			Object r;
+			try {
+				r = method.invoke(rs, args);
+			} catch (InvocationTargetException ex) {
+				throw ex.getCause();
+			}
+			if ("next".equals(name) && Boolean.TRUE.equals(r)) {
+				rows++;
+			}
+			return r;
+		}
+		/** Report the query once. */
+		void report() {
+			if (!done) {
+				done = true;
+				hook.onQuery(sql, executeNanos, System.nanoTime() - fetchStart, rows);
+			}
+		}
+	}
+}
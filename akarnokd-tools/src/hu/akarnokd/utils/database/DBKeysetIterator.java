@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import ix.CloseableIterator;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import rx.Scheduler.Worker;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * Iterates over the records of a table in key order by running
+ * a short query for each page of records after the last seen key.
+ * <p>Unlike a long running cursor, this doesn't hold a read view
+ * for the whole iteration. After a failure, the iteration can be resumed
+ * by a new iterator starting after the {@link #lastKey()} of the failed one.</p>
+ * <p>If prefetching is enabled, the next page is queried on a background
+ * thread while the current one is consumed, therefore the connection must
+ * not be used by other statements while the iteration runs.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the record type
+ */
+public class DBKeysetIterator<T> implements CloseableIterator<T> {
+	/** The record mapper. */
+	protected final DBPojo<T> pojo;
+	/** The database connection. */
+	protected final DB db;
+	/** The page size. */
+	protected final int pageSize;
+	/** Prefetch the next page? */
+	protected final boolean prefetch;
+	/** The current page. */
+	protected List<T> page = Collections.emptyList();
+	/** The index within the current page. */
+	protected int index;
+	/** The key of the last record returned. */
+	@Nullable
+	protected Object lastKey;
+	/** There may be more pages. */
+	protected boolean more = true;
+	/** The pending prefetch of the next page. */
+	@Nullable
+	protected FutureTask<List<T>> pending;
+	/** The prefetch worker, created on demand. */
+	@Nullable
+	protected Worker worker;
+	/** Unsubscribed? */
+	protected volatile boolean cancelled;
+	/**
+	 * Constructor.
+	 * @param pojo the record mapper
+	 * @param db the database connection
+	 * @param pageSize the number of records per page
+	 * @param afterKey the key to resume after, null starts with the first record
+	 * @param prefetch query the next page on a background thread?
+	 */
+	public DBKeysetIterator(@NonNull DBPojo<T> pojo, @NonNull DB db, 
+			int pageSize, @Nullable Object afterKey, boolean prefetch) {
+		this.pojo = pojo;
+		this.db = db;
+		this.pageSize = Math.max(1, pageSize);
+		this.lastKey = afterKey;
+		this.prefetch = prefetch;
+	}
+	/**
+	 * Returns the key of the last record returned by {@link #next()}, or
+	 * the resume key if no record was returned yet.
+	 * @return the key, a List of the key values for composite keys
+	 */
+	@CheckForNull
+	public Object lastKey() {
+		return lastKey;
+	}
+	@Override
+	public boolean hasNext() {
+		if (cancelled) {
+			release();
+			return false;
+		}
+		if (index < page.size()) {
+			return true;
+		}
+		if (!more) {
+			release();
+			return false;
+		}
+		try {
+			FutureTask<List<T>> f = pending;
+			if (f != null) {
+				pending = null;
+				page = await(f);
+			} else {
+				page = pojo.selectPage(db, lastKey, pageSize);
+			}
+		} catch (SQLException ex) {
+			more = false;
+			page = Collections.emptyList();
+			throw new SQLRuntimeException(ex);
+		}
+		index = 0;
+		int n = page.size();
+		more = n == pageSize;
+		if (more && prefetch) {
+			pending = schedule(pojo.keyOf(page.get(n - 1)));
+		}
+		return n > 0;
+	}
+	/**
+	 * Schedule the query of the page after the given key.
+	 * @param after the key
+	 * @return the future page
+	 */
+	protected FutureTask<List<T>> schedule(final Object after) {
+		final FutureTask<List<T>> f = new FutureTask<>(new Callable<List<T>>() {
+			@Override
+			public List<T> call() throws Exception {
+				return pojo.selectPage(db, after, pageSize);
+			}
+		});
+		Worker w = worker;
+		if (w == null) {
+			w = Schedulers.io().createWorker();
+			worker = w;
+		}
+		w.schedule(new Action0() {
+			@Override
+			public void call() {
+				f.run();
+			}
+		});
+		return f;
+	}
+	/**
+	 * Wait for the prefetched page.
+	 * @param f the future page
+	 * @return the page
+	 * @throws SQLException on error
+	 */
+	protected List<T> await(FutureTask<List<T>> f) throws SQLException {
+		try {
+			return f.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException(ex);
+		} catch (ExecutionException ex) {
+			Throwable c = ex.getCause();
+			if (c instanceof SQLException) {
+				throw (SQLException)c;
+			}
+			if (c instanceof RuntimeException) {
+				throw (RuntimeException)c;
+			}
+			throw new SQLException(c);
+		}
+	}
+	@Override
+	public T next() {
+		if (hasNext()) {
+			T v = page.get(index++);
+			lastKey = pojo.keyOf(v);
+			return v;
+		}
+		throw new NoSuchElementException();
+	}
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	/**
+	 * Stops the iteration and waits for the running prefetch so
+	 * the connection can be used again.
+	 */
+	@Override
+	public void unsubscribe() {
+		if (!cancelled) {
+			cancelled = true;
+			FutureTask<List<T>> f = pending;
+			pending = null;
+			if (f != null) {
+				try {
+					await(f);
+				} catch (SQLException | RuntimeException ex) {
+					// the page is discarded anyway
+				}
+			}
+			release();
+		}
+	}
+	/** Release the prefetch worker. */
+	protected void release() {
+		Worker w = worker;
+		if (w != null) {
+			worker = null;
+			w.unsubscribe();
+		}
+	}
+	@Override
+	public boolean isUnsubscribed() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.lang.Action2E;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Inserts items through multi-row <code>INSERT ... VALUES (...), (...)</code>
+ * statements and assigns the generated keys to the items in order.
+ * <p>The single-row marshaller is reused by shifting its parameter indexes
+ * for each row of the statement.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the item type
+ */
+public class DBMultiRowInsert<T> {
+	/** The default number of rows per statement if the connection has no batch size. */
+	public static final int DEFAULT_ROWS = 100;
+	/** The maximum number of parameters per statement, most databases accept at least this many. */
+	public static final int MAX_PARAMETERS = 2000;
+	/** The connection. */
+	protected final DB db;
+	/** The statement prefix up to and including the VALUES keyword. */
+	protected final String prefix;
+	/** The parameter placeholders of a single row, i.e., (?, ?, ?). */
+	protected final String row;
+	/** The number of parameters of a single row. */
+	protected final int columns;
+	/** The marshaller which fills in the parameters of a single row. */
+	protected final Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller;
+	/** The callback to set the generated key. */
+	protected final Action2E<? super ResultSet, ? super T, ? extends SQLException> setAutoKey;
+	/** The maximum number of rows per statement. */
+	protected final int rows;
+	/** The pending items. */
+	protected final List<T> items = new ArrayList<>();
+	/** The statement text of a full chunk. */
+	protected String fullSql;
+	/** The total number of items added. */
+	protected long count;
+	/**
+	 * Constructor, sets the fields.
+	 * @param db the connection
+	 * @param prefix the statement prefix up to and including the VALUES keyword
+	 * @param row the parameter placeholders of a single row
+	 * @param columns the number of parameters of a single row
+	 * @param marshaller the marshaller which fills in the parameters of a single row
+	 * @param setAutoKey the callback to set the generated key
+	 */
+	public DBMultiRowInsert(@NonNull DB db, @NonNull String prefix, @NonNull String row, int columns,
+			@NonNull Action2E<? super PreparedStatement, ? super T, ? extends SQLException> marshaller,
+			@NonNull Action2E<? super ResultSet, ? super T, ? extends SQLException> setAutoKey) {
+		this.db = db;
+		this.prefix = prefix;
+		this.row = row;
+		this.columns = columns;
+		this.marshaller = marshaller;
+		this.setAutoKey = setAutoKey;
+		int n = db.batchSize > 0 ? db.batchSize : DEFAULT_ROWS;
+		this.rows = Math.max(1, Math.min(n, MAX_PARAMETERS / Math.max(1, columns)));
+	}
+	/**
+	 * Add an item, executing the statement if the chunk is full.
+	 * @param item the item
+	 * @throws SQLException on error
+	 */
+	public void add(T item) throws SQLException {
+		items.add(item);
+		count++;
+		if (items.size() == rows) {
+			flush();
+		}
+	}
+	/**
+	 * Add all items.
+	 * @param items the items
+	 * @throws SQLException on error
+	 */
+	public void addAll(@NonNull Iterable<? extends T> items) throws SQLException {
+		for (T t : items) {
+			add(t);
+		}
+	}
+	/**
+	 * Insert the pending items and assign their generated keys.
+	 * @throws SQLException on error
+	 */
+	public void flush() throws SQLException {
+		int n = items.size();
+		if (n == 0) {
+			return;
+		}
+		String sql;
+		if (n == rows) {
+			if (fullSql == null) {
+				fullSql = sql(n);
+			}
+			sql = fullSql;
+		} else {
+			sql = sql(n);
+		}
+		try (PreparedStatement pstmt = db.prepare(true, sql)) {
+			Offset h = new Offset(pstmt);
+			PreparedStatement shifted = (PreparedStatement)Proxy.newProxyInstance(
+					PreparedStatement.class.getClassLoader(), 
+					new Class<?>[] { PreparedStatement.class }, h);
+			for (int i = 0; i < n; i++) {
+				h.offset = i * columns;
+				marshaller.call(shifted, items.get(i));
+			}
+			pstmt.executeUpdate();
+			int i = 0;
+			try (ResultSet rs = pstmt.getGeneratedKeys()) {
+				while (i < n && rs.next()) {
+					setAutoKey.call(rs, items.get(i++));
+				}
+			}
+			if (i < n) {
+				throw new SQLException("Expected " + n + " generated keys but got " + i);
+			}
+		}
+		items.clear();
+		db.chunkExecuted();
+	}
+	/**
+	 * Build the statement text for the given number of rows.
+	 * @param n the row count
+	 * @return the statement text
+	 */
+	protected String sql(int n) {
+		StringBuilder b = new StringBuilder(prefix.length() + n * (row.length() + 2));
+		b.append(prefix);
+		for (int i = 0; i < n; i++) {
+			if (i > 0) {
+				b.append(", ");
+			}
+			b.append(row);
+		}
+		return b.toString();
+	}
+	/** @return the total number of items added */
+	public long count() {
+		return count;
+	}
+	/**
+	 * Shifts the parameter index of the parameter setter methods.
+	 */
+	protected static final class Offset implements InvocationHandler {
+		/** The actual statement. */
+		final PreparedStatement pstmt;
+		/** The current parameter offset. */
+		int offset;
+		/**
+		 * Constructor, sets the statement.
+		 * @param pstmt the statement
+		 */
+		Offset(PreparedStatement pstmt) {
+			this.pstmt = pstmt;
+		}
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			if (args != null && args.length >= 2 
+					&& method.getName().startsWith("set")
+					&& method.getParameterTypes()[0] == Integer.TYPE) {
+				args[0] = (Integer)args[0] + offset;
+			}
+			try {
+				return method.invoke(pstmt, args);
+			} catch (InvocationTargetException ex) {
+				throw ex.getCause();
+			}
+		}
+	}
+}
@@ -17,29 +17,56 @@
 package hu.akarnokd.utils.database;
 
 import hu.akarnokd.utils.generator.CodeCreator;
+import hu.akarnokd.utils.io.Closeables;
 import hu.akarnokd.utils.lang.Action1E;
 import hu.akarnokd.utils.lang.Action2E;
 import hu.akarnokd.utils.lang.Func1E;
 import hu.akarnokd.utils.lang.ReflectionUtils;
 import hu.akarnokd.utils.sequence.SequenceUtils;
+import ix.CloseableIterator;
 import ix.internal.operators.Interactive;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import rx.Observable;
+import rx.Scheduler.Worker;
+import rx.functions.Action0;
 import rx.functions.Action1;
 import rx.functions.Action2;
 import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.MapMaker;
+
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 
 /**
  * Routines that handle the annotated POJOs with simple auto-ids.
@@ -55,10 +82,20 @@ public class DBPojo<T> {
 	protected final String insertSql;
 	/** Insert query with all fields. */
 	protected final String insertExactSql;
+	/** The insert query up to and including the VALUES keyword. */
+	protected final String insertPrefix;
+	/** The parameter placeholders of a single inserted row. */
+	protected final String insertRow;
+	/** The number of parameters of a single inserted row. */
+	protected final int insertColumns;
 	/** Update query. */
 	protected final String updateSql;
 	/** Delete query. */
 	protected final String deleteSql;
+	/** Select the first page in key order. */
+	protected final String firstPageSql;
+	/** Select the page after a key in key order. */
+	protected final String nextPageSql;
 	/** Select callback. */
 	protected final Action2E<ResultSet, T, SQLException> select;
 	/** Insert callback. */
@@ -73,11 +110,38 @@ public class DBPojo<T> {
 	private Func1E<ResultSet, T, SQLException> sqlResult;
 	/** The table name. */
 	protected String table;
+	/** The record class. */
+	protected final Class<T> clazz;
+	/** The optional read-through cache of the records by key. */
+	@Nullable
+	protected volatile Cache<Object, T> cache;
+	/** The copy function of the cached records. */
+	protected Func1<T, T> copy;
+	/** Incremented on every eviction, the loads which overlap an eviction are not cached. */
+	protected final AtomicLong evictions = new AtomicLong();
+	/** The maximum number of keys in a single IN list, Oracle doesn't accept more than 1000. */
+	public static final int MAX_IN_KEYS = 1000;
+	/** The key column names. */
+	protected final List<String> keyColumns;
+	/** The key fields. */
+	protected final List<Field> keyFields;
+	/** The non-key fields in the order of the SET clause of the update. */
+	protected final List<Field> valueFields;
+	/** The non-key column names in the order of the SET clause of the update. */
+	protected final List<String> valueColumns;
+	/** The snapshot function of the non-key column values, null if dirty tracking is disabled. */
+	@Nullable
+	protected volatile Func1<T, Object[]> snapshot;
+	/** The column values of the records when they were loaded or last written. */
+	protected final ConcurrentMap<T, Object[]> snapshots = new MapMaker().weakKeys().makeMap();
+	/** The UPDATE statements per change set bitmask. */
+	protected final ConcurrentMap<Long, String> dirtyUpdates = new ConcurrentHashMap<>();
 	/**
 	 * Constructor, prepares the structure-dependant internal objects.
 	 * @param clazz the POJO class.
 	 */
 	public DBPojo(Class<T> clazz) {
+		this.clazz = clazz;
 		// Figure out the table name
 		SQLTable atable = clazz.getAnnotation(SQLTable.class);
 		table = atable != null ? atable.value() : clazz.getSimpleName();
@@ -97,29 +161,41 @@ public class DBPojo<T> {
 		List<String> ins = new ArrayList<>();
 		List<String> upd = new ArrayList<>();
 		List<String> upd2 = new ArrayList<>();
+		List<Field> ids = new ArrayList<>();
+		List<Field> vals = new ArrayList<>();
 		
 		for (Field f : fields) {
 			String fn = fieldName(f);
 
 			if (f.isAnnotationPresent(SQLID.class)) {
 				upd2.add(fn);
+				f.setAccessible(true);
+				ids.add(f);
 			} else {
 				upd.add(fn);
 				ins.add(fn);
+				vals.add(f);
 			}
 			sel.add(fn);
 		}
+		keyColumns = upd2;
+		keyFields = ids;
+		valueColumns = upd;
+		valueFields = vals;
 		
 		selectSql = "SELECT " + SequenceUtils.join(sel, ", ")
 				+ " FROM " + table + " ";
 		
 		selectOneSql = selectSql + " WHERE " + SequenceUtils.join(upd2, " AND ", "%s = ?");
 		
-		insertSql = "INSERT INTO " + table + " ("
+		insertPrefix = "INSERT INTO " + table + " ("
 				+ SequenceUtils.join(ins, ", ")
-				+ ") VALUES ("
+				+ ") VALUES ";
+		insertRow = "("
 				+ SequenceUtils.join(Interactive.repeat("?", ins.size()), ",")
 				+ ")";
+		insertColumns = ins.size();
+		insertSql = insertPrefix + insertRow;
 
 		insertExactSql = "INSERT INTO " + table + " ("
 				+ SequenceUtils.join(Interactive.concat(ins, upd2), ", ")
@@ -134,6 +210,19 @@ public class DBPojo<T> {
 		deleteSql = "DELETE FROM " + table + " WHERE "
 				 + SequenceUtils.join(upd2, " AND ", "%s = ?");
 		
+		String orderBy = " ORDER BY " + SequenceUtils.join(upd2, ", ");
+		firstPageSql = selectSql + orderBy;
+		List<String> after = new ArrayList<>();
+		for (int i = 0; i < upd2.size(); i++) {
+			List<String> cond = new ArrayList<>();
+			for (int j = 0; j < i; j++) {
+				cond.add(upd2.get(j) + " = ?");
+			}
+			cond.add(upd2.get(i) + " > ?");
+			after.add("(" + SequenceUtils.join(cond, " AND ") + ")");
+		}
+		nextPageSql = selectSql + "WHERE " + SequenceUtils.join(after, " OR ") + orderBy;
+		
 		this.create = CodeCreator.createConstructor(clazz);
 		
 		this.select = DBCodeCreator.createSelect(clazz);
@@ -146,6 +235,7 @@ public class DBPojo<T> {
 			public T call(ResultSet t) throws SQLException {
 				T r = create.call();
 				select.call(t, r);
+				track(r);
 				return r;
 			}
 		};
@@ -215,7 +305,65 @@ public class DBPojo<T> {
 	 */
 	@NonNull 
 	public T selectOne(@NonNull DB db, Object... keys) throws SQLException {
-		return db.querySingle(selectOneSql, sqlResult, keys);
+		Cache<Object, T> c = cache;
+		if (c == null) {
+			return db.querySingle(selectOneSql, sqlResult, keys);
+		}
+		Object key = cacheKey(keys.length == 1 ? keys[0] : keys);
+		T v = c.getIfPresent(key);
+		if (v != null) {
+			return track(copy.call(v));
+		}
+		long e = evictions.get();
+		v = db.querySingle(selectOneSql, sqlResult, keys);
+		if (v != null && cacheable(db, e)) {
+			c.put(key, copy.call(v));
+		}
+		return v;
+	}
+	/**
+	 * Select the records identified by the sequence of keys with
+	 * as few IN-list queries as the parameter limits allow.
+	 * <p>For composite keys, each key should be a List or array
+	 * of the key values in column order.</p>
+	 * @param db the database connection
+	 * @param keys the keys
+	 * @return the found records mapped by their key value, or
+	 * the List of key values for composite keys
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public Map<Object, T> selectMany(@NonNull DB db, @NonNull Iterable<?> keys) throws SQLException {
+		Map<Object, T> result = new LinkedHashMap<>();
+		Cache<Object, T> c = cache;
+		long e = evictions.get();
+		Iterable<?> missing = keys;
+		if (c != null) {
+			List<Object> m = new ArrayList<>();
+			for (Object k : keys) {
+				Object key = cacheKey(k);
+				T v = c.getIfPresent(key);
+				if (v != null) {
+					result.put(key, track(copy.call(v)));
+				} else {
+					m.add(k);
+				}
+			}
+			missing = m;
+		}
+		for (List<Object> params : keyChunks(missing)) {
+			String sql = selectSql + "WHERE " + keyIn(params.size() / keyColumns.size());
+			List<T> list = db.query(sql, sqlResult, params);
+			boolean put = c != null && cacheable(db, e);
+			for (T v : list) {
+				Object key = keyOf(v);
+				result.put(key, v);
+				if (put) {
+					c.put(key, copy.call(v));
+				}
+			}
+		}
+		return result;
 	}
 	
 	/**
@@ -248,13 +396,39 @@ public class DBPojo<T> {
 	}
 	/**
 	 * Update a single record.
+	 * <p>With dirty tracking, a record unchanged since it was loaded or its last
+	 * committed write is not written and 0 is returned.</p>
 	 * @param db the database connection
 	 * @param value the record
-	 * @return the update count, 1 indicating success
+	 * @return the update count, 1 indicating success, 0 if the record is missing or was unchanged
 	 * @throws SQLException on error
 	 */
 	public int update(@NonNull DB db, T value) throws SQLException {
-		return db.update(updateSql, update, value);
+		Func1<T, Object[]> s = snapshot;
+		if (s == null) {
+			try {
+				return db.update(updateSql, update, value);
+			} finally {
+				evict(db, value);
+			}
+		}
+		Object[] now = s.call(value);
+		long mask = changes(value, now);
+		if (mask == 0L) {
+			return 0;
+		}
+		int n;
+		try {
+			if (mask == -1L) {
+				n = db.update(updateSql, update, value);
+			} else {
+				n = db.update(updateSql(mask), dirtyParams(value, now, mask));
+			}
+		} finally {
+			evict(db, value);
+		}
+		track(db, value, now);
+		return n;
 	}
 	/**
 	 * Insert the value and return the generated long identifier.
@@ -264,7 +438,9 @@ public class DBPojo<T> {
 	 * @throws SQLException on error
 	 */
 	public long insert(@NonNull DB db, T value) throws SQLException {
-		return db.insertAuto(insertSql, insert, value);
+		long id = db.insertAuto(insertSql, insert, value);
+		track(db, value);
+		return id;
 	}
 	/**
 	 * Insert the value with all fields used in the SQL statement.
@@ -275,23 +451,23 @@ public class DBPojo<T> {
 	 * @throws SQLException on error
 	 */
 	public void insertAll(@NonNull DB db, T value) throws SQLException {
-		db.update(insertExactSql, update, value);
+		try {
+			db.update(insertExactSql, update, value);
+		} finally {
+			evict(db, value);
+		}
+		track(db, value);
 	}
 	/**
 	 * Insert a sequence of values into an auto-increment table without
 	 * retrieveing the new identifiers.
+	 * <p>The values are executed in chunks of the batch size of the connection.</p>
 	 * @param db the database connection
 	 * @param values the values to insert
 	 * @throws SQLException on error
 	 */
 	public void insertBatch(@NonNull DB db, Iterable<T> values) throws SQLException {
-		try (PreparedStatement pstmt = db.prepare(insertSql)) {
-			for (T v : values) {
-				insert.call(pstmt, v);
-				pstmt.addBatch();
-			}
-			pstmt.executeBatch();
-		}
+		db.save(insertSql, values, insert);
 	}
 	/**
 	 * Deletes the record which is identified through the value.
@@ -304,6 +480,8 @@ public class DBPojo<T> {
 		try (PreparedStatement pstmt = db.prepare(deleteSql)) {
 			delete.call(pstmt, value);
 			return pstmt.executeUpdate();
+		} finally {
+			evict(db, value);
 		}
 	}
 	/**
@@ -314,7 +492,585 @@ public class DBPojo<T> {
 	 * @throws SQLException on error
 	 */
 	public int delete(@NonNull DB db, Object... keys) throws SQLException {
-		return db.update(deleteSql, keys);
+		try {
+			return db.update(deleteSql, keys);
+		} finally {
+			if (cache != null) {
+				evictKey(db, cacheKey(keys.length == 1 ? keys[0] : keys));
+			}
+		}
+	}
+	/**
+	 * Deletes the records identified by the sequence of keys with
+	 * as few IN-list statements as the parameter limits allow.
+	 * <p>For composite keys, each key should be a List or array
+	 * of the key values in column order.</p>
+	 * @param db the database connection
+	 * @param keys the keys
+	 * @return the update count
+	 * @throws SQLException on error
+	 */
+	public int deleteMany(@NonNull DB db, @NonNull Iterable<?> keys) throws SQLException {
+		// the keys may be iterable only once
+		List<Object> keyList = new ArrayList<>();
+		List<Object> cacheKeys = new ArrayList<>();
+		for (Object k : keys) {
+			keyList.add(k);
+			if (cache != null) {
+				cacheKeys.add(cacheKey(k));
+			}
+		}
+		int count = 0;
+		try {
+			for (List<Object> params : keyChunks(keyList)) {
+				count += db.update("DELETE FROM " + table + " WHERE " 
+						+ keyIn(params.size() / keyColumns.size()), params);
+			}
+		} finally {
+			for (Object k : cacheKeys) {
+				evictKey(db, k);
+			}
+		}
+		return count;
+	}
+	/**
+	 * Inserts or updates the records depending on whether their key exists, 
+	 * with the upsert statement of the dialect of the connection.
+	 * <p>The records are executed in chunks of the batch size of the connection.
+	 * The keys are written as they are, therefore it doesn't work with auto-generated keys.</p>
+	 * @param db the database connection
+	 * @param items the sequence of items
+	 * @throws SQLException on error, SQLFeatureNotSupportedException if the
+	 * dialect has no upsert statement
+	 * @see DB#getDialect()
+	 */
+	public void upsert(@NonNull DB db, @NonNull Iterable<? extends T> items) throws SQLException {
+		String sql = upsertSql(db.getDialect());
+		List<T> written = new ArrayList<>();
+		boolean success = false;
+		try (PreparedStatement pstmt = db.prepare(sql)) {
+			DBBatch<T> batch = new DBBatch<>(db, pstmt, update);
+			for (T v : items) {
+				batch.add(v);
+				if (cache != null || snapshot != null) {
+					written.add(v);
+				}
+			}
+			batch.flush();
+			success = true;
+		} finally {
+			for (T v : written) {
+				evict(db, v);
+			}
+		}
+		if (success) {
+			for (T v : written) {
+				track(db, v);
+			}
+		}
+	}
+	/**
+	 * Creates the upsert statement of the given dialect, which takes the
+	 * non-key values followed by the key values as parameters.
+	 * @param dialect the dialect
+	 * @return the statement
+	 * @throws SQLFeatureNotSupportedException if the dialect has no upsert statement
+	 */
+	@NonNull
+	public String upsertSql(@NonNull DB.Dialect dialect) throws SQLFeatureNotSupportedException {
+		if (keyColumns.isEmpty()) {
+			throw new IllegalStateException("No @SQLID fields in " + table);
+		}
+		List<String> columns = new ArrayList<>(valueColumns);
+		columns.addAll(keyColumns);
+		String cols = SequenceUtils.join(columns, ", ");
+		String params = SequenceUtils.join(Interactive.repeat("?", columns.size()), ", ");
+		switch (dialect) {
+		case MYSQL:
+			return "INSERT INTO " + table + " (" + cols + ") VALUES (" + params + ") ON DUPLICATE KEY UPDATE "
+					+ (valueColumns.isEmpty() 
+							? SequenceUtils.join(keyColumns, ", ", "%1$s = %1$s") 
+							: SequenceUtils.join(valueColumns, ", ", "%1$s = VALUES(%1$s)"));
+		case POSTGRESQL:
+		case SQLITE:
+			return "INSERT INTO " + table + " (" + cols + ") VALUES (" + params + ") ON CONFLICT ("
+					+ SequenceUtils.join(keyColumns, ", ") + ") "
+					+ (valueColumns.isEmpty() 
+							? "DO NOTHING" 
+							: "DO UPDATE SET " + SequenceUtils.join(valueColumns, ", ", "%1$s = EXCLUDED.%1$s"));
+		case H2:
+			return "MERGE INTO " + table + " (" + cols + ") KEY (" 
+					+ SequenceUtils.join(keyColumns, ", ") + ") VALUES (" + params + ")";
+		case ORACLE:
+			return merge("(SELECT " + SequenceUtils.join(columns, ", ", "? %s") + " FROM DUAL) s", "");
+		case SQLSERVER:
+			return merge("(VALUES (" + params + ")) s (" + cols + ")", ";");
+		case HSQL:
+		case DB2:
+			return merge("(VALUES (" + params + ")) s (" + cols + ")", "");
+		default:
+			throw new SQLFeatureNotSupportedException("Upsert is not supported by the dialect " + dialect);
+		}
+	}
+	/**
+	 * Creates a standard MERGE statement.
+	 * @param source the source row expression with the alias s
+	 * @param terminator the statement terminator
+	 * @return the statement
+	 */
+	protected String merge(String source, String terminator) {
+		StringBuilder b = new StringBuilder();
+		b.append("MERGE INTO ").append(table).append(" d USING ").append(source)
+		.append(" ON (").append(SequenceUtils.join(keyColumns, " AND ", "d.%1$s = s.%1$s")).append(")");
+		if (!valueColumns.isEmpty()) {
+			b.append(" WHEN MATCHED THEN UPDATE SET ")
+			.append(SequenceUtils.join(valueColumns, ", ", "d.%1$s = s.%1$s"));
+		}
+		List<String> columns = new ArrayList<>(valueColumns);
+		columns.addAll(keyColumns);
+		b.append(" WHEN NOT MATCHED THEN INSERT (").append(SequenceUtils.join(columns, ", "))
+		.append(") VALUES (").append(SequenceUtils.join(columns, ", ", "s.%s")).append(")")
+		.append(terminator);
+		return b.toString();
+	}
+	/**
+	 * Enables the read-through cache of selectOne and selectMany, keyed by the 
+	 * SQLID field values.
+	 * <p>The cache holds private copies of the records and hands out copies, so
+	 * modifying a returned record doesn't affect the cached one. The updates and
+	 * deletes of this instance invalidate the affected records when executed and
+	 * again when their transaction ends; changes made by other means should be
+	 * signalled via {@link #invalidate(Object)} or are visible once the entries expire.
+	 * Records loaded through a connection with {@link DB#hasUncommittedChanges() uncommitted changes}
+	 * or while an eviction happened are not cached.</p>
+	 * @param maximumSize the maximum number of cached records, zero or negative means unbounded
+	 * @param ttl the time to live of the entries after loading, zero or negative means no expiration
+	 * @param unit the time unit
+	 */
+	public void enableCache(long maximumSize, long ttl, @NonNull TimeUnit unit) {
+		if (keyFields.isEmpty()) {
+			throw new IllegalStateException("No @SQLID fields in " + table);
+		}
+		copy = DBCodeCreator.createCopy(clazz);
+		CacheBuilder<Object, Object> b = CacheBuilder.newBuilder().recordStats();
+		if (maximumSize > 0) {
+			b.maximumSize(maximumSize);
+		}
+		if (ttl > 0) {
+			b.expireAfterWrite(ttl, unit);
+		}
+		cache = b.build();
+	}
+	/**
+	 * Disables and clears the cache.
+	 */
+	public void disableCache() {
+		cache = null;
+	}
+	/**
+	 * Returns the hit, miss and eviction statistics of the cache.
+	 * @return the statistics, all zero if the cache is not enabled
+	 */
+	@NonNull
+	public CacheStats cacheStats() {
+		Cache<Object, T> c = cache;
+		if (c == null) {
+			return new CacheStats(0, 0, 0, 0, 0, 0);
+		}
+		return c.stats();
+	}
+	/**
+	 * Removes the record with the given key from the cache.
+	 * @param key the key value, or a List or array of the key values for composite keys
+	 */
+	public void invalidate(@NonNull Object key) {
+		Cache<Object, T> c = cache;
+		if (c != null) {
+			evictions.incrementAndGet();
+			c.invalidate(cacheKey(key));
+		}
+	}
+	/**
+	 * Removes all records from the cache.
+	 */
+	public void invalidateAll() {
+		Cache<Object, T> c = cache;
+		if (c != null) {
+			evictions.incrementAndGet();
+			c.invalidateAll();
+		}
+	}
+	/**
+	 * Removes the cached version of the given record now and
+	 * once the transaction of the connection ends.
+	 * @param db the connection which wrote the record
+	 * @param value the record
+	 */
+	protected void evict(DB db, T value) {
+		if (cache != null) {
+			evictKey(db, keyOf(value));
+		}
+	}
+	/**
+	 * Removes the cached record of the key now and once the transaction
+	 * of the connection ends, so concurrent loads of the previously committed
+	 * record don't stay in the cache.
+	 * @param db the connection which wrote the record
+	 * @param key the key as returned by {@link #keyOf(Object)}
+	 */
+	protected void evictKey(DB db, final Object key) {
+		final Cache<Object, T> c = cache;
+		if (c != null) {
+			evictions.incrementAndGet();
+			c.invalidate(key);
+			Action0 a = new Action0() {
+				@Override
+				public void call() {
+					evictions.incrementAndGet();
+					c.invalidate(key);
+				}
+			};
+			db.afterCommit(a);
+			db.afterRollback(a);
+		}
+	}
+	/**
+	 * Checks if the records loaded through the connection may be cached.
+	 * @param db the connection
+	 * @param evictionsBefore the eviction count before the load
+	 * @return true if the connection has no uncommitted changes and no eviction happened since
+	 */
+	protected boolean cacheable(DB db, long evictionsBefore) {
+		return !db.hasUncommittedChanges() && evictions.get() == evictionsBefore;
+	}
+	/**
+	 * Converts a key parameter into the form returned by {@link #keyOf(Object)}.
+	 * @param key the key value, or a List or array of the key values for composite keys
+	 * @return the cache key
+	 */
+	protected Object cacheKey(Object key) {
+		int kc = keyFields.size();
+		if (kc == 1) {
+			return keyValue(keyFields.get(0), key);
+		}
+		List<?> values = key instanceof Object[] ? Arrays.asList((Object[])key) : (List<?>)key;
+		if (values.size() != kc) {
+			throw new IllegalArgumentException("Composite key " + values + " should have " + kc + " values");
+		}
+		Object[] result = new Object[kc];
+		for (int i = 0; i < kc; i++) {
+			result[i] = keyValue(keyFields.get(i), values.get(i));
+		}
+		return Arrays.asList(result);
+	}
+	/**
+	 * Converts a numeric key parameter to the boxed type of the key field.
+	 * @param f the key field
+	 * @param value the parameter value
+	 * @return the key value
+	 */
+	protected static Object keyValue(Field f, Object value) {
+		if (value instanceof Number) {
+			Class<?> t = f.getType();
+			Number n = (Number)value;
+			if (t == Long.TYPE || t == Long.class) {
+				return n.longValue();
+			}
+			if (t == Integer.TYPE || t == Integer.class) {
+				return n.intValue();
+			}
+			if (t == Short.TYPE || t == Short.class) {
+				return n.shortValue();
+			}
+			if (t == Byte.TYPE || t == Byte.class) {
+				return n.byteValue();
+			}
+		}
+		return value;
+	}
+	/**
+	 * Enables the dirty tracking of the records loaded or written through this instance.
+	 * <p>The non-key column values are captured when a record is loaded or its
+	 * write is committed, then update and save skip the unchanged records and set
+	 * only the changed columns of the others. Records without a snapshot are updated
+	 * in full; a rolled back write drops the snapshot of the record.</p>
+	 * <p>The snapshots are held weakly by the record identity.</p>
+	 */
+	public void enableDirtyTracking() {
+		if (keyFields.isEmpty()) {
+			throw new IllegalStateException("No @SQLID fields in " + table);
+		}
+		if (valueFields.size() > 63) {
+			throw new IllegalStateException("Dirty tracking supports up to 63 non-key columns: " + table);
+		}
+		snapshot = DBCodeCreator.createSnapshot(clazz);
+	}
+	/**
+	 * Disables the dirty tracking and clears the snapshots.
+	 */
+	public void disableDirtyTracking() {
+		snapshot = null;
+		snapshots.clear();
+	}
+	/**
+	 * Captures the column values of the record if the dirty tracking is enabled.
+	 * @param value the record
+	 * @return the record
+	 */
+	protected T track(T value) {
+		Func1<T, Object[]> s = snapshot;
+		if (s != null) {
+			snapshots.put(value, s.call(value));
+		}
+		return value;
+	}
+	/**
+	 * Captures the column values of a written record and makes them its snapshot
+	 * once the transaction commits, or drops its snapshot if the transaction rolls back.
+	 * @param db the connection which wrote the record
+	 * @param value the record
+	 */
+	protected void track(DB db, T value) {
+		Func1<T, Object[]> s = snapshot;
+		if (s != null) {
+			track(db, value, s.call(value));
+		}
+	}
+	/**
+	 * Makes the column values the snapshot of the written record once the
+	 * transaction commits, or drops its snapshot if the transaction rolls back.
+	 * @param db the connection which wrote the record
+	 * @param value the record
+	 * @param now the column values written
+	 */
+	protected void track(DB db, final T value, final Object[] now) {
+		db.afterCommit(new Action0() {
+			@Override
+			public void call() {
+				snapshots.put(value, now);
+			}
+		});
+		db.afterRollback(new Action0() {
+			@Override
+			public void call() {
+				snapshots.remove(value);
+			}
+		});
+	}
+	/**
+	 * Checks if the record was changed since it was loaded or written.
+	 * @param value the record
+	 * @return true if the record was changed, isn't tracked or the dirty tracking is disabled
+	 */
+	public boolean isDirty(@NonNull T value) {
+		Func1<T, Object[]> s = snapshot;
+		return s == null || changes(value, s.call(value)) != 0L;
+	}
+	/**
+	 * Computes the bitmask of the changed non-key columns.
+	 * @param value the record
+	 * @param now the current column values of the record
+	 * @return the change set bitmask, -1 if the record has no snapshot
+	 */
+	protected long changes(T value, Object[] now) {
+		Object[] before = snapshots.get(value);
+		if (before == null) {
+			return -1L;
+		}
+		long mask = 0L;
+		for (int i = 0; i < now.length; i++) {
+			if (!same(before[i], now[i])) {
+				mask |= 1L << i;
+			}
+		}
+		return mask;
+	}
+	/**
+	 * Compares two column values.
+	 * @param a the first value
+	 * @param b the second value
+	 * @return true if they are equal
+	 */
+	protected static boolean same(Object a, Object b) {
+		if (a == b) {
+			return true;
+		}
+		if (a == null || b == null) {
+			return false;
+		}
+		if (a instanceof byte[] && b instanceof byte[]) {
+			return Arrays.equals((byte[])a, (byte[])b);
+		}
+		return a.equals(b);
+	}
+	/**
+	 * Returns the UPDATE statement setting only the columns of the change set.
+	 * @param mask the change set bitmask
+	 * @return the statement
+	 */
+	protected String updateSql(long mask) {
+		String sql = dirtyUpdates.get(mask);
+		if (sql == null) {
+			List<String> set = new ArrayList<>();
+			for (int i = 0; i < valueColumns.size(); i++) {
+				if ((mask & (1L << i)) != 0) {
+					set.add(valueColumns.get(i));
+				}
+			}
+			sql = "UPDATE " + table + " SET "
+					+ SequenceUtils.join(set, ", ", "%s = ?")
+					+ " WHERE " + SequenceUtils.join(keyColumns, " AND ", "%s = ?");
+			dirtyUpdates.putIfAbsent(mask, sql);
+		}
+		return sql;
+	}
+	/**
+	 * Returns the parameters of the change set update: the changed values
+	 * followed by the key values.
+	 * @param value the record
+	 * @param now the current column values
+	 * @param mask the change set bitmask
+	 * @return the parameters
+	 */
+	protected List<Object> dirtyParams(T value, Object[] now, long mask) {
+		List<Object> params = new ArrayList<>();
+		for (int i = 0; i < now.length; i++) {
+			if ((mask & (1L << i)) != 0) {
+				Object o = now[i];
+				if (o == null) {
+					Class<?> c = valueFields.get(i).getType();
+					o = c.isEnum() ? Integer.class : c;
+				}
+				params.add(o);
+			}
+		}
+		Object key = keyOf(value);
+		if (keyFields.size() == 1) {
+			params.add(key);
+		} else {
+			params.addAll((List<?>)key);
+		}
+		return params;
+	}
+	/**
+	 * Creates the statement marshaller of the change set update.
+	 * @param mask the change set bitmask
+	 * @return the marshaller
+	 */
+	protected Action2E<PreparedStatement, T, SQLException> dirtyUpdate(final long mask) {
+		return new Action2E<PreparedStatement, T, SQLException>() {
+			@Override
+			public void call(PreparedStatement t, T u) throws SQLException {
+				DB.setParams(t, dirtyParams(u, snapshot.call(u), mask));
+			}
+		};
+	}
+	/**
+	 * Returns the key of the record.
+	 * @param value the record
+	 * @return the key value or the List of key values for composite keys
+	 */
+	public Object keyOf(@NonNull T value) {
+		try {
+			if (keyFields.size() == 1) {
+				return keyFields.get(0).get(value);
+			}
+			Object[] result = new Object[keyFields.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = keyFields.get(i).get(value);
+			}
+			return Arrays.asList(result);
+		} catch (IllegalAccessException ex) {
+			throw new IllegalArgumentException(ex);
+		}
+	}
+	/**
+	 * Sets the generated key on the single integral key field of the record.
+	 * @param value the record
+	 * @param id the generated key
+	 */
+	protected void setGeneratedKey(@NonNull T value, long id) {
+		if (keyFields.size() != 1) {
+			throw new IllegalStateException("Generated keys require a single key column: " + table);
+		}
+		Field f = keyFields.get(0);
+		try {
+			f.set(value, keyValue(f, id));
+		} catch (IllegalAccessException ex) {
+			throw new IllegalArgumentException(ex);
+		}
+	}
+	/**
+	 * Splits the distinct keys into parameter lists of the IN-list queries.
+	 * <p>The chunks are padded to a power of two number of keys by
+	 * repeating the last key so only a few different statements are prepared.</p>
+	 * @param keys the keys
+	 * @return the list of flattened parameter lists
+	 */
+	protected List<List<Object>> keyChunks(Iterable<?> keys) {
+		int kc = keyColumns.size();
+		if (kc == 0) {
+			throw new IllegalStateException("No @SQLID fields in " + table);
+		}
+		int max = Math.max(1, Math.min(MAX_IN_KEYS, DBMultiRowInsert.MAX_PARAMETERS / kc));
+		List<List<Object>> result = new ArrayList<>();
+		List<Object> params = new ArrayList<>();
+		Set<Object> distinct = new LinkedHashSet<>();
+		for (Object k : keys) {
+			distinct.add(k);
+		}
+		int n = 0;
+		for (Object k : distinct) {
+			if (kc == 1) {
+				params.add(k);
+			} else {
+				List<?> values = k instanceof Object[] ? Arrays.asList((Object[])k) : (List<?>)k;
+				if (values.size() != kc) {
+					throw new IllegalArgumentException("Composite key " + values + " should have " + kc + " values");
+				}
+				params.addAll(values);
+			}
+			if (++n == max) {
+				result.add(params);
+				params = new ArrayList<>();
+				n = 0;
+			}
+		}
+		if (n > 0) {
+			int m = Math.min(max, Integer.highestOneBit(n - 1) << 1);
+			List<Object> last = params.subList(params.size() - kc, params.size());
+			List<Object> padding = new ArrayList<>(last);
+			for (; n < m; n++) {
+				params.addAll(padding);
+			}
+			result.add(params);
+		}
+		return result;
+	}
+	/**
+	 * Creates the IN-list condition on the key columns for the given number of keys.
+	 * @param n the number of keys
+	 * @return the condition
+	 */
+	protected String keyIn(int n) {
+		StringBuilder b = new StringBuilder();
+		String row;
+		if (keyColumns.size() == 1) {
+			b.append(keyColumns.get(0));
+			row = "?";
+		} else {
+			b.append("(").append(SequenceUtils.join(keyColumns, ", ")).append(")");
+			row = "(" + SequenceUtils.join(Interactive.repeat("?", keyColumns.size()), ", ") + ")";
+		}
+		b.append(" IN (");
+		for (int i = 0; i < n; i++) {
+			if (i > 0) {
+				b.append(", ");
+			}
+			b.append(row);
+		}
+		b.append(")");
+		return b.toString();
 	}
 	/**
 	 * Deletes the record which match the given WHERE clause and parameters.
@@ -325,7 +1081,11 @@ public class DBPojo<T> {
 	 * @throws SQLException on error
 	 */
 	public int deleteSome(@NonNull DB db, CharSequence where, Object... params) throws SQLException {
-		return db.update("DELETE FROM " + table + " WHERE " + where, params);
+		try {
+			return db.update("DELETE FROM " + table + " WHERE " + where, params);
+		} finally {
+			invalidateAll();
+		}
 	}
 	/**
 	 * Deletes the record which match the given WHERE clause and parameters.
@@ -336,13 +1096,18 @@ public class DBPojo<T> {
 	 * @throws SQLException on error
 	 */
 	public int deleteSome(@NonNull DB db, CharSequence where, Iterable<?> params) throws SQLException {
-		return db.update("DELETE FROM " + table + " WHERE " + where, params);
+		try {
+			return db.update("DELETE FROM " + table + " WHERE " + where, params);
+		} finally {
+			invalidateAll();
+		}
 	}
 	/**
 	 * Saves multiple items and uses a callback to distinguish between
 	 * items to update or insert, and uses a callback to update the auto-generated
 	 * long identifier on the same record.
-	 * <p>Updates are performed in one batch but inserts are done one-by-one
+	 * <p>Updates are performed in chunks of the batch size of the connection. Inserts
+	 * are batched the way {@link DB#getKeyBatching()} tells, or done one-by-one
 	 * as some databases don't support batch auto-ids.</p>
 	 * @param db the database connection
 	 * @param items the sequence of items
@@ -353,23 +1118,100 @@ public class DBPojo<T> {
 	public void save(@NonNull DB db, 
 			@NonNull Iterable<? extends T> items, 
 			@NonNull Func1<? super T, Boolean> insert,
-			@NonNull Action2<? super T, ? super Long> setId) throws SQLException {
-		try (PreparedStatement pstmt = db.prepare(updateSql)) {
+			@NonNull final Action2<? super T, ? super Long> setId) throws SQLException {
+		DB.KeyBatching kb = db.getKeyBatching();
+		Action2E<ResultSet, T, SQLException> setKey = new Action2E<ResultSet, T, SQLException>() {
+			@Override
+			public void call(ResultSet t, T u) throws SQLException {
+				setId.call(u, t.getLong(1));
+			}
+		};
+		Func1<T, Object[]> s = snapshot;
+		List<T> updated = new ArrayList<>();
+		List<T> inserted = new ArrayList<>();
+		Map<Long, DBBatch<T>> dirty = new LinkedHashMap<>();
+		List<PreparedStatement> dirtyStatements = new ArrayList<>();
+		boolean success = false;
+		try (PreparedStatement pstmt = db.prepare(updateSql);
+				PreparedStatement pstmtInsert = kb == DB.KeyBatching.BATCH ? db.prepare(true, insertSql) : null) {
+			DBBatch<T> batch = new DBBatch<>(db, pstmt, update);
+			DBBatch<T> inserts = null;
+			DBMultiRowInsert<T> multiInserts = null;
+			if (pstmtInsert != null) {
+				inserts = new DBBatch<>(db, pstmtInsert, this.insert, setKey);
+			} else
+			if (kb == DB.KeyBatching.MULTI_ROW) {
+				multiInserts = new DBMultiRowInsert<>(db, insertPrefix, insertRow, insertColumns, this.insert, setKey);
+			}
 			for (T v : items) {
 				if (insert.call(v)) {
-					long id = db.insertAuto(insertSql, this.insert, v);
-					setId.call(v, id);
+					if (s != null) {
+						inserted.add(v);
+					}
+					if (inserts != null) {
+						inserts.add(v);
+					} else
+					if (multiInserts != null) {
+						multiInserts.add(v);
+					} else {
+						long id = db.insertAuto(insertSql, this.insert, v);
+						setId.call(v, id);
+					}
 				} else {
-					update.call(pstmt, v);
-					pstmt.addBatch();
+					long mask = s != null ? changes(v, s.call(v)) : -1L;
+					if (mask == -1L) {
+						batch.add(v);
+					} else
+					if (mask != 0L) {
+						DBBatch<T> b = dirty.get(mask);
+						if (b == null) {
+							PreparedStatement ps = db.prepare(updateSql(mask));
+							dirtyStatements.add(ps);
+							b = new DBBatch<>(db, ps, dirtyUpdate(mask));
+							dirty.put(mask, b);
+						}
+						b.add(v);
+					} else {
+						continue;
+					}
+					if (cache != null || s != null) {
+						updated.add(v);
+					}
 				}
 			}
-			pstmt.executeBatch();
+			if (inserts != null) {
+				inserts.flush();
+			}
+			if (multiInserts != null) {
+				multiInserts.flush();
+			}
+			batch.flush();
+			for (DBBatch<T> b : dirty.values()) {
+				b.flush();
+			}
+			success = true;
+		} finally {
+			for (PreparedStatement ps : dirtyStatements) {
+				Closeables.closeSilently(ps);
+			}
+			for (T v : updated) {
+				evict(db, v);
+			}
+		}
+		if (success) {
+			for (T v : updated) {
+				track(db, v);
+			}
+			for (T v : inserted) {
+				track(db, v);
+			}
 		}
 	}
 	/**
 	 * Saves multiple items and uses a callback to distinguish between
 	 * items to update or insert.
+	 * <p>Both the inserts and updates are executed in chunks of the batch size
+	 * of the connection.</p>
 	 * @param db the database connection
 	 * @param items the sequence of items
 	 * @param insert predicate to tell to insert
@@ -378,19 +1220,27 @@ public class DBPojo<T> {
 	public void saveExact(@NonNull DB db, 
 			@NonNull Iterable<? extends T> items, 
 			@NonNull Func1<? super T, Boolean> insert) throws SQLException {
+		List<T> written = new ArrayList<>();
 		try (PreparedStatement pstmtUpdate = db.prepare(updateSql);
 				PreparedStatement pstmtInsert = db.prepare(insertExactSql)) {
+			DBBatch<T> inserts = new DBBatch<>(db, pstmtInsert, update);
+			DBBatch<T> updates = new DBBatch<>(db, pstmtUpdate, update);
 			for (T v : items) {
 				if (insert.call(v)) {
-					update.call(pstmtInsert, v);
-					pstmtInsert.addBatch();
+					inserts.add(v);
 				} else {
-					update.call(pstmtUpdate, v);
-					pstmtUpdate.addBatch();
+					updates.add(v);
+				}
+				if (cache != null) {
+					written.add(v);
 				}
 			}
-			pstmtInsert.executeBatch();
-			pstmtUpdate.executeBatch();
+			inserts.flush();
+			updates.flush();
+		} finally {
+			for (T v : written) {
+				evict(db, v);
+			}
 		}
 	}
 	/**
@@ -496,4 +1346,295 @@ public class DBPojo<T> {
 	public void selectSome(@NonNull DB db, @NonNull Action1<? super T> consumer, String where, Iterable<?> params) throws SQLException {
 		db.query(selectSql + " WHERE " + where, wrap(consumer), params);
 	}
+	/**
+	 * Returns all records by scanning key ranges in parallel, each
+	 * on its own connection of the given database.
+	 * <p>The records are returned in the order of the key ranges.</p>
+	 * @param databaseId the database identifier, should have a pool of at least
+	 * parallelism connections
+	 * @param parallelism the number of key ranges scanned concurrently
+	 * @return the list of records
+	 * @throws SQLException on error
+	 * @see #partitions(DB, int)
+	 */
+	@NonNull
+	public List<T> selectAllParallel(@NonNull String databaseId, int parallelism) throws SQLException {
+		final long[] bounds = partitions(databaseId, parallelism);
+		final List<List<T>> parts = new ArrayList<>();
+		for (int i = 1; i < bounds.length; i++) {
+			parts.add(new ArrayList<T>());
+		}
+		scanPartitions(databaseId, bounds, new Action2<Integer, T>() {
+			@Override
+			public void call(Integer t1, T t2) {
+				parts.get(t1).add(t2);
+			}
+		});
+		List<T> result = new ArrayList<>();
+		for (List<T> p : parts) {
+			result.addAll(p);
+		}
+		return result;
+	}
+	/**
+	 * Scans all records by key ranges in parallel, each on its own 
+	 * connection of the given database, and hands them over to the consumer.
+	 * <p>The consumer is called concurrently from the scanning threads.</p>
+	 * @param databaseId the database identifier, should have a pool of at least
+	 * parallelism connections
+	 * @param parallelism the number of key ranges scanned concurrently
+	 * @param consumer the consumer callback
+	 * @throws SQLException on error
+	 * @see #partitions(DB, int)
+	 */
+	public void selectAllParallel(@NonNull String databaseId, int parallelism, 
+			@NonNull final Action1<? super T> consumer) throws SQLException {
+		scanPartitions(databaseId, partitions(databaseId, parallelism), new Action2<Integer, T>() {
+			@Override
+			public void call(Integer t1, T t2) {
+				consumer.call(t2);
+			}
+		});
+	}
+	/**
+	 * Computes the key range boundaries on a connection of the given database.
+	 * @param databaseId the database identifier
+	 * @param parallelism the number of ranges
+	 * @return the boundaries
+	 * @throws SQLException on error
+	 */
+	protected long[] partitions(@NonNull String databaseId, int parallelism) throws SQLException {
+		try (DB db = DB.connect(databaseId)) {
+			return partitions(db, parallelism);
+		} catch (IOException ex) {
+			throw new SQLException(ex);
+		}
+	}
+	/**
+	 * Splits the key range between the minimum and maximum key
+	 * into at most the given number of equal width ranges.
+	 * <p>The range i covers the keys between bounds[i] inclusive and
+	 * bounds[i + 1] exclusive, except the last which includes its upper bound.
+	 * Override this to use sampled boundaries for skewed keys.</p>
+	 * @param db the database connection
+	 * @param parallelism the number of ranges
+	 * @return the range boundaries, empty if the table is empty
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	protected long[] partitions(@NonNull DB db, int parallelism) throws SQLException {
+		String k = partitionKey();
+		long[] minMax = db.querySingle("SELECT MIN(" + k + "), MAX(" + k + ") FROM " + table, 
+				new Func1E<ResultSet, long[], SQLException>() {
+			@Override
+			public long[] call(ResultSet t) throws SQLException {
+				long min = t.getLong(1);
+				if (t.wasNull()) {
+					return null;
+				}
+				return new long[] { min, t.getLong(2) };
+			}
+		});
+		if (minMax == null) {
+			return new long[0];
+		}
+		long lo = minMax[0];
+		long hi = minMax[1];
+		long span = hi - lo;
+		int n = Math.max(1, parallelism);
+		if (span < 0) {
+			// overflow
+			n = 1;
+		} else
+		if (span < n) {
+			n = (int)span + 1;
+		}
+		long[] bounds = new long[n + 1];
+		long step = span / n;
+		long rem = span % n;
+		for (int i = 0; i < n; i++) {
+			bounds[i] = lo + step * i + Math.min(i, rem);
+		}
+		bounds[n] = hi;
+		return bounds;
+	}
+	/**
+	 * Returns the single integral key column used for partitioning.
+	 * @return the column name
+	 */
+	protected String partitionKey() {
+		if (keyFields.size() != 1) {
+			throw new IllegalStateException("Partitioned scans require a single key column: " + table);
+		}
+		Class<?> c = keyFields.get(0).getType();
+		if (c != Long.TYPE && c != Integer.TYPE && c != Short.TYPE 
+				&& c != Long.class && c != Integer.class && c != Short.class) {
+			throw new IllegalStateException("Partitioned scans require an integral key: " + table);
+		}
+		return keyColumns.get(0);
+	}
+	/**
+	 * Scans the key ranges on their own connection and background thread.
+	 * @param databaseId the database identifier
+	 * @param bounds the range boundaries
+	 * @param consumer the consumer receiving the range index and the record
+	 * @throws SQLException the first error of the scans, after all of them completed
+	 */
+	protected void scanPartitions(@NonNull final String databaseId, long[] bounds, 
+			@NonNull final Action2<Integer, T> consumer) throws SQLException {
+		int n = bounds.length - 1;
+		if (n <= 0) {
+			return;
+		}
+		String k = partitionKey();
+		final String range = selectSql + "WHERE " + k + " >= ? AND " + k + " < ?";
+		final String last = selectSql + "WHERE " + k + " >= ? AND " + k + " <= ?";
+		List<FutureTask<Void>> tasks = new ArrayList<>();
+		List<Worker> workers = new ArrayList<>();
+		try {
+			for (int i = 0; i < n; i++) {
+				final int index = i;
+				final String sql = i == n - 1 ? last : range;
+				final long from = bounds[i];
+				final long to = bounds[i + 1];
+				final FutureTask<Void> f = new FutureTask<>(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						try (DB db = DB.connect(databaseId)) {
+							db.query(sql, new Action1E<ResultSet, SQLException>() {
+								@Override
+								public void call(ResultSet t) throws SQLException {
+									consumer.call(index, sqlResult.call(t));
+								}
+							}, from, to);
+						}
+						return null;
+					}
+				});
+				Worker w = Schedulers.io().createWorker();
+				workers.add(w);
+				tasks.add(f);
+				w.schedule(new Action0() {
+					@Override
+					public void call() {
+						f.run();
+					}
+				});
+			}
+			SQLException error = null;
+			for (FutureTask<Void> f : tasks) {
+				try {
+					DB.await(f);
+				} catch (SQLException ex) {
+					if (error == null) {
+						error = ex;
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+		} finally {
+			for (Worker w : workers) {
+				w.unsubscribe();
+			}
+		}
+	}
+	/**
+	 * Selects at most pageSize records following the given key in key order.
+	 * <p>The page is a short query bounded by the key condition and
+	 * the maximum row count of the statement, so no cursor is held 
+	 * between the pages.</p>
+	 * @param db the database connection
+	 * @param afterKey the last key of the previous page, null for the first page;
+	 * a List or array of the key values in column order for composite keys
+	 * @param pageSize the maximum number of records
+	 * @return the records of the page
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public List<T> selectPage(@NonNull DB db, @Nullable Object afterKey, int pageSize) throws SQLException {
+		int kc = keyColumns.size();
+		if (kc == 0) {
+			throw new IllegalStateException("No @SQLID fields in " + table);
+		}
+		String sql = firstPageSql;
+		List<Object> params = new ArrayList<>();
+		if (afterKey != null) {
+			sql = nextPageSql;
+			if (kc == 1) {
+				params.add(afterKey);
+			} else {
+				List<?> values = afterKey instanceof Object[] ? Arrays.asList((Object[])afterKey) : (List<?>)afterKey;
+				if (values.size() != kc) {
+					throw new IllegalArgumentException("Composite key " + values + " should have " + kc + " values");
+				}
+				for (int i = 1; i <= kc; i++) {
+					params.addAll(values.subList(0, i));
+				}
+			}
+		}
+		List<T> result = new ArrayList<>(Math.min(pageSize, 1024));
+		try (PreparedStatement pstmt = db.prepare(sql, params)) {
+			pstmt.setMaxRows(pageSize);
+			pstmt.setFetchSize(pageSize);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (result.size() < pageSize && rs.next()) {
+					result.add(sqlResult.call(rs));
+				}
+			}
+		}
+		return result;
+	}
+	/**
+	 * Returns an iterator over all records in key order which
+	 * reads them page by page.
+	 * @param db the database connection
+	 * @param pageSize the number of records per page
+	 * @param afterKey the key to resume after, null starts with the first record
+	 * @param prefetch query the next page on a background thread while the 
+	 * current one is consumed
+	 * @return the iterator
+	 * @see DBKeysetIterator#lastKey()
+	 */
+	@NonNull
+	public DBKeysetIterator<T> selectAllPaged(@NonNull DB db, int pageSize, 
+			@Nullable Object afterKey, boolean prefetch) {
+		return new DBKeysetIterator<>(this, db, pageSize, afterKey, prefetch);
+	}
+	/**
+	 * Returns an observable sequence of all records in key order 
+	 * which reads them page by page for each subscriber.
+	 * @param db the database connection
+	 * @param pageSize the number of records per page
+	 * @param afterKey the key to resume after, null starts with the first record
+	 * @param prefetch query the next page on a background thread while the 
+	 * current one is consumed
+	 * @return the observable
+	 */
+	@NonNull
+	public Observable<T> observeAllPaged(@NonNull final DB db, final int pageSize, 
+			@Nullable final Object afterKey, final boolean prefetch) {
+		return Observable.using(new Func0<CloseableIterator<T>>() {
+			@Override
+			public CloseableIterator<T> call() {
+				return selectAllPaged(db, pageSize, afterKey, prefetch);
+			}
+		}, new Func1<CloseableIterator<T>, Observable<T>>() {
+			@Override
+			public Observable<T> call(final CloseableIterator<T> t) {
+				return Observable.from(new Iterable<T>() {
+					@Override
+					public Iterator<T> iterator() {
+						return t;
+					}
+				});
+			}
+		}, new Action1<CloseableIterator<T>>() {
+			@Override
+			public void call(CloseableIterator<T> t) {
+				t.unsubscribe();
+			}
+		});
+	}
 }
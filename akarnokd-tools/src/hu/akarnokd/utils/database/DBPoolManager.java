@@ -36,7 +36,9 @@ public class DBPoolManager implements PoolManager<DB> {
 	}
 	@Override
 	public DB create() throws Exception {
-		return DB.connect(dbi);
+		DB db = DB.connect(dbi);
+		db.pooled = true;
+		return db;
 	}
 
 	@Override
@@ -50,7 +52,7 @@ public class DBPoolManager implements PoolManager<DB> {
 	@Override
 	public void close(DB obj) throws Exception {
 		if (obj != null) {
-			obj.close();
+			obj.closeConnection();
 		}
 	}
 
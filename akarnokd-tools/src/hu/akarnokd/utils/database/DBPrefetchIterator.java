@@ -0,0 +1,274 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.io.Closeables;
+import hu.akarnokd.utils.lang.Func1E;
+import ix.CloseableIterator;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.Scheduler.Worker;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A closeable iterator which reads and unmarshals the rows of a query on a
+ * background thread into two alternating row batches, so fetching the next
+ * batch overlaps with the processing of the current one on the consumer thread.
+ * <p>The fetch size is derived from the estimated row width and doubled
+ * whenever the consumer had to wait for a batch. Unsubscribing cancels the
+ * running statement and closes it.</p>
+ * <p>The connection must not be used by other statements while the iteration runs.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the element type
+ */
+public class DBPrefetchIterator<T> implements CloseableIterator<T> {
+	/** The targeted number of bytes per fetch round trip. */
+	public static final int TARGET_FETCH_BYTES = 1 << 20;
+	/** The minimum fetch size. */
+	public static final int MIN_FETCH = 16;
+	/** The maximum fetch size. */
+	public static final int MAX_FETCH = 10000;
+	/** The estimated width of columns of unknown size. */
+	protected static final int DEFAULT_COLUMN_WIDTH = 32;
+	/** A batch of rows. */
+	protected static final class Batch {
+		/** The rows. */
+		final Object[] rows;
+		/** The number of valid rows. */
+		int count;
+		/** This is the last batch. */
+		boolean last;
+		/** The error which ended the query. */
+		Throwable error;
+		/**
+		 * Constructor, sets the capacity.
+		 * @param capacity the capacity
+		 */
+		Batch(int capacity) {
+			this.rows = new Object[capacity];
+		}
+	}
+	/** The statement. */
+	protected final PreparedStatement pstmt;
+	/** The unmarshaller. */
+	protected final Func1E<? super ResultSet, ? extends T, ? extends SQLException> unmarshaller;
+	/** The filled batches. */
+	protected final BlockingQueue<Batch> full = new ArrayBlockingQueue<>(2);
+	/** The consumed batches ready for reuse. */
+	protected final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(2);
+	/** The cancellation indicator. */
+	protected final AtomicBoolean cancelled = new AtomicBoolean();
+	/** The background worker. */
+	protected final Worker worker;
+	/** The consumer had to wait for the last batch. */
+	protected volatile boolean starved;
+	/** The consumer has received a batch already. */
+	protected boolean started;
+	/** The current batch of the consumer. */
+	protected Batch current;
+	/** The index within the current batch. */
+	protected int index;
+	/** The current fetch size. */
+	protected volatile int fetch;
+	/**
+	 * Constructor, executes the statement on a background thread.
+	 * @param pstmt the prepared statement, closed when the iteration ends
+	 * @param unmarshaller the row unmarshaller
+	 * @param batchSize the number of rows per batch
+	 */
+	public DBPrefetchIterator(@NonNull final PreparedStatement pstmt,
+			@NonNull Func1E<? super ResultSet, ? extends T, ? extends SQLException> unmarshaller,
+			int batchSize) {
+		this.pstmt = pstmt;
+		this.unmarshaller = unmarshaller;
+		int bs = Math.max(1, batchSize);
+		free.add(new Batch(bs));
+		free.add(new Batch(bs));
+		worker = Schedulers.io().createWorker();
+		worker.schedule(new Action0() {
+			@Override
+			public void call() {
+				produce();
+			}
+		});
+	}
+	/**
+	 * Execute the query and fill in the batches until the end or cancellation.
+	 * <p>Any error, including an Error, ends the iteration with a terminal batch
+	 * so the consumer rethrows it instead of waiting forever.</p>
+	 */
+	protected void produce() {
+		ResultSet rs = null;
+		try {
+			rs = pstmt.executeQuery();
+			fetch = initialFetch(rs.getMetaData());
+			rs.setFetchSize(fetch);
+			boolean more = true;
+			while (more) {
+				Batch b = null;
+				while (b == null) {
+					if (cancelled.get()) {
+						return;
+					}
+					b = free.poll(100, TimeUnit.MILLISECONDS);
+				}
+				Object[] rows = b.rows;
+				int n = 0;
+				while (n < rows.length && !cancelled.get()) {
+					if (!rs.next()) {
+						more = false;
+						break;
+					}
+					rows[n++] = unmarshaller.call(rs);
+				}
+				b.count = n;
+				b.last = !more;
+				if (starved && fetch < MAX_FETCH) {
+					starved = false;
+					fetch = Math.min(MAX_FETCH, fetch * 2);
+					rs.setFetchSize(fetch);
+				}
+				full.put(b);
+			}
+		} catch (Throwable ex) {
+			if (ex instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			if (!cancelled.get()) {
+				Batch b = new Batch(0);
+				b.last = true;
+				b.error = ex;
+				full.offer(b);
+			}
+		} finally {
+			Closeables.closeSilently(rs);
+			Closeables.closeSilently(pstmt);
+			worker.unsubscribe();
+		}
+	}
+	/**
+	 * Compute the initial fetch size from the estimated row width.
+	 * @param md the result set metadata
+	 * @return the fetch size
+	 * @throws SQLException on error
+	 */
+	protected static int initialFetch(ResultSetMetaData md) throws SQLException {
+		long width = 0;
+		if (md != null) {
+			int cc = md.getColumnCount();
+			for (int i = 1; i <= cc; i++) {
+				int w = md.getColumnDisplaySize(i);
+				width += w > 0 && w < 4096 ? w : DEFAULT_COLUMN_WIDTH;
+			}
+		}
+		width = Math.max(width, DEFAULT_COLUMN_WIDTH);
+		return (int)Math.max(MIN_FETCH, Math.min(MAX_FETCH, TARGET_FETCH_BYTES / width));
+	}
+	/** @return the current fetch size, zero before the query started */
+	public int fetchSize() {
+		return fetch;
+	}
+	@Override
+	public boolean hasNext() {
+		if (cancelled.get()) {
+			return false;
+		}
+		Batch b = current;
+		if (b != null && index < b.count) {
+			return true;
+		}
+		if (b != null) {
+			if (b.last) {
+				return false;
+			}
+			Arrays.fill(b.rows, 0, b.count, null);
+			free.offer(b);
+			current = null;
+		}
+		b = full.poll();
+		if (b == null) {
+			starved = started;
+			try {
+				while (b == null) {
+					b = full.poll(100, TimeUnit.MILLISECONDS);
+					if (b == null && cancelled.get()) {
+						return false;
+					}
+				}
+			} catch (InterruptedException ex) {
+				unsubscribe();
+				Thread.currentThread().interrupt();
+				throw new SQLRuntimeException(new SQLException(ex));
+			}
+		}
+		current = b;
+		index = 0;
+		started = true;
+		if (b.error != null) {
+			unsubscribe();
+			if (b.error instanceof RuntimeException) {
+				throw (RuntimeException)b.error;
+			}
+			if (b.error instanceof Error) {
+				throw (Error)b.error;
+			}
+			if (b.error instanceof SQLException) {
+				throw new SQLRuntimeException((SQLException)b.error);
+			}
+			throw new SQLRuntimeException(new SQLException(b.error));
+		}
+		return b.count > 0;
+	}
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (hasNext()) {
+			return (T)current.rows[index++];
+		}
+		throw new NoSuchElementException();
+	}
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	@Override
+	public void unsubscribe() {
+		if (cancelled.compareAndSet(false, true)) {
+			try {
+				pstmt.cancel();
+			} catch (SQLException ex) {
+				// ignored, the statement is closed anyway
+			}
+		}
+	}
+	@Override
+	public boolean isUnsubscribed() {
+		return cancelled.get();
+	}
+}
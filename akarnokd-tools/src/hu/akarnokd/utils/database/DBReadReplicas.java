@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.database.DB.DBInfo;
+import hu.akarnokd.utils.database.DB.ReplicaInfo;
+import hu.akarnokd.utils.io.Closeables;
+import hu.akarnokd.utils.pool.ConcurrentPool;
+import hu.akarnokd.utils.pool.Pool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * The read replicas of a database with their connection pools, which
+ * hands out connections by the least outstanding requests per weight.
+ * <p>A replica whose connection fails is skipped for the retry period of
+ * the primary's info, the pools verify the idle connections on borrow
+ * according to the pool settings. There is no active health check: once
+ * the retry period expires, the next acquire simply tries the replica again.</p>
+ * <p>The connections are leased for a whole session of a primary connection,
+ * see {@link DB#reader()}.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBReadReplicas implements Closeable {
+	/** The logger. */
+	protected static final Logger LOG = Logger.getLogger(DBReadReplicas.class.getName());
+	/** The connection infos of the replicas. */
+	protected final DBInfo[] infos;
+	/** The weights of the replicas. */
+	protected final int[] weights;
+	/** The connection pools, null entries connect directly. */
+	protected final List<Pool<DB>> pools;
+	/** The number of connections currently borrowed per replica. */
+	protected final AtomicIntegerArray outstanding;
+	/** The time until the replicas are considered unhealthy, in milliseconds. */
+	protected final AtomicLongArray downUntil;
+	/** The time to skip a failed replica, in milliseconds. */
+	protected final long retryMillis;
+	/** Rotates the starting replica to spread the ties. */
+	protected final AtomicInteger rotate = new AtomicInteger();
+	/**
+	 * Constructor, creates the replica pools if the primary is pooled.
+	 * @param primary the primary connection info with at least one replica
+	 */
+	public DBReadReplicas(@NonNull DBInfo primary) {
+		int n = primary.replicas.size();
+		infos = new DBInfo[n];
+		weights = new int[n];
+		pools = new ArrayList<>(n);
+		outstanding = new AtomicIntegerArray(n);
+		downUntil = new AtomicLongArray(n);
+		retryMillis = primary.replicaRetryMillis;
+		for (int i = 0; i < n; i++) {
+			ReplicaInfo ri = primary.replicas.get(i);
+			if (ri.weight <= 0) {
+				throw new IllegalArgumentException("Replica weight must be positive: " + ri.connectionURL);
+			}
+			DBInfo dbi = new DBInfo(primary);
+			dbi.id = primary.id + "#replica" + i;
+			dbi.connectionURL = ri.connectionURL;
+			if (ri.user != null) {
+				dbi.user = ri.user;
+			}
+			if (ri.password != null) {
+				dbi.password = ri.password;
+			}
+			dbi.replicas.clear();
+			infos[i] = dbi;
+			weights[i] = ri.weight;
+			if (dbi.maxConnection > 0) {
+				pools.add(new ConcurrentPool<>(dbi.maxConnection, new DBPoolManager(dbi), dbi.pool));
+			} else {
+				pools.add(null);
+			}
+		}
+	}
+	/**
+	 * Borrows a connection of the healthy replica with the least outstanding
+	 * connections relative to its weight.
+	 * <p>Return the connection through {@link #release(int, DB)}.</p>
+	 * @param index the single element array receiving the replica index
+	 * @return the connection or null if no replica is available
+	 */
+	@CheckForNull
+	public DB acquire(@NonNull int[] index) {
+		int n = infos.length;
+		boolean[] tried = new boolean[n];
+		for (int attempt = 0; attempt < n; attempt++) {
+			long now = System.currentTimeMillis();
+			int start = (rotate.getAndIncrement() & Integer.MAX_VALUE) % n;
+			int best = -1;
+			for (int j = 0; j < n; j++) {
+				int i = (start + j) % n;
+				if (tried[i] || downUntil.get(i) > now) {
+					continue;
+				}
+				if (best < 0 || (long)outstanding.get(i) * weights[best] < (long)outstanding.get(best) * weights[i]) {
+					best = i;
+				}
+			}
+			if (best < 0) {
+				return null;
+			}
+			tried[best] = true;
+			outstanding.incrementAndGet(best);
+			try {
+				DB db;
+				Pool<DB> p = pools.get(best);
+				if (p != null) {
+					db = DB.borrow(p);
+				} else {
+					db = DB.connect(infos[best]);
+				}
+				index[0] = best;
+				return db;
+			} catch (RuntimeException ex) {
+				outstanding.decrementAndGet(best);
+				downUntil.set(best, now + retryMillis);
+				LOG.log(Level.WARNING, "Replica connection failed: " + infos[best].connectionURL, ex);
+			}
+		}
+		return null;
+	}
+	/**
+	 * Returns the connection to its replica.
+	 * @param index the replica index
+	 * @param db the connection
+	 */
+	public void release(int index, @NonNull DB db) {
+		try {
+			Closeables.closeSilently(db);
+		} finally {
+			outstanding.decrementAndGet(index);
+		}
+	}
+	/**
+	 * Marks the replica unhealthy for the retry period.
+	 * @param index the replica index
+	 */
+	public void markDown(int index) {
+		downUntil.set(index, System.currentTimeMillis() + retryMillis);
+	}
+	/**
+	 * Returns the number of connections borrowed from the replica.
+	 * @param index the replica index
+	 * @return the outstanding connection count
+	 */
+	public int outstanding(int index) {
+		return outstanding.get(index);
+	}
+	/** @return the number of replicas */
+	public int size() {
+		return infos.length;
+	}
+	@Override
+	public void close() throws IOException {
+		for (Pool<DB> p : pools) {
+			if (p != null) {
+				Closeables.closeSilently(p);
+			}
+		}
+	}
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.lang.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.subjects.PublishSubject;
+import rx.subjects.Subject;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * An in-memory replica of a table keyed by the SQLID fields, which
+ * fetches only the rows changed since the last synchronization.
+ * <p>The changed rows are detected through a version or timestamp column
+ * that increases on every insert and update, or through the greatest key
+ * value, which detects only the inserts. Deleted rows are noticed only by
+ * {@link #reload(DB)}.</p>
+ * <p>The rows with the greatest version seen are fetched again and skipped
+ * if unchanged, so rows committed later with the same version are not lost.
+ * If the versions are assigned before the commit, rows may become visible
+ * with smaller versions; set an {@link #setOverlap(long) overlap} covering
+ * the longest transaction to re-read them.</p>
+ * <p>Readers use immutable snapshots which are replaced as a whole after
+ * each synchronization, therefore they never block. The changes are
+ * published through {@link #changes()} after the new snapshot is visible.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the record type
+ */
+public class DBReplica<T> {
+	/** The logger. */
+	protected static final Logger LOG = Logger.getLogger(DBReplica.class.getName());
+	/** The change kinds. */
+	public enum ChangeKind {
+		/** The row is new. */
+		INSERT,
+		/** The row was changed. */
+		UPDATE,
+		/** The row was removed. */
+		DELETE
+	}
+	/**
+	 * A change of a replicated row.
+	 * @param <T> the record type
+	 */
+	public static final class Change<T> {
+		/** The change kind. */
+		@NonNull
+		public final ChangeKind kind;
+		/** The key of the row, as returned by {@link DBPojo#keyOf(Object)}. */
+		@NonNull
+		public final Object key;
+		/** The previous row, null for inserts. */
+		@Nullable
+		public final T previous;
+		/** The current row, null for deletes. */
+		@Nullable
+		public final T current;
+		/**
+		 * Constructor.
+		 * @param kind the change kind
+		 * @param key the key of the row
+		 * @param previous the previous row
+		 * @param current the current row
+		 */
+		public Change(@NonNull ChangeKind kind, @NonNull Object key,
+				@Nullable T previous, @Nullable T current) {
+			this.kind = kind;
+			this.key = key;
+			this.previous = previous;
+			this.current = current;
+		}
+		@Override
+		public String toString() {
+			return kind + " " + key;
+		}
+	}
+	/** The record mapper. */
+	protected final DBPojo<T> pojo;
+	/** The version column name. */
+	protected final String versionColumn;
+	/** The version column value getter. */
+	protected final Func1<T, Object> version;
+	/** Returns the non-key column values for the change detection of full reloads. */
+	protected final Func1<T, Object[]> values;
+	/** The current snapshot by key. */
+	protected volatile Map<Object, T> snapshot = Collections.emptyMap();
+	/** The greatest version seen, null before the first synchronization. */
+	protected Object lastVersion;
+	/** The version column is the key column. */
+	protected final boolean keyVersion;
+	/** The amount re-read below the greatest version seen. */
+	protected volatile long overlap;
+	/** The change notifications. */
+	protected final Subject<Change<T>, Change<T>> changes = PublishSubject.<Change<T>>create().toSerialized();
+	/**
+	 * Constructor.
+	 * @param pojo the record mapper with SQLID fields
+	 * @param versionColumn the version or timestamp column increased on every change,
+	 * null to use the single key column, which detects only inserts
+	 */
+	public DBReplica(@NonNull DBPojo<T> pojo, @Nullable String versionColumn) {
+		if (pojo.keyFields.isEmpty()) {
+			throw new IllegalArgumentException("The table has no key columns: " + pojo.table());
+		}
+		Field f = null;
+		if (versionColumn == null) {
+			if (pojo.keyFields.size() != 1) {
+				throw new IllegalArgumentException("Composite keys require a version column: " + pojo.table());
+			}
+			f = pojo.keyFields.get(0);
+			versionColumn = pojo.keyColumns.get(0);
+		} else {
+			for (Field g : ReflectionUtils.allFields(pojo.clazz, SQLColumn.class)) {
+				if (pojo.fieldName(g).equalsIgnoreCase(versionColumn)) {
+					f = g;
+					break;
+				}
+			}
+			if (f == null) {
+				throw new IllegalArgumentException("Unknown column: " + pojo.table() + "." + versionColumn);
+			}
+		}
+		this.pojo = pojo;
+		this.keyVersion = pojo.keyFields.contains(f);
+		this.versionColumn = versionColumn;
+		this.version = DBCodeCreator.createGetter(pojo.clazz, f);
+		this.values = DBCodeCreator.createSnapshot(pojo.clazz);
+	}
+	/**
+	 * Sets the amount of versions re-read below the greatest version seen by
+	 * each synchronization, so the rows which become visible later with a
+	 * smaller version are fetched as well.
+	 * @param overlap the difference for numeric versions, milliseconds for
+	 * date and timestamp versions, zero re-reads only the greatest version
+	 */
+	public void setOverlap(long overlap) {
+		if (overlap < 0) {
+			throw new IllegalArgumentException("overlap >= 0 required but it was " + overlap);
+		}
+		this.overlap = overlap;
+	}
+	/** @return the current immutable snapshot of the rows by key */
+	@NonNull
+	public Map<Object, T> snapshot() {
+		return snapshot;
+	}
+	/**
+	 * Returns the row of the given key from the current snapshot.
+	 * @param key the key value, or a List of the key values for composite keys
+	 * @return the row or null if not present
+	 */
+	@CheckForNull
+	public T get(@NonNull Object key) {
+		return snapshot.get(pojo.cacheKey(key));
+	}
+	/** @return the number of rows in the current snapshot */
+	public int size() {
+		return snapshot.size();
+	}
+	/**
+	 * Returns the observable sequence of the row changes, emitted
+	 * on the synchronizing thread.
+	 * @return the change observable
+	 */
+	@NonNull
+	public Observable<Change<T>> changes() {
+		return changes;
+	}
+	/**
+	 * Fetches the rows changed since the last synchronization, or all rows
+	 * the first time, and merges them into a new snapshot.
+	 * <p>The re-read rows already in the snapshot are skipped if their columns
+	 * are unchanged, or always if the key is the version.</p>
+	 * @param db the database connection
+	 * @return the number of changed rows
+	 * @throws SQLException on error
+	 */
+	public synchronized int sync(@NonNull DB db) throws SQLException {
+		Object from = lastVersion;
+		List<T> rows;
+		if (from == null) {
+			rows = pojo.selectAll(db);
+		} else {
+			rows = pojo.selectSome(db, versionColumn + " >= ? ORDER BY " + versionColumn, lower(from));
+		}
+		Map<Object, T> next = new HashMap<>(snapshot);
+		List<Change<T>> list = new ArrayList<>(rows.size());
+		for (T v : rows) {
+			Object key = pojo.keyOf(v);
+			T prev = next.get(key);
+			if (prev != null && (keyVersion || same(values.call(prev), values.call(v)))) {
+				continue;
+			}
+			next.put(key, v);
+			list.add(new Change<>(prev == null ? ChangeKind.INSERT : ChangeKind.UPDATE, key, prev, v));
+		}
+		if (list.isEmpty()) {
+			return 0;
+		}
+		publish(next, rows, list);
+		return list.size();
+	}
+	/**
+	 * Fetches all rows and replaces the snapshot, detecting the inserted,
+	 * changed and deleted rows by comparing the column values.
+	 * @param db the database connection
+	 * @return the number of changed rows
+	 * @throws SQLException on error
+	 */
+	public synchronized int reload(@NonNull DB db) throws SQLException {
+		List<T> rows = pojo.selectAll(db);
+		Map<Object, T> prevSnapshot = snapshot;
+		Map<Object, T> next = new HashMap<>(rows.size() * 4 / 3 + 1);
+		List<Change<T>> list = new ArrayList<>();
+		for (T v : rows) {
+			Object key = pojo.keyOf(v);
+			next.put(key, v);
+			T prev = prevSnapshot.get(key);
+			if (prev == null) {
+				list.add(new Change<>(ChangeKind.INSERT, key, null, v));
+			} else
+			if (!same(values.call(prev), values.call(v))) {
+				list.add(new Change<>(ChangeKind.UPDATE, key, prev, v));
+			}
+		}
+		for (Map.Entry<Object, T> e : prevSnapshot.entrySet()) {
+			if (!next.containsKey(e.getKey())) {
+				list.add(new Change<>(ChangeKind.DELETE, e.getKey(), e.getValue(), null));
+			}
+		}
+		publish(next, rows, list);
+		return list.size();
+	}
+	/**
+	 * Returns the smallest version to re-read, the version minus the overlap.
+	 * @param version the greatest version seen
+	 * @return the version to query from
+	 */
+	protected Object lower(Object version) {
+		long o = overlap;
+		if (o == 0L) {
+			return version;
+		}
+		if (version instanceof Long || version instanceof Integer
+				|| version instanceof Short || version instanceof Byte) {
+			return ((Number)version).longValue() - o;
+		}
+		if (version instanceof Timestamp) {
+			return new Timestamp(((Timestamp)version).getTime() - o);
+		}
+		if (version instanceof Date) {
+			return new Date(((Date)version).getTime() - o);
+		}
+		return version;
+	}
+	/**
+	 * Compares two column value arrays.
+	 * @param a the first array
+	 * @param b the second array
+	 * @return true if all values are equal
+	 */
+	static boolean same(Object[] a, Object[] b) {
+		for (int i = 0; i < a.length; i++) {
+			if (!DBPojo.same(a[i], b[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Makes the new snapshot visible, advances the version and
+	 * emits the changes.
+	 * @param next the new snapshot
+	 * @param rows the fetched rows
+	 * @param list the changes
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected void publish(Map<Object, T> next, List<T> rows, List<Change<T>> list) {
+		Object max = lastVersion;
+		for (T v : rows) {
+			Object ver = version.call(v);
+			if (ver != null && (max == null || ((Comparable)ver).compareTo(max) > 0)) {
+				max = ver;
+			}
+		}
+		lastVersion = max;
+		snapshot = Collections.unmodifiableMap(next);
+		for (Change<T> c : list) {
+			changes.onNext(c);
+		}
+	}
+	/**
+	 * Periodically synchronizes the replica on a connection of the given database.
+	 * <p>The failed synchronizations are logged and retried in the next period.</p>
+	 * @param databaseId the database identifier
+	 * @param period the period
+	 * @param unit the period unit
+	 * @param scheduler the scheduler to run the synchronization on
+	 * @return the subscription to stop the polling
+	 */
+	@NonNull
+	public Subscription poll(@NonNull final String databaseId, long period,
+			@NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+		Worker w = scheduler.createWorker();
+		w.schedulePeriodically(new Action0() {
+			@Override
+			public void call() {
+				try (DB db = DB.connect(databaseId)) {
+					sync(db);
+				} catch (SQLException | IOException | RuntimeException ex) {
+					LOG.log(Level.WARNING, "Replica synchronization failed: " + pojo.table(), ex);
+				}
+			}
+		}, 0, period, unit);
+		return w;
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.io.Closeables;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A bounded, least-recently-used cache of the prepared statements
+ * of a single connection.
+ * <p>The statements are keyed by their SQL text, generated-keys mode and
+ * result set type and concurrency. The cache hands out delegating wrappers
+ * of the statements whose <code>close()</code> method returns the statement into
+ * the cache instead of closing it, therefore the usual try-with-resources
+ * pattern keeps working. The returned statements get their parameters, batch,
+ * warnings, fetch size, fetch direction and row and field size limits reset.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBStatementCache implements Closeable {
+	/** The key of a cached statement. */
+	protected static final class Key {
+		/** The SQL text. */
+		final String sql;
+		/** The generated keys mode or -1 if type and concurrency was specified. */
+		final int autoKeys;
+		/** The result set type. */
+		final int type;
+		/** The result set concurrency. */
+		final int concurrency;
+		/**
+		 * Constructor, sets the fields.
+		 * @param sql the SQL text
+		 * @param autoKeys the generated keys mode
+		 * @param type the result set type
+		 * @param concurrency the result set concurrency
+		 */
+		Key(String sql, int autoKeys, int type, int concurrency) {
+			this.sql = sql;
+			this.autoKeys = autoKeys;
+			this.type = type;
+			this.concurrency = concurrency;
+		}
+		@Override
+		public int hashCode() {
+			return ((sql.hashCode() * 31 + autoKeys) * 31 + type) * 31 + concurrency;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof Key) {
+				Key k = (Key)obj;
+				return autoKeys == k.autoKeys && type == k.type
+						&& concurrency == k.concurrency && sql.equals(k.sql);
+			}
+			return false;
+		}
+	}
+	/** The connection to prepare statements on. */
+	protected final Connection conn;
+	/** The idle statements in access order. */
+	@GuardedBy("this")
+	protected final LinkedHashMap<Key, PreparedStatement> idle;
+	/** The maximum number of idle statements. */
+	@GuardedBy("this")
+	protected int capacity;
+	/** The cache hit count. */
+	@GuardedBy("this")
+	protected long hits;
+	/** The cache miss count. */
+	@GuardedBy("this")
+	protected long misses;
+	/** The eviction count. */
+	@GuardedBy("this")
+	protected long evictions;
+	/** The cache was closed. */
+	@GuardedBy("this")
+	protected boolean closed;
+	/**
+	 * Constructor, sets the connection and capacity.
+	 * @param conn the connection
+	 * @param capacity the maximum number of idle statements to keep
+	 */
+	public DBStatementCache(@NonNull Connection conn, int capacity) {
+		this.conn = conn;
+		this.capacity = capacity;
+		this.idle = new LinkedHashMap<>(16, 0.75f, true);
+	}
+	/**
+	 * Prepare or reuse a statement with the given generated keys mode.
+	 * @param sql the query
+	 * @param autoKeys the generated keys mode, see Statement.RETURN_GENERATED_KEYS
+	 * @return the statement
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public PreparedStatement prepare(@NonNull String sql, int autoKeys) throws SQLException {
+		return checkout(new Key(sql, autoKeys, 0, 0));
+	}
+	/**
+	 * Prepare or reuse a statement with the given result set type and concurrency.
+	 * @param sql the query
+	 * @param type the result set type constant from ResultSet
+	 * @param concurrency the result set concurrency constant from ResultSet
+	 * @return the statement
+	 * @throws SQLException on error
+	 */
+	@NonNull
+	public PreparedStatement prepare(@NonNull String sql, int type, int concurrency) throws SQLException {
+		return checkout(new Key(sql, -1, type, concurrency));
+	}
+	/**
+	 * Take an idle statement or prepare a new one and wrap it
+	 * into a returning statement.
+	 * @param key the statement key
+	 * @return the wrapped statement
+	 * @throws SQLException on error
+	 */
+	protected PreparedStatement checkout(Key key) throws SQLException {
+		PreparedStatement ps;
+		synchronized (this) {
+			ps = idle.remove(key);
+			if (ps != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+		}
+		if (ps != null && ps.isClosed()) {
+			ps = null;
+		}
+		if (ps == null) {
+			if (key.autoKeys >= 0) {
+				ps = conn.prepareStatement(key.sql, key.autoKeys);
+			} else {
+				ps = conn.prepareStatement(key.sql, key.type, key.concurrency);
+			}
+		}
+		return new DBCachedStatement(this, key, ps);
+	}
+	/**
+	 * Return a statement to the cache or close it if the cache is
+	 * closed or the statement could not be reset.
+	 * @param key the statement key
+	 * @param ps the physical statement
+	 */
+	protected void checkin(Key key, PreparedStatement ps) {
+		try {
+			ps.clearParameters();
+			ps.clearBatch();
+			ps.clearWarnings();
+			if (ps.getFetchSize() != 0) {
+				ps.setFetchSize(0);
+			}
+			if (ps.getFetchDirection() != ResultSet.FETCH_FORWARD) {
+				ps.setFetchDirection(ResultSet.FETCH_FORWARD);
+			}
+			if (ps.getMaxRows() != 0) {
+				ps.setMaxRows(0);
+			}
+			if (ps.getMaxFieldSize() != 0) {
+				ps.setMaxFieldSize(0);
+			}
+		} catch (SQLException ex) {
+			Closeables.closeSilently(ps);
+			return;
+		}
+		List<PreparedStatement> toClose = new ArrayList<>();
+		synchronized (this) {
+			if (closed || capacity <= 0) {
+				toClose.add(ps);
+			} else {
+				PreparedStatement old = idle.put(key, ps);
+				if (old != null) {
+					toClose.add(old);
+					evictions++;
+				}
+				trim(toClose);
+			}
+		}
+		closeAll(toClose);
+	}
+	/**
+	 * Remove the least recently used idle statements above the capacity.
+	 * @param toClose the output list of statements to close
+	 */
+	@GuardedBy("this")
+	protected void trim(List<PreparedStatement> toClose) {
+		Iterator<PreparedStatement> it = idle.values().iterator();
+		while (idle.size() > capacity && it.hasNext()) {
+			toClose.add(it.next());
+			it.remove();
+			evictions++;
+		}
+	}
+	/**
+	 * Close the statements silently.
+	 * @param list the statements
+	 */
+	protected static void closeAll(List<PreparedStatement> list) {
+		for (PreparedStatement ps : list) {
+			Closeables.closeSilently(ps);
+		}
+	}
+	/**
+	 * Change the maximum number of idle statements.
+	 * @param capacity the new capacity, zero or negative disables the caching
+	 */
+	public void setCapacity(int capacity) {
+		List<PreparedStatement> toClose = new ArrayList<>();
+		synchronized (this) {
+			this.capacity = capacity;
+			trim(toClose);
+		}
+		closeAll(toClose);
+	}
+	/** @return the maximum number of idle statements. */
+	public synchronized int capacity() {
+		return capacity;
+	}
+	/** @return the current number of idle statements. */
+	public synchronized int size() {
+		return idle.size();
+	}
+	/** @return the number of times an idle statement was reused. */
+	public synchronized long hits() {
+		return hits;
+	}
+	/** @return the number of times a new statement had to be prepared. */
+	public synchronized long misses() {
+		return misses;
+	}
+	/** @return the number of statements closed due to capacity limits. */
+	public synchronized long evictions() {
+		return evictions;
+	}
+	/**
+	 * Closes the idle statements. Statements still in use are closed
+	 * when they are returned.
+	 */
+	@Override
+	public void close() {
+		List<PreparedStatement> toClose;
+		synchronized (this) {
+			closed = true;
+			toClose = new ArrayList<>(idle.values());
+			idle.clear();
+		}
+		closeAll(toClose);
+	}
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("DBStatementCache [capacity=");
+		builder.append(capacity);
+		builder.append(", size=");
+		builder.append(idle.size());
+		builder.append(", hits=");
+		builder.append(hits);
+		builder.append(", misses=");
+		builder.append(misses);
+		builder.append(", evictions=");
+		builder.append(evictions);
+		builder.append("]");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.concurrent.LatencyHistogram;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Instrumentation which aggregates the statement timings per normalized SQL
+ * text and logs the slow statements.
+ * <p>The normalization collapses whitespace, replaces literals with
+ * <code>?</code> and parameter lists such as <code>IN (?, ?, ?)</code>
+ * with <code>IN (?...)</code>, therefore statements differing only in their
+ * values or list lengths are aggregated together.</p>
+ * <p>Slow statements are logged on the WARNING level of this class' logger.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBStatistics implements DBInstrumentation {
+	/** The logger of the slow statements. */
+	protected static final Logger LOG = Logger.getLogger(DBStatistics.class.getName());
+	/** Parameter list pattern. */
+	protected static final Pattern PARAM_LIST = Pattern.compile("\\?(?:\\s?,\\s?\\?)+");
+	/** The maximum number of cached normalizations. */
+	protected static final int NORMALIZED_CACHE_SIZE = 4096;
+	/** The statistics of a normalized statement. */
+	public static final class Stat {
+		/** The normalized SQL. */
+		final String sql;
+		/** The execution count. */
+		final AtomicLong count = new AtomicLong();
+		/** The error count. */
+		final AtomicLong errors = new AtomicLong();
+		/** The rows read or updated. */
+		final AtomicLong rows = new AtomicLong();
+		/** The number of batched parameter sets. */
+		final AtomicLong batchItems = new AtomicLong();
+		/** The execution times. */
+		final LatencyHistogram execute = new LatencyHistogram();
+		/** The fetch times of queries. */
+		final LatencyHistogram fetch = new LatencyHistogram();
+		/**
+		 * Constructor, sets the SQL.
+		 * @param sql the normalized SQL
+		 */
+		Stat(String sql) {
+			this.sql = sql;
+		}
+		/** @return the normalized SQL */
+		public String sql() {
+			return sql;
+		}
+		/** @return the execution count */
+		public long count() {
+			return count.get();
+		}
+		/** @return the error count */
+		public long errors() {
+			return errors.get();
+		}
+		/** @return the rows read or updated */
+		public long rows() {
+			return rows.get();
+		}
+		/** @return the number of batched parameter sets */
+		public long batchItems() {
+			return batchItems.get();
+		}
+		/** @return the execution time histogram */
+		public LatencyHistogram execute() {
+			return execute;
+		}
+		/** @return the fetch time histogram */
+		public LatencyHistogram fetch() {
+			return fetch;
+		}
+		/** @return the total execution and fetch time in nanoseconds */
+		public long totalNanos() {
+			return execute.sum() + fetch.sum();
+		}
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("total=").append(TimeUnit.NANOSECONDS.toMillis(totalNanos())).append(" ms");
+			builder.append(", count=").append(count());
+			builder.append(", errors=").append(errors());
+			builder.append(", rows=").append(rows());
+			builder.append(", batchItems=").append(batchItems());
+			builder.append(", execute p50/p99/max=")
+				.append(TimeUnit.NANOSECONDS.toMicros(execute.percentile(50))).append('/')
+				.append(TimeUnit.NANOSECONDS.toMicros(execute.percentile(99))).append('/')
+				.append(TimeUnit.NANOSECONDS.toMicros(execute.max())).append(" us");
+			builder.append(", fetch p50/p99/max=")
+				.append(TimeUnit.NANOSECONDS.toMicros(fetch.percentile(50))).append('/')
+				.append(TimeUnit.NANOSECONDS.toMicros(fetch.percentile(99))).append('/')
+				.append(TimeUnit.NANOSECONDS.toMicros(fetch.max())).append(" us");
+			builder.append(": ").append(sql);
+			return builder.toString();
+		}
+	}
+	/** The statistics per normalized SQL. */
+	protected final ConcurrentMap<String, Stat> stats = new ConcurrentHashMap<>();
+	/** The cache of the SQL normalizations. */
+	protected final ConcurrentMap<String, String> normalized = new ConcurrentHashMap<>();
+	/** The slow statement threshold in nanoseconds, negative disables the log. */
+	protected volatile long slowNanos = -1L;
+	/** Log every Nth slow statement. */
+	protected volatile int sampling = 1;
+	/** The number of slow statements. */
+	protected final AtomicLong slowCount = new AtomicLong();
+	/**
+	 * Set the slow statement threshold.
+	 * @param time the time, negative disables the log
+	 * @param unit the time unit
+	 */
+	public void setSlowThreshold(long time, @NonNull TimeUnit unit) {
+		slowNanos = time < 0 ? -1L : unit.toNanos(time);
+	}
+	/**
+	 * Log only every Nth slow statement.
+	 * @param every the sampling interval, 1 logs all
+	 */
+	public void setSlowSampling(int every) {
+		if (every <= 0) {
+			throw new IllegalArgumentException("every > 0 required but it was " + every);
+		}
+		sampling = every;
+	}
+	/** @return the number of slow statements, including the ones not logged */
+	public long slowCount() {
+		return slowCount.get();
+	}
+	@Override
+	public void onQuery(String sql, long executeNanos, long fetchNanos, long rows) {
+		Stat s = stat(sql);
+		s.count.incrementAndGet();
+		s.rows.addAndGet(rows);
+		s.execute.record(executeNanos);
+		s.fetch.record(fetchNanos);
+		slow(sql, executeNanos + fetchNanos, rows);
+	}
+	@Override
+	public void onUpdate(String sql, long executeNanos, int batchSize, long rows) {
+		Stat s = stat(sql);
+		s.count.incrementAndGet();
+		s.rows.addAndGet(rows);
+		s.batchItems.addAndGet(batchSize);
+		s.execute.record(executeNanos);
+		slow(sql, executeNanos, rows);
+	}
+	@Override
+	public void onError(String sql, long executeNanos, SQLException error) {
+		Stat s = stat(sql);
+		s.errors.incrementAndGet();
+		s.execute.record(executeNanos);
+		LOG.log(Level.FINE, sql, error);
+	}
+	/**
+	 * Log the statement if slow.
+	 * @param sql the SQL text
+	 * @param nanos the total time
+	 * @param rows the row count
+	 */
+	protected void slow(String sql, long nanos, long rows) {
+		long t = slowNanos;
+		if (t >= 0 && nanos > t
+				&& slowCount.incrementAndGet() % sampling == 0
+				&& LOG.isLoggable(Level.WARNING)) {
+			LOG.warning("Slow statement (" + TimeUnit.NANOSECONDS.toMillis(nanos)
+					+ " ms, " + rows + " rows): " + sql);
+		}
+	}
+	/**
+	 * Returns the statistics entry of the SQL text.
+	 * @param sql the SQL text
+	 * @return the entry
+	 */
+	protected Stat stat(String sql) {
+		String key = normalized.get(sql);
+		if (key == null) {
+			key = normalize(sql);
+			if (normalized.size() >= NORMALIZED_CACHE_SIZE) {
+				normalized.clear();
+			}
+			normalized.put(sql, key);
+		}
+		Stat s = stats.get(key);
+		if (s == null) {
+			s = new Stat(key);
+			Stat s0 = stats.putIfAbsent(key, s);
+			if (s0 != null) {
+				s = s0;
+			}
+		}
+		return s;
+	}
+	/**
+	 * Returns the statistics of the given normalized statement.
+	 * @param sql the SQL text, normalized automatically
+	 * @return the statistics or null if not executed
+	 */
+	public Stat get(@NonNull String sql) {
+		return stats.get(normalize(sql));
+	}
+	/**
+	 * Returns the statements with the largest total execution and fetch time.
+	 * @param n the maximum number of statements to return
+	 * @return the list of statistics in descending total time order
+	 */
+	@NonNull
+	public List<Stat> top(int n) {
+		// snapshot the totals as they keep changing during the sort
+		List<Object[]> list = new ArrayList<>();
+		for (Stat s : stats.values()) {
+			list.add(new Object[] { s.totalNanos(), s });
+		}
+		Collections.sort(list, new Comparator<Object[]>() {
+			@Override
+			public int compare(Object[] o1, Object[] o2) {
+				return ((Long)o2[0]).compareTo((Long)o1[0]);
+			}
+		});
+		List<Stat> result = new ArrayList<>();
+		for (int i = 0; i < list.size() && i < n; i++) {
+			result.add((Stat)list.get(i)[1]);
+		}
+		return result;
+	}
+	/**
+	 * Format the top N statements, one per line.
+	 * @param n the maximum number of statements
+	 * @return the formatted text
+	 */
+	@NonNull
+	public String dump(int n) {
+		StringBuilder b = new StringBuilder();
+		for (Stat s : top(n)) {
+			b.append(s).append(String.format("%n"));
+		}
+		return b.toString();
+	}
+	/** Clear the statistics. */
+	public void reset() {
+		stats.clear();
+		slowCount.set(0);
+	}
+	/**
+	 * Normalize the SQL text by collapsing whitespace and replacing the
+	 * string and numeric literals and the parameter lists.
+	 * @param sql the SQL text
+	 * @return the normalized text
+	 */
+	@NonNull
+	public static String normalize(@NonNull String sql) {
+		StringBuilder b = new StringBuilder(sql.length());
+		int n = sql.length();
+		int i = 0;
+		while (i < n) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				while (i < n && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				if (b.length() > 0) {
+					b.append(' ');
+				}
+				continue;
+			}
+			if (c == '\'') {
+				i++;
+				while (i < n) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < n && sql.charAt(i + 1) == '\'') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				i++;
+				b.append('?');
+				continue;
+			}
+			if (Character.isDigit(c) && (b.length() == 0
+					|| !Character.isJavaIdentifierPart(b.charAt(b.length() - 1)))) {
+				while (i < n && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+					i++;
+				}
+				b.append('?');
+				continue;
+			}
+			b.append(c);
+			i++;
+		}
+		int len = b.length();
+		if (len > 0 && b.charAt(len - 1) == ' ') {
+			b.setLength(len - 1);
+		}
+		return PARAM_LIST.matcher(b).replaceAll("?...");
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import rx.functions.Action2;
+import rx.functions.Func1;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Collects the inserts, updates and deletes of records of several
+ * DBPojo types and writes them with one batched statement per
+ * table and operation on {@link #flush()}.
+ * <p>Repeated updates of the same key collapse into the last one, and deleting
+ * a key discards its pending update. The tables are written in the order of
+ * their foreign keys reported by the database metadata: inserts and updates
+ * parents first, deletes children first.</p>
+ * <p>The flush doesn't commit. The instance is not thread-safe.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBUnitOfWork {
+	/** The database connection. */
+	protected final DB db;
+	/** The pending operations per record type, in the order of first use. */
+	protected final Map<DBPojo<?>, Pending<?>> pending = new LinkedHashMap<>();
+	/** The referenced tables per table, loaded from the metadata on demand. */
+	protected final Map<String, Set<String>> parents = new HashMap<>();
+	/**
+	 * The pending operations of a record type.
+	 * @param <T> the record type
+	 */
+	protected static final class Pending<T> {
+		/** The record mapper. */
+		final DBPojo<T> pojo;
+		/** The records to insert with generated keys. */
+		final Set<T> inserts = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		/** The records to insert with their own keys. */
+		final Map<Object, T> insertsExact = new LinkedHashMap<>();
+		/** The records to update by key. */
+		final Map<Object, T> updates = new LinkedHashMap<>();
+		/** The keys to delete. */
+		final Set<Object> deletes = new LinkedHashSet<>();
+		/** Sets the generated key on an inserted record. */
+		final Action2<T, Long> setKey = new Action2<T, Long>() {
+			@Override
+			public void call(T t1, Long t2) {
+				pojo.setGeneratedKey(t1, t2);
+			}
+		};
+		/**
+		 * Constructor.
+		 * @param pojo the record mapper
+		 */
+		Pending(DBPojo<T> pojo) {
+			this.pojo = pojo;
+		}
+		/**
+		 * Executes the inserts.
+		 * @param db the database connection
+		 * @throws SQLException on error
+		 */
+		void insert(DB db) throws SQLException {
+			if (!inserts.isEmpty()) {
+				pojo.save(db, new ArrayList<>(inserts), new Func1<T, Boolean>() {
+					@Override
+					public Boolean call(T t) {
+						return true;
+					}
+				}, setKey);
+			}
+			if (!insertsExact.isEmpty()) {
+				pojo.saveExact(db, insertsExact.values(), new Func1<T, Boolean>() {
+					@Override
+					public Boolean call(T t) {
+						return true;
+					}
+				});
+			}
+		}
+		/**
+		 * Executes the updates.
+		 * @param db the database connection
+		 * @throws SQLException on error
+		 */
+		void update(DB db) throws SQLException {
+			if (!updates.isEmpty()) {
+				pojo.save(db, updates.values(), new Func1<T, Boolean>() {
+					@Override
+					public Boolean call(T t) {
+						return false;
+					}
+				}, setKey);
+			}
+		}
+		/**
+		 * Executes the deletes.
+		 * @param db the database connection
+		 * @throws SQLException on error
+		 */
+		void delete(DB db) throws SQLException {
+			if (!deletes.isEmpty()) {
+				pojo.deleteMany(db, deletes);
+			}
+		}
+	}
+	/**
+	 * Constructor.
+	 * @param db the database connection to flush into
+	 */
+	public DBUnitOfWork(@NonNull DB db) {
+		this.db = db;
+	}
+	/**
+	 * Returns the pending operations of the record type.
+	 * @param <T> the record type
+	 * @param pojo the record mapper
+	 * @return the pending operations
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> Pending<T> of(DBPojo<T> pojo) {
+		Pending<T> p = (Pending<T>)pending.get(pojo);
+		if (p == null) {
+			p = new Pending<>(pojo);
+			pending.put(pojo, p);
+		}
+		return p;
+	}
+	/**
+	 * Registers a record to insert with a generated key, which is
+	 * set on the record when flushed.
+	 * @param <T> the record type
+	 * @param pojo the record mapper
+	 * @param value the record
+	 */
+	public <T> void insert(@NonNull DBPojo<T> pojo, @NonNull T value) {
+		of(pojo).inserts.add(value);
+	}
+	/**
+	 * Registers a record to insert with its own key.
+	 * <p>If the key is pending deletion, the row exists, therefore the
+	 * delete is replaced by an update of the record.</p>
+	 * @param <T> the record type
+	 * @param pojo the record mapper
+	 * @param value the record
+	 */
+	public <T> void insertExact(@NonNull DBPojo<T> pojo, @NonNull T value) {
+		Pending<T> p = of(pojo);
+		Object key = pojo.keyOf(value);
+		if (p.deletes.remove(key)) {
+			p.updates.put(key, value);
+		} else {
+			p.insertsExact.put(key, value);
+		}
+	}
+	/**
+	 * Registers a record to update, replacing the pending update of the same key.
+	 * <p>Records pending insertion are written in their current state anyway.</p>
+	 * @param <T> the record type
+	 * @param pojo the record mapper
+	 * @param value the record
+	 */
+	public <T> void update(@NonNull DBPojo<T> pojo, @NonNull T value) {
+		Pending<T> p = of(pojo);
+		if (p.inserts.contains(value)) {
+			return;
+		}
+		Object key = pojo.keyOf(value);
+		if (p.insertsExact.containsKey(key)) {
+			p.insertsExact.put(key, value);
+		} else {
+			p.updates.put(key, value);
+		}
+	}
+	/**
+	 * Registers a record to delete, discarding its pending insert or update.
+	 * @param <T> the record type
+	 * @param pojo the record mapper
+	 * @param value the record
+	 */
+	public <T> void delete(@NonNull DBPojo<T> pojo, @NonNull T value) {
+		Pending<T> p = of(pojo);
+		if (p.inserts.remove(value)) {
+			return;
+		}
+		Object key = pojo.keyOf(value);
+		p.updates.remove(key);
+		if (p.insertsExact.remove(key) == null) {
+			p.deletes.add(key);
+		}
+	}
+	/**
+	 * Registers the key of a record to delete, discarding its pending update.
+	 * @param <T> the record type
+	 * @param pojo the record mapper
+	 * @param key the key value, or a List of the key values for composite keys
+	 */
+	public <T> void deleteKey(@NonNull DBPojo<T> pojo, @NonNull Object key) {
+		Pending<T> p = of(pojo);
+		Object k = pojo.cacheKey(key);
+		p.updates.remove(k);
+		if (p.insertsExact.remove(k) == null) {
+			p.deletes.add(k);
+		}
+	}
+	/**
+	 * Writes the pending operations and clears them.
+	 * <p>Inserts are written before updates, and the deletes come last.</p>
+	 * <p>If it fails, the pending operations are kept, but the tables before the
+	 * failing one are already written and the generated keys are set on their records,
+	 * therefore the caller must roll back the connection before flushing again.</p>
+	 * @throws SQLException on error
+	 */
+	public void flush() throws SQLException {
+		List<Pending<?>> order = order();
+		for (Pending<?> p : order) {
+			p.insert(db);
+		}
+		for (Pending<?> p : order) {
+			p.update(db);
+		}
+		for (int i = order.size() - 1; i >= 0; i--) {
+			order.get(i).delete(db);
+		}
+		clear();
+	}
+	/**
+	 * Discards the pending operations.
+	 */
+	public void clear() {
+		pending.clear();
+	}
+	/**
+	 * Orders the pending record types so that the referenced tables come first.
+	 * <p>Tables in a reference cycle keep their order of first use.</p>
+	 * @return the ordered list
+	 * @throws SQLException on error
+	 */
+	protected List<Pending<?>> order() throws SQLException {
+		List<Pending<?>> remaining = new ArrayList<>(pending.values());
+		List<Pending<?>> result = new ArrayList<>();
+		Set<String> done = new LinkedHashSet<>();
+		while (!remaining.isEmpty()) {
+			int next = 0;
+			outer:
+			for (int i = 0; i < remaining.size(); i++) {
+				String table = remaining.get(i).pojo.table();
+				String t = table.toUpperCase();
+				for (String parent : parents(table)) {
+					if (!parent.equals(t) && !done.contains(parent) && isPending(remaining, parent)) {
+						continue outer;
+					}
+				}
+				next = i;
+				break;
+			}
+			Pending<?> p = remaining.remove(next);
+			done.add(p.pojo.table().toUpperCase());
+			result.add(p);
+		}
+		return result;
+	}
+	/**
+	 * Checks if the table has pending operations among the given ones.
+	 * @param list the pending operations
+	 * @param table the upper case table name
+	 * @return true if pending
+	 */
+	static boolean isPending(List<Pending<?>> list, String table) {
+		for (Pending<?> p : list) {
+			if (p.pojo.table().equalsIgnoreCase(table)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+	 * Returns the upper case names of the tables referenced by
+	 * the foreign keys of the given table.
+	 * <p>The metadata is queried with the table name as declared, then
+	 * in the case the database stores the unquoted identifiers.</p>
+	 * @param table the table name as declared
+	 * @return the referenced tables
+	 * @throws SQLException on error
+	 */
+	protected Set<String> parents(String table) throws SQLException {
+		Set<String> result = parents.get(table);
+		if (result == null) {
+			result = new LinkedHashSet<>();
+			DatabaseMetaData md = db.conn.getMetaData();
+			if (md != null) {
+				String stored = null;
+				if (md.storesUpperCaseIdentifiers()) {
+					stored = table.toUpperCase();
+				} else
+				if (md.storesLowerCaseIdentifiers()) {
+					stored = table.toLowerCase();
+				}
+				if (table.equals(stored)) {
+					stored = null;
+				}
+				for (String name : new String[] { table, stored }) {
+					if (name == null) {
+						continue;
+					}
+					try (ResultSet rs = md.getImportedKeys(null, null, name)) {
+						if (rs != null) {
+							while (rs.next()) {
+								// PKTABLE_NAME
+								String pk = rs.getString(3);
+								if (pk != null) {
+									result.add(pk.toUpperCase());
+								}
+							}
+						}
+					}
+					if (!result.isEmpty()) {
+						break;
+					}
+				}
+			}
+			parents.put(table, result);
+		}
+		return result;
+	}
+}
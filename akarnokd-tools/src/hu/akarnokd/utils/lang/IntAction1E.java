@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hu.akarnokd.utils.lang;
+
+/**
+ * A single primitive int parameter + exception functional interface.
+ * @author akarnokd, 2026.10.17.
+ * @param <E> the exception class
+ */
+public interface IntAction1E<E extends Exception> {
+	/**
+	 * Invokes the action.
+	 * @param t the first parameter
+	 * @throws E the expection
+	 */
+	void call(int t) throws E;
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hu.akarnokd.utils.lang;
+
+/**
+ * Functional interface taking one parameter, returning a primitive double and throwing an exception.
+ * @author akarnokd, 2026.10.17.
+ * @param <T1> the first parameter type
+ * @param <E> the exception type
+ */
+public interface ToDoubleFunc1E<T1, E extends Exception> {
+	/**
+	 * Invokes the function.
+	 * @param t the first parameter
+	 * @return the result
+	 * @throws E the exception
+	 */
+	double call(T1 t) throws E;
+}
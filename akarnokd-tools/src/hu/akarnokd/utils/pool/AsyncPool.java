@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.pool;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A pool which can supply objects without blocking the caller.
+ * <p>The returned observables emit a single object once it becomes available,
+ * the subscriber is responsible for returning it via {@link #put(Object)}.
+ * Unsubscribing before the object arrives cancels the request.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the pooled object type
+ */
+public interface AsyncPool<T> extends Pool<T> {
+	/**
+	 * Retrieve an object from the pool asynchronously.
+	 * @return the observable of a single object
+	 */
+	@NonNull
+	Observable<T> getAsync();
+	/**
+	 * Retrieve an object from the pool asynchronously or signal a
+	 * TimeoutException if it doesn't become available in time.
+	 * @param time the time to wait
+	 * @param unit the time unit
+	 * @return the observable of a single object
+	 */
+	@NonNull
+	Observable<T> getAsync(long time, @NonNull TimeUnit unit);
+}
@@ -0,0 +1,1108 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.pool;
+
+import ix.exceptions.MultiIOException;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Scheduler.Worker;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * A bounded object pool which doesn't use a global lock.
+ * <p>A borrowing thread first tries the object it returned last, then
+ * scans the shared list of entries for an idle one, claiming it via CAS.
+ * If none is idle and the pool has not reached its size, a new object
+ * is created. Otherwise the thread enqueues itself as a waiter and
+ * returning threads hand their objects directly to the waiters
+ * in FIFO order. Asynchronous borrowers wait in the same queue without
+ * blocking a thread.</p>
+ * <p>Pre-existing objects are verified through the manager before handing
+ * them out, similar to the {@link BoundedPool}. The {@link PoolSettings} may
+ * restrict the verification to objects which were idle for some time, limit
+ * the lifetime of the objects and enable a background maintenance which
+ * closes the superfluous idle objects and keeps a minimum number of idle
+ * objects ready.</p>
+ * <p>The pool counts its events and records the borrow wait, hold, creation
+ * and verification latencies in {@link #metrics()}, which can be published
+ * via JMX with {@link #registerMBean(String)}. If the settings specify a leak
+ * threshold, the maintenance reports the objects borrowed for longer along
+ * with the stack trace of their borrow.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the pooled object type
+ */
+public class ConcurrentPool<T> implements AsyncPool<T> {
+	/** The entry is available. */
+	protected static final int IDLE = 0;
+	/** The entry is borrowed. */
+	protected static final int IN_USE = 1;
+	/** The entry was removed from the pool. */
+	protected static final int REMOVED = 2;
+	/** The waiter state indicating the waiter gave up. */
+	protected static final Object CANCELLED = new Object();
+	/** The waiter state indicating the pool was closed. */
+	protected static final Object CLOSED = new Object();
+	/**
+	 * A pooled object with its state.
+	 * @param <T> the object type
+	 */
+	protected static final class Entry<T> extends AtomicInteger {
+		/** */
+		private static final long serialVersionUID = -2787138637719735245L;
+		/** The pooled object. */
+		final T value;
+		/** The weak reference used by the thread-local fast path. */
+		final WeakReference<Entry<T>> ref;
+		/** The creation time in System.nanoTime() units. */
+		final long created;
+		/** The last time the object was returned to the pool. */
+		volatile long returned;
+		/** The last time the object was known to be valid. */
+		volatile long verified;
+		/** The last time the object was handed out. */
+		volatile long borrowed;
+		/** The stack trace of the borrow if leak detection is enabled and the leak was not reported yet. */
+		volatile Throwable trace;
+		/** The object was created for the current borrower and needs no verification. */
+		boolean fresh;
+		/**
+		 * Constructor, sets the value and the initial state.
+		 * @param value the pooled object
+		 * @param state the initial state
+		 */
+		Entry(T value, int state) {
+			super(state);
+			this.value = value;
+			this.ref = new WeakReference<>(this);
+			this.created = System.nanoTime();
+			this.returned = created;
+			this.verified = created;
+		}
+	}
+	/**
+	 * A waiter for an entry. The state is null while waiting,
+	 * the entry once delivered or one of the CANCELLED and CLOSED markers.
+	 */
+	protected abstract static class Waiter extends AtomicReference<Object> {
+		/** */
+		private static final long serialVersionUID = 6419005306658212302L;
+		/**
+		 * Try delivering the given entry or marker.
+		 * @param value the value
+		 * @return true if accepted
+		 */
+		boolean offer(Object value) {
+			if (compareAndSet(null, value)) {
+				signal();
+				return true;
+			}
+			return false;
+		}
+		/**
+		 * Try to cancel the wait.
+		 * @return true if cancelled, false if something was delivered in the meantime
+		 */
+		boolean cancel() {
+			return compareAndSet(null, CANCELLED);
+		}
+		/** Notify the waiter about a delivery. */
+		abstract void signal();
+	}
+	/** A waiter which parks the borrowing thread. */
+	protected static final class BlockingWaiter extends Waiter {
+		/** */
+		private static final long serialVersionUID = -5051651153000478219L;
+		/** The waiting thread. */
+		final Thread thread = Thread.currentThread();
+		@Override
+		void signal() {
+			LockSupport.unpark(thread);
+		}
+	}
+	/** A waiter which continues an asynchronous borrow request. */
+	protected final class AsyncWaiter extends Waiter {
+		/** */
+		private static final long serialVersionUID = 2203003950217240218L;
+		/** The request. */
+		final AsyncBorrow parent;
+		/**
+		 * Constructor, sets the parent request.
+		 * @param parent the request
+		 */
+		AsyncWaiter(AsyncBorrow parent) {
+			this.parent = parent;
+		}
+		@Override
+		void signal() {
+			parent.onSignal(this);
+		}
+	}
+	/**
+	 * An asynchronous borrow request of a subscriber. The state is 0 while
+	 * pending, 1 once the subscriber received a value or an error and 2 if the
+	 * subscriber unsubscribed or timed out.
+	 */
+	protected final class AsyncBorrow extends AtomicInteger implements Action0 {
+		/** */
+		private static final long serialVersionUID = -7203469263564939711L;
+		/** The subscriber. */
+		final Subscriber<? super T> child;
+		/** The timeout in nanoseconds, negative waits indefinitely. */
+		final long timeoutNanos;
+		/** The current waiter. */
+		volatile AsyncWaiter current;
+		/** The start of the request in System.nanoTime() units. */
+		final long start;
+		/**
+		 * Constructor, sets the fields.
+		 * @param child the subscriber
+		 * @param timeoutNanos the timeout in nanoseconds, negative waits indefinitely
+		 */
+		AsyncBorrow(Subscriber<? super T> child, long timeoutNanos) {
+			this.child = child;
+			this.timeoutNanos = timeoutNanos;
+			this.start = System.nanoTime();
+		}
+		/** Register the cancellation and timeout, then try acquiring an entry. */
+		void start() {
+			child.add(Subscriptions.create(this));
+			if (timeoutNanos >= 0) {
+				Worker w = Schedulers.computation().createWorker();
+				child.add(w);
+				w.schedule(new Action0() {
+					@Override
+					public void call() {
+						if (compareAndSet(0, 2)) {
+							abandon();
+							fireTimeout();
+							child.onError(new TimeoutException());
+						}
+					}
+				}, timeoutNanos, TimeUnit.NANOSECONDS);
+			}
+			attempt();
+		}
+		/** Called when the subscriber unsubscribes. */
+		@Override
+		public void call() {
+			if (compareAndSet(0, 2)) {
+				abandon();
+			}
+		}
+		/**
+		 * Remove the current waiter from the queue. If an entry was delivered
+		 * to it in the meantime, onSignal hands it back.
+		 */
+		void abandon() {
+			AsyncWaiter w = current;
+			if (w != null) {
+				cancel(w);
+			}
+		}
+		/** Acquire or create an entry or enqueue a new waiter. */
+		void attempt() {
+			for (;;) {
+				if (get() != 0) {
+					return;
+				}
+				Entry<T> e;
+				try {
+					e = tryAcquire();
+					if (e == null) {
+						e = tryCreate();
+					}
+					if (e == null) {
+						AsyncWaiter w = new AsyncWaiter(this);
+						current = w;
+						waiters.offer(w);
+						// an entry may have become idle before the waiter was visible
+						e = tryAcquire();
+						if (e == null) {
+							e = tryCreate();
+						}
+						if (e == null) {
+							if (get() != 0) {
+								cancel(w);
+							}
+							return;
+						}
+						// if cancelling fails, the other entry is given back by onSignal
+						cancel(w);
+					}
+				} catch (Throwable ex) {
+					if (compareAndSet(0, 1)) {
+						child.onError(ex);
+					}
+					return;
+				}
+				if (deliver(e)) {
+					return;
+				}
+			}
+		}
+		/**
+		 * Handle the entry or marker delivered to a waiter.
+		 * @param w the waiter
+		 */
+		@SuppressWarnings("unchecked")
+		void onSignal(AsyncWaiter w) {
+			Object o = w.get();
+			if (o == CLOSED) {
+				if (compareAndSet(0, 1)) {
+					child.onError(new IllegalStateException("Pool closed"));
+				}
+				return;
+			}
+			if (!deliver((Entry<T>)o)) {
+				attempt();
+			}
+		}
+		/**
+		 * Verify the entry and emit its value or release it if the request
+		 * is no longer pending.
+		 * @param e the entry in IN_USE state
+		 * @return false if the entry was invalid and a new one is needed
+		 */
+		boolean deliver(Entry<T> e) {
+			if (get() != 0) {
+				release(e);
+				return true;
+			}
+			if (!checkout(e)) {
+				return false;
+			}
+			if (compareAndSet(0, 1)) {
+				child.onNext(handout(e, start));
+				child.onCompleted();
+			} else {
+				release(e);
+			}
+			return true;
+		}
+	}
+	/** The maximum number of objects. */
+	protected final int poolSize;
+	/** The manager of the pool objects. */
+	protected final PoolManager<T> manager;
+	/** All entries. */
+	protected final CopyOnWriteArrayList<Entry<T>> entries = new CopyOnWriteArrayList<>();
+	/** Map from object to entry. */
+	protected final ConcurrentMap<T, Entry<T>> index = new ConcurrentHashMap<>();
+	/** The number of objects created or being created. */
+	protected final AtomicInteger size = new AtomicInteger();
+	/** The waiters in arrival order. */
+	protected final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+	/** The last entry returned by the current thread. */
+	protected final ThreadLocal<WeakReference<Entry<T>>> last = new ThreadLocal<>();
+	/** The pool was closed. */
+	protected volatile boolean closed;
+	/** The pool settings. */
+	protected final PoolSettings settings;
+	/** The scheduled maintenance task, null if not running. */
+	protected final Future<?> maintenance;
+	/** The event counters and latency histograms. */
+	protected final PoolMetrics metrics = new PoolMetrics();
+	/** The optional additional event listener. */
+	protected volatile PoolListener<? super T> listener;
+	/** The name of the registered MBean. */
+	protected volatile ObjectName mbeanName;
+	/** The logger reporting the leaks. */
+	protected static final Logger LOG = Logger.getLogger(ConcurrentPool.class.getName());
+	/** The shared maintenance thread of all pools. */
+	protected static final class Maintenance {
+		/** Holder class. */
+		private Maintenance() { }
+		/** The scheduler. */
+		static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ConcurrentPool-Maintenance");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	/**
+	 * Creates a pool with the given size which verifies objects on every borrow.
+	 * @param poolSize the maximum number of objects
+	 * @param manager the pool manager
+	 */
+	public ConcurrentPool(int poolSize, @NonNull PoolManager<T> manager) {
+		this(poolSize, manager, new PoolSettings());
+	}
+	/**
+	 * Creates a pool with the given size and settings. If the settings
+	 * have a positive maintenance period, the pool is prefilled to minIdle
+	 * and maintained on a background thread until it is closed.
+	 * @param poolSize the maximum number of objects
+	 * @param manager the pool manager
+	 * @param settings the settings, copied
+	 */
+	public ConcurrentPool(int poolSize, @NonNull PoolManager<T> manager, @NonNull PoolSettings settings) {
+		if (poolSize <= 0) {
+			throw new IllegalArgumentException("poolSize > 0 required but it was " + poolSize);
+		}
+		this.poolSize = poolSize;
+		this.manager = manager;
+		this.settings = new PoolSettings(settings);
+		if (settings.maintenanceMillis > 0) {
+			maintenance = Maintenance.EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					maintain();
+				}
+			}, 0, settings.maintenanceMillis, TimeUnit.MILLISECONDS);
+		} else {
+			maintenance = null;
+		}
+	}
+	/** @return a copy of the pool settings */
+	@NonNull
+	public PoolSettings settings() {
+		return new PoolSettings(settings);
+	}
+	@Override
+	public T get() throws Exception {
+		return acquire(-1L);
+	}
+	/**
+	 * Retrieve an object from the pool, waiting at most the given amount of time.
+	 * @param time the time to wait
+	 * @param unit the time unit
+	 * @return the object
+	 * @throws TimeoutException if no object became available in time
+	 * @throws Exception if the object could not be supplied
+	 */
+	@NonNull
+	public T get(long time, @NonNull TimeUnit unit) throws Exception {
+		return acquire(Math.max(0L, unit.toNanos(time)));
+	}
+	/**
+	 * Retrieve an object from the pool asynchronously.
+	 * <p>If an object is available or can be created, it is emitted on the
+	 * subscribing thread, otherwise the subscriber joins the same FIFO queue
+	 * as the blocking borrowers and the object is emitted on the thread
+	 * returning it.</p>
+	 * @return the observable of a single object
+	 */
+	@Override
+	public Observable<T> getAsync() {
+		return acquireAsync(-1L);
+	}
+	@Override
+	public Observable<T> getAsync(long time, TimeUnit unit) {
+		return acquireAsync(Math.max(0L, unit.toNanos(time)));
+	}
+	/**
+	 * Create an observable which borrows an object for each subscriber.
+	 * @param timeoutNanos the timeout in nanoseconds, negative waits indefinitely
+	 * @return the observable
+	 */
+	protected Observable<T> acquireAsync(final long timeoutNanos) {
+		return Observable.unsafeCreate(new OnSubscribe<T>() {
+			@Override
+			public void call(Subscriber<? super T> child) {
+				new AsyncBorrow(child, timeoutNanos).start();
+			}
+		});
+	}
+	/**
+	 * Acquire an object, verifying pre-existing ones.
+	 * @param timeoutNanos the timeout in nanoseconds, negative waits indefinitely
+	 * @return the object
+	 * @throws Exception on error
+	 */
+	protected T acquire(long timeoutNanos) throws Exception {
+		long start = System.nanoTime();
+		long deadline = timeoutNanos >= 0 ? start + timeoutNanos : 0L;
+		for (;;) {
+			Entry<T> e = tryAcquire();
+			if (e == null) {
+				e = tryCreate();
+				if (e == null) {
+					e = await(timeoutNanos >= 0, deadline);
+				}
+			}
+			if (checkout(e)) {
+				return handout(e, start);
+			}
+		}
+	}
+	/**
+	 * Retrieve an object only if one is idle or can be created without waiting.
+	 * @return the object or null if the pool is exhausted
+	 * @throws Exception if the object could not be created
+	 */
+	@Nullable
+	public T tryGet() throws Exception {
+		long start = System.nanoTime();
+		for (;;) {
+			Entry<T> e = tryAcquire();
+			if (e == null) {
+				e = tryCreate();
+				if (e == null) {
+					return null;
+				}
+			}
+			if (checkout(e)) {
+				return handout(e, start);
+			}
+		}
+	}
+	/**
+	 * Check if a claimed entry can be handed out, verifying it if necessary,
+	 * and discard it if not.
+	 * @param e the entry in IN_USE state
+	 * @return true if the entry can be handed out
+	 */
+	protected boolean checkout(Entry<T> e) {
+		if (e.fresh) {
+			e.fresh = false;
+			return true;
+		}
+		long now = System.nanoTime();
+		if (!isExpired(e, now)
+				&& (!needsVerify(e, now) || verify(e, now))) {
+			return true;
+		}
+		discard(e);
+		return false;
+	}
+	/**
+	 * Record the borrow of the entry.
+	 * @param e the entry
+	 * @param start the start of the borrow request in System.nanoTime() units
+	 * @return the value of the entry
+	 */
+	protected T handout(Entry<T> e, long start) {
+		long now = System.nanoTime();
+		e.borrowed = now;
+		if (settings.leakThresholdMillis > 0) {
+			e.trace = new Throwable("Borrowed at");
+		}
+		metrics.onBorrow(e.value, now - start);
+		PoolListener<? super T> l = listener;
+		if (l != null) {
+			l.onBorrow(e.value, now - start);
+		}
+		return e.value;
+	}
+	/** Record a borrow timeout. */
+	protected void fireTimeout() {
+		metrics.onTimeout();
+		PoolListener<? super T> l = listener;
+		if (l != null) {
+			l.onTimeout();
+		}
+	}
+	/**
+	 * Record the closing of an object.
+	 * @param value the object
+	 */
+	protected void fireDestroy(T value) {
+		metrics.onDestroy(value);
+		PoolListener<? super T> l = listener;
+		if (l != null) {
+			l.onDestroy(value);
+		}
+	}
+	/**
+	 * Verify a borrowed entry.
+	 * @param e the entry
+	 * @param now the current time in System.nanoTime() units
+	 * @return true if the entry can be handed out
+	 */
+	protected boolean verify(Entry<T> e, long now) {
+		boolean valid;
+		try {
+			valid = manager.verify(e.value);
+		} catch (Exception ex) {
+			// the verification crashed, throw away the object
+			valid = false;
+		}
+		long t = System.nanoTime();
+		if (valid) {
+			e.verified = t;
+		}
+		metrics.onVerify(e.value, valid, t - now);
+		PoolListener<? super T> l = listener;
+		if (l != null) {
+			l.onVerify(e.value, valid, t - now);
+		}
+		return valid;
+	}
+	/**
+	 * Check if the entry has been idle long enough to require verification.
+	 * @param e the entry
+	 * @param now the current time in System.nanoTime() units
+	 * @return true if the entry should be verified
+	 */
+	protected boolean needsVerify(Entry<T> e, long now) {
+		long t = settings.validationIdleMillis;
+		if (t <= 0) {
+			return true;
+		}
+		return now - Math.max(e.returned, e.verified) > TimeUnit.MILLISECONDS.toNanos(t);
+	}
+	/**
+	 * Check if the entry exceeded the maximum lifetime.
+	 * @param e the entry
+	 * @param now the current time in System.nanoTime() units
+	 * @return true if the entry should be closed
+	 */
+	protected boolean isExpired(Entry<T> e, long now) {
+		long t = settings.maxLifetimeMillis;
+		return t > 0 && now - e.created > TimeUnit.MILLISECONDS.toNanos(t);
+	}
+	/**
+	 * Perform a maintenance pass: close the expired objects and the idle objects
+	 * above minIdle which timed out, verify the long-idle objects and create new
+	 * objects up to minIdle.
+	 * <p>Called periodically if the settings specify a maintenance period, but
+	 * can be invoked directly.</p>
+	 */
+	public void maintain() {
+		if (closed) {
+			return;
+		}
+		detectLeaks();
+		long idleTimeout = settings.idleTimeoutMillis > 0
+				? TimeUnit.MILLISECONDS.toNanos(settings.idleTimeoutMillis) : -1L;
+		int idleCount = idle();
+		for (Entry<T> e : entries) {
+			if (closed) {
+				return;
+			}
+			if (!e.compareAndSet(IDLE, IN_USE)) {
+				continue;
+			}
+			long now = System.nanoTime();
+			if (isExpired(e, now)) {
+				idleCount--;
+				discard(e);
+			} else
+			if (idleTimeout >= 0 && idleCount > settings.minIdle
+					&& now - e.returned > idleTimeout) {
+				idleCount--;
+				discard(e);
+			} else
+			if (settings.validationIdleMillis > 0 && needsVerify(e, now)
+					&& !verify(e, now)) {
+				idleCount--;
+				discard(e);
+			} else {
+				release(e);
+			}
+		}
+		fill();
+	}
+	/**
+	 * Report the objects borrowed for longer than the leak threshold to
+	 * the log and the listeners.
+	 */
+	protected void detectLeaks() {
+		long t = settings.leakThresholdMillis;
+		if (t <= 0) {
+			return;
+		}
+		long threshold = TimeUnit.MILLISECONDS.toNanos(t);
+		long now = System.nanoTime();
+		for (Entry<T> e : entries) {
+			Throwable trace = e.trace;
+			long held = now - e.borrowed;
+			if (trace != null && e.get() == IN_USE && held > threshold) {
+				e.trace = null;
+				LOG.log(Level.WARNING, "Pool object held for "
+						+ TimeUnit.NANOSECONDS.toMillis(held) + " ms: " + e.value, trace);
+				metrics.onLeak(e.value, held, trace);
+				PoolListener<? super T> l = listener;
+				if (l != null) {
+					l.onLeak(e.value, held, trace);
+				}
+			}
+		}
+	}
+	/**
+	 * Create idle objects until the minIdle count or the pool size is reached.
+	 */
+	protected void fill() {
+		int n = settings.minIdle - idle();
+		while (n-- > 0 && !closed) {
+			Entry<T> e;
+			try {
+				e = tryCreate();
+			} catch (Exception ex) {
+				// retried in the next maintenance pass
+				return;
+			}
+			if (e == null) {
+				return;
+			}
+			e.fresh = false;
+			release(e);
+		}
+	}
+	/**
+	 * Try claiming an idle entry without blocking.
+	 * @return the entry in IN_USE state or null if none is idle
+	 */
+	protected Entry<T> tryAcquire() {
+		if (closed) {
+			throw new IllegalStateException("Pool closed");
+		}
+		WeakReference<Entry<T>> ref = last.get();
+		if (ref != null) {
+			Entry<T> e = ref.get();
+			if (e != null && e.compareAndSet(IDLE, IN_USE)) {
+				return e;
+			}
+		}
+		for (Entry<T> e : entries) {
+			if (e.get() == IDLE && e.compareAndSet(IDLE, IN_USE)) {
+				return e;
+			}
+		}
+		return null;
+	}
+	/**
+	 * Create a new entry if the pool size permits.
+	 * @return the new entry in IN_USE state or null if the pool is full
+	 * @throws Exception if the manager failed to create the object
+	 */
+	protected Entry<T> tryCreate() throws Exception {
+		for (;;) {
+			int s = size.get();
+			if (s >= poolSize) {
+				return null;
+			}
+			if (size.compareAndSet(s, s + 1)) {
+				break;
+			}
+		}
+		T value;
+		long start = System.nanoTime();
+		try {
+			value = manager.create();
+		} catch (Exception ex) {
+			size.decrementAndGet();
+			metrics.onCreateError(ex);
+			PoolListener<? super T> l = listener;
+			if (l != null) {
+				l.onCreateError(ex);
+			}
+			throw ex;
+		}
+		long t = System.nanoTime() - start;
+		metrics.onCreate(value, t);
+		PoolListener<? super T> l = listener;
+		if (l != null) {
+			l.onCreate(value, t);
+		}
+		Entry<T> e = new Entry<>(value, IN_USE);
+		e.fresh = true;
+		index.put(value, e);
+		entries.add(e);
+		if (closed) {
+			discard(e);
+			throw new IllegalStateException("Pool closed");
+		}
+		return e;
+	}
+	/**
+	 * Wait for an entry to be handed over.
+	 * @param timed is the wait timed?
+	 * @param deadline the deadline in System.nanoTime() units
+	 * @return the entry in IN_USE state
+	 * @throws Exception on timeout, interruption or closed pool
+	 */
+	protected Entry<T> await(boolean timed, long deadline) throws Exception {
+		BlockingWaiter w = new BlockingWaiter();
+		waiters.offer(w);
+		// an entry may have become idle before the waiter was visible
+		Entry<T> e;
+		try {
+			e = tryAcquire();
+			if (e == null) {
+				e = tryCreate();
+			}
+		} catch (Exception ex) {
+			cancel(w);
+			throw ex;
+		}
+		if (e != null) {
+			if (!cancel(w)) {
+				// received another one in the meantime
+				release(delivered(w));
+			}
+			return e;
+		}
+		boolean interrupted = false;
+		for (;;) {
+			Object o = w.get();
+			if (o != null) {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				return delivered(w);
+			}
+			if (timed) {
+				long left = deadline - System.nanoTime();
+				if (left <= 0L) {
+					if (cancel(w)) {
+						fireTimeout();
+						throw new TimeoutException();
+					}
+					continue;
+				}
+				LockSupport.parkNanos(this, left);
+			} else {
+				LockSupport.park(this);
+			}
+			if (Thread.interrupted()) {
+				if (cancel(w)) {
+					throw new InterruptedException();
+				}
+				interrupted = true;
+			}
+		}
+	}
+	/**
+	 * Returns the entry delivered to the waiter.
+	 * @param w the waiter
+	 * @return the entry
+	 */
+	@SuppressWarnings("unchecked")
+	protected Entry<T> delivered(Waiter w) {
+		Object o = w.get();
+		if (o == CLOSED) {
+			throw new IllegalStateException("Pool closed");
+		}
+		return (Entry<T>)o;
+	}
+	/**
+	 * Cancel the waiter and remove it from the queue.
+	 * @param w the waiter
+	 * @return true if cancelled, false if an entry was delivered
+	 */
+	protected boolean cancel(Waiter w) {
+		if (w.cancel()) {
+			waiters.remove(w);
+			return true;
+		}
+		return false;
+	}
+	/**
+	 * Make the entry available, handing it to the oldest waiter if there is any.
+	 * @param e the entry in IN_USE state
+	 */
+	protected void release(Entry<T> e) {
+		e.set(IDLE);
+		while (!waiters.isEmpty()) {
+			if (!e.compareAndSet(IDLE, IN_USE)) {
+				// somebody else claimed it
+				return;
+			}
+			Waiter w;
+			while ((w = waiters.poll()) != null) {
+				if (w.offer(e)) {
+					return;
+				}
+			}
+			e.set(IDLE);
+		}
+	}
+	/**
+	 * Remove the entry from the pool and close its object. If there are waiters,
+	 * a replacement object is created for them.
+	 * @param e the entry in IN_USE state
+	 */
+	protected void discard(Entry<T> e) {
+		e.set(REMOVED);
+		entries.remove(e);
+		index.remove(e.value);
+		size.decrementAndGet();
+		try {
+			manager.close(e.value);
+		} catch (Exception ex) {
+			// ignored
+		}
+		fireDestroy(e.value);
+		if (!waiters.isEmpty() && !closed) {
+			try {
+				Entry<T> n = tryCreate();
+				if (n != null) {
+					n.fresh = false;
+					release(n);
+				}
+			} catch (Exception ex) {
+				// ignored, the waiters keep waiting for a returned object
+			}
+		}
+	}
+	/**
+	 * Return a pool object.
+	 * @param obj the object to return
+	 */
+	@Override
+	public void put(T obj) {
+		Entry<T> e = index.get(obj);
+		if (e == null) {
+			if (closed) {
+				return;
+			}
+			throw new IllegalArgumentException("obj is not managed by this pool");
+		}
+		if (e.get() != IN_USE) {
+			throw new IllegalArgumentException("obj is not borrowed");
+		}
+		if (closed) {
+			discard(e);
+			return;
+		}
+		long now = System.nanoTime();
+		e.trace = null;
+		metrics.onReturn(obj, now - e.borrowed);
+		PoolListener<? super T> l = listener;
+		if (l != null) {
+			l.onReturn(obj, now - e.borrowed);
+		}
+		if (isExpired(e, now)) {
+			discard(e);
+			return;
+		}
+		e.returned = now;
+		last.set(e.ref);
+		release(e);
+	}
+	/** @return the event counters and latency histograms */
+	@NonNull
+	public PoolMetrics metrics() {
+		return metrics;
+	}
+	/**
+	 * Set an additional listener for the pool events.
+	 * @param listener the listener, null removes the current one
+	 */
+	public void setListener(@Nullable PoolListener<? super T> listener) {
+		this.listener = listener;
+	}
+	/**
+	 * Register the JMX view of this pool in the platform MBean server
+	 * under the name hu.akarnokd.utils.pool:type=ConcurrentPool,name=<i>name</i>.
+	 * The view is unregistered when the pool is closed.
+	 * @param name the pool name
+	 * @throws JMException if the registration failed
+	 */
+	public void registerMBean(@NonNull String name) throws JMException {
+		ObjectName on = new ObjectName("hu.akarnokd.utils.pool:type=ConcurrentPool,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBeanView(), on);
+		mbeanName = on;
+	}
+	/** Unregister the JMX view if it was registered. */
+	protected void unregisterMBean() {
+		ObjectName on = mbeanName;
+		if (on != null) {
+			mbeanName = null;
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(on);
+			} catch (JMException ex) {
+				// ignored
+			}
+		}
+	}
+	/** The JMX view of the pool. */
+	protected final class MXBeanView implements ConcurrentPoolMXBean {
+		@Override
+		public int getMaxSize() {
+			return poolSize;
+		}
+		@Override
+		public int getSize() {
+			return size();
+		}
+		@Override
+		public int getIdle() {
+			return idle();
+		}
+		@Override
+		public int getActive() {
+			return Math.max(0, size() - idle());
+		}
+		@Override
+		public int getWaiting() {
+			return waiting();
+		}
+		@Override
+		public long getCreated() {
+			return metrics.created();
+		}
+		@Override
+		public long getCreateErrors() {
+			return metrics.createErrors();
+		}
+		@Override
+		public long getDestroyed() {
+			return metrics.destroyed();
+		}
+		@Override
+		public long getBorrowed() {
+			return metrics.borrowed();
+		}
+		@Override
+		public long getReturned() {
+			return metrics.returned();
+		}
+		@Override
+		public long getTimeouts() {
+			return metrics.timeouts();
+		}
+		@Override
+		public long getVerifyFailures() {
+			return metrics.verifyFailures();
+		}
+		@Override
+		public long getLeaks() {
+			return metrics.leaks();
+		}
+		@Override
+		public long getBorrowWaitMean() {
+			return micros(metrics.borrowWait().mean());
+		}
+		@Override
+		public long getBorrowWait99() {
+			return micros(metrics.borrowWait().percentile(99));
+		}
+		@Override
+		public long getBorrowWaitMax() {
+			return micros(metrics.borrowWait().max());
+		}
+		@Override
+		public long getHoldMean() {
+			return micros(metrics.hold().mean());
+		}
+		@Override
+		public long getHold99() {
+			return micros(metrics.hold().percentile(99));
+		}
+		@Override
+		public long getHoldMax() {
+			return micros(metrics.hold().max());
+		}
+		@Override
+		public long getCreateMean() {
+			return micros(metrics.create().mean());
+		}
+		@Override
+		public long getCreate99() {
+			return micros(metrics.create().percentile(99));
+		}
+		@Override
+		public long getVerifyMean() {
+			return micros(metrics.verify().mean());
+		}
+		@Override
+		public long getVerify99() {
+			return micros(metrics.verify().percentile(99));
+		}
+		@Override
+		public void resetHistograms() {
+			metrics.resetHistograms();
+		}
+		/**
+		 * Convert nanoseconds to microseconds.
+		 * @param nanos the nanoseconds
+		 * @return the microseconds
+		 */
+		long micros(long nanos) {
+			return TimeUnit.NANOSECONDS.toMicros(nanos);
+		}
+	}
+	/** @return the number of objects created. */
+	public int size() {
+		return size.get();
+	}
+	/** @return the number of idle objects. */
+	public int idle() {
+		int n = 0;
+		for (Entry<T> e : entries) {
+			if (e.get() == IDLE) {
+				n++;
+			}
+		}
+		return n;
+	}
+	/** @return the number of threads waiting for an object. */
+	public int waiting() {
+		return waiters.size();
+	}
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		if (maintenance != null) {
+			maintenance.cancel(false);
+		}
+		unregisterMBean();
+		Waiter w;
+		while ((w = waiters.poll()) != null) {
+			w.offer(CLOSED);
+		}
+		MultiIOException exc = null;
+		for (Entry<T> e : entries) {
+			if (e.getAndSet(REMOVED) != REMOVED) {
+				try {
+					manager.close(e.value);
+				} catch (Exception ex) {
+					exc = MultiIOException.createOrAdd(exc, new IOException(ex));
+				}
+				fireDestroy(e.value);
+			}
+		}
+		entries.clear();
+		index.clear();
+		if (exc != null) {
+			throw exc;
+		}
+	}
+}
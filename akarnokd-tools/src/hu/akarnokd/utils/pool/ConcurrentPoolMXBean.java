@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.pool;
+
+/**
+ * The JMX view of a {@link ConcurrentPool}, the latencies are in microseconds.
+ * @author akarnokd, 2026.10.17.
+ */
+public interface ConcurrentPoolMXBean {
+	/** @return the maximum number of objects */
+	int getMaxSize();
+	/** @return the number of objects */
+	int getSize();
+	/** @return the number of idle objects */
+	int getIdle();
+	/** @return the number of borrowed objects */
+	int getActive();
+	/** @return the number of waiting borrowers */
+	int getWaiting();
+	/** @return the number of objects created */
+	long getCreated();
+	/** @return the number of failed creations */
+	long getCreateErrors();
+	/** @return the number of objects closed */
+	long getDestroyed();
+	/** @return the number of borrows */
+	long getBorrowed();
+	/** @return the number of returns */
+	long getReturned();
+	/** @return the number of borrow timeouts */
+	long getTimeouts();
+	/** @return the number of failed verifications */
+	long getVerifyFailures();
+	/** @return the number of detected leaks */
+	long getLeaks();
+	/** @return the average borrow wait */
+	long getBorrowWaitMean();
+	/** @return the 99th percentile of the borrow wait */
+	long getBorrowWait99();
+	/** @return the maximum borrow wait */
+	long getBorrowWaitMax();
+	/** @return the average hold time */
+	long getHoldMean();
+	/** @return the 99th percentile of the hold time */
+	long getHold99();
+	/** @return the maximum hold time */
+	long getHoldMax();
+	/** @return the average creation time */
+	long getCreateMean();
+	/** @return the 99th percentile of the creation time */
+	long getCreate99();
+	/** @return the average verification time */
+	long getVerifyMean();
+	/** @return the 99th percentile of the verification time */
+	long getVerify99();
+	/** Clear the latency histograms. */
+	void resetHistograms();
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.pool;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Receives the lifecycle events of the objects of a {@link ConcurrentPool}.
+ * <p>The methods are called synchronously on the thread causing the event
+ * and should return quickly.</p>
+ * @author akarnokd, 2026.10.17.
+ * @param <T> the pooled object type
+ */
+public interface PoolListener<T> {
+	/**
+	 * A new object was created.
+	 * @param obj the object
+	 * @param nanos the creation time
+	 */
+	void onCreate(@NonNull T obj, long nanos);
+	/**
+	 * The manager failed to create an object.
+	 * @param error the error
+	 */
+	void onCreateError(@NonNull Throwable error);
+	/**
+	 * An object was verified.
+	 * @param obj the object
+	 * @param valid the verification result
+	 * @param nanos the verification time
+	 */
+	void onVerify(@NonNull T obj, boolean valid, long nanos);
+	/**
+	 * An object was handed out.
+	 * @param obj the object
+	 * @param waitNanos the time the borrower waited, including creation and verification
+	 */
+	void onBorrow(@NonNull T obj, long waitNanos);
+	/**
+	 * A borrower gave up waiting.
+	 */
+	void onTimeout();
+	/**
+	 * An object was returned.
+	 * @param obj the object
+	 * @param holdNanos the time the object was borrowed
+	 */
+	void onReturn(@NonNull T obj, long holdNanos);
+	/**
+	 * An object was removed from the pool and closed.
+	 * @param obj the object
+	 */
+	void onDestroy(@NonNull T obj);
+	/**
+	 * An object was borrowed for longer than the leak threshold.
+	 * Reported once per borrow.
+	 * @param obj the object
+	 * @param heldNanos the time since the borrow
+	 * @param borrowTrace the stack trace of the borrow
+	 */
+	void onLeak(@NonNull T obj, long heldNanos, @NonNull Throwable borrowTrace);
+}
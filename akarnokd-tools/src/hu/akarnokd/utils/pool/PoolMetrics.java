@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.pool;
+
+import hu.akarnokd.utils.concurrent.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool listener which counts the events and records the latencies
+ * into histograms.
+ * @author akarnokd, 2026.10.17.
+ */
+public class PoolMetrics implements PoolListener<Object> {
+	/** The number of objects created. */
+	protected final AtomicLong created = new AtomicLong();
+	/** The number of failed creations. */
+	protected final AtomicLong createErrors = new AtomicLong();
+	/** The number of objects closed. */
+	protected final AtomicLong destroyed = new AtomicLong();
+	/** The number of borrows. */
+	protected final AtomicLong borrowed = new AtomicLong();
+	/** The number of returns. */
+	protected final AtomicLong returned = new AtomicLong();
+	/** The number of borrow timeouts. */
+	protected final AtomicLong timeouts = new AtomicLong();
+	/** The number of failed verifications. */
+	protected final AtomicLong verifyFailures = new AtomicLong();
+	/** The number of detected leaks. */
+	protected final AtomicLong leaks = new AtomicLong();
+	/** The time borrowers waited. */
+	protected final LatencyHistogram borrowWait = new LatencyHistogram();
+	/** The time objects were held. */
+	protected final LatencyHistogram hold = new LatencyHistogram();
+	/** The creation times. */
+	protected final LatencyHistogram create = new LatencyHistogram();
+	/** The verification times. */
+	protected final LatencyHistogram verify = new LatencyHistogram();
+	@Override
+	public void onCreate(Object obj, long nanos) {
+		created.incrementAndGet();
+		create.record(nanos);
+	}
+	@Override
+	public void onCreateError(Throwable error) {
+		createErrors.incrementAndGet();
+	}
+	@Override
+	public void onVerify(Object obj, boolean valid, long nanos) {
+		if (!valid) {
+			verifyFailures.incrementAndGet();
+		}
+		verify.record(nanos);
+	}
+	@Override
+	public void onBorrow(Object obj, long waitNanos) {
+		borrowed.incrementAndGet();
+		borrowWait.record(waitNanos);
+	}
+	@Override
+	public void onTimeout() {
+		timeouts.incrementAndGet();
+	}
+	@Override
+	public void onReturn(Object obj, long holdNanos) {
+		returned.incrementAndGet();
+		hold.record(holdNanos);
+	}
+	@Override
+	public void onDestroy(Object obj) {
+		destroyed.incrementAndGet();
+	}
+	@Override
+	public void onLeak(Object obj, long heldNanos, Throwable borrowTrace) {
+		leaks.incrementAndGet();
+	}
+	/** @return the number of objects created */
+	public long created() {
+		return created.get();
+	}
+	/** @return the number of failed creations */
+	public long createErrors() {
+		return createErrors.get();
+	}
+	/** @return the number of objects closed */
+	public long destroyed() {
+		return destroyed.get();
+	}
+	/** @return the number of borrows */
+	public long borrowed() {
+		return borrowed.get();
+	}
+	/** @return the number of returns */
+	public long returned() {
+		return returned.get();
+	}
+	/** @return the number of borrow timeouts */
+	public long timeouts() {
+		return timeouts.get();
+	}
+	/** @return the number of failed verifications */
+	public long verifyFailures() {
+		return verifyFailures.get();
+	}
+	/** @return the number of detected leaks */
+	public long leaks() {
+		return leaks.get();
+	}
+	/** @return the histogram of the borrow wait times */
+	public LatencyHistogram borrowWait() {
+		return borrowWait;
+	}
+	/** @return the histogram of the hold times */
+	public LatencyHistogram hold() {
+		return hold;
+	}
+	/** @return the histogram of the creation times */
+	public LatencyHistogram create() {
+		return create;
+	}
+	/** @return the histogram of the verification times */
+	public LatencyHistogram verify() {
+		return verify;
+	}
+	/** Clear the histograms, the counters keep running. */
+	public void resetHistograms() {
+		borrowWait.reset();
+		hold.reset();
+		create.reset();
+		verify.reset();
+	}
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("PoolMetrics [created=");
+		builder.append(created());
+		builder.append(", createErrors=");
+		builder.append(createErrors());
+		builder.append(", destroyed=");
+		builder.append(destroyed());
+		builder.append(", borrowed=");
+		builder.append(borrowed());
+		builder.append(", returned=");
+		builder.append(returned());
+		builder.append(", timeouts=");
+		builder.append(timeouts());
+		builder.append(", verifyFailures=");
+		builder.append(verifyFailures());
+		builder.append(", leaks=");
+		builder.append(leaks());
+		builder.append(", borrowWait=");
+		builder.append(borrowWait);
+		builder.append(", hold=");
+		builder.append(hold);
+		builder.append("]");
+		return builder.toString();
+	}
+}
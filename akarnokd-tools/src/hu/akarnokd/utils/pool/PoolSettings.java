@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.pool;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * The validation, lifetime and maintenance settings of a {@link ConcurrentPool}.
+ * <p>All times are in milliseconds, zero or negative values disable the
+ * particular feature.</p>
+ * @author akarnokd, 2026.10.17.
+ */
+public class PoolSettings {
+	/** The number of idle objects to create in advance and keep around. */
+	public int minIdle;
+	/** Verify the objects on borrow only if they were idle for longer than this, zero verifies on every borrow. */
+	public long validationIdleMillis;
+	/** The maximum age of an object after which it is closed instead of reused. */
+	public long maxLifetimeMillis;
+	/** Idle objects above the minIdle count are closed after this time. */
+	public long idleTimeoutMillis;
+	/** The period of the background maintenance, zero disables it. */
+	public long maintenanceMillis;
+	/** Objects borrowed for longer than this are reported as leaks by the maintenance. */
+	public long leakThresholdMillis;
+	/** Default constructor. */
+	public PoolSettings() {
+
+	}
+	/**
+	 * Copy constructor.
+	 * @param other the other object
+	 */
+	public PoolSettings(@NonNull PoolSettings other) {
+		this.minIdle = other.minIdle;
+		this.validationIdleMillis = other.validationIdleMillis;
+		this.maxLifetimeMillis = other.maxLifetimeMillis;
+		this.idleTimeoutMillis = other.idleTimeoutMillis;
+		this.maintenanceMillis = other.maintenanceMillis;
+		this.leakThresholdMillis = other.leakThresholdMillis;
+	}
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("PoolSettings [minIdle=");
+		builder.append(minIdle);
+		builder.append(", validationIdleMillis=");
+		builder.append(validationIdleMillis);
+		builder.append(", maxLifetimeMillis=");
+		builder.append(maxLifetimeMillis);
+		builder.append(", idleTimeoutMillis=");
+		builder.append(idleTimeoutMillis);
+		builder.append(", maintenanceMillis=");
+		builder.append(maintenanceMillis);
+		builder.append(", leakThresholdMillis=");
+		builder.append(leakThresholdMillis);
+		builder.append("]");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the LatencyHistogram.
+ * @author akarnokd, 2026.10.17.
+ */
+public class LatencyHistogramTest {
+	/** Percentiles are within a factor of two. */
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 99; i++) {
+			h.record(1000);
+		}
+		h.record(1000000);
+
+		Assert.assertEquals(100, h.count());
+		Assert.assertEquals(1000000, h.max());
+		Assert.assertEquals((99 * 1000 + 1000000) / 100, h.mean());
+
+		long p50 = h.percentile(50);
+		Assert.assertTrue(p50 >= 1000 && p50 < 2000);
+		long p99 = h.percentile(99);
+		Assert.assertTrue(p99 >= 1000 && p99 < 2000);
+		Assert.assertEquals(1000000, h.percentile(100));
+	}
+	/** Empty and reset histograms report zeros. */
+	@Test
+	public void testEmpty() {
+		LatencyHistogram h = new LatencyHistogram();
+		Assert.assertEquals(0, h.percentile(99));
+		Assert.assertEquals(0, h.mean());
+		h.record(5);
+		h.reset();
+		Assert.assertEquals(0, h.count());
+		Assert.assertEquals(0, h.max());
+	}
+}
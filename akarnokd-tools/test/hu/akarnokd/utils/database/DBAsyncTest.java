@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.lang.Func1E;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+/**
+ * Test the cancellation and timeouts of the asynchronous queries.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBAsyncTest {
+	/** Maps each row to one. */
+	static final Func1E<ResultSet, Integer, SQLException> ONE = new Func1E<ResultSet, Integer, SQLException>() {
+		@Override
+		public Integer call(ResultSet param1) throws SQLException {
+			return 1;
+		}
+	};
+	/** Close the pools after each test. */
+	@After
+	public void after() {
+		DB.closePools();
+	}
+	/**
+	 * Wait until the statement is closed.
+	 * @param ps the statement
+	 * @throws Exception on error
+	 */
+	static void awaitClose(PreparedStatement ps) throws Exception {
+		while (!ps.isClosed()) {
+			Thread.sleep(10);
+		}
+	}
+	/**
+	 * Unsubscribing cancels the statement and closes it.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testCancelOnUnsubscribe() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = Integer.MAX_VALUE;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			TestSubscriber<Integer> ts = new TestSubscriber<>();
+			db.queryAsync("SELECT x FROM T", ONE).take(5).subscribe(ts);
+			
+			ts.assertValueCount(5);
+			ts.assertCompleted();
+			awaitClose(rec.statements.get(0));
+			Assert.assertEquals(1, rec.count("cancel"));
+		}
+	}
+	/**
+	 * Depleting the rows doesn't cancel the statement.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testNoCancelOnCompletion() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = 3;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setQueryTimeout(7);
+			TestSubscriber<Integer> ts = new TestSubscriber<>();
+			db.queryAsync("SELECT x FROM T", ONE).subscribe(ts);
+			
+			ts.assertValueCount(3);
+			ts.assertCompleted();
+			awaitClose(rec.statements.get(0));
+			Assert.assertEquals(0, rec.count("cancel"));
+			Assert.assertEquals(1, rec.count("setQueryTimeout[7]"));
+		}
+	}
+	/**
+	 * The pooled variant runs with the per-call or the default timeout and
+	 * returns the connection.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testPooledTimeout() throws Exception {
+		DB.DBInfo dbi = MockJDBC.info("asynctest1", 1);
+		dbi.queryTimeout = 2;
+		DB.addConnection(dbi);
+		MockJDBC.Recorder rec = MockJDBC.recorder("asynctest1");
+		rec.rows = 4;
+		
+		TestSubscriber<Integer> ts = new TestSubscriber<>();
+		DB.queryAsync("asynctest1", Schedulers.io(), 5, "SELECT x FROM T", ONE).subscribe(ts);
+		ts.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		ts.assertValueCount(4);
+		ts.assertCompleted();
+		
+		ts = new TestSubscriber<>();
+		DB.queryAsync("asynctest1", Schedulers.io(), 0, "SELECT x FROM T", ONE).subscribe(ts);
+		ts.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		ts.assertValueCount(4);
+		
+		awaitClose(rec.statements.get(1));
+		Assert.assertEquals(1, rec.count("setQueryTimeout[5]"));
+		Assert.assertEquals(1, rec.count("setQueryTimeout[2]"));
+		Assert.assertEquals(1, rec.count("driver.connect"));
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.lang.Action2E;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.functions.Action2;
+import rx.functions.Func1;
+
+/**
+ * Test the chunked, pipelined and generated-key batch saves.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBBatchTest {
+	/** Sets the single integer parameter. */
+	static final Action2E<PreparedStatement, Integer, SQLException> MARSHAL = new Action2E<PreparedStatement, Integer, SQLException>() {
+		@Override
+		public void call(PreparedStatement t, Integer u) throws SQLException {
+			t.setInt(1, u);
+		}
+	};
+	/**
+	 * Creates a list of integers.
+	 * @param n the count
+	 * @return the list
+	 */
+	static List<Integer> items(int n) {
+		List<Integer> result = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			result.add(i);
+		}
+		return result;
+	}
+	/**
+	 * Without a batch size, everything is executed at once.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSingleBatch() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.save("INSERT INTO T VALUES (?)", items(25), MARSHAL);
+		}
+		Assert.assertEquals(1, rec.count("executeBatch"));
+		Assert.assertEquals(25, rec.count("setInt"));
+		Assert.assertEquals(0, rec.count("conn.commit"));
+	}
+	/**
+	 * The items are executed in chunks and committed periodically.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testChunks() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setBatchSize(10);
+			db.setCommitEvery(2);
+			db.save("INSERT INTO T VALUES (?)", items(45), MARSHAL);
+		}
+		Assert.assertEquals(5, rec.count("executeBatch"));
+		Assert.assertEquals(2, rec.count("conn.commit"));
+	}
+	/**
+	 * The chunks alternate between the two connections and each is committed.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testPipelined() throws Exception {
+		MockJDBC.Recorder rec1 = new MockJDBC.Recorder();
+		MockJDBC.Recorder rec2 = new MockJDBC.Recorder();
+		try (DB db1 = DB.connect(MockJDBC.connection(rec1));
+				DB db2 = DB.connect(MockJDBC.connection(rec2))) {
+			db1.setBatchSize(10);
+			db1.savePipelined("INSERT INTO T VALUES (?)", items(45), MARSHAL, db2);
+		}
+		Assert.assertEquals(3, rec1.count("executeBatch"));
+		Assert.assertEquals(2, rec2.count("executeBatch"));
+		Assert.assertEquals(3, rec1.count("conn.commit"));
+		Assert.assertEquals(2, rec2.count("conn.commit"));
+		Assert.assertEquals(45, rec1.count("setInt") + rec2.count("setInt"));
+	}
+	/**
+	 * A failing marshaller waits for the background chunk before the statements close.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testPipelinedMarshallerFails() throws Exception {
+		MockJDBC.Recorder rec1 = new MockJDBC.Recorder();
+		MockJDBC.Recorder rec2 = new MockJDBC.Recorder();
+		Action2E<PreparedStatement, Integer, SQLException> failing = new Action2E<PreparedStatement, Integer, SQLException>() {
+			@Override
+			public void call(PreparedStatement t, Integer u) throws SQLException {
+				if (u == 15) {
+					throw new SQLException("Forced failure");
+				}
+				t.setInt(1, u);
+			}
+		};
+		try (DB db1 = DB.connect(MockJDBC.connection(rec1));
+				DB db2 = DB.connect(MockJDBC.connection(rec2))) {
+			db1.setBatchSize(10);
+			try {
+				db1.savePipelined("INSERT INTO T VALUES (?)", items(45), failing, db2);
+				Assert.fail("Should have failed");
+			} catch (SQLException ex) {
+				Assert.assertEquals("Forced failure", ex.getMessage());
+			}
+			Assert.assertEquals(1, rec1.count("executeBatch"));
+			Assert.assertEquals(1, rec1.count("conn.commit"));
+			Assert.assertEquals(0, rec2.count("executeBatch"));
+		}
+	}
+	/**
+	 * Pipelining is refused if the transaction has uncommitted changes.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testPipelinedUncommitted() throws Exception {
+		MockJDBC.Recorder rec1 = new MockJDBC.Recorder();
+		MockJDBC.Recorder rec2 = new MockJDBC.Recorder();
+		try (DB db1 = DB.connect(MockJDBC.connection(rec1));
+				DB db2 = DB.connect(MockJDBC.connection(rec2))) {
+			db1.setBatchSize(10);
+			db1.update("DELETE FROM T");
+			Assert.assertTrue(db1.hasUncommittedChanges());
+			try {
+				db1.savePipelined("INSERT INTO T VALUES (?)", items(45), MARSHAL, db2);
+				Assert.fail("Should have failed");
+			} catch (IllegalStateException ex) {
+				// expected
+			}
+			Assert.assertEquals(0, rec1.count("conn.commit"));
+			db1.commit();
+			Assert.assertFalse(db1.hasUncommittedChanges());
+		}
+	}
+	/**
+	 * Without a pool, the pipelined save falls back to the single connection.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testPipelinedFallback() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setBatchSize(10);
+			db.savePipelined("INSERT INTO T VALUES (?)", items(25), MARSHAL);
+		}
+		Assert.assertEquals(3, rec.count("executeBatch"));
+		Assert.assertEquals(0, rec.count("conn.commit"));
+	}
+	/** An entity with auto-generated identifier. */
+	@SQLTable("Entity")
+	public static class Entity {
+		/** The identifier. */
+		@SQLID
+		@SQLColumn(index = 0)
+		public long id;
+		/** The name. */
+		@SQLColumn(index = 1)
+		public String name;
+	}
+	/**
+	 * Creates new entities.
+	 * @param n the count
+	 * @return the entities
+	 */
+	static List<Entity> entities(int n) {
+		List<Entity> result = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			Entity e = new Entity();
+			e.name = "e" + i;
+			result.add(e);
+		}
+		return result;
+	}
+	/** Tells if the entity is new. */
+	static final Func1<Entity, Boolean> IS_NEW = new Func1<Entity, Boolean>() {
+		@Override
+		public Boolean call(Entity t) {
+			return t.id == 0;
+		}
+	};
+	/** Sets the entity identifier. */
+	static final Action2<Entity, Long> SET_ID = new Action2<Entity, Long>() {
+		@Override
+		public void call(Entity t, Long u) {
+			t.id = u;
+		}
+	};
+	/**
+	 * Verify the entities received consecutive identifiers.
+	 * @param list the entities
+	 */
+	static void assertIds(List<Entity> list) {
+		for (int i = 0; i < list.size(); i++) {
+			Assert.assertEquals(i + 1, list.get(i).id);
+		}
+	}
+	/**
+	 * Drivers known to return batch keys insert the new entities in batches.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSaveBatchKeys() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.product = "PostgreSQL";
+		List<Entity> list = entities(25);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setBatchSize(10);
+			Assert.assertEquals(DB.KeyBatching.BATCH, db.getKeyBatching());
+			new DBPojo<>(Entity.class).save(db, list, IS_NEW, SET_ID);
+		}
+		Assert.assertEquals(3, rec.count("executeBatch"));
+		Assert.assertEquals(0, rec.count("executeUpdate"));
+		assertIds(list);
+	}
+	/**
+	 * Fewer batch keys than inserted entities is reported.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSaveBatchKeysMissing() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.product = "PostgreSQL";
+		rec.keyLimit = 5;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setBatchSize(10);
+			try {
+				new DBPojo<>(Entity.class).save(db, entities(25), IS_NEW, SET_ID);
+				Assert.fail("Should have failed");
+			} catch (SQLException ex) {
+				Assert.assertEquals("Expected 10 generated keys but got 5", ex.getMessage());
+			}
+		}
+		Assert.assertEquals(1, rec.count("executeBatch"));
+	}
+	/**
+	 * Multi-row inserts assign the keys in order.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSaveMultiRow() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		List<Entity> list = entities(25);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setBatchSize(10);
+			db.setKeyBatching(DB.KeyBatching.MULTI_ROW);
+			new DBPojo<>(Entity.class).save(db, list, IS_NEW, SET_ID);
+		}
+		Assert.assertEquals(3, rec.count("executeUpdate"));
+		Assert.assertEquals(1, rec.count("conn.prepareStatement[INSERT INTO Entity (name) VALUES (?), (?), (?), (?), (?), 1]"));
+		Assert.assertEquals(25, rec.count("setString"));
+		Assert.assertEquals(1, rec.count("setString[10, e9]"));
+		Assert.assertEquals(1, rec.count("setString[5, e24]"));
+		assertIds(list);
+	}
+	/**
+	 * Unknown drivers insert the entities one-by-one.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSaveSingle() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		List<Entity> list = entities(5);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			Assert.assertEquals(DB.KeyBatching.SINGLE, db.getKeyBatching());
+			new DBPojo<>(Entity.class).save(db, list, IS_NEW, SET_ID);
+		}
+		Assert.assertEquals(5, rec.count("executeUpdate"));
+		assertIds(list);
+	}
+}
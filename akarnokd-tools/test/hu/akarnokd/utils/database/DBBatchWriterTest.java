@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+/**
+ * Test the reactive batch writer.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBBatchWriterTest {
+	/** Close the pools after each test. */
+	@After
+	public void after() {
+		DB.closePools();
+	}
+	/**
+	 * Registers a pooled mock database which returns the keys of whole batches.
+	 * @param name the database identifier
+	 * @return the recorder of the database
+	 */
+	static MockJDBC.Recorder register(String name) {
+		DB.addConnection(MockJDBC.info(name, 2));
+		MockJDBC.Recorder rec = MockJDBC.recorder(name);
+		rec.product = "PostgreSQL";
+		return rec;
+	}
+	/**
+	 * The items are written in full batches and receive their keys.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testCountBatches() throws Exception {
+		MockJDBC.Recorder rec = register("bwtest1");
+		List<DBBatchTest.Entity> list = DBBatchTest.entities(25);
+		DBBatchWriter<DBBatchTest.Entity> w = DBBatchWriter.insert("bwtest1", new DBPojo<>(DBBatchTest.Entity.class));
+		
+		TestSubscriber<DBBatchWriter.Result<DBBatchTest.Entity>> ts = new TestSubscriber<>();
+		Observable.from(list).compose(w.batches(10, 0, TimeUnit.MILLISECONDS, 2)).subscribe(ts);
+		ts.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		ts.assertNoErrors();
+		ts.assertValueCount(3);
+		
+		long rows = 0;
+		int keys = 0;
+		for (DBBatchWriter.Result<DBBatchTest.Entity> r : ts.getOnNextEvents()) {
+			rows += r.rows;
+			keys += r.keys.size();
+			Assert.assertTrue(r.latencyNanos > 0);
+		}
+		Assert.assertEquals(25, rows);
+		Assert.assertEquals(25, keys);
+		Set<Long> ids = new HashSet<>();
+		for (DBBatchTest.Entity e : list) {
+			Assert.assertTrue(e.id > 0);
+			ids.add(e.id);
+		}
+		Assert.assertEquals(25, ids.size());
+		Assert.assertEquals(3, rec.count("executeBatch"));
+		Assert.assertEquals(3, rec.count("conn.commit"));
+	}
+	/**
+	 * A batch with missing keys is rolled back and inserted one by one.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testMissingKeys() throws Exception {
+		MockJDBC.Recorder rec = register("bwtest4");
+		rec.keyLimit = 5;
+		List<DBBatchTest.Entity> list = DBBatchTest.entities(10);
+		DBBatchWriter<DBBatchTest.Entity> w = DBBatchWriter.insert("bwtest4", new DBPojo<>(DBBatchTest.Entity.class));
+
+		DBBatchWriter.Result<DBBatchTest.Entity> r = w.writeBatch(list);
+		Assert.assertEquals(10, r.rows);
+		Assert.assertEquals(10, r.keys.size());
+		for (int i = 0; i < list.size(); i++) {
+			Assert.assertEquals(r.keys.get(i), list.get(i).id);
+		}
+		Assert.assertEquals(1, rec.count("executeBatch"));
+		Assert.assertEquals(10, rec.count("executeUpdate"));
+		Assert.assertEquals(1, rec.count("conn.commit"));
+		int rollback = rec.calls.indexOf("conn.rollback[]");
+		Assert.assertTrue(rollback >= 0);
+		Assert.assertTrue(rollback < rec.calls.indexOf("executeUpdate[]"));
+	}
+	/**
+	 * A partial batch is written once its time window expires.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testTimeWindow() throws Exception {
+		MockJDBC.Recorder rec = register("bwtest2");
+		DBBatchWriter<DBBatchTest.Entity> w = DBBatchWriter.insertAll("bwtest2", new DBPojo<>(DBBatchTest.Entity.class));
+		PublishSubject<DBBatchTest.Entity> ps = PublishSubject.create();
+		
+		TestSubscriber<DBBatchWriter.Result<DBBatchTest.Entity>> ts = new TestSubscriber<>();
+		ps.compose(w.batches(10, 50, TimeUnit.MILLISECONDS, 1)).subscribe(ts);
+		for (DBBatchTest.Entity e : DBBatchTest.entities(3)) {
+			ps.onNext(e);
+		}
+		ts.awaitValueCount(1, 5, TimeUnit.SECONDS);
+		Assert.assertEquals(3, ts.getOnNextEvents().get(0).items.size());
+		Assert.assertEquals(0, ts.getOnNextEvents().get(0).keys.size());
+		ts.assertNoTerminalEvent();
+		
+		ps.onCompleted();
+		ts.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		ts.assertCompleted();
+		ts.assertValueCount(1);
+		Assert.assertEquals(1, rec.count("executeBatch"));
+	}
+	/**
+	 * The upstream is requested only for the batches the downstream can take.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testBackpressure() throws Exception {
+		final MockJDBC.Recorder rec = register("bwtest3");
+		DBBatchWriter<DBBatchTest.Entity> w = DBBatchWriter.insertAll("bwtest3", new DBPojo<>(DBBatchTest.Entity.class));
+		final AtomicLong requested = new AtomicLong();
+		Observable<DBBatchTest.Entity> source = Observable.range(0, 100)
+				.doOnRequest(new Action1<Long>() {
+					@Override
+					public void call(Long t) {
+						requested.addAndGet(t);
+					}
+				})
+				.map(new Func1<Integer, DBBatchTest.Entity>() {
+					@Override
+					public DBBatchTest.Entity call(Integer t) {
+						return new DBBatchTest.Entity();
+					}
+				});
+		
+		TestSubscriber<DBBatchWriter.Result<DBBatchTest.Entity>> ts = new TestSubscriber<>(0);
+		source.compose(w.batches(10, 0, TimeUnit.MILLISECONDS, 2)).subscribe(ts);
+		while (rec.count("conn.commit") < 2) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		Assert.assertEquals(20, requested.get());
+		ts.assertNoValues();
+		
+		ts.requestMore(Long.MAX_VALUE);
+		ts.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		ts.assertCompleted();
+		ts.assertValueCount(10);
+		// the next batch may be requested before the range signals its completion
+		long r = requested.get();
+		Assert.assertTrue(String.valueOf(r), r >= 100 && r <= 110);
+	}
+}
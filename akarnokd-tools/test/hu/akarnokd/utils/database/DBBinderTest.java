@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import org.joda.time.DateMidnight;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the generated parameter binders.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBBinderTest {
+	/**
+	 * The generated binder calls the same setters as the type tests.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSameAsByType() throws Exception {
+		Object[] values = { "a", new StringBuilder("b"), (byte)1, (short)2, 3, 4L, 'c', 
+				new java.sql.Date(0), new Timestamp(0), new java.util.Date(0), new Time(0),
+				1.5, 2.5f, BigDecimal.ONE, BigInteger.TEN, true,
+				new DateTime(0), new DateMidnight(0), new LocalDate(0), new LocalTime(0),
+				new byte[0], new ByteArrayInputStream(new byte[0]),
+				String.class, Integer.class, Time.class, DateTime.class, byte[].class, Object.class };
+		
+		MockJDBC.Recorder rec1 = new MockJDBC.Recorder();
+		PreparedStatement ps1 = MockJDBC.statement(rec1, "SQL");
+		DB.setParamsByType(1, ps1, values);
+		
+		MockJDBC.Recorder rec2 = new MockJDBC.Recorder();
+		PreparedStatement ps2 = MockJDBC.statement(rec2, "SQL");
+		DBBinder b = DBBinder.of(values);
+		Assert.assertNotNull(b);
+		b.bind(1, ps2, values);
+		
+		Assert.assertEquals(values.length - 1, rec1.calls.size());
+		Assert.assertEquals(rec1.calls.toString().replaceAll("@[0-9a-f]+", ""), 
+				rec2.calls.toString().replaceAll("@[0-9a-f]+", ""));
+	}
+	/**
+	 * Values of the same shape reuse the binder.
+	 */
+	@Test
+	public void testCached() {
+		DBBinder b1 = DBBinder.of(new Object[] { 1, "a", Long.class });
+		DBBinder b2 = DBBinder.of(new Object[] { 2, "b", Long.class });
+		DBBinder b3 = DBBinder.of(new Object[] { 2, "b", 1L });
+		Assert.assertSame(b1, b2);
+		Assert.assertNotSame(b1, b3);
+		Assert.assertTrue(b1.matches(new Object[] { 3, "c", Long.class }));
+		Assert.assertFalse(b1.matches(new Object[] { 3, "c", 1L }));
+		Assert.assertFalse(b1.matches(new Object[] { 3, "c" }));
+	}
+	/**
+	 * Too many parameters are bound by the type tests.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testMaxArity() throws Exception {
+		Object[] values = new Object[DBBinder.MAX_ARITY + 1];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+		Assert.assertNull(DBBinder.of(values));
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		DB.setParams(MockJDBC.statement(rec, "SQL"), values);
+		Assert.assertEquals(values.length, rec.count("setInt"));
+	}
+	/**
+	 * Nulls and unsupported values use the type tests which report the error.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testUnsupported() throws Exception {
+		Assert.assertNull(DBBinder.of(new Object[] { 1, null }));
+		Assert.assertNull(DBBinder.of(new Object[] { new Object() }));
+		try {
+			DB.setParams(MockJDBC.statement(new MockJDBC.Recorder(), "SQL"), 1, new Object());
+			Assert.fail("Should have thrown");
+		} catch (SQLException ex) {
+			Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith("Unknown type"));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import gnu.trove.procedure.TDoubleProcedure;
+import gnu.trove.procedure.TObjectProcedure;
+import hu.akarnokd.utils.database.DBColumnar.Aggregate;
+
+import java.sql.Types;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the columnar result table.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBColumnarTest {
+	/**
+	 * Creates the test table.
+	 * @return the table
+	 * @throws Exception on error
+	 */
+	static DBColumnar table() throws Exception {
+		return DBColumnar.load(MockJDBC.table(
+				new String[] { "ID", "CITY", "AMOUNT", "TS" },
+				new int[] { Types.BIGINT, Types.VARCHAR, Types.DOUBLE, Types.TIMESTAMP },
+				new Object[][] {
+					{ 1L, "Budapest", 10.0, null },
+					{ 2L, "Vienna", 20.0, null },
+					{ 3L, "Budapest", null, null },
+					{ 4L, null, 40.0, null },
+					{ 5L, "Budapest", 50.0, null },
+				}));
+	}
+	/**
+	 * The column types follow the metadata.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testLoad() throws Exception {
+		DBColumnar t = table();
+		Assert.assertEquals(5, t.size());
+		Assert.assertTrue(t.column("id") instanceof DBColumnar.LongColumn);
+		Assert.assertTrue(t.column("city") instanceof DBColumnar.StringColumn);
+		Assert.assertTrue(t.column("amount") instanceof DBColumnar.DoubleColumn);
+		Assert.assertTrue(t.column("ts") instanceof DBColumnar.ObjectColumn);
+		
+		DBColumnar.StringColumn city = t.column("city", DBColumnar.StringColumn.class);
+		Assert.assertEquals(Arrays.asList("Budapest", "Vienna"), city.dictionary());
+		Assert.assertNull(city.get(3));
+		Assert.assertTrue(t.column("amount").isNull(2));
+		Assert.assertEquals(50.0, t.column("amount").get(4));
+	}
+	/**
+	 * Filters and projection.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testFilterProject() throws Exception {
+		DBColumnar t = table();
+		int[] rows = t.whereString("city", new TObjectProcedure<String>() {
+			@Override
+			public boolean execute(String object) {
+				return object.startsWith("B");
+			}
+		}, t.all());
+		Assert.assertArrayEquals(new int[] { 0, 2, 4 }, rows);
+		rows = t.whereDouble("amount", new TDoubleProcedure() {
+			@Override
+			public boolean execute(double value) {
+				return value > 5;
+			}
+		}, rows);
+		Assert.assertArrayEquals(new int[] { 0, 4 }, rows);
+		
+		DBColumnar p = t.project(rows, "ID", "AMOUNT");
+		Assert.assertEquals(2, p.size());
+		Assert.assertEquals(2, p.columns().size());
+		Assert.assertEquals(5L, p.column("id").get(1));
+		
+		Assert.assertArrayEquals(new int[] { 3 }, t.whereNull("city", true, t.all()));
+	}
+	/**
+	 * Group-by aggregation.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testGroupBy() throws Exception {
+		DBColumnar t = table();
+		DBColumnar g = t.groupBy(t.all(), "CITY", Aggregate.count(), Aggregate.count("AMOUNT"), 
+				Aggregate.sum("AMOUNT"), Aggregate.max("ID"), Aggregate.avg("AMOUNT"));
+		Assert.assertEquals(3, g.size());
+		Assert.assertEquals("Budapest", g.column("CITY").get(0));
+		Assert.assertEquals("Vienna", g.column("CITY").get(1));
+		Assert.assertNull(g.column("CITY").get(2));
+		Assert.assertEquals(3L, g.column("COUNT(*)").get(0));
+		Assert.assertEquals(2L, g.column("COUNT(AMOUNT)").get(0));
+		Assert.assertEquals(60.0, g.column("SUM(AMOUNT)").get(0));
+		Assert.assertEquals(5L, g.column("MAX(ID)").get(0));
+		Assert.assertEquals(30.0, g.column("AVG(AMOUNT)").get(0));
+		Assert.assertEquals(40.0, g.column("AVG(AMOUNT)").get(2));
+	}
+}
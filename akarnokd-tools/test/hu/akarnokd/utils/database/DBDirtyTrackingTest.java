@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.functions.Func1;
+import rx.functions.Func2;
+
+/**
+ * Test the dirty tracking updates of DBPojo.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBDirtyTrackingTest {
+	/** A record with several value columns. */
+	public static class Person {
+		/** The identifier. */
+		@SQLID
+		@SQLColumn(index = 0)
+		public long id;
+		/** The name. */
+		@SQLColumn(index = 1)
+		public String name;
+		/** The age. */
+		@SQLColumn(index = 2)
+		public int age;
+		/** The data. */
+		@SQLColumn(index = 3)
+		public byte[] data;
+	}
+	/** Update everything. */
+	static final Func1<Person, Boolean> UPDATE = new Func1<Person, Boolean>() {
+		@Override
+		public Boolean call(Person t) {
+			return false;
+		}
+	};
+	/**
+	 * Creates a recorder whose Person table returns the queried keys.
+	 * @return the recorder
+	 */
+	static MockJDBC.Recorder table() {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.query = new Func2<String, List<Object>, ResultSet>() {
+			@Override
+			public ResultSet call(String sql, List<Object> params) {
+				List<Object[]> rows = new ArrayList<>();
+				for (Object o : params) {
+					long id = ((Number)o).longValue();
+					rows.add(new Object[] { id, "name" + id, (int)id * 10, new byte[] { 1, 2 } });
+				}
+				return MockJDBC.table(new String[] { "id", "name", "age", "data" }, 
+						new int[] { Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.VARBINARY }, 
+						rows.toArray(new Object[0][]));
+			}
+		};
+		return rec;
+	}
+	/**
+	 * Returns the SQL texts of the statements which were executed as updates.
+	 * @param rec the recorder
+	 * @return the SQL texts
+	 */
+	static List<String> updates(MockJDBC.Recorder rec) {
+		List<String> result = new ArrayList<>();
+		for (PreparedStatement ps : rec.statements) {
+			String sql = ps.toString();
+			if (sql.startsWith("UPDATE")) {
+				result.add(sql);
+			}
+		}
+		return result;
+	}
+	/**
+	 * Unchanged records are skipped and changed ones update only the changed columns.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testUpdate() throws Exception {
+		MockJDBC.Recorder rec = table();
+		DBPojo<Person> pojo = new DBPojo<>(Person.class);
+		pojo.enableDirtyTracking();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			Person p = pojo.selectOne(db, 1);
+			Assert.assertFalse(pojo.isDirty(p));
+			Assert.assertEquals(0, pojo.update(db, p));
+			Assert.assertEquals(0, rec.count("executeUpdate"));
+			
+			p.data = new byte[] { 1, 2 };
+			Assert.assertFalse(pojo.isDirty(p));
+			
+			p.age = 5;
+			Assert.assertTrue(pojo.isDirty(p));
+			pojo.update(db, p);
+			Assert.assertEquals(1, rec.count("executeUpdate"));
+			Assert.assertEquals(Arrays.asList("UPDATE Person SET age = ? WHERE id = ?"), updates(rec));
+			Assert.assertEquals(1, rec.count("setInt[1, 5]"));
+			Assert.assertEquals(1, rec.count("setLong[2, 1]"));
+			Assert.assertTrue(pojo.isDirty(p));
+			
+			db.commit();
+			Assert.assertFalse(pojo.isDirty(p));
+			pojo.update(db, p);
+			Assert.assertEquals(1, rec.count("executeUpdate"));
+		}
+	}
+	/**
+	 * A rolled back update leaves the record dirty so retrying writes it again.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testRollback() throws Exception {
+		MockJDBC.Recorder rec = table();
+		DBPojo<Person> pojo = new DBPojo<>(Person.class);
+		pojo.enableDirtyTracking();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			Person p = pojo.selectOne(db, 1);
+			p.age = 5;
+			pojo.update(db, p);
+			db.rollback();
+			Assert.assertTrue(pojo.isDirty(p));
+			
+			pojo.update(db, p);
+			Assert.assertEquals(2, rec.count("executeUpdate"));
+			Assert.assertEquals(Arrays.asList(
+					"UPDATE Person SET age = ? WHERE id = ?",
+					"UPDATE Person SET name = ?, age = ?, data = ? WHERE id = ?"), updates(rec));
+			db.commit();
+			Assert.assertFalse(pojo.isDirty(p));
+		}
+	}
+	/**
+	 * Save groups the records by change set and updates untracked records in full.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSave() throws Exception {
+		MockJDBC.Recorder rec = table();
+		DBPojo<Person> pojo = new DBPojo<>(Person.class);
+		pojo.enableDirtyTracking();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			Person p1 = pojo.selectOne(db, 1);
+			Person p2 = pojo.selectOne(db, 2);
+			Person p3 = pojo.selectOne(db, 3);
+			Person p4 = new Person();
+			p4.id = 4;
+			
+			p1.name = "x";
+			p3.name = null;
+			
+			pojo.save(db, Arrays.asList(p1, p2, p3, p4), UPDATE, null);
+			
+			Assert.assertEquals(Arrays.asList(
+					"UPDATE Person SET name = ?, age = ?, data = ? WHERE id = ?",
+					"UPDATE Person SET name = ? WHERE id = ?"), updates(rec));
+			Assert.assertEquals(1, rec.count("setNull[1, 12]"));
+			Assert.assertEquals(2, rec.count("executeBatch"));
+			
+			db.commit();
+			Assert.assertFalse(pojo.isDirty(p1));
+			Assert.assertFalse(pojo.isDirty(p4));
+		}
+	}
+}
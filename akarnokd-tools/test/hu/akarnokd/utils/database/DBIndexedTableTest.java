@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the in-memory indexes.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBIndexedTableTest {
+	/** An indexed record. */
+	@SQLTable("City")
+	public static class City {
+		/** The identifier. */
+		@SQLID
+		@SQLColumn(index = 0)
+		public long id;
+		/** The country code. */
+		@SQLColumn(index = 1, name = "country_code")
+		public String country;
+		/** The population. */
+		@SQLColumn(index = 2)
+		public int population;
+		/**
+		 * Creates a city.
+		 * @param id the identifier
+		 * @param country the country code
+		 * @param population the population
+		 * @return the city
+		 */
+		static City of(long id, String country, int population) {
+			City c = new City();
+			c.id = id;
+			c.country = country;
+			c.population = population;
+			return c;
+		}
+	}
+	/**
+	 * Creates a table with all kinds of indexes.
+	 * @return the table
+	 */
+	static DBIndexedTable<City> table() {
+		DBIndexedTable<City> t = new DBIndexedTable<>(new DBPojo<>(City.class));
+		t.hashIndex("id", true);
+		t.hashIndex("country_code", false);
+		t.sortedIndex("population", false);
+		return t;
+	}
+	/**
+	 * The lookups follow additions and removals.
+	 */
+	@Test
+	public void testHashIndexes() {
+		DBIndexedTable<City> t = table();
+		City a = City.of(1, "HU", 100);
+		City b = City.of(2, "HU", 200);
+		City c = City.of(3, "AT", 300);
+		t.addAll(Arrays.asList(a, b, c));
+		Assert.assertFalse(t.add(a));
+		Assert.assertEquals(3, t.size());
+		Assert.assertSame(b, t.get("id", 2L));
+		Assert.assertSame(b, t.get("ID", 2));
+		Assert.assertEquals(Arrays.asList(a, b), t.find("country_code", "HU"));
+		Assert.assertTrue(t.remove(a));
+		Assert.assertNull(t.get("id", 1L));
+		Assert.assertEquals(Collections.singletonList(b), t.find("country_code", "HU"));
+		Assert.assertEquals(Collections.singletonList(b), t.find("population", 200));
+		t.clear();
+		Assert.assertEquals(0, t.size());
+		Assert.assertTrue(t.find("country_code", "AT").isEmpty());
+	}
+	/**
+	 * The sorted index returns the ranges in order.
+	 */
+	@Test
+	public void testRange() {
+		DBIndexedTable<City> t = table();
+		City a = City.of(1, "HU", 300);
+		City b = City.of(2, "HU", 100);
+		City c = City.of(3, "AT", 200);
+		City d = City.of(4, "AT", 200);
+		t.addAll(Arrays.asList(a, b, c, d));
+		Assert.assertEquals(Arrays.asList(b, c, d), t.range("population", null, false, 300, false));
+		Assert.assertEquals(Arrays.asList(c, d, a), t.range("population", 100, false, null, false));
+		Assert.assertEquals(Arrays.asList(b, c, d, a), t.range("population", 100L, true, 300, true));
+	}
+	/**
+	 * A unique violation leaves the table unchanged.
+	 */
+	@Test
+	public void testUnique() {
+		DBIndexedTable<City> t = table();
+		t.add(City.of(1, "HU", 100));
+		try {
+			t.add(City.of(1, "AT", 200));
+			Assert.fail("Should have thrown");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		Assert.assertEquals(1, t.size());
+		Assert.assertTrue(t.find("country_code", "AT").isEmpty());
+		Assert.assertTrue(t.find("population", 200).isEmpty());
+	}
+	/**
+	 * Rows can be loaded through the DBPojo and indexed later.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testLoad() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = 3;
+		DBIndexedTable<City> t = new DBIndexedTable<>(new DBPojo<>(City.class));
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			t.load(db);
+		}
+		Assert.assertEquals(3, t.size());
+		t.hashIndex("population", false);
+		Assert.assertEquals(3, t.find("population", 0).size());
+		try {
+			t.sortedIndex("unknown", false);
+			Assert.fail("Should have thrown");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+}
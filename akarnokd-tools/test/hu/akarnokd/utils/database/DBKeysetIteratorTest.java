@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.database.DBBatchTest.Entity;
+import hu.akarnokd.utils.database.DBTest.Row2;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.functions.Func2;
+import rx.observers.TestSubscriber;
+
+/**
+ * Test the keyset paginated iteration of DBPojo.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBKeysetIteratorTest {
+	/**
+	 * Creates a recorder whose Entity table has the keys 1..n.
+	 * @param n the number of records
+	 * @return the recorder
+	 */
+	static MockJDBC.Recorder table(final int n) {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.query = new Func2<String, List<Object>, ResultSet>() {
+			@Override
+			public ResultSet call(String sql, List<Object> params) {
+				long after = params.isEmpty() ? 0 : (Long)params.get(0);
+				List<Object[]> rows = new ArrayList<>();
+				for (long i = after + 1; i <= n; i++) {
+					rows.add(new Object[] { i, "name" + i });
+				}
+				return MockJDBC.table(new String[] { "id", "name" }, 
+						new int[] { Types.BIGINT, Types.VARCHAR }, rows.toArray(new Object[0][]));
+			}
+		};
+		return rec;
+	}
+	/**
+	 * Iterate through all records.
+	 * @param prefetch prefetch the pages?
+	 * @throws Exception on error
+	 */
+	void checkAll(boolean prefetch) throws Exception {
+		MockJDBC.Recorder rec = table(25);
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			DBKeysetIterator<Entity> it = pojo.selectAllPaged(db, 10, null, prefetch);
+			long expected = 1;
+			while (it.hasNext()) {
+				Assert.assertEquals(expected++, it.next().id);
+			}
+			Assert.assertEquals(26, expected);
+			Assert.assertEquals(25L, it.lastKey());
+			Assert.assertEquals(3, rec.count("executeQuery"));
+			Assert.assertEquals(3, rec.count("setMaxRows[10]"));
+		}
+	}
+	/**
+	 * Iterate through all records page by page.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testPages() throws Exception {
+		checkAll(false);
+	}
+	/**
+	 * Iterate through all records with prefetched pages.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testPrefetch() throws Exception {
+		checkAll(true);
+	}
+	/**
+	 * A cancelled iterator stops even within the current page.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testCancelWithinPage() throws Exception {
+		MockJDBC.Recorder rec = table(25);
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			DBKeysetIterator<Entity> it = pojo.selectAllPaged(db, 10, null, true);
+			Assert.assertTrue(it.hasNext());
+			it.next();
+			it.unsubscribe();
+			Assert.assertFalse(it.hasNext());
+		}
+	}
+	/**
+	 * Resume after a key.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testResume() throws Exception {
+		MockJDBC.Recorder rec = table(25);
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			TestSubscriber<Entity> ts = new TestSubscriber<>();
+			pojo.observeAllPaged(db, 10, 20L, true).subscribe(ts);
+			
+			ts.awaitTerminalEvent();
+			ts.assertValueCount(5);
+			Assert.assertEquals(21L, ts.getOnNextEvents().get(0).id);
+			Assert.assertEquals(1, rec.count("executeQuery"));
+		}
+	}
+	/**
+	 * The composite key condition expands the row value comparison.
+	 */
+	@Test
+	public void testCompositeCondition() {
+		DBPojo<Row2> pojo = new DBPojo<>(Row2.class);
+		Assert.assertTrue(pojo.nextPageSql, pojo.nextPageSql.endsWith(
+				"WHERE (a > ?) OR (a = ? AND b > ?) ORDER BY a, b"));
+	}
+	/**
+	 * The composite key parameters repeat the key prefixes.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testCompositeParams() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		DBPojo<Row2> pojo = new DBPojo<>(Row2.class);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			pojo.selectPage(db, Arrays.asList(1, 2), 10);
+		}
+		List<String> binds = new ArrayList<>();
+		for (String s : rec.calls) {
+			if (s.startsWith("setInt")) {
+				binds.add(s);
+			}
+		}
+		Assert.assertEquals(Arrays.asList("setInt[1, 1]", "setInt[2, 1]", "setInt[3, 2]"), binds);
+	}
+}
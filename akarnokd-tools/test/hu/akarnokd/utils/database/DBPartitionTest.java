@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.database.DBBatchTest.Entity;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.functions.Action1;
+import rx.functions.Func2;
+
+/**
+ * Test the parallel key-range scans of DBPojo.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBPartitionTest {
+	/** Close the pools after each test. */
+	@After
+	public void after() {
+		DB.closePools();
+	}
+	/**
+	 * Registers a pooled mock database whose Entity table has the given key range.
+	 * @param name the database name
+	 * @param min the minimum key
+	 * @param max the maximum key
+	 * @return the recorder
+	 */
+	static MockJDBC.Recorder table(String name, final long min, final long max) {
+		DB.addConnection(MockJDBC.info(name, 4));
+		MockJDBC.Recorder rec = MockJDBC.recorder(name);
+		rec.query = new Func2<String, List<Object>, ResultSet>() {
+			@Override
+			public ResultSet call(String sql, List<Object> params) {
+				if (sql.contains("MIN(")) {
+					return MockJDBC.table(new String[] { "MIN", "MAX" }, 
+							new int[] { Types.BIGINT, Types.BIGINT }, new Object[][] { { min, max } });
+				}
+				long from = (Long)params.get(0);
+				long to = (Long)params.get(1);
+				if (!sql.contains("<=")) {
+					to--;
+				}
+				List<Object[]> rows = new ArrayList<>();
+				for (long i = Math.max(from, min); i <= Math.min(to, max); i++) {
+					rows.add(new Object[] { i, "name" + i });
+				}
+				return MockJDBC.table(new String[] { "id", "name" }, 
+						new int[] { Types.BIGINT, Types.VARCHAR }, rows.toArray(new Object[0][]));
+			}
+		};
+		return rec;
+	}
+	/**
+	 * The ranges cover every key once and the results keep the key order.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testSelectAllParallel() throws Exception {
+		MockJDBC.Recorder rec = table("partest1", 1, 1000);
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		
+		List<Entity> list = pojo.selectAllParallel("partest1", 4);
+		
+		Assert.assertEquals(1000, list.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i + 1, list.get(i).id);
+			Assert.assertEquals("name" + (i + 1), list.get(i).name);
+		}
+		Assert.assertEquals(5, rec.count("executeQuery"));
+	}
+	/**
+	 * The consumer receives every record and small ranges use fewer partitions.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testSelectAllParallelConsumer() throws Exception {
+		MockJDBC.Recorder rec = table("partest2", 10, 12);
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		final AtomicInteger sum = new AtomicInteger();
+		
+		pojo.selectAllParallel("partest2", 8, new Action1<Entity>() {
+			@Override
+			public void call(Entity t) {
+				sum.addAndGet((int)t.id);
+			}
+		});
+		
+		Assert.assertEquals(33, sum.get());
+		Assert.assertEquals(4, rec.count("executeQuery"));
+	}
+	/**
+	 * The boundaries split the key range evenly.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testPartitions() throws Exception {
+		table("partest3", 0, 99);
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		
+		Assert.assertArrayEquals(new long[] { 0, 25, 50, 75, 99 }, pojo.partitions("partest3", 4));
+	}
+}
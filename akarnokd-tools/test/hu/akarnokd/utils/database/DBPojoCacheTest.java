@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.database.DBBatchTest.Entity;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.functions.Func2;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Test the read-through record cache of DBPojo.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBPojoCacheTest {
+	/**
+	 * Creates a recorder whose Entity table returns the queried keys.
+	 * @return the recorder
+	 */
+	static MockJDBC.Recorder table() {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.query = new Func2<String, List<Object>, ResultSet>() {
+			@Override
+			public ResultSet call(String sql, List<Object> params) {
+				List<Object[]> rows = new ArrayList<>();
+				for (Object o : params) {
+					long id = ((Number)o).longValue();
+					rows.add(new Object[] { id, "name" + id });
+				}
+				return MockJDBC.table(new String[] { "id", "name" }, 
+						new int[] { Types.BIGINT, Types.VARCHAR }, rows.toArray(new Object[0][]));
+			}
+		};
+		return rec;
+	}
+	/**
+	 * Repeated lookups are served from the cache as copies.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSelectOne() throws Exception {
+		MockJDBC.Recorder rec = table();
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		pojo.enableCache(100, 1, TimeUnit.MINUTES);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			Entity e1 = pojo.selectOne(db, 1);
+			Assert.assertEquals("name1", e1.name);
+			e1.name = "changed";
+			
+			Entity e2 = pojo.selectOne(db, 1L);
+			Entity e3 = pojo.selectOne(db, 1);
+			Assert.assertNotSame(e2, e3);
+			Assert.assertEquals("name1", e2.name);
+			Assert.assertEquals(1, rec.count("executeQuery"));
+			
+			CacheStats cs = pojo.cacheStats();
+			Assert.assertEquals(2, cs.hitCount());
+			Assert.assertEquals(1, cs.missCount());
+		}
+	}
+	/**
+	 * Updates and deletes invalidate the cached records.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testInvalidation() throws Exception {
+		MockJDBC.Recorder rec = table();
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		pojo.enableCache(100, 0, TimeUnit.MINUTES);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			Entity e = pojo.selectOne(db, 1);
+			pojo.update(db, e);
+			pojo.selectOne(db, 1);
+			Assert.assertEquals(2, rec.count("executeQuery"));
+			
+			pojo.delete(db, 1);
+			db.commit();
+			pojo.selectOne(db, 1);
+			Assert.assertEquals(3, rec.count("executeQuery"));
+
+			pojo.selectOne(db, 1);
+			Assert.assertEquals(3, rec.count("executeQuery"));
+		}
+	}
+	/**
+	 * Deleting by a single-pass sequence of keys evicts the cached records.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testDeleteManyOnce() throws Exception {
+		MockJDBC.Recorder rec1 = table();
+		MockJDBC.Recorder rec2 = table();
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		pojo.enableCache(100, 0, TimeUnit.MINUTES);
+		try (DB db1 = DB.connect(MockJDBC.connection(rec1));
+				DB db2 = DB.connect(MockJDBC.connection(rec2))) {
+			pojo.selectOne(db2, 1);
+			pojo.selectOne(db2, 2);
+			Assert.assertEquals(2, rec2.count("executeQuery"));
+			
+			Iterable<Object> keys = new Iterable<Object>() {
+				/** The sequence was already iterated. */
+				boolean once;
+				@Override
+				public Iterator<Object> iterator() {
+					Assert.assertFalse("Iterated twice", once);
+					once = true;
+					return Arrays.<Object>asList(1, 2).iterator();
+				}
+			};
+			Assert.assertEquals(1, pojo.deleteMany(db1, keys));
+			
+			pojo.selectOne(db2, 1);
+			pojo.selectOne(db2, 2);
+			Assert.assertEquals(4, rec2.count("executeQuery"));
+		}
+	}
+	/**
+	 * Records read through a connection with uncommitted changes are not cached
+	 * and the written records are evicted again on commit.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testUncommitted() throws Exception {
+		MockJDBC.Recorder rec1 = table();
+		MockJDBC.Recorder rec2 = table();
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		pojo.enableCache(100, 0, TimeUnit.MINUTES);
+		try (DB db1 = DB.connect(MockJDBC.connection(rec1));
+				DB db2 = DB.connect(MockJDBC.connection(rec2))) {
+			Entity e = pojo.selectOne(db1, 1);
+			pojo.update(db1, e);
+			pojo.selectOne(db1, 1);
+			pojo.selectOne(db1, 1);
+			Assert.assertEquals(3, rec1.count("executeQuery"));
+			
+			pojo.selectOne(db2, 1);
+			pojo.selectOne(db2, 1);
+			Assert.assertEquals(1, rec2.count("executeQuery"));
+			
+			db1.commit();
+			pojo.selectOne(db2, 1);
+			Assert.assertEquals(2, rec2.count("executeQuery"));
+			
+			pojo.selectOne(db1, 1);
+			Assert.assertEquals(3, rec1.count("executeQuery"));
+		}
+	}
+	/**
+	 * Only the missing records are queried.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSelectMany() throws Exception {
+		MockJDBC.Recorder rec = table();
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		pojo.enableCache(100, 0, TimeUnit.MINUTES);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			pojo.selectOne(db, 2);
+			Map<Object, Entity> map = pojo.selectMany(db, Arrays.asList(1, 2, 3));
+			
+			Assert.assertEquals(3, map.size());
+			Assert.assertEquals("name2", map.get(2L).name);
+			Assert.assertEquals(1, rec.count("setInt[1, 1]"));
+			Assert.assertEquals(1, rec.count("setInt[2, 3]"));
+			
+			pojo.selectMany(db, Arrays.asList(1, 2, 3));
+			Assert.assertEquals(2, rec.count("executeQuery"));
+		}
+	}
+}
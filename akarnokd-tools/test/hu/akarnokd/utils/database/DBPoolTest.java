@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.lang.Action1E;
+import hu.akarnokd.utils.lang.Func1E;
+import hu.akarnokd.utils.pool.ConcurrentPool;
+
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+
+/**
+ * Test the pooled connections behind DB.connect(String).
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBPoolTest {
+	/** Close the pools after each test. */
+	@After
+	public void after() {
+		DB.closePools();
+	}
+	/**
+	 * Connections are reused after close.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testReuse() throws Exception {
+		DB.addConnection(MockJDBC.info("pooltest1", 1));
+		MockJDBC.Recorder rec = MockJDBC.recorder("pooltest1");
+
+		DB db1 = DB.connect("pooltest1");
+		db1.close();
+		DB db2 = DB.connect("pooltest1");
+		Assert.assertSame(db1, db2);
+		db2.close();
+		db2.close();
+
+		for (int i = 0; i < 10; i++) {
+			DB.execute("pooltest1", new Action1E<DB, SQLException>() {
+				@Override
+				public void call(DB t) throws SQLException {
+					t.update("UPDATE T SET A = 1");
+				}
+			});
+		}
+		Assert.assertEquals(1, rec.count("driver.connect"));
+		Assert.assertEquals(12, rec.count("conn.rollback"));
+		Assert.assertEquals(0, rec.count("conn.close"));
+
+		DB.closePools();
+		Assert.assertEquals(1, rec.count("conn.close"));
+	}
+	/**
+	 * Concurrent borrows get distinct connections up to maxConnection.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testDistinct() throws Exception {
+		DB.addConnection(MockJDBC.info("pooltest2", 2));
+		MockJDBC.Recorder rec = MockJDBC.recorder("pooltest2");
+
+		try (DB db1 = DB.connect("pooltest2"); DB db2 = DB.connect("pooltest2")) {
+			Assert.assertNotSame(db1, db2);
+		}
+		Assert.assertEquals(2, rec.count("driver.connect"));
+		Assert.assertNotNull(DB.pool("pooltest2"));
+	}
+	/**
+	 * The async execution waits for a pooled connection without blocking
+	 * and returns it afterwards.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 5000)
+	public void testExecuteAsync() throws Exception {
+		DB.addConnection(MockJDBC.info("pooltest4", 1));
+		MockJDBC.Recorder rec = MockJDBC.recorder("pooltest4");
+
+		TestSubscriber<Integer> ts = new TestSubscriber<>();
+		try (DB db = DB.connect("pooltest4")) {
+			DB.executeAsync("pooltest4", new Func1E<DB, Integer, SQLException>() {
+				@Override
+				public Integer call(DB t) throws SQLException {
+					return t.update("UPDATE T SET A = 1");
+				}
+			}).subscribe(ts);
+			ts.assertNoValues();
+		}
+		ts.awaitTerminalEvent();
+		ts.assertValueCount(1);
+		ts.assertCompleted();
+
+		Assert.assertEquals(1, rec.count("driver.connect"));
+		Assert.assertEquals(1, ((ConcurrentPool<DB>)DB.pool("pooltest4")).idle());
+	}
+	/**
+	 * Infos without maxConnection are not pooled.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testUnpooled() throws Exception {
+		DB.addConnection(MockJDBC.info("pooltest3", 0));
+		MockJDBC.Recorder rec = MockJDBC.recorder("pooltest3");
+
+		DB.connect("pooltest3").close();
+		DB.connect("pooltest3").close();
+
+		Assert.assertEquals(2, rec.count("driver.connect"));
+		Assert.assertEquals(2, rec.count("conn.close"));
+		Assert.assertNull(DB.pool("pooltest3"));
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import ix.CloseableIterator;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the prefetching query iterator.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBPrefetchIteratorTest {
+	/** Returns a row counter. */
+	static SQLResult<Integer> counter() {
+		return new SQLResult<Integer>() {
+			/** The row counter. */
+			int row;
+			@Override
+			public Integer call(ResultSet t) throws SQLException {
+				return row++;
+			}
+		};
+	}
+	/**
+	 * All rows are returned in order and the statement is closed at the end.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testAllRows() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = 1000;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			CloseableIterator<Integer> it = db.queryIteratorPrefetch("SELECT x FROM T", counter(), 64);
+			int n = 0;
+			while (it.hasNext()) {
+				Assert.assertEquals(n++, it.next().intValue());
+			}
+			Assert.assertEquals(1000, n);
+			Assert.assertFalse(it.hasNext());
+			
+			PreparedStatement ps = rec.statements.get(0);
+			while (!ps.isClosed()) {
+				Thread.sleep(10);
+			}
+		}
+	}
+	/**
+	 * Unsubscribing cancels and closes the statement early.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testCancel() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = Integer.MAX_VALUE;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			CloseableIterator<Integer> it = db.queryIteratorPrefetch("SELECT x FROM T", counter(), 16);
+			for (int i = 0; i < 100; i++) {
+				it.next();
+			}
+			it.unsubscribe();
+			Assert.assertTrue(it.isUnsubscribed());
+			Assert.assertFalse(it.hasNext());
+			
+			PreparedStatement ps = rec.statements.get(0);
+			while (!ps.isClosed()) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals(1, rec.count("cancel"));
+		}
+	}
+	/**
+	 * Unmarshaller errors are rethrown on the consumer thread.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000, expected = SQLRuntimeException.class)
+	public void testError() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = 100;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			CloseableIterator<Integer> it = db.queryIteratorPrefetch("SELECT x FROM T", new SQLResult<Integer>() {
+				@Override
+				public Integer call(ResultSet t) throws SQLException {
+					throw new SQLException("Forced failure");
+				}
+			}, 16);
+			it.hasNext();
+		}
+	}
+	/**
+	 * Errors of the producer are rethrown on the consumer thread instead of hanging it.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000, expected = AssertionError.class)
+	public void testErrorNotException() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = 100;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			CloseableIterator<Integer> it = db.queryIteratorPrefetch("SELECT x FROM T", new SQLResult<Integer>() {
+				@Override
+				public Integer call(ResultSet t) throws SQLException {
+					throw new AssertionError("Forced failure");
+				}
+			}, 16);
+			it.hasNext();
+		}
+	}
+}
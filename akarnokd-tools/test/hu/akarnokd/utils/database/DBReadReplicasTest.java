@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+/**
+ * Test the routing of the read-only operations to the replicas.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBReadReplicasTest {
+	/** Close the pools after each test. */
+	@After
+	public void after() {
+		DB.closePools();
+	}
+	/**
+	 * Creates a replica info.
+	 * @param url the connection URL
+	 * @param weight the weight
+	 * @return the replica info
+	 */
+	static DB.ReplicaInfo replica(String url, int weight) {
+		DB.ReplicaInfo ri = new DB.ReplicaInfo();
+		ri.connectionURL = url;
+		ri.weight = weight;
+		return ri;
+	}
+	/**
+	 * The reads are spread by weight, the writes stay on the primary.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testRouting() throws Exception {
+		DB.DBInfo dbi = MockJDBC.info("rrprimary", 4);
+		dbi.replicas.add(replica("jdbc:mock:rrone", 1));
+		dbi.replicas.add(replica("jdbc:mock:rrtwo", 2));
+		DB.addConnection(dbi);
+		try (DB db1 = DB.connect("rrprimary");
+				DB db2 = DB.connect("rrprimary");
+				DB db3 = DB.connect("rrprimary")) {
+			db1.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+			db2.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+			db3.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+			db1.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+			db1.update("UPDATE T SET x = 1");
+			Assert.assertEquals(1, DB.REPLICAS.get("rrprimary").outstanding(0));
+			Assert.assertEquals(2, DB.REPLICAS.get("rrprimary").outstanding(1));
+		}
+		Assert.assertEquals(0, DB.REPLICAS.get("rrprimary").outstanding(0));
+		Assert.assertEquals(0, DB.REPLICAS.get("rrprimary").outstanding(1));
+		Assert.assertEquals(0, MockJDBC.recorder("rrprimary").count("executeQuery"));
+		Assert.assertEquals(1, MockJDBC.recorder("rrprimary").count("executeUpdate"));
+		Assert.assertEquals(4, MockJDBC.recorder("rrone").count("executeQuery") 
+				+ MockJDBC.recorder("rrtwo").count("executeQuery"));
+		Assert.assertEquals(0, MockJDBC.recorder("rrone").count("executeUpdate") 
+				+ MockJDBC.recorder("rrtwo").count("executeUpdate"));
+		
+		TestSubscriber<Integer> ts = new TestSubscriber<>();
+		DB.queryAsync("rrprimary", Schedulers.io(), 0, "SELECT y FROM T", DBAsyncTest.ONE).subscribe(ts);
+		ts.awaitTerminalEvent(5, TimeUnit.SECONDS);
+		ts.assertCompleted();
+		Assert.assertEquals(1, MockJDBC.recorder("rrone").count("conn.prepareStatement[SELECT y") 
+				+ MockJDBC.recorder("rrtwo").count("conn.prepareStatement[SELECT y"));
+	}
+	/**
+	 * A failing replica is skipped and the reads fall back to the primary.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testUnhealthy() throws Exception {
+		DB.DBInfo dbi = MockJDBC.info("rrprimary2", 2);
+		dbi.replicas.add(replica("jdbc:missing:rrbad", 1));
+		DB.addConnection(dbi);
+		try (DB db = DB.connect("rrprimary2")) {
+			db.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+			Assert.assertSame(db, db.reader());
+		}
+		Assert.assertTrue(DB.REPLICAS.get("rrprimary2").downUntil.get(0) > System.currentTimeMillis());
+		Assert.assertEquals(1, MockJDBC.recorder("rrprimary2").count("executeQuery"));
+	}
+	/**
+	 * The reads stay on the primary while it has uncommitted changes.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testUncommitted() throws Exception {
+		DB.DBInfo dbi = MockJDBC.info("rrprimary4", 2);
+		dbi.replicas.add(replica("jdbc:mock:rrfour", 1));
+		DB.addConnection(dbi);
+		try (DB db = DB.connect("rrprimary4")) {
+			db.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+			db.update("UPDATE T SET x = 1");
+			db.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+			Assert.assertSame(db, db.reader());
+			db.commit();
+			db.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+		}
+		Assert.assertEquals(1, MockJDBC.recorder("rrprimary4").count("executeQuery"));
+		Assert.assertEquals(2, MockJDBC.recorder("rrfour").count("executeQuery"));
+	}
+	/**
+	 * A replica whose query fails on the connection is marked down and released.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testQueryFails() throws Exception {
+		DB.DBInfo dbi = MockJDBC.info("rrprimary5", 2);
+		dbi.replicas.add(replica("jdbc:mock:rrfive", 1));
+		DB.addConnection(dbi);
+		MockJDBC.recorder("rrfive").queryError = new SQLRecoverableException("Connection lost", "08006");
+		try (DB db = DB.connect("rrprimary5")) {
+			try {
+				db.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+				Assert.fail("Should have failed");
+			} catch (SQLException ex) {
+				Assert.assertEquals("Connection lost", ex.getMessage());
+			}
+			Assert.assertEquals(0, DB.REPLICAS.get("rrprimary5").outstanding(0));
+			Assert.assertTrue(DB.REPLICAS.get("rrprimary5").downUntil.get(0) > System.currentTimeMillis());
+			db.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+		} finally {
+			MockJDBC.recorder("rrfive").queryError = null;
+		}
+		Assert.assertEquals(1, MockJDBC.recorder("rrprimary5").count("executeQuery"));
+	}
+	/**
+	 * Disabled routing keeps the reads on the primary.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 10000)
+	public void testRoutingDisabled() throws Exception {
+		DB.DBInfo dbi = MockJDBC.info("rrprimary3", 2);
+		dbi.replicas.add(replica("jdbc:mock:rrthree", 1));
+		DB.addConnection(dbi);
+		try (DB db = DB.connect("rrprimary3")) {
+			db.setReadRouting(false);
+			db.queryReadOnly("SELECT x FROM T", DBAsyncTest.ONE);
+		}
+		Assert.assertEquals(1, MockJDBC.recorder("rrprimary3").count("executeQuery"));
+		Assert.assertEquals(0, MockJDBC.recorder("rrthree").count("executeQuery"));
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.functions.Func2;
+import rx.observers.TestSubscriber;
+
+/**
+ * Test the delta synchronization of the replica.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBReplicaTest {
+	/** A versioned record. */
+	@SQLTable("Item")
+	public static class Item {
+		/** The identifier. */
+		@SQLID
+		@SQLColumn(index = 0)
+		public long id;
+		/** The name. */
+		@SQLColumn(index = 1)
+		public String name;
+		/** The row version. */
+		@SQLColumn(index = 2)
+		public long version;
+	}
+	/**
+	 * Creates a recorder which returns the rows of the table with at least the version of the parameter.
+	 * @param table the rows of id, name, version
+	 * @return the recorder
+	 */
+	static MockJDBC.Recorder table(final List<Object[]> table) {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.query = new Func2<String, List<Object>, ResultSet>() {
+			@Override
+			public ResultSet call(String sql, List<Object> params) {
+				long from = params.isEmpty() ? Long.MIN_VALUE : (Long)params.get(0);
+				List<Object[]> rows = new ArrayList<>();
+				for (Object[] r : table) {
+					if ((Long)r[2] >= from) {
+						rows.add(r);
+					}
+				}
+				return MockJDBC.table(new String[] { "id", "name", "version" }, 
+						new int[] { Types.BIGINT, Types.VARCHAR, Types.BIGINT }, rows.toArray(new Object[0][]));
+			}
+		};
+		return rec;
+	}
+	/**
+	 * Only the changed rows are fetched and reported.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSync() throws Exception {
+		List<Object[]> table = new ArrayList<>();
+		table.add(new Object[] { 1L, "a", 1L });
+		table.add(new Object[] { 2L, "b", 2L });
+		table.add(new Object[] { 3L, "c", 3L });
+		MockJDBC.Recorder rec = table(table);
+		DBReplica<Item> replica = new DBReplica<>(new DBPojo<>(Item.class), "version");
+		TestSubscriber<DBReplica.Change<Item>> ts = new TestSubscriber<>();
+		replica.changes().subscribe(ts);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			Assert.assertEquals(3, replica.sync(db));
+			Map<Object, Item> first = replica.snapshot();
+			
+			table.set(1, new Object[] { 2L, "b2", 4L });
+			table.add(new Object[] { 4L, "d", 5L });
+			Assert.assertEquals(2, replica.sync(db));
+			Assert.assertEquals(0, replica.sync(db));
+			
+			Assert.assertEquals("b", first.get(2L).name);
+			Assert.assertEquals(3, first.size());
+			Assert.assertEquals("b2", replica.get(2).name);
+			Assert.assertEquals(4, replica.size());
+		}
+		ts.assertValueCount(5);
+		DBReplica.Change<Item> c = ts.getOnNextEvents().get(3);
+		Assert.assertEquals(DBReplica.ChangeKind.UPDATE, c.kind);
+		Assert.assertEquals("b", c.previous.name);
+		Assert.assertEquals("b2", c.current.name);
+		Assert.assertEquals(DBReplica.ChangeKind.INSERT, ts.getOnNextEvents().get(4).kind);
+		Assert.assertEquals(1, rec.count("setLong[1, 3]"));
+		Assert.assertEquals(1, rec.count("setLong[1, 5]"));
+		Assert.assertEquals(2, rec.count("conn.prepareStatement[SELECT id, name, version FROM Item  WHERE version >= ? ORDER BY version"));
+	}
+	/**
+	 * Rows committed later with the greatest version seen, or within the
+	 * overlap below it, are not lost.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testLateCommit() throws Exception {
+		List<Object[]> table = new ArrayList<>();
+		table.add(new Object[] { 1L, "a", 1L });
+		table.add(new Object[] { 2L, "b", 3L });
+		DBReplica<Item> replica = new DBReplica<>(new DBPojo<>(Item.class), "version");
+		replica.setOverlap(2);
+		try (DB db = DB.connect(MockJDBC.connection(table(table)))) {
+			Assert.assertEquals(2, replica.sync(db));
+			Assert.assertEquals(0, replica.sync(db));
+			
+			table.add(new Object[] { 3L, "c", 3L });
+			table.add(new Object[] { 4L, "d", 2L });
+			table.add(new Object[] { 5L, "e", 0L });
+			Assert.assertEquals(2, replica.sync(db));
+			Assert.assertEquals("c", replica.get(3L).name);
+			Assert.assertEquals("d", replica.get(4L).name);
+			Assert.assertNull(replica.get(5L));
+		}
+	}
+	/**
+	 * The full reload detects the deleted and changed rows.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testReload() throws Exception {
+		List<Object[]> table = new ArrayList<>();
+		table.add(new Object[] { 1L, "a", 1L });
+		table.add(new Object[] { 2L, "b", 2L });
+		DBReplica<Item> replica = new DBReplica<>(new DBPojo<>(Item.class), null);
+		TestSubscriber<DBReplica.Change<Item>> ts = new TestSubscriber<>();
+		try (DB db = DB.connect(MockJDBC.connection(table(table)))) {
+			replica.sync(db);
+			replica.changes().subscribe(ts);
+			table.remove(0);
+			table.set(0, new Object[] { 2L, "b2", 2L });
+			Assert.assertEquals(0, replica.sync(db));
+			Assert.assertEquals(2, replica.reload(db));
+		}
+		ts.assertValueCount(2);
+		Assert.assertEquals(DBReplica.ChangeKind.UPDATE, ts.getOnNextEvents().get(0).kind);
+		Assert.assertEquals(DBReplica.ChangeKind.DELETE, ts.getOnNextEvents().get(1).kind);
+		Assert.assertEquals(1L, ts.getOnNextEvents().get(1).key);
+		Assert.assertNull(replica.get(1L));
+	}
+}
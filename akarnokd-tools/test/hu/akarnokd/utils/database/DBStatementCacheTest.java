@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the prepared statement cache of the DB.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBStatementCacheTest {
+	/**
+	 * Closed statements are reused for the same SQL.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testReuse() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setStatementCacheSize(2);
+
+			for (int i = 0; i < 3; i++) {
+				try (PreparedStatement ps = db.prepare("SELECT 1 FROM T WHERE ID = ?", i)) {
+					ps.executeQuery();
+				}
+			}
+
+			Assert.assertEquals(1, rec.count("conn.prepareStatement"));
+			Assert.assertEquals(2, db.getStatementCache().hits());
+			Assert.assertEquals(1, db.getStatementCache().misses());
+			Assert.assertEquals(3, rec.count("clearParameters"));
+			Assert.assertEquals(0, rec.count("close"));
+		}
+		Assert.assertEquals(1, rec.count("close"));
+	}
+	/**
+	 * The generated keys mode is part of the key.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testDistinctModes() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setStatementCacheSize(4);
+
+			db.prepare(false, "INSERT INTO T VALUES (?)", 1).close();
+			db.prepare(true, "INSERT INTO T VALUES (?)", 1).close();
+			db.prepareReadOnly("INSERT INTO T VALUES (?)", 1).close();
+			db.prepare(true, "INSERT INTO T VALUES (?)", 1).close();
+
+			Assert.assertEquals(3, rec.count("conn.prepareStatement"));
+			Assert.assertEquals(3, db.getStatementCache().size());
+		}
+	}
+	/**
+	 * The least recently used statement is evicted and closed.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testEviction() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setStatementCacheSize(2);
+
+			db.prepare("A").close();
+			db.prepare("B").close();
+			db.prepare("A").close();
+			db.prepare("C").close();
+
+			Assert.assertEquals(1, db.getStatementCache().evictions());
+			Assert.assertTrue(rec.statements.get(1).isClosed());
+			Assert.assertFalse(rec.statements.get(0).isClosed());
+
+			db.prepare("B").close();
+			Assert.assertEquals(4, rec.count("conn.prepareStatement"));
+		}
+	}
+	/**
+	 * The same SQL used concurrently gets separate statements.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testNested() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setStatementCacheSize(2);
+
+			try (PreparedStatement ps1 = db.prepare("A")) {
+				try (PreparedStatement ps2 = db.prepare("A")) {
+					Assert.assertNotSame(ps1, ps2);
+				}
+			}
+			Assert.assertEquals(2, rec.count("conn.prepareStatement"));
+			Assert.assertEquals(1, db.getStatementCache().size());
+			Assert.assertEquals(1, db.getStatementCache().evictions());
+		}
+	}
+	/**
+	 * The row limit of a returned statement doesn't leak to the next user.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testResetMaxRows() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setStatementCacheSize(2);
+
+			try (PreparedStatement ps = db.prepare("A")) {
+				ps.setMaxRows(10);
+			}
+			try (PreparedStatement ps = db.prepare("A")) {
+				Assert.assertEquals(0, ps.getMaxRows());
+			}
+			Assert.assertEquals(1, rec.count("conn.prepareStatement"));
+			Assert.assertEquals(1, rec.count("setMaxRows[0]"));
+		}
+	}
+	/**
+	 * A returned statement can't be used anymore through the old wrapper.
+	 * @throws IOException on error
+	 * @throws SQLException on error
+	 */
+	@Test(expected = SQLException.class)
+	public void testUseAfterClose() throws IOException, SQLException {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setStatementCacheSize(2);
+			PreparedStatement ps = db.prepare("A");
+			ps.close();
+			Assert.assertTrue(ps.isClosed());
+			ps.executeQuery();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.lang.Action2E;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the statement instrumentation and statistics.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBStatisticsTest {
+	/** Uninstall the instrumentation. */
+	@After
+	public void after() {
+		DB.setInstrumentation(null);
+	}
+	/** Literals, whitespace and parameter lists are normalized. */
+	@Test
+	public void testNormalize() {
+		Assert.assertEquals("SELECT * FROM T1 WHERE A = ? AND B IN (?...)",
+				DBStatistics.normalize("  SELECT *\n  FROM T1 WHERE A = 'it''s'  AND B IN (?, ?,?) "));
+		Assert.assertEquals("UPDATE T SET X = ? WHERE ID = ?",
+				DBStatistics.normalize("UPDATE T SET X = 1.5 WHERE ID = ?"));
+	}
+	/**
+	 * The queries, updates and batches are aggregated per normalized SQL.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testStatistics() throws Exception {
+		DBStatistics stats = new DBStatistics();
+		DB.setInstrumentation(stats);
+
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = 3;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			List<Integer> list = db.query("SELECT A FROM T WHERE ID IN (?, ?)", DB.SELECT_INT, 1, 2);
+			Assert.assertEquals(3, list.size());
+			db.query("SELECT A FROM T WHERE ID IN (?, ?, ?)", DB.SELECT_INT, 1, 2, 3);
+
+			db.save("INSERT INTO T VALUES (?)", Arrays.asList(1, 2, 3, 4), new Action2E<PreparedStatement, Integer, SQLException>() {
+				@Override
+				public void call(PreparedStatement t, Integer u) throws SQLException {
+					t.setInt(1, u);
+				}
+			});
+		}
+
+		DBStatistics.Stat q = stats.get("SELECT A FROM T WHERE ID IN (?, ?, ?, ?)");
+		Assert.assertNotNull(q);
+		Assert.assertEquals(2, q.count());
+		Assert.assertEquals(6, q.rows());
+		Assert.assertEquals(2, q.fetch().count());
+
+		DBStatistics.Stat u = stats.get("INSERT INTO T VALUES (?)");
+		Assert.assertEquals(1, u.count());
+		Assert.assertEquals(4, u.batchItems());
+		Assert.assertEquals(4, u.rows());
+
+		Assert.assertEquals(2, stats.top(10).size());
+		Assert.assertEquals(1, stats.top(1).size());
+		Assert.assertFalse(stats.dump(10).isEmpty());
+	}
+	/**
+	 * Without instrumentation the statements are not wrapped.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testDisabled() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			PreparedStatement ps = db.prepare("SELECT 1");
+			Assert.assertSame(rec.statements.get(0), ps);
+			ps.close();
+		}
+	}
+}
@@ -16,7 +16,18 @@
 
 package hu.akarnokd.utils.database;
 
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import hu.akarnokd.utils.lang.ToIntFunc1E;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.joda.time.LocalTime;
 import org.junit.Assert;
@@ -54,4 +65,103 @@ public class DBTest {
 		DBPojo<Row> db = new DBPojo<>(Row.class);
 		Assert.assertEquals("Table1", db.table());
 	}
+	/**
+	 * A row with composite key.
+	 */
+	@SQLTable("Table2")
+	public static class Row2 {
+		/** The first key. */
+		@SQLID
+		@SQLColumn(index = 0)
+		public int a;
+		/** The second key. */
+		@SQLID
+		@SQLColumn(index = 1)
+		public int b;
+		/** The value. */
+		@SQLColumn(index = 2)
+		public String value;
+	}
+	/**
+	 * Test if the keys are split into padded IN lists.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testSelectMany() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = 1;
+		List<Integer> keys = new ArrayList<>();
+		for (int i = 0; i < 2500; i++) {
+			keys.add(i % 2 == 0 ? i : i - 1);
+			keys.add(i);
+		}
+		Map<Object, DBBatchTest.Entity> result;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			result = new DBPojo<>(DBBatchTest.Entity.class).selectMany(db, keys);
+		}
+		Assert.assertEquals(3, rec.count("executeQuery"));
+		Assert.assertEquals(2, rec.count("conn.prepareStatement[SELECT id, name FROM Entity WHERE id IN (" + repeat("?", ", ", 1000) + "), "));
+		Assert.assertEquals(1, rec.count("conn.prepareStatement[SELECT id, name FROM Entity WHERE id IN (" + repeat("?", ", ", 512) + "), "));
+		Assert.assertEquals(2512, rec.count("setInt"));
+		Assert.assertEquals(1, rec.count("setInt[512, 2499]"));
+		Assert.assertEquals(Collections.singleton(0L), result.keySet());
+	}
+	/**
+	 * Test if the composite keys use row-value lists.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testDeleteManyComposite() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			new DBPojo<>(Row2.class).deleteMany(db, Arrays.<Object>asList(
+					Arrays.asList(1, 2), new Object[] { 3, 4 }, Arrays.asList(5, 6)));
+		}
+		Assert.assertEquals(1, rec.count("conn.prepareStatement[DELETE FROM Table2 WHERE (a, b) IN (" 
+				+ repeat("(?, ?)", ", ", 4) + "), "));
+		Assert.assertEquals(1, rec.count("executeUpdate"));
+		Assert.assertEquals(1, rec.count("setInt[8, 6]"));
+	}
+	/**
+	 * Repeat a string with separators.
+	 * @param s the string
+	 * @param sep the separator
+	 * @param n the count
+	 * @return the joined string
+	 */
+	static String repeat(String s, String sep, int n) {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			if (i > 0) {
+				b.append(sep);
+			}
+			b.append(s);
+		}
+		return b.toString();
+	}
+	/**
+	 * Test if the primitive queries fill the Trove lists.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testQueryPrimitives() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.rows = 5;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			TLongArrayList longs = db.queryLongs("SELECT id FROM T WHERE x = ?", 1);
+			Assert.assertEquals(5, longs.size());
+			TIntArrayList ints = db.queryInts("SELECT id FROM T", new ToIntFunc1E<ResultSet, SQLException>() {
+				/** The row counter. */
+				int row;
+				@Override
+				public int call(ResultSet t) throws SQLException {
+					return ++row;
+				}
+			});
+			Assert.assertArrayEquals(new int[] { 1, 2, 3, 4, 5 }, ints.toArray());
+			Assert.assertEquals(5, db.queryDoubles("SELECT v FROM T", Collections.emptyList()).size());
+		}
+		Assert.assertEquals(3, rec.count("executeQuery"));
+		Assert.assertEquals(1, rec.count("setInt[1, 1]"));
+	}
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the unit of work ordering and collapsing.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBUnitOfWorkTest {
+	/** The referenced table. */
+	@SQLTable("Parent")
+	public static class Parent {
+		/** The identifier. */
+		@SQLID
+		@SQLColumn(index = 0)
+		public long id;
+		/** The name. */
+		@SQLColumn(index = 1)
+		public String name;
+	}
+	/** The referencing table. */
+	@SQLTable("Child")
+	public static class Child {
+		/** The identifier. */
+		@SQLID
+		@SQLColumn(index = 0)
+		public long id;
+		/** The parent identifier. */
+		@SQLColumn(index = 1)
+		public long parent;
+		/** The value. */
+		@SQLColumn(index = 2)
+		public String value;
+	}
+	/**
+	 * Returns the first words of the prepared statements.
+	 * @param rec the recorder
+	 * @return the statement prefixes
+	 */
+	static List<String> statements(MockJDBC.Recorder rec) {
+		List<String> result = new ArrayList<>();
+		for (PreparedStatement ps : rec.statements) {
+			String[] words = ps.toString().split(" ");
+			result.add(words[0] + " " + (words[0].equals("UPDATE") ? words[1] : words[2]));
+		}
+		return result;
+	}
+	/**
+	 * The parents are written first, deleted last, and the updates collapse.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testFlushOrder() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.product = "H2";
+		rec.importedKeys.put("CHILD", Arrays.asList("PARENT"));
+		DBPojo<Parent> parents = new DBPojo<>(Parent.class);
+		DBPojo<Child> children = new DBPojo<>(Child.class);
+		Parent p = new Parent();
+		p.name = "p";
+		Child c = new Child();
+		c.id = 5;
+		c.value = "first";
+		Child c2 = new Child();
+		c2.id = 5;
+		c2.value = "second";
+		Child c3 = new Child();
+		c3.id = 6;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			DBUnitOfWork uow = new DBUnitOfWork(db);
+			uow.update(children, c);
+			uow.update(children, c2);
+			uow.insert(parents, p);
+			uow.update(parents, p);
+			uow.update(children, c3);
+			uow.delete(children, c3);
+			uow.deleteKey(parents, 7L);
+			uow.flush();
+		}
+		Assert.assertEquals(1, p.id);
+		Assert.assertEquals(Arrays.asList("UPDATE Parent", "INSERT Parent", "UPDATE Child", "INSERT Child", "DELETE Child", "DELETE Parent"), 
+				statements(rec));
+		Assert.assertEquals(0, rec.count("setString[2, first]"));
+		Assert.assertEquals(1, rec.count("setString[2, second]"));
+		Assert.assertEquals(1, rec.count("setLong[1, 6]"));
+		Assert.assertEquals(1, rec.count("setLong[1, 7]"));
+	}
+	/**
+	 * The foreign keys are found under the table name as declared.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testDeclaredTableCase() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.product = "H2";
+		rec.importedKeys.put("Child", Arrays.asList("Parent"));
+		Parent p = new Parent();
+		p.name = "p";
+		Child c = new Child();
+		c.value = "c";
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			DBUnitOfWork uow = new DBUnitOfWork(db);
+			uow.insert(new DBPojo<>(Child.class), c);
+			uow.insert(new DBPojo<>(Parent.class), p);
+			uow.flush();
+		}
+		Assert.assertEquals(Arrays.asList("UPDATE Parent", "INSERT Parent", "UPDATE Child", "INSERT Child"), 
+				statements(rec));
+	}
+	/**
+	 * Deleting a pending insert discards both, and flush clears the pending operations.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testDeleteInserted() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		DBPojo<Parent> parents = new DBPojo<>(Parent.class);
+		Parent p = new Parent();
+		Parent p2 = new Parent();
+		p2.id = 3;
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			DBUnitOfWork uow = new DBUnitOfWork(db);
+			uow.insert(parents, p);
+			uow.insertExact(parents, p2);
+			uow.delete(parents, p);
+			uow.delete(parents, p2);
+			uow.flush();
+			uow.flush();
+		}
+		Assert.assertEquals(0, rec.statements.size());
+	}
+	/**
+	 * Re-inserting a key pending deletion updates the existing row instead.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testReinsertDeleted() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		DBPojo<Parent> parents = new DBPojo<>(Parent.class);
+		Parent p = new Parent();
+		p.id = 3;
+		p.name = "again";
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			DBUnitOfWork uow = new DBUnitOfWork(db);
+			uow.delete(parents, p);
+			uow.insertExact(parents, p);
+			uow.flush();
+		}
+		Assert.assertEquals(Arrays.asList("UPDATE Parent"), statements(rec));
+		Assert.assertEquals(0, rec.count("executeUpdate"));
+		Assert.assertEquals(1, rec.count("setString[1, again]"));
+		Assert.assertEquals(1, rec.count("executeBatch"));
+	}
+}
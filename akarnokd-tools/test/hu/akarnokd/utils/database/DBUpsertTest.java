@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import hu.akarnokd.utils.database.DBBatchTest.Entity;
+import hu.akarnokd.utils.database.DBTest.Row2;
+
+import java.sql.SQLFeatureNotSupportedException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the dialect specific upserts of DBPojo.
+ * @author akarnokd, 2026.10.17.
+ */
+public class DBUpsertTest {
+	/**
+	 * The upsert statements of the dialects.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testUpsertSql() throws Exception {
+		DBPojo<Row2> pojo = new DBPojo<>(Row2.class);
+		Assert.assertEquals("INSERT INTO Table2 (value, a, b) VALUES (?, ?, ?) "
+				+ "ON DUPLICATE KEY UPDATE value = VALUES(value)", 
+				pojo.upsertSql(DB.Dialect.MYSQL));
+		Assert.assertEquals("INSERT INTO Table2 (value, a, b) VALUES (?, ?, ?) "
+				+ "ON CONFLICT (a, b) DO UPDATE SET value = EXCLUDED.value", 
+				pojo.upsertSql(DB.Dialect.POSTGRESQL));
+		Assert.assertEquals("MERGE INTO Table2 (value, a, b) KEY (a, b) VALUES (?, ?, ?)", 
+				pojo.upsertSql(DB.Dialect.H2));
+		Assert.assertEquals("MERGE INTO Table2 d USING (SELECT ? value, ? a, ? b FROM DUAL) s "
+				+ "ON (d.a = s.a AND d.b = s.b) WHEN MATCHED THEN UPDATE SET d.value = s.value "
+				+ "WHEN NOT MATCHED THEN INSERT (value, a, b) VALUES (s.value, s.a, s.b)", 
+				pojo.upsertSql(DB.Dialect.ORACLE));
+		Assert.assertEquals("MERGE INTO Table2 d USING (VALUES (?, ?, ?)) s (value, a, b) "
+				+ "ON (d.a = s.a AND d.b = s.b) WHEN MATCHED THEN UPDATE SET d.value = s.value "
+				+ "WHEN NOT MATCHED THEN INSERT (value, a, b) VALUES (s.value, s.a, s.b);", 
+				pojo.upsertSql(DB.Dialect.SQLSERVER));
+	}
+	/**
+	 * The dialect is detected from the product name.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testDialect() throws Exception {
+		String[] products = { "MariaDB", "PostgreSQL", "Microsoft SQL Server", "DB2/LINUXX8664", "Derby", null };
+		DB.Dialect[] dialects = { DB.Dialect.MYSQL, DB.Dialect.POSTGRESQL, 
+				DB.Dialect.SQLSERVER, DB.Dialect.DB2, DB.Dialect.OTHER, DB.Dialect.OTHER };
+		for (int i = 0; i < products.length; i++) {
+			MockJDBC.Recorder rec = new MockJDBC.Recorder();
+			rec.product = products[i];
+			try (DB db = DB.connect(MockJDBC.connection(rec))) {
+				Assert.assertEquals(products[i], dialects[i], db.getDialect());
+				db.setDialect(DB.Dialect.H2);
+				Assert.assertEquals(DB.Dialect.H2, db.getDialect());
+			}
+		}
+	}
+	/**
+	 * The upsert runs as batches.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testUpsert() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		rec.product = "PostgreSQL";
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			db.setBatchSize(2);
+			pojo.upsert(db, DBBatchTest.entities(5));
+		}
+		Assert.assertEquals(1, rec.statements.size());
+		Assert.assertTrue(rec.statements.get(0).toString().contains("ON CONFLICT (id)"));
+		Assert.assertEquals(3, rec.count("executeBatch"));
+	}
+	/**
+	 * Unknown dialects are rejected.
+	 * @throws Exception on error
+	 */
+	@Test(expected = SQLFeatureNotSupportedException.class)
+	public void testUnsupported() throws Exception {
+		MockJDBC.Recorder rec = new MockJDBC.Recorder();
+		DBPojo<Entity> pojo = new DBPojo<>(Entity.class);
+		try (DB db = DB.connect(MockJDBC.connection(rec))) {
+			pojo.upsert(db, DBBatchTest.entities(1));
+		}
+	}
+}
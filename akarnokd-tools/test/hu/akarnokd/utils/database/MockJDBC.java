@@ -0,0 +1,466 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import rx.functions.Func2;
+
+/**
+ * Minimal recording JDBC connection and statement mocks for tests
+ * which don't need a real database.
+ * @author akarnokd, 2026.10.17.
+ */
+public final class MockJDBC {
+	/** Utility class. */
+	private MockJDBC() { }
+	/** Records the calls made on the mocks. */
+	public static final class Recorder {
+		/** The calls in the format of name(arg1, arg2, ...). */
+		public final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+		/** The statements created. */
+		public final List<PreparedStatement> statements = Collections.synchronizedList(new ArrayList<PreparedStatement>());
+		/** The number of rows the result sets return. */
+		public volatile int rows;
+		/** The database product name reported by the metadata, null if no metadata is available. */
+		public volatile String product;
+		/** The last generated key. */
+		public final AtomicLong keys = new AtomicLong();
+		/** The maximum number of generated keys returned after an execution. */
+		public volatile int keyLimit = Integer.MAX_VALUE;
+		/** Optionally returns the result set of a query from its SQL and bound parameters, null uses the default rows. */
+		public volatile Func2<String, List<Object>, ResultSet> query;
+		/** The error thrown by the queries if not null. */
+		public volatile SQLException queryError;
+		/** The tables referenced by the foreign keys of a table, reported by the metadata of the product. */
+		public final Map<String, List<String>> importedKeys = new ConcurrentHashMap<>();
+		/**
+		 * Count the calls with the given name prefix.
+		 * @param prefix the prefix
+		 * @return the count
+		 */
+		public int count(String prefix) {
+			int n = 0;
+			synchronized (calls) {
+				for (String s : calls) {
+					if (s.startsWith(prefix)) {
+						n++;
+					}
+				}
+			}
+			return n;
+		}
+	}
+	/**
+	 * Creates a connection whose statements record their calls.
+	 * @param rec the recorder
+	 * @return the connection
+	 */
+	public static Connection connection(final Recorder rec) {
+		return (Connection)Proxy.newProxyInstance(MockJDBC.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				String name = method.getName();
+				rec.calls.add("conn." + name + (args != null ? Arrays.toString(args) : "[]"));
+				if (name.equals("isValid")) {
+					return true;
+				}
+				if (name.equals("getMetaData") && rec.product != null) {
+					return metaData(rec.product, rec.importedKeys);
+				}
+				if (name.equals("prepareStatement")) {
+					PreparedStatement ps = statement(rec, (String)args[0]);
+					rec.statements.add(ps);
+					return ps;
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+	/**
+	 * Creates a recording statement.
+	 * @param rec the recorder
+	 * @param sql the SQL text
+	 * @return the statement
+	 */
+	public static PreparedStatement statement(final Recorder rec, final String sql) {
+		return (PreparedStatement)Proxy.newProxyInstance(MockJDBC.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			/** Closed? */
+			boolean closed;
+			/** The batch size. */
+			int batch;
+			/** The number of rows affected by the last execution. */
+			int last;
+			/** The maximum rows setting. */
+			int maxRows;
+			/** The bound parameters. */
+			final List<Object> params = new ArrayList<>();
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				String name = method.getName();
+				switch (name) {
+				case "addBatch":
+					batch++;
+					break;
+				case "executeBatch":
+					rec.calls.add(name + "[]");
+					int[] result = new int[batch];
+					Arrays.fill(result, 1);
+					last = batch;
+					batch = 0;
+					return result;
+				case "executeUpdate":
+					rec.calls.add(name + "[]");
+					last = Math.max(1, sql.split("\\(\\?").length - 1);
+					return last;
+				case "getGeneratedKeys":
+					rec.calls.add(name + "[]");
+					return keys(rec, Math.min(last, rec.keyLimit));
+				case "executeQuery":
+					rec.calls.add(name + "[]");
+					if (rec.queryError != null) {
+						throw rec.queryError;
+					}
+					Func2<String, List<Object>, ResultSet> q = rec.query;
+					if (q != null) {
+						ResultSet rs = q.call(sql, params);
+						if (rs != null) {
+							return rs;
+						}
+					}
+					return resultSet(rec.rows);
+				case "toString":
+					return sql;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				case "isClosed":
+					return closed;
+				case "getMaxRows":
+					return maxRows;
+				case "setMaxRows":
+					maxRows = (Integer)args[0];
+					break;
+				case "close":
+					closed = true;
+					break;
+				default:
+					if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+						int i = (Integer)args[0] - 1;
+						while (params.size() <= i) {
+							params.add(null);
+						}
+						params.set(i, args[1]);
+					}
+				}
+				rec.calls.add(name + (args != null ? Arrays.toString(args) : "[]"));
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+	/**
+	 * Creates a result set which returns the given number of rows with
+	 * default column values.
+	 * @param rows the number of rows
+	 * @return the result set
+	 */
+	public static ResultSet resultSet(final int rows) {
+		return (ResultSet)Proxy.newProxyInstance(MockJDBC.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			/** The current row. */
+			int row;
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				if (method.getName().equals("next")) {
+					return ++row <= rows;
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+	/**
+	 * Creates a result set which returns the given number of rows with
+	 * consecutive long keys.
+	 * @param rec the recorder holding the last key
+	 * @param rows the number of rows
+	 * @return the result set
+	 */
+	public static ResultSet keys(final Recorder rec, final int rows) {
+		return (ResultSet)Proxy.newProxyInstance(MockJDBC.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			/** The current row. */
+			int row;
+			/** The current key. */
+			long key;
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				switch (method.getName()) {
+				case "next":
+					if (++row <= rows) {
+						key = rec.keys.incrementAndGet();
+						return true;
+					}
+					return false;
+				case "getLong":
+					return key;
+				default:
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+	/**
+	 * Creates a database metadata reporting the given product name and
+	 * generated keys support.
+	 * @param product the product name
+	 * @return the metadata
+	 */
+	public static DatabaseMetaData metaData(final String product) {
+		return metaData(product, Collections.<String, List<String>>emptyMap());
+	}
+	/**
+	 * Creates a database metadata reporting the given product name,
+	 * generated keys support, upper case identifier storage and
+	 * the foreign keys of the tables.
+	 * @param product the product name
+	 * @param importedKeys the referenced tables per table
+	 * @return the metadata
+	 */
+	public static DatabaseMetaData metaData(final String product, final Map<String, List<String>> importedKeys) {
+		return (DatabaseMetaData)Proxy.newProxyInstance(MockJDBC.class.getClassLoader(),
+				new Class<?>[] { DatabaseMetaData.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				switch (method.getName()) {
+				case "getDatabaseProductName":
+					return product;
+				case "supportsGetGeneratedKeys":
+				case "storesUpperCaseIdentifiers":
+					return true;
+				case "getImportedKeys":
+					List<String> parents = importedKeys.get(args[2]);
+					Object[][] rows = new Object[parents != null ? parents.size() : 0][];
+					for (int i = 0; i < rows.length; i++) {
+						rows[i] = new Object[] { null, null, parents.get(i) };
+					}
+					return table(new String[] { "PKTABLE_CAT", "PKTABLE_SCHEM", "PKTABLE_NAME" }, 
+							new int[] { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR }, rows);
+				default:
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+	/**
+	 * Creates a result set over the given rows with metadata.
+	 * @param names the column names
+	 * @param types the column types from java.sql.Types
+	 * @param rows the row values, nulls are reported through wasNull
+	 * @return the result set
+	 */
+	public static ResultSet table(final String[] names, final int[] types, final Object[][] rows) {
+		final ResultSetMetaData md = (ResultSetMetaData)Proxy.newProxyInstance(MockJDBC.class.getClassLoader(),
+				new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				switch (method.getName()) {
+				case "getColumnCount":
+					return names.length;
+				case "getColumnLabel":
+				case "getColumnName":
+					return names[(Integer)args[0] - 1];
+				case "getColumnType":
+					return types[(Integer)args[0] - 1];
+				default:
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+		return (ResultSet)Proxy.newProxyInstance(MockJDBC.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			/** The current row. */
+			int row = -1;
+			/** The last value read was null. */
+			boolean wasNull;
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				String name = method.getName();
+				switch (name) {
+				case "next":
+					return ++row < rows.length;
+				case "getMetaData":
+					return md;
+				case "wasNull":
+					return wasNull;
+				default:
+				}
+				if (name.startsWith("get") && args != null && args.length == 1 && args[0] instanceof Integer) {
+					Object v = rows[row][(Integer)args[0] - 1];
+					wasNull = v == null;
+					if (v == null) {
+						return defaultValue(method.getReturnType());
+					}
+					if (v instanceof Number) {
+						Number n = (Number)v;
+						Class<?> c = method.getReturnType();
+						if (c == Integer.TYPE) {
+							return n.intValue();
+						}
+						if (c == Long.TYPE) {
+							return n.longValue();
+						}
+						if (c == Double.TYPE) {
+							return n.doubleValue();
+						}
+					}
+					return v;
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+	/** The recorders of the jdbc:mock:name URLs. */
+	public static final Map<String, Recorder> RECORDERS = new ConcurrentHashMap<>();
+	/**
+	 * Returns the recorder for the given mock URL name, creating it if necessary.
+	 * @param name the name after jdbc:mock:
+	 * @return the recorder
+	 */
+	public static Recorder recorder(String name) {
+		Recorder r = RECORDERS.get(name);
+		if (r == null) {
+			r = new Recorder();
+			RECORDERS.put(name, r);
+		}
+		return r;
+	}
+	/**
+	 * A driver accepting jdbc:mock:name URLs which records the calls
+	 * into the recorder of the name.
+	 */
+	public static final class MockDriver implements Driver {
+		static {
+			try {
+				DriverManager.registerDriver(new MockDriver());
+			} catch (SQLException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+			if (acceptsURL(url)) {
+				Recorder r = recorder(url.substring(10));
+				r.calls.add("driver.connect");
+				return connection(r);
+			}
+			return null;
+		}
+		@Override
+		public boolean acceptsURL(String url) throws SQLException {
+			return url.startsWith("jdbc:mock:");
+		}
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+			return new DriverPropertyInfo[0];
+		}
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+	/**
+	 * Creates a connection info for the given mock URL name.
+	 * @param name the name after jdbc:mock:
+	 * @param maxConnection the maximum connection count
+	 * @return the info
+	 */
+	public static DB.DBInfo info(String name, int maxConnection) {
+		DB.DBInfo dbi = new DB.DBInfo();
+		dbi.id = name;
+		dbi.driverClass = MockDriver.class.getName();
+		dbi.connectionURL = "jdbc:mock:" + name;
+		dbi.maxConnection = maxConnection;
+		return dbi;
+	}
+	/**
+	 * Returns the default value for the given return type.
+	 * @param c the class
+	 * @return the value
+	 */
+	static Object defaultValue(Class<?> c) {
+		if (c == Boolean.TYPE) {
+			return false;
+		}
+		if (c == Integer.TYPE) {
+			return 0;
+		}
+		if (c == Long.TYPE) {
+			return 0L;
+		}
+		if (c == Double.TYPE) {
+			return 0d;
+		}
+		if (c == int[].class) {
+			return new int[0];
+		}
+		return null;
+	}
+}
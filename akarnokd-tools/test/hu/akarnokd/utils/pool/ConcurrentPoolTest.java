@@ -0,0 +1,449 @@
+/*
+ * Copyright 2012-2014 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.utils.pool;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+
+/**
+ * Test the ConcurrentPool.
+ * @author akarnokd, 2026.10.17.
+ */
+public class ConcurrentPoolTest {
+	/** A pooled object which detects concurrent use. */
+	static final class Item {
+		/** The object is in use. */
+		final AtomicBoolean busy = new AtomicBoolean();
+		/** The object is still valid. */
+		volatile boolean valid = true;
+		/** The object was closed. */
+		volatile boolean closed;
+	}
+	/** Manager counting the creations. */
+	static final class ItemManager implements PoolManager<Item> {
+		/** The creation count. */
+		final AtomicInteger created = new AtomicInteger();
+		/** The verification count. */
+		final AtomicInteger verified = new AtomicInteger();
+		@Override
+		public Item create() throws Exception {
+			created.incrementAndGet();
+			return new Item();
+		}
+		@Override
+		public boolean verify(Item obj) throws Exception {
+			verified.incrementAndGet();
+			return obj.valid;
+		}
+		@Override
+		public void close(Item obj) throws Exception {
+			obj.closed = true;
+		}
+	}
+	/**
+	 * The thread gets back its last object.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testReuse() throws Exception {
+		ItemManager m = new ItemManager();
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(4, m)) {
+			Item a = pool.get();
+			pool.put(a);
+			Item b = pool.get();
+			Assert.assertSame(a, b);
+			pool.put(b);
+
+			Assert.assertEquals(1, m.created.get());
+			Assert.assertEquals(1, m.verified.get());
+			Assert.assertEquals(1, pool.idle());
+		}
+	}
+	/**
+	 * Invalid objects are replaced.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testInvalid() throws Exception {
+		ItemManager m = new ItemManager();
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(1, m)) {
+			Item a = pool.get();
+			a.valid = false;
+			pool.put(a);
+			Item b = pool.get();
+			Assert.assertNotSame(a, b);
+			Assert.assertTrue(a.closed);
+			Assert.assertEquals(1, pool.size());
+		}
+	}
+	/**
+	 * Recently returned objects are not verified again.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testValidationIdle() throws Exception {
+		ItemManager m = new ItemManager();
+		PoolSettings ps = new PoolSettings();
+		ps.validationIdleMillis = 50;
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(1, m, ps)) {
+			for (int i = 0; i < 10; i++) {
+				pool.put(pool.get());
+			}
+			Assert.assertEquals(0, m.verified.get());
+
+			Thread.sleep(100);
+			pool.put(pool.get());
+			Assert.assertEquals(1, m.verified.get());
+		}
+	}
+	/**
+	 * Objects past their lifetime are replaced.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testMaxLifetime() throws Exception {
+		ItemManager m = new ItemManager();
+		PoolSettings ps = new PoolSettings();
+		ps.maxLifetimeMillis = 50;
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(1, m, ps)) {
+			Item a = pool.get();
+			pool.put(a);
+			Thread.sleep(100);
+			Item b = pool.get();
+			Assert.assertNotSame(a, b);
+			Assert.assertTrue(a.closed);
+			Assert.assertEquals(2, m.created.get());
+		}
+	}
+	/**
+	 * Maintenance fills the pool to minIdle and closes the timed out idle objects above it.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testMaintenance() throws Exception {
+		ItemManager m = new ItemManager();
+		PoolSettings ps = new PoolSettings();
+		ps.minIdle = 2;
+		ps.idleTimeoutMillis = 50;
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(4, m, ps)) {
+			pool.maintain();
+			Assert.assertEquals(2, pool.idle());
+
+			List<Item> items = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				items.add(pool.get());
+			}
+			Assert.assertEquals(2, m.verified.get());
+			for (Item it : items) {
+				pool.put(it);
+			}
+			Assert.assertEquals(4, pool.idle());
+
+			Thread.sleep(100);
+			pool.maintain();
+			Assert.assertEquals(2, pool.idle());
+			Assert.assertEquals(2, pool.size());
+		}
+	}
+	/**
+	 * The background maintenance prefills the pool.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 5000)
+	public void testPrefill() throws Exception {
+		ItemManager m = new ItemManager();
+		PoolSettings ps = new PoolSettings();
+		ps.minIdle = 3;
+		ps.maintenanceMillis = 1000;
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(4, m, ps)) {
+			while (pool.idle() < 3) {
+				Thread.sleep(1);
+			}
+			Assert.assertEquals(3, m.created.get());
+		}
+	}
+	/**
+	 * Async borrowers wait without blocking and receive returned objects.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 5000)
+	public void testAsync() throws Exception {
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(1, new ItemManager())) {
+			TestSubscriber<Item> ts1 = new TestSubscriber<>();
+			pool.getAsync().subscribe(ts1);
+			ts1.assertValueCount(1);
+			ts1.assertCompleted();
+
+			TestSubscriber<Item> ts2 = new TestSubscriber<>();
+			pool.getAsync().subscribe(ts2);
+			ts2.assertNoValues();
+			Assert.assertEquals(1, pool.waiting());
+
+			pool.put(ts1.getOnNextEvents().get(0));
+			ts2.assertValues(ts1.getOnNextEvents().get(0));
+			ts2.assertCompleted();
+			Assert.assertEquals(0, pool.waiting());
+		}
+	}
+	/**
+	 * Async borrowers time out.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 5000)
+	public void testAsyncTimeout() throws Exception {
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(1, new ItemManager())) {
+			Item a = pool.get();
+			TestSubscriber<Item> ts = new TestSubscriber<>();
+			pool.getAsync(10, TimeUnit.MILLISECONDS).subscribe(ts);
+			ts.awaitTerminalEvent();
+			ts.assertError(TimeoutException.class);
+			Assert.assertEquals(0, pool.waiting());
+
+			pool.put(a);
+			Assert.assertEquals(1, pool.idle());
+		}
+	}
+	/**
+	 * Cancelled async borrowers leave the queue and don't swallow objects.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 5000)
+	public void testAsyncCancel() throws Exception {
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(1, new ItemManager())) {
+			Item a = pool.get();
+			TestSubscriber<Item> ts1 = new TestSubscriber<>();
+			pool.getAsync().subscribe(ts1);
+			TestSubscriber<Item> ts2 = new TestSubscriber<>();
+			pool.getAsync().subscribe(ts2);
+			Assert.assertEquals(2, pool.waiting());
+
+			ts1.unsubscribe();
+			Assert.assertEquals(1, pool.waiting());
+
+			pool.put(a);
+			ts1.assertNoValues();
+			ts2.assertValues(a);
+		}
+	}
+	/**
+	 * The events are counted and published via JMX.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testMetrics() throws Exception {
+		ItemManager m = new ItemManager();
+		ObjectName on = new ObjectName("hu.akarnokd.utils.pool:type=ConcurrentPool,name=\"testMetrics\"");
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(2, m)) {
+			final AtomicInteger returns = new AtomicInteger();
+			pool.setListener(new CountingListener(returns));
+			pool.registerMBean("testMetrics");
+
+			Item a = pool.get();
+			Item b = pool.get();
+			pool.put(a);
+			pool.put(b);
+			pool.put(pool.get());
+			try {
+				pool.get();
+				pool.get();
+				pool.get(1, TimeUnit.MILLISECONDS);
+				Assert.fail("Should have timed out");
+			} catch (TimeoutException ex) {
+				// expected
+			}
+
+			PoolMetrics pm = pool.metrics();
+			Assert.assertEquals(2, pm.created());
+			Assert.assertEquals(5, pm.borrowed());
+			Assert.assertEquals(3, pm.returned());
+			Assert.assertEquals(1, pm.timeouts());
+			Assert.assertEquals(3, returns.get());
+			Assert.assertEquals(3, pm.hold().count());
+
+			Assert.assertEquals(5L, mbs.getAttribute(on, "Borrowed"));
+			Assert.assertEquals(2, mbs.getAttribute(on, "MaxSize"));
+			Assert.assertEquals(1L, mbs.getAttribute(on, "Timeouts"));
+		}
+		Assert.assertFalse(mbs.isRegistered(on));
+	}
+	/**
+	 * Objects held for too long are reported with their borrow trace.
+	 * @throws Exception on error
+	 */
+	@Test
+	public void testLeak() throws Exception {
+		PoolSettings ps = new PoolSettings();
+		ps.leakThresholdMillis = 10;
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(2, new ItemManager(), ps)) {
+			final AtomicInteger leaks = new AtomicInteger();
+			pool.setListener(new CountingListener(leaks) {
+				@Override
+				public void onReturn(Item obj, long holdNanos) {
+					// not counted
+				}
+				@Override
+				public void onLeak(Item obj, long heldNanos, Throwable borrowTrace) {
+					for (StackTraceElement ste : borrowTrace.getStackTrace()) {
+						if (ste.getMethodName().equals("testLeak")) {
+							leaks.incrementAndGet();
+						}
+					}
+				}
+			});
+			Logger.getLogger(ConcurrentPool.class.getName()).setLevel(Level.OFF);
+
+			Item a = pool.get();
+			pool.put(pool.get());
+			Thread.sleep(50);
+			pool.maintain();
+			pool.maintain();
+
+			Assert.assertEquals(1, leaks.get());
+			Assert.assertEquals(1, pool.metrics().leaks());
+			pool.put(a);
+		} finally {
+			Logger.getLogger(ConcurrentPool.class.getName()).setLevel(null);
+		}
+	}
+	/** Listener counting the returns. */
+	static class CountingListener implements PoolListener<Item> {
+		/** The counter. */
+		final AtomicInteger counter;
+		/**
+		 * Constructor, sets the counter.
+		 * @param counter the counter
+		 */
+		CountingListener(AtomicInteger counter) {
+			this.counter = counter;
+		}
+		@Override
+		public void onCreate(Item obj, long nanos) { }
+		@Override
+		public void onCreateError(Throwable error) { }
+		@Override
+		public void onVerify(Item obj, boolean valid, long nanos) { }
+		@Override
+		public void onBorrow(Item obj, long waitNanos) { }
+		@Override
+		public void onTimeout() { }
+		@Override
+		public void onReturn(Item obj, long holdNanos) {
+			counter.incrementAndGet();
+		}
+		@Override
+		public void onDestroy(Item obj) { }
+		@Override
+		public void onLeak(Item obj, long heldNanos, Throwable borrowTrace) { }
+	}
+	/**
+	 * Timed wait on an exhausted pool.
+	 * @throws Exception on error
+	 */
+	@Test(expected = TimeoutException.class)
+	public void testTimeout() throws Exception {
+		try (ConcurrentPool<Item> pool = new ConcurrentPool<>(1, new ItemManager())) {
+			pool.get();
+			pool.get(10, TimeUnit.MILLISECONDS);
+		}
+	}
+	/**
+	 * Returned objects are handed to a waiting thread.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 5000)
+	public void testHandoff() throws Exception {
+		final ConcurrentPool<Item> pool = new ConcurrentPool<>(1, new ItemManager());
+		final Item a = pool.get();
+		final CountDownLatch cdl = new CountDownLatch(1);
+		final List<Item> result = new ArrayList<>();
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result.add(pool.get());
+				} catch (Exception ex) {
+					ex.printStackTrace();
+				}
+				cdl.countDown();
+			}
+		});
+		t.start();
+		while (pool.waiting() == 0) {
+			Thread.sleep(1);
+		}
+		pool.put(a);
+		cdl.await();
+		Assert.assertEquals(1, result.size());
+		Assert.assertSame(a, result.get(0));
+		pool.close();
+	}
+	/**
+	 * No object is used by two threads at once and the size stays bounded.
+	 * @throws Exception on error
+	 */
+	@Test(timeout = 30000)
+	public void testConcurrentUse() throws Exception {
+		final ItemManager m = new ItemManager();
+		final ConcurrentPool<Item> pool = new ConcurrentPool<>(4, m);
+		final AtomicInteger errors = new AtomicInteger();
+		int n = 16;
+		final CountDownLatch cdl = new CountDownLatch(n);
+		for (int i = 0; i < n; i++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 20000; j++) {
+							Item it = pool.get();
+							if (!it.busy.compareAndSet(false, true)) {
+								errors.incrementAndGet();
+							}
+							it.busy.set(false);
+							pool.put(it);
+						}
+					} catch (Exception ex) {
+						ex.printStackTrace();
+						errors.incrementAndGet();
+					}
+					cdl.countDown();
+				}
+			}).start();
+		}
+		cdl.await();
+		Assert.assertEquals(0, errors.get());
+		Assert.assertTrue(m.created.get() <= 4);
+		Assert.assertEquals(pool.size(), pool.idle());
+		pool.close();
+	}
+}